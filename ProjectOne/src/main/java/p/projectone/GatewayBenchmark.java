@@ -0,0 +1,282 @@
+package p.projectone;
+
+import p.projectone.catalog.CandidateCatalog;
+import p.projectone.catalog.CandidateCatalogHolder;
+import p.projectone.ingest.VoteGateway;
+import p.projectone.ingest.VoteLedger;
+import p.projectone.metrics.LatencyHistogram;
+import p.projectone.protocol.VoteCodec;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Kiosk gateway benchmark
+ * Opens many long-lived connections to a VoteGateway, then every connection repeatedly sends a pipeline
+ * of vote frames (one new user per frame) and waits for the acks. Reports connect time, acked votes/s,
+ * pipeline round-trip latency and ack outcomes.
+ *
+ *   GatewayBenchmark                      - starts a gateway in a child JVM (so both sides fit the fd limit)
+ *   GatewayBenchmark host:port [conns]    - runs against a running gateway, e.g. SimpleVoteServer on :9090
+ */
+public class GatewayBenchmark {
+    private static final int CONNECTIONS = 12_000;
+    private static final int PIPELINE = 8;
+    private static final long SECONDS = 10;
+    private static final int CLIENT_THREADS = 2;
+    private static final int SERVER_SELECTORS = 4;
+
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0 && args[0].equals("--serve")) {
+            serve();
+            return;
+        }
+
+        System.out.println("=== Kiosk Gateway Benchmark ===");
+        if (args.length > 0) {
+            String[] target = args[0].split(":");
+            int connections = args.length > 1 ? Integer.parseInt(args[1]) : CONNECTIONS;
+            System.out.println("Target " + args[0] + ", " + connections + " connections, pipeline " + PIPELINE +
+                    ", " + SECONDS + " s");
+            run(new InetSocketAddress(target[0], Integer.parseInt(target[1])), connections);
+            return;
+        }
+
+        // Gateway logging off so the child's stdout only carries the port and stats lines
+        Process server = new ProcessBuilder(ProcessHandle.current().info().command().orElse("java"),
+                "-Dvote.log.level=OFF", "-cp", System.getProperty("java.class.path"),
+                GatewayBenchmark.class.getName(), "--serve")
+            .redirectError(ProcessBuilder.Redirect.INHERIT)
+            .start();
+        BufferedReader serverOut = new BufferedReader(new InputStreamReader(server.getInputStream(), StandardCharsets.UTF_8));
+        PrintStream serverIn = new PrintStream(server.getOutputStream(), true, StandardCharsets.UTF_8);
+        try {
+            int port = Integer.parseInt(serverOut.readLine().trim());
+            System.out.println("Gateway in child JVM on port " + port + ", " + SERVER_SELECTORS + " selector threads, " +
+                    CONNECTIONS + " connections, pipeline " + PIPELINE + ", " + SECONDS + " s");
+            run(new InetSocketAddress("127.0.0.1", port), CONNECTIONS, serverIn, serverOut);
+        } finally {
+            serverIn.close();
+            server.waitFor(10, TimeUnit.SECONDS);
+            server.destroy();
+        }
+    }
+
+    /**
+     * Child JVM: run a gateway, print its port, answer "stats" lines until stdin closes
+     */
+    private static void serve() throws IOException {
+        VoteLedger ledger = new VoteLedger(new CandidateCatalogHolder(CandidateCatalog.defaults()));
+        VoteGateway gateway = new VoteGateway(ledger, 0, SERVER_SELECTORS);
+        gateway.start();
+        System.out.println(gateway.getPort());
+        BufferedReader in = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+        while (in.readLine() != null) {
+            System.out.println("open " + gateway.getOpenConnections() + ", frames " + gateway.getFrames() +
+                    ", voters " + ledger.getVoterCount() + ", read " + gateway.getBytesRead() / 1024 + " KiB" +
+                    ", written " + gateway.getBytesWritten() / 1024 + " KiB" +
+                    ", direct buffers " + gateway.getBuffersAllocated() + " x 4 KiB");
+        }
+        gateway.stop();
+    }
+
+    private static void run(InetSocketAddress address, int connections) throws Exception {
+        run(address, connections, null, null);
+    }
+
+    private static void run(InetSocketAddress address, int connections, PrintStream serverIn,
+                            BufferedReader serverOut) throws Exception {
+        String runId = Long.toString(System.currentTimeMillis(), 36);
+        LatencyHistogram latency = new LatencyHistogram();
+        ClientLoop[] loops = new ClientLoop[CLIENT_THREADS];
+        for (int i = 0; i < loops.length; i++) {
+            loops[i] = new ClientLoop(runId + "-" + i, latency);
+        }
+
+        long connectStart = System.nanoTime();
+        for (int i = 0; i < connections; i++) {
+            SocketChannel channel = SocketChannel.open();
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            channel.connect(address);
+            channel.configureBlocking(false);
+            loops[i % loops.length].add(channel);
+        }
+        double connectMillis = (System.nanoTime() - connectStart) / 1e6;
+        System.out.printf("Connected %d sockets in %.0f ms%n", connections, connectMillis);
+        if (serverIn != null) {
+            Thread.sleep(500);
+            serverIn.println("stats");
+            System.out.println("Gateway after connect: " + serverOut.readLine());
+        }
+
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.SECONDS.toNanos(SECONDS);
+        List<Thread> threads = new ArrayList<>();
+        for (ClientLoop loop : loops) {
+            Thread thread = new Thread(() -> loop.run(deadline), "gateway-client");
+            thread.start();
+            threads.add(thread);
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        long[] outcomes = new long[VoteLedger.Outcome.values().length];
+        long acked = 0;
+        long sent = 0;
+        for (ClientLoop loop : loops) {
+            for (int i = 0; i < outcomes.length; i++) {
+                outcomes[i] += loop.outcomes[i];
+                acked += loop.outcomes[i];
+            }
+            sent += loop.sent.get();
+        }
+        System.out.printf("Acked %d of %d votes in %.1f s: %.0f votes/s%n", acked, sent, seconds, acked / seconds);
+        System.out.printf("Pipeline round trip p50/p99/max: %.1f/%.1f/%.1f ms%n",
+                latency.getValueAtPercentile(50) / 1000.0, latency.getValueAtPercentile(99) / 1000.0,
+                latency.getMax() / 1000.0);
+        StringBuilder line = new StringBuilder("Outcomes:");
+        for (VoteLedger.Outcome outcome : VoteLedger.Outcome.values()) {
+            line.append(' ').append(outcome.name().toLowerCase()).append('=').append(outcomes[outcome.ordinal()]);
+        }
+        System.out.println(line);
+        if (serverIn != null) {
+            serverIn.println("stats");
+            System.out.println("Gateway at end: " + serverOut.readLine());
+        }
+        for (ClientLoop loop : loops) {
+            loop.close();
+        }
+    }
+
+    /**
+     * One client selector thread driving a share of the connections
+     */
+    private static final class ClientLoop {
+        private final Selector selector;
+        private final String prefix;
+        private final List<Kiosk> kiosks = new ArrayList<>();
+        private final ByteBuffer readBuffer = ByteBuffer.allocateDirect(64 * 1024);
+        private final LatencyHistogram latency;
+        private final long[] outcomes = new long[VoteLedger.Outcome.values().length];
+        private final AtomicLong sent = new AtomicLong();
+        private long nextUser = 0;
+
+        private ClientLoop(String prefix, LatencyHistogram latency) throws IOException {
+            this.selector = Selector.open();
+            this.prefix = prefix;
+            this.latency = latency;
+        }
+
+        private void add(SocketChannel channel) throws IOException {
+            Kiosk kiosk = new Kiosk(channel);
+            kiosk.key = channel.register(selector, SelectionKey.OP_READ, kiosk);
+            kiosks.add(kiosk);
+        }
+
+        private void run(long deadline) {
+            try {
+                for (Kiosk kiosk : kiosks) {
+                    send(kiosk);
+                }
+                long drainDeadline = deadline + TimeUnit.SECONDS.toNanos(5);
+                int outstanding = kiosks.size();
+                while (outstanding > 0 && System.nanoTime() < drainDeadline) {
+                    selector.select(100);
+                    Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                    while (keys.hasNext()) {
+                        SelectionKey key = keys.next();
+                        keys.remove();
+                        Kiosk kiosk = (Kiosk) key.attachment();
+                        if (key.isWritable()) {
+                            kiosk.flush();
+                        }
+                        if (key.isReadable() && readAcks(kiosk)) {
+                            if (System.nanoTime() < deadline) {
+                                send(kiosk);
+                            } else {
+                                outstanding--;
+                            }
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                System.out.println("Client error: " + e.getMessage());
+            }
+        }
+
+        private void send(Kiosk kiosk) throws IOException {
+            ByteBuffer out = kiosk.out;
+            out.clear();
+            for (int i = 0; i < PIPELINE; i++) {
+                long user = nextUser++;
+                out.put(VoteCodec.encode("k" + prefix + "-" + user, (int) (user % CandidateCatalog.defaults().size()), null));
+            }
+            out.flip();
+            kiosk.pending = PIPELINE;
+            kiosk.sentAt = System.nanoTime();
+            sent.addAndGet(PIPELINE);
+            kiosk.flush();
+        }
+
+        /**
+         * @return true when the whole pipeline has been acknowledged
+         */
+        private boolean readAcks(Kiosk kiosk) throws IOException {
+            readBuffer.clear();
+            int n = kiosk.channel.read(readBuffer);
+            if (n < 0) {
+                throw new IOException("gateway closed the connection");
+            }
+            readBuffer.flip();
+            while (readBuffer.hasRemaining()) {
+                outcomes[VoteLedger.Outcome.fromCode(readBuffer.get()).ordinal()]++;
+                kiosk.pending--;
+            }
+            if (kiosk.pending == 0) {
+                latency.record((System.nanoTime() - kiosk.sentAt) / 1000);
+                return true;
+            }
+            return false;
+        }
+
+        private void close() throws IOException {
+            for (Kiosk kiosk : kiosks) {
+                kiosk.channel.close();
+            }
+            selector.close();
+        }
+    }
+
+    private static final class Kiosk {
+        private final SocketChannel channel;
+        private final ByteBuffer out = ByteBuffer.allocate(PIPELINE * VoteCodec.MAX_FRAME_BYTES);
+        private SelectionKey key;
+        private int pending;
+        private long sentAt;
+
+        private Kiosk(SocketChannel channel) {
+            this.channel = channel;
+        }
+
+        private void flush() throws IOException {
+            channel.write(out);
+            key.interestOps(out.hasRemaining() ? SelectionKey.OP_READ | SelectionKey.OP_WRITE : SelectionKey.OP_READ);
+        }
+    }
+}
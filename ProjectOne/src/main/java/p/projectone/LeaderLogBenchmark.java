@@ -0,0 +1,174 @@
+package p.projectone;
+
+import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.framework.CuratorFrameworkFactory;
+import org.apache.curator.retry.ExponentialBackoffRetry;
+import p.projectone.replication.LeaderReplicatedLog;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Leader-based replicated vote log benchmark
+ * Connects three LeaderReplicatedLog nodes to the ZooKeeper at -Dvote.zk.connect (default localhost:2181),
+ * measures commit latency on the elected leader, then kills the leader's session and measures
+ * how long it takes until a new leader commits again. Finally checks that every surviving node
+ * applied the same gap-free sequence.
+ */
+public class LeaderLogBenchmark {
+    private static final int NODES = 3;
+    private static final int VOTES = 2000;
+    private static final int CALLERS = 16;
+    private static final int SESSION_TIMEOUT_MS = 3000;
+    private static final String ZK_CONNECT = System.getProperty("vote.zk.connect", "localhost:2181");
+
+    public static void main(String[] args) throws Exception {
+        System.out.println("=== Leader Log Benchmark ===");
+        System.out.println("Nodes: " + NODES + ", votes per phase: " + VOTES + ", callers: " + CALLERS);
+        // Fresh path per run so logs and progress left by earlier runs on a shared ZooKeeper are not reused
+        String basePath = "/benchmark/leader-log-" + System.currentTimeMillis();
+        System.out.println("ZooKeeper: " + ZK_CONNECT + basePath);
+
+        List<CuratorFramework> clients = new ArrayList<>();
+        List<LeaderReplicatedLog> logs = new ArrayList<>();
+        List<Map<String, Long>> stores = new ArrayList<>();
+        AtomicInteger orderViolations = new AtomicInteger(0);
+        for (int i = 0; i < NODES; i++) {
+            CuratorFramework client = CuratorFrameworkFactory.newClient(ZK_CONNECT,
+                    SESSION_TIMEOUT_MS, SESSION_TIMEOUT_MS, new ExponentialBackoffRetry(100, 3));
+            client.start();
+            if (!client.blockUntilConnected(10, TimeUnit.SECONDS)) {
+                throw new IllegalStateException("no ZooKeeper at " + ZK_CONNECT + " (set -Dvote.zk.connect)");
+            }
+            Map<String, Long> store = new ConcurrentHashMap<>();
+            long[] lastApplied = {0};
+            LeaderReplicatedLog log = new LeaderReplicatedLog(client, basePath, "node-" + i, NODES,
+                    (sequence, voteId, voteData) -> {
+                        // Replays after a restart are allowed, gaps and reordering are not
+                        if (sequence > lastApplied[0] + 1) {
+                            orderViolations.incrementAndGet();
+                        }
+                        lastApplied[0] = Math.max(lastApplied[0], sequence);
+                        store.put(voteId, sequence);
+                    });
+            log.start();
+            clients.add(client);
+            logs.add(log);
+            stores.add(store);
+        }
+
+        LeaderReplicatedLog leader = awaitLeader(logs, 30_000);
+        System.out.println("Leader elected: " + leader.getNodeId());
+        runPhase("commit latency, 3/3 nodes", leader, "a", VOTES);
+
+        // Crash the leader: closing its client ends the ZooKeeper session, like a killed process
+        int crashed = logs.indexOf(leader);
+        long committedBefore = leader.getCommitIndex();
+        long crashAt = System.nanoTime();
+        clients.get(crashed).close();
+        leader.close();
+        List<LeaderReplicatedLog> survivors = new ArrayList<>(logs);
+        survivors.remove(crashed);
+
+        LeaderReplicatedLog newLeader = null;
+        long firstCommit = -1;
+        while (firstCommit < 0 && System.nanoTime() - crashAt < TimeUnit.SECONDS.toNanos(60)) {
+            for (LeaderReplicatedLog candidate : survivors) {
+                if (candidate.isLeader()) {
+                    try {
+                        long seq = candidate.append("failover-probe", "probe");
+                        firstCommit = candidate.whenCommitted(seq).get(5, TimeUnit.SECONDS);
+                        newLeader = candidate;
+                    } catch (Exception e) {
+                        // Not ready yet
+                    }
+                }
+            }
+            Thread.sleep(1);
+        }
+        if (newLeader == null) {
+            System.out.println("No new leader within 60 s");
+            return;
+        }
+        System.out.println("--- failover ---");
+        System.out.println("New leader: " + newLeader.getNodeId() + ", first commit after crash: " +
+                (System.nanoTime() - crashAt) / 1_000_000 + " ms, resumed at sequence " + firstCommit +
+                " (committed before crash: " + committedBefore + ")");
+
+        runPhase("commit latency, 2/3 nodes", newLeader, "b", VOTES);
+
+        // Let followers drain, then compare what each surviving node applied
+        Thread.sleep(1000);
+        long last = newLeader.getLastSequence();
+        System.out.println("--- consistency ---");
+        for (LeaderReplicatedLog log : survivors) {
+            Map<String, Long> store = stores.get(logs.indexOf(log));
+            System.out.println(log.getNodeId() + ": applied " + log.getAppliedIndex() + "/" + last +
+                    ", votes stored " + store.size() + ", leader terms " + log.getLeaderTerms());
+        }
+        System.out.println("Order violations: " + orderViolations.get());
+        for (LeaderReplicatedLog log : survivors) {
+            log.close();
+        }
+        for (int i = 0; i < NODES; i++) {
+            if (i != crashed) {
+                clients.get(i).close();
+            }
+        }
+    }
+
+    private static LeaderReplicatedLog awaitLeader(List<LeaderReplicatedLog> logs, long timeoutMillis)
+            throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (System.currentTimeMillis() < deadline) {
+            for (LeaderReplicatedLog log : logs) {
+                if (log.isLeader()) {
+                    return log;
+                }
+            }
+            Thread.sleep(10);
+        }
+        throw new IllegalStateException("no leader elected");
+    }
+
+    private static void runPhase(String name, LeaderReplicatedLog leader, String prefix, int votes) throws Exception {
+        ExecutorService callers = Executors.newFixedThreadPool(CALLERS);
+        long[] latencies = new long[votes];
+        AtomicInteger failures = new AtomicInteger(0);
+        List<Future<?>> results = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int v = 0; v < votes; v++) {
+            final int vote = v;
+            results.add(callers.submit(() -> {
+                long begin = System.nanoTime();
+                try {
+                    long seq = leader.append(prefix + "-" + vote, "candidate-" + (vote % 5));
+                    leader.whenCommitted(seq).get(10, TimeUnit.SECONDS);
+                } catch (Exception e) {
+                    failures.incrementAndGet();
+                }
+                latencies[vote] = System.nanoTime() - begin;
+            }));
+        }
+        for (Future<?> result : results) {
+            result.get();
+        }
+        long elapsed = System.nanoTime() - start;
+        callers.shutdown();
+
+        Arrays.sort(latencies);
+        System.out.println("--- " + name + " ---");
+        System.out.println("Total: " + elapsed / 1_000_000 + " ms (" + votes * 1000L / Math.max(1, elapsed / 1_000_000) +
+                " votes/s), p50: " + latencies[votes / 2] / 1000 + " us, p99: " +
+                latencies[(int) (votes * 0.99)] / 1000 + " us, max: " + latencies[votes - 1] / 1000 +
+                " us, failed: " + failures.get());
+    }
+}
@@ -0,0 +1,253 @@
+package p.projectone;
+
+import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.framework.CuratorFrameworkFactory;
+import org.apache.curator.retry.ExponentialBackoffRetry;
+import org.apache.curator.test.TestingServer;
+import p.projectone.lock.LocalVoteLockProvider;
+import p.projectone.lock.RedisVoteLockProvider;
+import p.projectone.lock.VoteLockProvider;
+import p.projectone.lock.ZooKeeperVoteLockProvider;
+import p.projectone.metrics.LatencyHistogram;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Vote lock provider benchmark
+ * Measures acquire/release latency and throughput of each VoteLockProvider across thread counts,
+ * with every thread locking its own users (distinct) or all threads fighting over one user (same).
+ * Redis is an in-memory stand-in with a simulated round trip; ZooKeeper is an in-process TestingServer,
+ * or the server at -Dvote.zk.connect when set. The "redis + node lock" row reproduces the previous DistributedLockService,
+ * which serialized every user behind one node-wide lock and wrote a session key per acquire.
+ */
+public class LockBenchmark {
+    private static final int[] THREADS = {1, 4, 16};
+    private static final long CELL_MILLIS = 1000;
+    private static final long HOLD_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+    private static final long REDIS_RTT_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+    private static final long RETRY_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+    private static final long LOCK_TIMEOUT_MS = 10_000;
+    private static final String ZK_CONNECT = System.getProperty("vote.zk.connect");
+
+    public static void main(String[] args) throws Exception {
+        System.out.println("=== Vote Lock Benchmark ===");
+        System.out.println("Threads: " + java.util.Arrays.toString(THREADS) + ", " + CELL_MILLIS +
+                " ms per cell, hold: " + HOLD_NANOS / 1000 + " us, redis rtt: " + REDIS_RTT_NANOS / 1000 + " us");
+
+        run("local", new LocalVoteLockProvider(LOCK_TIMEOUT_MS));
+        run("redis", new RedisVoteLockProvider(new InMemoryLockStore(), LOCK_TIMEOUT_MS));
+        run("redis + node lock", new NodeLockedProvider(
+                new RedisVoteLockProvider(new InMemoryLockStore(), LOCK_TIMEOUT_MS)));
+
+        TestingServer server = ZK_CONNECT == null ? new TestingServer() : null;
+        String connect = server != null ? server.getConnectString() : ZK_CONNECT;
+        try {
+            CuratorFramework client = CuratorFrameworkFactory.newClient(connect, 5000, 5000,
+                    new ExponentialBackoffRetry(100, 3));
+            client.start();
+            if (client.blockUntilConnected(10, TimeUnit.SECONDS)) {
+                run("zookeeper", new ZooKeeperVoteLockProvider(client, "/benchmark/locks", 0));
+            } else {
+                System.out.println("--- zookeeper --- skipped, no server at " + connect);
+            }
+            client.close();
+        } finally {
+            if (server != null) {
+                server.close();
+            }
+        }
+    }
+
+    private static void run(String name, VoteLockProvider provider) throws Exception {
+        System.out.println("--- " + name + " ---");
+        for (boolean sameUser : new boolean[]{false, true}) {
+            for (int threads : THREADS) {
+                runCell(provider, sameUser, threads);
+            }
+        }
+    }
+
+    private static void runCell(VoteLockProvider provider, boolean sameUser, int threads) throws Exception {
+        LatencyHistogram acquireLatency = new LatencyHistogram();
+        LatencyHistogram releaseLatency = new LatencyHistogram();
+        AtomicLong acquired = new AtomicLong(0);
+        AtomicLong contended = new AtomicLong(0);
+        AtomicLong errors = new AtomicLong(0);
+        AtomicLong overlaps = new AtomicLong(0);
+        Map<String, String> holders = new ConcurrentHashMap<>();
+        CountDownLatch startGate = new CountDownLatch(1);
+        long[] deadline = new long[1];
+
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            final int thread = t;
+            Thread worker = new Thread(() -> {
+                try {
+                    startGate.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (long i = 0; System.nanoTime() < deadline[0]; i++) {
+                    String userId = sameUser ? "hot-user" : "user-" + thread + "-" + i;
+                    String sessionId = "session-" + thread + "-" + i;
+                    try {
+                        long begin = System.nanoTime();
+                        boolean locked = provider.tryLock(userId, sessionId);
+                        acquireLatency.record((System.nanoTime() - begin) / 1000);
+                        if (!locked) {
+                            contended.incrementAndGet();
+                            // A rejected vote goes back to the client; its next request arrives a bit later
+                            LockSupport.parkNanos(RETRY_NANOS);
+                            continue;
+                        }
+                        // Mutual exclusion check: nobody else may hold this user right now
+                        if (holders.putIfAbsent(userId, sessionId) != null) {
+                            overlaps.incrementAndGet();
+                        }
+                        LockSupport.parkNanos(HOLD_NANOS);
+                        holders.remove(userId, sessionId);
+                        begin = System.nanoTime();
+                        provider.releaseLock(userId, sessionId);
+                        releaseLatency.record((System.nanoTime() - begin) / 1000);
+                        acquired.incrementAndGet();
+                    } catch (Exception e) {
+                        errors.incrementAndGet();
+                    }
+                }
+            });
+            worker.start();
+            workers.add(worker);
+        }
+
+        long start = System.nanoTime();
+        deadline[0] = start + TimeUnit.MILLISECONDS.toNanos(CELL_MILLIS);
+        startGate.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        long attempts = acquireLatency.getCount();
+
+        System.out.printf("%-8s %2d threads: %8.0f locks/s, %8.0f attempts/s, contended %5.1f%%, " +
+                        "acquire p50/p99 %5d/%6d us, release p50/p99 %5d/%6d us, overlaps %d, errors %d%n",
+                sameUser ? "same" : "distinct", threads, acquired.get() / seconds, attempts / seconds,
+                attempts > 0 ? 100.0 * contended.get() / attempts : 0,
+                acquireLatency.getValueAtPercentile(50), acquireLatency.getValueAtPercentile(99),
+                releaseLatency.getValueAtPercentile(50), releaseLatency.getValueAtPercentile(99),
+                overlaps.get(), errors.get());
+    }
+
+    /**
+     * Redis stand-in: SET NX PX and compare-and-delete on a map, each paying one simulated round trip
+     */
+    private static final class InMemoryLockStore implements RedisVoteLockProvider.LockStore {
+        private final Map<String, String[]> entries = new ConcurrentHashMap<>();
+
+        @Override
+        public boolean setIfAbsent(String key, String value, long ttlMillis) {
+            LockSupport.parkNanos(REDIS_RTT_NANOS);
+            long now = System.currentTimeMillis();
+            String[] entry = {value, Long.toString(now + ttlMillis)};
+            return entries.compute(key, (k, current) ->
+                    current == null || Long.parseLong(current[1]) <= now ? entry : current) == entry;
+        }
+
+        @Override
+        public boolean deleteIfEquals(String key, String value) {
+            LockSupport.parkNanos(REDIS_RTT_NANOS);
+            boolean[] deleted = {false};
+            entries.computeIfPresent(key, (k, current) -> {
+                deleted[0] = current[0].equals(value);
+                return deleted[0] ? null : current;
+            });
+            return deleted[0];
+        }
+
+        @Override
+        public boolean exists(String key) {
+            LockSupport.parkNanos(REDIS_RTT_NANOS);
+            return remaining(key) > 0;
+        }
+
+        @Override
+        public long remainingMillis(String key) {
+            LockSupport.parkNanos(REDIS_RTT_NANOS);
+            return remaining(key);
+        }
+
+        @Override
+        public void delete(String key) {
+            LockSupport.parkNanos(REDIS_RTT_NANOS);
+            entries.remove(key);
+        }
+
+        private long remaining(String key) {
+            String[] entry = entries.get(key);
+            return entry != null ? Math.max(0, Long.parseLong(entry[1]) - System.currentTimeMillis()) : 0;
+        }
+    }
+
+    /**
+     * Previous DistributedLockService behaviour: a node-wide lock (100 ms tryLock) around SETNX
+     * plus the session key write, and three round trips to release
+     */
+    private static final class NodeLockedProvider implements VoteLockProvider {
+        private final VoteLockProvider delegate;
+        private final ReentrantLock nodeLock = new ReentrantLock();
+
+        private NodeLockedProvider(VoteLockProvider delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public boolean tryLock(String userId, String sessionId) throws Exception {
+            if (!nodeLock.tryLock(100, TimeUnit.MILLISECONDS)) {
+                return false;
+            }
+            try {
+                if (delegate.tryLock(userId, sessionId)) {
+                    LockSupport.parkNanos(REDIS_RTT_NANOS);
+                    return true;
+                }
+                return false;
+            } finally {
+                nodeLock.unlock();
+            }
+        }
+
+        @Override
+        public boolean releaseLock(String userId, String sessionId) throws Exception {
+            // GET owner, DEL lock and DEL session were three round trips
+            LockSupport.parkNanos(2 * REDIS_RTT_NANOS);
+            return delegate.releaseLock(userId, sessionId);
+        }
+
+        @Override
+        public boolean isLocked(String userId) throws Exception {
+            return delegate.isLocked(userId);
+        }
+
+        @Override
+        public long getRemainingMillis(String userId) throws Exception {
+            return delegate.getRemainingMillis(userId);
+        }
+
+        @Override
+        public void forceRelease(String userId) throws Exception {
+            delegate.forceRelease(userId);
+        }
+
+        @Override
+        public String getName() {
+            return "redis + node lock";
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package p.projectone;
+
+import p.projectone.logging.AsyncLog;
+import p.projectone.logging.LogLevel;
+import p.projectone.logging.VoteLogger;
+import p.projectone.metrics.LatencyHistogram;
+
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Hot-path logging benchmark
+ * Runs the in-memory part of a vote (dedupe check, record, tally) on several threads with the
+ * four log lines SimpleVoteServer writes per vote (received, lock acquired, success, lock released),
+ * and compares throughput and per-vote latency for:
+ *   off            - no logging at all
+ *   println        - synchronous println on an autoflushing stream, like System.out before
+ *   async debug    - all four lines through the async logger
+ *   async info     - DEBUG disabled, only the success line is logged
+ *   async sampled  - success line sampled 1 in 100
+ *   async off      - level OFF, measures the cost of disabled calls
+ * Each mix runs twice: cpu-bound (no wait inside a vote) and io-bound (a simulated 50 us store
+ * round trip per vote, where threads park and the writer thread gets CPU). Output goes to a
+ * temporary file so the terminal is not the bottleneck.
+ */
+public class LoggingBenchmark {
+    private static final int[] THREADS = {1, 4, 16};
+    private static final long CELL_MILLIS = 1000;
+    private static final long STORE_RTT_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+    private static long storeNanos;
+
+    public static void main(String[] args) throws Exception {
+        Path sink = Files.createTempFile("logging-benchmark", ".log");
+        try {
+            System.out.println("=== Hot-Path Logging Benchmark ===");
+            System.out.println("Threads: " + java.util.Arrays.toString(THREADS) + ", " + CELL_MILLIS +
+                    " ms per cell, 4 log lines per vote, sink: " + sink);
+            for (long store : new long[]{0, STORE_RTT_NANOS}) {
+                storeNanos = store;
+                for (int threads : THREADS) {
+                    System.out.println("--- " + (store == 0 ? "cpu-bound" : "io-bound") + ", " +
+                            threads + " threads ---");
+                    runSync("off", threads, null);
+                    try (PrintStream out = new PrintStream(new BufferedOutputStream(
+                            new FileOutputStream(sink.toFile()), 128), true, StandardCharsets.UTF_8)) {
+                        runSync("println", threads, out);
+                    }
+                    runAsync("async debug", threads, sink, LogLevel.DEBUG, "");
+                    runAsync("async info", threads, sink, LogLevel.INFO, "");
+                    runAsync("async sampled", threads, sink, LogLevel.INFO, "vote.success=100");
+                    runAsync("async off", threads, sink, LogLevel.OFF, "");
+                }
+            }
+        } finally {
+            Files.deleteIfExists(sink);
+        }
+    }
+
+    private static void runSync(String name, int threads, PrintStream out) throws Exception {
+        Result result = runCell(threads, (userId, candidateName, body) -> {
+            if (out != null) {
+                out.println("Received vote request: " + body);
+                out.println("Acquired distributed lock - User: " + userId);
+            }
+            boolean recorded = recordVote(userId, candidateName);
+            if (out != null) {
+                out.println("Vote successful - User: " + userId + " voted for " + candidateName);
+                out.println("Released distributed lock - User: " + userId);
+            }
+            return recorded;
+        });
+        result.print(name, out != null ? result.votes * 4 : 0, 0);
+    }
+
+    private static void runAsync(String name, int threads, Path sink, LogLevel level, String sampling)
+            throws Exception {
+        PrintStream out = new PrintStream(new BufferedOutputStream(
+                new FileOutputStream(sink.toFile()), 64 * 1024), false, StandardCharsets.UTF_8);
+        AsyncLog log = new AsyncLog(out, level, 8192);
+        log.setSampling(sampling);
+        VoteLogger logger = new VoteLogger("LoggingBenchmark", log);
+
+        Result result = runCell(threads, (userId, candidateName, body) -> {
+            logger.debug("vote.received", "Received vote request: {}", body);
+            logger.debug("lock.acquired", "Acquired distributed lock - User: {}", userId);
+            boolean recorded = recordVote(userId, candidateName);
+            logger.info("vote.success", "Vote successful - User: {} voted for {}", userId, candidateName);
+            logger.debug("lock.released", "Released distributed lock - User: {}", userId);
+            return recorded;
+        });
+        log.close();
+        out.close();
+        result.print(name, log.getWritten(), log.getDropped());
+    }
+
+    private static final Map<String, String> userVotes = new ConcurrentHashMap<>();
+    private static final Map<String, AtomicLong> voteCounts = new ConcurrentHashMap<>();
+
+    private static boolean recordVote(String userId, String candidateName) {
+        if (storeNanos > 0) {
+            LockSupport.parkNanos(storeNanos);
+        }
+        if (userVotes.putIfAbsent(userId, candidateName) != null) {
+            return false;
+        }
+        voteCounts.computeIfAbsent(candidateName, key -> new AtomicLong()).incrementAndGet();
+        return true;
+    }
+
+    private static Result runCell(int threads, Vote vote) throws Exception {
+        userVotes.clear();
+        LatencyHistogram latency = new LatencyHistogram();
+        AtomicLong votes = new AtomicLong(0);
+        CountDownLatch startGate = new CountDownLatch(1);
+        long[] deadline = new long[1];
+
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            final int thread = t;
+            Thread worker = new Thread(() -> {
+                try {
+                    startGate.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                long done = 0;
+                for (long i = 0; System.nanoTime() < deadline[0]; i++) {
+                    String userId = "user-" + thread + "-" + i;
+                    String candidateName = "Candidate " + (i % 5);
+                    String body = "{\"userId\":\"" + userId + "\",\"candidateId\":\"" + (i % 5) +
+                            "\",\"candidateName\":\"" + candidateName + "\"}";
+                    long begin = System.nanoTime();
+                    vote.cast(userId, candidateName, body);
+                    latency.record((System.nanoTime() - begin) / 1000);
+                    done++;
+                }
+                votes.addAndGet(done);
+            });
+            worker.start();
+            workers.add(worker);
+        }
+
+        long start = System.nanoTime();
+        deadline[0] = start + TimeUnit.MILLISECONDS.toNanos(CELL_MILLIS);
+        startGate.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        return new Result(votes.get(), (System.nanoTime() - start) / 1e9, latency);
+    }
+
+    private interface Vote {
+        boolean cast(String userId, String candidateName, String body);
+    }
+
+    private static final class Result {
+        private final long votes;
+        private final double seconds;
+        private final LatencyHistogram latency;
+
+        private Result(long votes, double seconds, LatencyHistogram latency) {
+            this.votes = votes;
+            this.seconds = seconds;
+            this.latency = latency;
+        }
+
+        private void print(String name, long lines, long dropped) {
+            System.out.printf("%-14s %10.0f votes/s, p50/p99/max %4d/%5d/%6d us, lines written %9d, dropped %9d%n",
+                    name, votes / seconds, latency.getValueAtPercentile(50), latency.getValueAtPercentile(99),
+                    latency.getMax(), lines, dropped);
+        }
+    }
+}
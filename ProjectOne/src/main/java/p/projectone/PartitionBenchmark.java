@@ -0,0 +1,163 @@
+package p.projectone;
+
+import p.projectone.concurrent.Dispatcher;
+import p.projectone.concurrent.PartitionedDispatcher;
+import p.projectone.concurrent.RingBufferDispatcher;
+import p.projectone.concurrent.WaitStrategy;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Partitioned lanes benchmark
+ * Compares the lock-based path (shared workers + DistributedLockService-style locking)
+ * with user-affinity lanes that need no per-user lock on a single node.
+ * Redis and Mongo round trips are simulated with short parks.
+ */
+public class PartitionBenchmark {
+    private static final int WORKERS = 10;
+    private static final int REQUESTS = 20_000;
+    private static final int DUPLICATE_EVERY = 10; // every 10th request repeats a recent user
+    private static final long REDIS_RTT_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+    private static final long PERSIST_NANOS = TimeUnit.MICROSECONDS.toNanos(500);
+
+    public static void main(String[] args) throws Exception {
+        System.out.println("=== Partitioned Lanes Benchmark ===");
+        System.out.println("Requests: " + REQUESTS + ", workers/lanes: " + WORKERS +
+                ", redis rtt: " + REDIS_RTT_NANOS / 1000 + " us, persist: " + PERSIST_NANOS / 1000 + " us");
+
+        run("lock-based shared pool", false, false);
+        run("partitioned lanes", true, false);
+        run("partitioned lanes, skewed keys", true, true);
+    }
+
+    private static void run(String name, boolean partitioned, boolean skewed) throws Exception {
+        Map<String, String> redis = new ConcurrentHashMap<>();
+        Map<String, String> votes = new ConcurrentHashMap<>();
+        ReentrantLock localLock = new ReentrantLock();
+        AtomicInteger lockFailures = new AtomicInteger(0);
+        AtomicInteger duplicates = new AtomicInteger(0);
+        AtomicInteger done = new AtomicInteger(0);
+        AtomicInteger overlaps = new AtomicInteger(0);
+        Map<String, Boolean> inFlight = new ConcurrentHashMap<>();
+        CountDownLatch finished = new CountDownLatch(1);
+
+        java.util.function.Consumer<List<String[]>> handler = batch -> {
+            for (String[] request : batch) {
+                String userId = request[0];
+                if (partitioned) {
+                    // Same-user requests must never run on two lanes at once, even across rebalancing
+                    if (inFlight.putIfAbsent(userId, Boolean.TRUE) != null) {
+                        overlaps.incrementAndGet();
+                    }
+                    record(userId, votes, duplicates);
+                    inFlight.remove(userId);
+                } else if (tryLock(userId, redis, localLock)) {
+                    try {
+                        record(userId, votes, duplicates);
+                    } finally {
+                        redis.remove("vote_lock:" + userId);
+                    }
+                } else {
+                    lockFailures.incrementAndGet();
+                }
+                if (done.incrementAndGet() == REQUESTS) {
+                    finished.countDown();
+                }
+            }
+        };
+
+        Dispatcher<String[]> dispatcher;
+        if (partitioned) {
+            dispatcher = new PartitionedDispatcher<>("BenchLane", WORKERS, 1024, 32, "blocking",
+                    request -> request[0], handler);
+        } else {
+            RingBufferDispatcher<String[]> shared = new RingBufferDispatcher<>("BenchWorker", 1024, 32,
+                    WaitStrategy.forName("blocking"), handler);
+            shared.start(WORKERS);
+            dispatcher = shared;
+        }
+
+        int maxLaneDepth = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < REQUESTS; i++) {
+            String userId = i % DUPLICATE_EVERY == 0 && i > 0 ? "user_" + (i - 1) : "user_" + i;
+            if (skewed && i % 2 == 0) {
+                // Half the traffic hashes onto buckets that all start on lane 0
+                userId = nextHotUser();
+            }
+            while (!dispatcher.offer(new String[]{userId})) {
+                Thread.yield();
+            }
+            if (partitioned && i % 500 == 0) {
+                int[] depths = ((PartitionedDispatcher<String[]>) dispatcher).getLaneDepths();
+                maxLaneDepth = Math.max(maxLaneDepth, Arrays.stream(depths).max().orElse(0));
+            }
+        }
+        finished.await();
+        long elapsed = System.nanoTime() - start;
+
+        System.out.println("--- " + name + " ---");
+        System.out.println("Throughput: " + String.format("%.0f", REQUESTS / (elapsed / 1e9)) + " req/s");
+        System.out.println("Recorded: " + votes.size() + ", duplicates rejected: " + duplicates.get() +
+                ", lock failures: " + lockFailures.get());
+        if (partitioned) {
+            PartitionedDispatcher<String[]> lanes = (PartitionedDispatcher<String[]>) dispatcher;
+            System.out.println("Max lane depth: " + maxLaneDepth + ", rebalances: " + lanes.getRebalanceCount() +
+                    ", same-user overlaps: " + overlaps.get());
+        }
+        dispatcher.shutdown();
+    }
+
+    private static int hotSequence = 0;
+
+    /**
+     * Next user ID whose bucket initially maps to lane 0
+     * (same hash spreading as PartitionedDispatcher, 16 buckets per lane)
+     */
+    private static String nextHotUser() {
+        while (true) {
+            String userId = "hot_" + hotSequence++;
+            int hash = userId.hashCode();
+            hash ^= (hash >>> 16);
+            if (Math.floorMod(hash, WORKERS * 16) % WORKERS == 0) {
+                return userId;
+            }
+        }
+    }
+
+    /**
+     * Mirrors DistributedLockService.tryLock: a node-wide local lock around the Redis SETNX
+     */
+    private static boolean tryLock(String userId, Map<String, String> redis, ReentrantLock localLock) {
+        try {
+            if (localLock.tryLock(100, TimeUnit.MILLISECONDS)) {
+                try {
+                    LockSupport.parkNanos(REDIS_RTT_NANOS);
+                    return redis.putIfAbsent("vote_lock:" + userId, "session") == null;
+                } finally {
+                    localLock.unlock();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return false;
+    }
+
+    private static void record(String userId, Map<String, String> votes, AtomicInteger duplicates) {
+        if (votes.containsKey(userId)) {
+            duplicates.incrementAndGet();
+            return;
+        }
+        LockSupport.parkNanos(PERSIST_NANOS);
+        votes.put(userId, "1");
+    }
+}
@@ -0,0 +1,143 @@
+package p.projectone;
+
+import p.projectone.concurrent.PoolSizeController;
+import p.projectone.concurrent.RingBufferDispatcher;
+import p.projectone.concurrent.WaitStrategy;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Self-tuning worker pool benchmark
+ * Replays a steady / burst / steady arrival trace against a downstream with a fixed
+ * connection pool, and compares fixed pool sizes with the Little's-law controller.
+ */
+public class PoolTuningBenchmark {
+    private static final int DOWNSTREAM_CONNECTIONS = 16;
+    private static final long DOWNSTREAM_NANOS = TimeUnit.MILLISECONDS.toNanos(4);
+    private static final long TUNING_INTERVAL_MS = 250;
+    // {requests per second, duration in ms}
+    private static final int[][] TRACE = {{300, 3000}, {2500, 5000}, {300, 4000}};
+
+    public static void main(String[] args) throws Exception {
+        double serviceSeconds = DOWNSTREAM_NANOS / 1e9;
+        System.out.println("=== Pool Tuning Benchmark ===");
+        System.out.println("Downstream: " + DOWNSTREAM_CONNECTIONS + " connections x " +
+                DOWNSTREAM_NANOS / 1_000_000 + " ms, trace: " + Arrays.deepToString(TRACE) + " (req/s, ms)");
+        System.out.println("Little's law optimum during burst: " +
+                (int) Math.ceil(TRACE[1][0] * serviceSeconds / 0.8) + " workers (80% utilization), " +
+                "downstream ceiling: " + DOWNSTREAM_CONNECTIONS);
+
+        run("fixed 4 workers", 4, false);
+        run("fixed 64 workers", 64, false);
+        run("self-tuning (start 4, bounds 2..64)", 4, true);
+    }
+
+    private static void run(String name, int initialWorkers, boolean tuning) throws Exception {
+        int total = 0;
+        for (int[] phase : TRACE) {
+            total += phase[0] * phase[1] / 1000;
+        }
+        long[] latencies = new long[total];
+        AtomicInteger completed = new AtomicInteger(0);
+        AtomicLong serviceNanos = new AtomicLong(0);
+        AtomicLong queueWaitNanos = new AtomicLong(0);
+        Semaphore connections = new Semaphore(DOWNSTREAM_CONNECTIONS);
+
+        RingBufferDispatcher<long[]> dispatcher = new RingBufferDispatcher<>("TuneWorker", 8192, 1,
+                WaitStrategy.forName("blocking"), batch -> {
+                    for (long[] request : batch) {
+                        long start = System.nanoTime();
+                        queueWaitNanos.addAndGet(start - request[1]);
+                        connections.acquireUninterruptibly();
+                        try {
+                            LockSupport.parkNanos(DOWNSTREAM_NANOS);
+                        } finally {
+                            connections.release();
+                        }
+                        long end = System.nanoTime();
+                        serviceNanos.addAndGet(end - start);
+                        latencies[(int) request[0]] = end - request[1];
+                        completed.incrementAndGet();
+                    }
+                });
+        dispatcher.start(initialWorkers);
+
+        PoolSizeController controller = new PoolSizeController(2, 64, 0.8, 20);
+        List<String> timeline = new ArrayList<>();
+        AtomicInteger submitted = new AtomicInteger(0);
+        Thread tuner = new Thread(() -> {
+            int lastSubmitted = 0;
+            int lastCompleted = 0;
+            long lastService = 0;
+            long lastWait = 0;
+            long began = System.currentTimeMillis();
+            while (!Thread.currentThread().isInterrupted()) {
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(TUNING_INTERVAL_MS));
+                int arrivals = submitted.get() - lastSubmitted;
+                int completions = completed.get() - lastCompleted;
+                long service = serviceNanos.get() - lastService;
+                long wait = queueWaitNanos.get() - lastWait;
+                lastSubmitted += arrivals;
+                lastCompleted += completions;
+                lastService += service;
+                lastWait += wait;
+                double avgService = completions > 0 ? service / 1e6 / completions : 0;
+                double avgWait = completions > 0 ? wait / 1e6 / completions : 0;
+                PoolSizeController.Decision decision = controller.evaluate(dispatcher.getWorkerCount(),
+                        TUNING_INTERVAL_MS, arrivals, completions, avgService, avgWait);
+                if (decision.isResize()) {
+                    dispatcher.resize(decision.getToSize());
+                    timeline.add(String.format("  t=%5dms %s", System.currentTimeMillis() - began, decision));
+                }
+            }
+        });
+        tuner.setDaemon(true);
+        if (tuning) {
+            tuner.start();
+        }
+
+        long start = System.nanoTime();
+        long next = start;
+        int index = 0;
+        for (int[] phase : TRACE) {
+            long interval = TimeUnit.SECONDS.toNanos(1) / phase[0];
+            int count = phase[0] * phase[1] / 1000;
+            for (int i = 0; i < count; i++) {
+                next += interval;
+                long delay = next - System.nanoTime();
+                if (delay > 0) {
+                    LockSupport.parkNanos(delay);
+                }
+                // Timestamp is the scheduled arrival, so producer lag still counts as latency
+                while (!dispatcher.offer(new long[]{index, next})) {
+                    Thread.yield();
+                }
+                index++;
+                submitted.incrementAndGet();
+            }
+        }
+        while (completed.get() < total) {
+            Thread.sleep(10);
+        }
+        long elapsed = System.nanoTime() - start;
+        tuner.interrupt();
+        dispatcher.shutdown();
+
+        Arrays.sort(latencies);
+        System.out.println("--- " + name + " ---");
+        System.out.println("Completed " + total + " in " + elapsed / 1_000_000 + " ms, latency p50: " +
+                latencies[total / 2] / 1_000_000 + " ms, p99: " + latencies[(int) (total * 0.99)] / 1_000_000 +
+                " ms, max: " + latencies[total - 1] / 1_000_000 + " ms");
+        if (tuning) {
+            System.out.println("Resizes: " + timeline.size() + ", final size: " + dispatcher.getWorkerCount());
+            timeline.forEach(System.out::println);
+        }
+    }
+}
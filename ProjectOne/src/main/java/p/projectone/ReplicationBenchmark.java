@@ -0,0 +1,253 @@
+package p.projectone;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Replication latency benchmark
+ * Compares three ways of replicating a vote to REPLICAS replicas:
+ * - all replicas: one write per vote per replica on the default async pool, wait for allOf (the original path)
+ * - majority quorum: one write per vote per replica on a bounded executor, done at replicas/2+1 acks
+ * - log shipping: the current ReplicationService path. Votes get a sequence number; a shipper thread keeps
+ *   one batch in flight per replica (up to SHIP_BATCH entries from that replica's acked sequence), and a vote
+ *   commits once a majority of replicas acknowledged a sequence at or above it. A timed-out batch is
+ *   cancelled and re-sent from the acked sequence.
+ * Replica writes are simulated with a uniform random delay per write (per batch for log shipping), the same
+ * shape as distributed.replication.simulated-latency, which ReplicationService leaves off by default.
+ */
+public class ReplicationBenchmark {
+    private static final int REPLICAS = 3;
+    private static final int VOTES = 300;
+    private static final int CALLERS = 20;
+    private static final int MAX_DELAY_MS = 200;
+    private static final long SYNC_TIMEOUT_MS = 5000;
+    private static final long REPLICA_TIMEOUT_MS = 400;
+    // distributed.replication.batch-size and batch-interval defaults
+    private static final int SHIP_BATCH = 256;
+    private static final long SHIP_INTERVAL_MS = 20;
+
+    public static void main(String[] args) throws Exception {
+        System.out.println("=== Replication Benchmark ===");
+        System.out.println("Votes: " + VOTES + ", callers: " + CALLERS + ", replicas: " + REPLICAS +
+                ", replica delay: uniform 0-" + MAX_DELAY_MS + " ms, CPUs: " + Runtime.getRuntime().availableProcessors());
+
+        run("all replicas (supplyAsync + allOf)", Mode.ALL, false);
+        run("majority quorum (bounded executor)", Mode.QUORUM, false);
+        run("log shipping (batched, majority watermark)", Mode.SHIPPING, false);
+        run("all replicas, replica 2 degraded", Mode.ALL, true);
+        run("majority quorum, replica 2 degraded", Mode.QUORUM, true);
+        run("log shipping, replica 2 degraded", Mode.SHIPPING, true);
+    }
+
+    private enum Mode { ALL, QUORUM, SHIPPING }
+
+    private static void run(String name, Mode mode, boolean degraded) throws Exception {
+        // Sized for every caller writing every replica at once: callers x replicas
+        ThreadPoolExecutor replicaExecutor = new ThreadPoolExecutor(CALLERS * REPLICAS, CALLERS * REPLICAS,
+                60L, TimeUnit.SECONDS, new ArrayBlockingQueue<>(256));
+        ExecutorService callers = Executors.newFixedThreadPool(CALLERS);
+        long[] latencies = new long[VOTES];
+        AtomicInteger failures = new AtomicInteger(0);
+        List<Future<?>> results = new ArrayList<>();
+        LogShipper shipper = mode == Mode.SHIPPING ? new LogShipper(replicaExecutor, degraded) : null;
+
+        long start = System.nanoTime();
+        for (int v = 0; v < VOTES; v++) {
+            final int vote = v;
+            results.add(callers.submit(() -> {
+                long begin = System.nanoTime();
+                boolean ok;
+                if (mode == Mode.SHIPPING) {
+                    ok = shipper.replicate();
+                } else if (mode == Mode.QUORUM) {
+                    ok = replicateQuorum(replicaExecutor, degraded);
+                } else {
+                    ok = replicateAll(degraded);
+                }
+                latencies[vote] = System.nanoTime() - begin;
+                if (!ok) {
+                    failures.incrementAndGet();
+                }
+            }));
+        }
+        for (Future<?> result : results) {
+            result.get();
+        }
+        long elapsed = System.nanoTime() - start;
+        if (shipper != null) {
+            shipper.stop();
+        }
+        callers.shutdown();
+        replicaExecutor.shutdownNow();
+
+        Arrays.sort(latencies);
+        System.out.println("--- " + name + " ---");
+        System.out.println("Total: " + elapsed / 1_000_000 + " ms, p50: " + latencies[VOTES / 2] / 1_000_000 +
+                " ms, p99: " + latencies[(int) (VOTES * 0.99)] / 1_000_000 + " ms, max: " +
+                latencies[VOTES - 1] / 1_000_000 + " ms, failed: " + failures.get());
+    }
+
+    /**
+     * Original path: every replica on the default async pool, wait for all of them
+     */
+    private static boolean replicateAll(boolean degraded) {
+        List<CompletableFuture<Boolean>> futures = new ArrayList<>();
+        for (int i = 0; i < REPLICAS; i++) {
+            final int replica = i;
+            futures.add(CompletableFuture.supplyAsync(() -> writeReplica(replica, degraded)));
+        }
+        try {
+            CompletableFuture.allOf(futures.toArray(CompletableFuture<?>[]::new)).get(SYNC_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+            int success = 0;
+            for (CompletableFuture<Boolean> future : futures) {
+                if (future.get()) {
+                    success++;
+                }
+            }
+            return success >= REPLICAS / 2 + 1;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    /**
+     * Per-vote majority quorum: each replica written separately, done at the first majority of acks
+     */
+    private static boolean replicateQuorum(ThreadPoolExecutor executor, boolean degraded) {
+        int majority = REPLICAS / 2 + 1;
+        AtomicInteger acks = new AtomicInteger(0);
+        AtomicInteger failures = new AtomicInteger(0);
+        CompletableFuture<Boolean> quorum = new CompletableFuture<>();
+        for (int i = 0; i < REPLICAS; i++) {
+            final int replica = i;
+            CompletableFuture<Boolean> result = new CompletableFuture<>();
+            Future<?> task = executor.submit(() -> result.complete(writeReplica(replica, degraded)));
+            result.orTimeout(REPLICA_TIMEOUT_MS, TimeUnit.MILLISECONDS).exceptionally(e -> {
+                task.cancel(true);
+                return false;
+            }).thenAccept(success -> {
+                if (success) {
+                    if (acks.incrementAndGet() == majority) {
+                        quorum.complete(true);
+                    }
+                } else if (failures.incrementAndGet() == REPLICAS - majority + 1) {
+                    quorum.complete(false);
+                }
+            });
+        }
+        try {
+            return quorum.get(SYNC_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    /**
+     * Log shipping as in ReplicationService: append, ship batches from each replica's acked sequence,
+     * commit at the majority-acknowledged sequence
+     */
+    private static final class LogShipper {
+        private final ThreadPoolExecutor executor;
+        private final boolean degraded;
+        private final ConcurrentHashMap<Long, CompletableFuture<Boolean>> waiters = new ConcurrentHashMap<>();
+        private final long[] acked = new long[REPLICAS];
+        private final boolean[] inFlight = new boolean[REPLICAS];
+        private final Thread thread;
+        private long lastSequence;
+        private long commitIndex;
+        private volatile boolean running = true;
+
+        LogShipper(ThreadPoolExecutor executor, boolean degraded) {
+            this.executor = executor;
+            this.degraded = degraded;
+            this.thread = new Thread(this::shipLoop, "Shipper");
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        boolean replicate() {
+            CompletableFuture<Boolean> committed = new CompletableFuture<>();
+            synchronized (this) {
+                waiters.put(++lastSequence, committed);
+            }
+            LockSupport.unpark(thread);
+            try {
+                return committed.get(SYNC_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+            } catch (Exception e) {
+                return false;
+            }
+        }
+
+        private void shipLoop() {
+            while (running) {
+                synchronized (this) {
+                    for (int i = 0; i < REPLICAS; i++) {
+                        if (!inFlight[i] && acked[i] < lastSequence) {
+                            ship(i, Math.min(lastSequence, acked[i] + SHIP_BATCH));
+                        }
+                    }
+                }
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(SHIP_INTERVAL_MS));
+            }
+        }
+
+        private void ship(int replica, long to) {
+            inFlight[replica] = true;
+            CompletableFuture<Boolean> result = new CompletableFuture<>();
+            Future<?> task = executor.submit(() -> result.complete(writeReplica(replica, degraded)));
+            result.orTimeout(REPLICA_TIMEOUT_MS, TimeUnit.MILLISECONDS).exceptionally(e -> {
+                task.cancel(true);
+                return false;
+            }).thenAccept(success -> onShipped(replica, to, success));
+        }
+
+        private synchronized void onShipped(int replica, long to, boolean success) {
+            if (success) {
+                acked[replica] = Math.max(acked[replica], to);
+                long[] sorted = acked.clone();
+                Arrays.sort(sorted);
+                long majority = sorted[REPLICAS - (REPLICAS / 2 + 1)];
+                for (long seq = commitIndex + 1; seq <= majority; seq++) {
+                    CompletableFuture<Boolean> waiter = waiters.remove(seq);
+                    if (waiter != null) {
+                        waiter.complete(true);
+                    }
+                }
+                commitIndex = Math.max(commitIndex, majority);
+            }
+            inFlight[replica] = false;
+            LockSupport.unpark(thread);
+        }
+
+        void stop() {
+            running = false;
+            LockSupport.unpark(thread);
+        }
+    }
+
+    private static boolean writeReplica(int replica, boolean degraded) {
+        try {
+            long delay = ThreadLocalRandom.current().nextLong(MAX_DELAY_MS);
+            if (degraded && replica == 2) {
+                delay *= 10;
+            }
+            Thread.sleep(delay);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package p.projectone;
+
+import p.projectone.concurrent.RingBufferDispatcher;
+import p.projectone.concurrent.WaitStrategy;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Scheduler benchmark
+ * Compares the old priority-queue + scheduler thread + thread pool design
+ * against the ring-buffer dispatcher used by VoteSchedulingService.
+ * Reports throughput and queue-wait time (submit -> start of processing).
+ */
+public class SchedulerBenchmark {
+    private static final int PRODUCERS = 8;
+    private static final int REQUESTS_PER_PRODUCER = 50_000;
+    private static final int WORKERS = 10;
+    private static final long SERVICE_NANOS = TimeUnit.MICROSECONDS.toNanos(20);
+    private static final int TOTAL = PRODUCERS * REQUESTS_PER_PRODUCER;
+
+    public static void main(String[] args) throws Exception {
+        System.out.println("=== Vote Scheduler Benchmark ===");
+        System.out.println("Producers: " + PRODUCERS + ", requests: " + TOTAL +
+                ", workers: " + WORKERS + ", service time: " + SERVICE_NANOS / 1000 + " us");
+
+        // Warm up each design once before measuring
+        runLegacy(false);
+        runRing("blocking", false);
+        runRing("spin-park", false);
+
+        runLegacy(true);
+        runRing("blocking", true);
+        runRing("spin-park", true);
+    }
+
+    /**
+     * Old design: PriorityBlockingQueue ordered by timestamp, one scheduler thread,
+     * ThreadPoolExecutor(5, 10, LinkedBlockingQueue(100), CallerRunsPolicy)
+     */
+    private static void runLegacy(boolean report) throws Exception {
+        PriorityBlockingQueue<Request> queue = new PriorityBlockingQueue<>(1000,
+                (r1, r2) -> Long.compare(r1.timestamp, r2.timestamp));
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(5, WORKERS, 60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(100), new ThreadPoolExecutor.CallerRunsPolicy());
+        long[] waits = new long[TOTAL];
+        AtomicInteger done = new AtomicInteger(0);
+        CountDownLatch finished = new CountDownLatch(1);
+
+        Thread scheduler = new Thread(() -> {
+            while (!Thread.currentThread().isInterrupted()) {
+                try {
+                    Request request = queue.take();
+                    executor.submit(() -> {
+                        process(request, waits);
+                        if (done.incrementAndGet() == TOTAL) {
+                            finished.countDown();
+                        }
+                    });
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }, "VoteScheduler");
+        scheduler.setDaemon(true);
+        scheduler.start();
+
+        long elapsed = produce(request -> queue.offer(request), finished);
+        scheduler.interrupt();
+        executor.shutdown();
+        if (report) {
+            report("priority queue + thread pool", elapsed, waits);
+        }
+    }
+
+    /**
+     * New design: ring buffer drained in batches directly by the worker threads
+     */
+    private static void runRing(String waitStrategy, boolean report) throws Exception {
+        long[] waits = new long[TOTAL];
+        AtomicInteger done = new AtomicInteger(0);
+        CountDownLatch finished = new CountDownLatch(1);
+
+        RingBufferDispatcher<Request> dispatcher = new RingBufferDispatcher<>("BenchWorker", 1024, 32,
+                WaitStrategy.forName(waitStrategy), (List<Request> batch) -> {
+                    for (Request request : batch) {
+                        process(request, waits);
+                        if (done.incrementAndGet() == TOTAL) {
+                            finished.countDown();
+                        }
+                    }
+                });
+        dispatcher.start(WORKERS);
+
+        long elapsed = produce(request -> {
+            // Buffer full: back off instead of queueing without bound
+            while (!dispatcher.offer(request)) {
+                Thread.yield();
+            }
+        }, finished);
+        dispatcher.shutdown();
+        if (report) {
+            report("ring buffer (" + waitStrategy + ")", elapsed, waits);
+        }
+    }
+
+    private static long produce(java.util.function.Consumer<Request> submit, CountDownLatch finished)
+            throws InterruptedException {
+        CountDownLatch producersDone = new CountDownLatch(PRODUCERS);
+        long start = System.nanoTime();
+        for (int p = 0; p < PRODUCERS; p++) {
+            final int producer = p;
+            new Thread(() -> {
+                for (int i = 0; i < REQUESTS_PER_PRODUCER; i++) {
+                    submit.accept(new Request(producer * REQUESTS_PER_PRODUCER + i));
+                }
+                producersDone.countDown();
+            }).start();
+        }
+        producersDone.await();
+        finished.await();
+        return System.nanoTime() - start;
+    }
+
+    private static void process(Request request, long[] waits) {
+        long begin = System.nanoTime();
+        waits[request.index] = begin - request.submitNanos;
+        while (System.nanoTime() - begin < SERVICE_NANOS) {
+            Thread.onSpinWait();
+        }
+    }
+
+    private static void report(String name, long elapsedNanos, long[] waits) {
+        long[] sorted = waits.clone();
+        Arrays.sort(sorted);
+        double seconds = elapsedNanos / 1e9;
+        System.out.println("--- " + name + " ---");
+        System.out.println("Throughput: " + String.format("%.0f", TOTAL / seconds) + " req/s");
+        System.out.println("Queue wait p50: " + sorted[TOTAL / 2] / 1000 + " us" +
+                ", p99: " + sorted[(int) (TOTAL * 0.99)] / 1000 + " us" +
+                ", max: " + sorted[TOTAL - 1] / 1000 + " us");
+    }
+
+    private static class Request {
+        final int index;
+        final long timestamp = System.currentTimeMillis();
+        final long submitNanos = System.nanoTime();
+
+        Request(int index) {
+            this.index = index;
+        }
+    }
+}
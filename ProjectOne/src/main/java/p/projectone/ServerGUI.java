@@ -13,6 +13,8 @@ import java.util.HashMap;
 import java.util.Timer;
 import java.util.TimerTask;
 
+import p.projectone.catalog.CandidateCatalog;
+
 /**
  * Server-side GUI interface
  * Connects to HTTP server and displays real-time data
@@ -33,9 +35,8 @@ public class ServerGUI extends JFrame {
     private JButton resetButton;
     private JLabel statusLabel;
     
-    // Candidate information
-    private String[] candidates = {"Alice", "Bob", "Charlie"};
-    private String[] candidateIds = {"1", "2", "3"};
+    // Candidate catalog, re-read from the server on every refresh
+    private CandidateCatalog catalog = CandidateCatalog.defaults();
     
     // Auto-refresh timer
     private Timer refreshTimer;
@@ -268,10 +269,40 @@ public class ServerGUI extends JFrame {
         }
     }
     
+    /**
+     * Reload the candidate catalog; keeps the previous one if the server does not answer
+     */
+    private void refreshCatalog() {
+        try {
+            URL url = new URL(SERVER_URL + "/api/candidates");
+            HttpURLConnection conn = (HttpURLConnection) url.openConnection();
+            conn.setRequestMethod("GET");
+            
+            if (conn.getResponseCode() == 200) {
+                BufferedReader br = new BufferedReader(new InputStreamReader(conn.getInputStream()));
+                StringBuilder sb = new StringBuilder();
+                String line;
+                while ((line = br.readLine()) != null) {
+                    sb.append(line);
+                }
+                br.close();
+                
+                CandidateCatalog loaded = CandidateCatalog.fromJson(sb.toString());
+                if (loaded.getVersion() != catalog.getVersion()) {
+                    addLogMessage("Candidate catalog updated to version " + loaded.getVersion());
+                }
+                catalog = loaded;
+            }
+        } catch (Exception ex) {
+            // Keep the current catalog; the results request below reports the connection problem
+        }
+    }
+    
     /**
      * Update voting results
      */
     private void updateVoteResults() {
+        refreshCatalog();
         try {
             URL url = new URL(SERVER_URL + "/api/vote/results");
             HttpURLConnection conn = (HttpURLConnection) url.openConnection();
@@ -296,13 +327,17 @@ public class ServerGUI extends JFrame {
                     totalVotes += count;
                 }
                 
-                for (int i = 0; i < candidates.length; i++) {
-                    String name = candidates[i];
-                    String cid = candidateIds[i];
+                int activeCandidates = 0;
+                for (int i = 0; i < catalog.size(); i++) {
+                    String name = catalog.name(i);
+                    String cid = catalog.id(i);
                     int count = results.getOrDefault(cid, 0);
                     double percentage = totalVotes > 0 ? (double) count / totalVotes * 100 : 0;
+                    if (catalog.isActive(i)) {
+                        activeCandidates++;
+                    }
                     
-                    resultsText.append(name).append(":\n");
+                    resultsText.append(name).append(catalog.isActive(i) ? ":\n" : " (inactive):\n");
                     resultsText.append("   Votes: ").append(count).append("\n");
                     resultsText.append("   Percentage: ").append(String.format("%.1f", percentage)).append("%\n");
                     resultsText.append("   Progress Bar: ");
@@ -321,7 +356,8 @@ public class ServerGUI extends JFrame {
                 
                 resultsText.append("=== Vote Details ===\n");
                 resultsText.append("Total Votes: ").append(totalVotes).append("\n");
-                resultsText.append("Candidate Count: ").append(candidates.length).append("\n");
+                resultsText.append("Candidate Count: ").append(activeCandidates).append("\n");
+                resultsText.append("Catalog Version: ").append(catalog.getVersion()).append("\n");
                 
                 voteResultsArea.setText(resultsText.toString());
             } else {
@@ -9,11 +9,17 @@ import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.net.HttpURLConnection;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Map;
 import java.util.HashMap;
 import java.util.Random;
+import java.util.UUID;
 import java.util.concurrent.atomic.AtomicInteger;
 
+import p.projectone.catalog.CandidateCatalog;
+import p.projectone.protocol.VoteCodec;
+
 /**
  * Simplified voting client
  * Connects to the server API to vote
@@ -28,9 +34,11 @@ public class SimpleVoteClient extends JFrame {
     private JTextArea resultArea;
     private JTextArea logArea;
 
-    // Candidate list
-    private String[] candidates = {"Alice", "Bob", "Charlie"};
-    private String[] candidateIds = {"1", "2", "3"};
+    // Candidate catalog from the server (built-in list if no node answers); the vote box
+    // offers the active candidates
+    private CandidateCatalog catalog = CandidateCatalog.defaults();
+    private String[] candidates;
+    private String[] candidateIds;
     
     // Support multiple server nodes
     private static final String[] SERVER_NODES = {
@@ -42,6 +50,8 @@ public class SimpleVoteClient extends JFrame {
     private static final String LOAD_BALANCE_MODE = "roundrobin"; // Can be changed to "random"
     private static final AtomicInteger nodeIndex = new AtomicInteger(0);
     private static final Random random = new Random();
+    // Wire format for votes: JSON by default, compact binary frames with -Dvote.protocol=binary
+    private static final boolean BINARY_PROTOCOL = "binary".equals(System.getProperty("vote.protocol"));
 
     // Get the current server node to use
     private String getServerUrl() {
@@ -60,6 +70,7 @@ public class SimpleVoteClient extends JFrame {
         setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
         setLocationRelativeTo(null);
         setLayout(new BorderLayout());
+        String catalogSource = loadCatalog();
 
         // Create input panel
         JPanel inputPanel = new JPanel(new GridLayout(4, 2, 5, 5));
@@ -141,35 +152,70 @@ public class SimpleVoteClient extends JFrame {
         // Show initial results on startup
         refreshResultsFromServer();
         logMessage("Distributed Voting System Client started");
+        logMessage(catalogSource);
         logMessage("Connected to server: " + getServerUrl());
         logMessage("Demonstrating distributed algorithms: Locking, Synchronization, Scheduling, Replication");
     }
 
     // Send vote request to server
+    // Every attempt of one vote carries the same Idempotency-Key, so a retry after a timeout or a
+    // failover to another node gets the original outcome back instead of being processed again
     private boolean sendVoteToServer(String userId, String candidateId, String candidateName) {
+        String idempotencyKey = UUID.randomUUID().toString();
+        String json = VoteCodec.encodeJson(userId, candidateId, candidateName);
+        // Binary frames carry the idempotency key themselves; JSON sends it as a header
+        byte[] body = BINARY_PROTOCOL
+            ? VoteCodec.encode(userId, catalog.ordinalOf(candidateId), idempotencyKey)
+            : json.getBytes(StandardCharsets.UTF_8);
+        String serverUrl = getServerUrl();
+        
+        logMessage("Sending request to node: " + serverUrl + " Content: " + json +
+                (BINARY_PROTOCOL ? " (binary frame, " + body.length + " bytes)" : ""));
+        Integer responseCode = postVote(serverUrl, body, idempotencyKey);
+        if (responseCode != null && responseCode == 200) {
+            return true;
+        }
+        
+        // Failover: try next node with the same idempotency key
+        for (int i = 0; i < SERVER_NODES.length - 1; i++) {
+            String nextUrl = getServerUrl();
+            if (!nextUrl.equals(serverUrl)) {
+                logMessage("Trying to switch to next node: " + nextUrl);
+                Integer retryCode = postVote(nextUrl, body, idempotencyKey);
+                if (retryCode != null && retryCode == 200) {
+                    logMessage("Vote successful after switching node: " + nextUrl);
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+    
+    // POST one vote attempt; returns the response code, or null when the node could not be reached
+    private Integer postVote(String serverUrl, byte[] body, String idempotencyKey) {
         try {
-            String serverUrl = getServerUrl();
             URL url = new URL(serverUrl + "/api/vote");
             HttpURLConnection conn = (HttpURLConnection) url.openConnection();
             conn.setRequestMethod("POST");
-            conn.setRequestProperty("Content-Type", "application/json");
+            if (BINARY_PROTOCOL) {
+                conn.setRequestProperty("Content-Type", VoteCodec.FRAME_CONTENT_TYPE);
+            } else {
+                conn.setRequestProperty("Content-Type", VoteCodec.JSON_CONTENT_TYPE);
+                conn.setRequestProperty("Idempotency-Key", idempotencyKey);
+            }
+            conn.setConnectTimeout(3000);
+            conn.setReadTimeout(5000);
             conn.setDoOutput(true);
             
-            String json = String.format("{\"userId\":\"%s\",\"candidateId\":\"%s\",\"candidateName\":\"%s\"}",
-                    userId, candidateId, candidateName);
-            
-            logMessage("Sending request to node: " + serverUrl + " Content: " + json);
-            
             try (OutputStream os = conn.getOutputStream()) {
-                os.write(json.getBytes());
+                os.write(body);
             }
             
             int responseCode = conn.getResponseCode();
-            logMessage("Server response code: " + responseCode);
+            logMessage("Server response code: " + responseCode +
+                    ("true".equals(conn.getHeaderField("Idempotent-Replayed")) ? " (replayed)" : ""));
             
-            if (responseCode == 200) {
-                return true;
-            } else {
+            if (responseCode != 200 && conn.getErrorStream() != null) {
                 // Read error message
                 try (BufferedReader br = new BufferedReader(new InputStreamReader(conn.getErrorStream()))) {
                     StringBuilder response = new StringBuilder();
@@ -179,35 +225,48 @@ public class SimpleVoteClient extends JFrame {
                     }
                     logMessage("Error message: " + response.toString());
                 }
-                // Failover: try next node
-                for (int i = 0; i < SERVER_NODES.length - 1; i++) {
-                    String nextUrl = getServerUrl();
-                    if (!nextUrl.equals(serverUrl)) {
-                        logMessage("Trying to switch to next node: " + nextUrl);
-                        try {
-                            URL retryUrl = new URL(nextUrl + "/api/vote");
-                            HttpURLConnection retryConn = (HttpURLConnection) retryUrl.openConnection();
-                            retryConn.setRequestMethod("POST");
-                            retryConn.setRequestProperty("Content-Type", "application/json");
-                            retryConn.setDoOutput(true);
-                            try (OutputStream os = retryConn.getOutputStream()) {
-                                os.write(json.getBytes());
-                            }
-                            int retryCode = retryConn.getResponseCode();
-                            if (retryCode == 200) {
-                                logMessage("Vote successful after switching node: " + nextUrl);
-                                return true;
-                            }
-                        } catch (Exception ignore) {}
-                    }
-                }
-                return false;
             }
+            return responseCode;
             
         } catch (Exception ex) {
-            logMessage("Failed to connect to server: " + ex.getMessage());
-            return false;
+            logMessage("Failed to connect to server " + serverUrl + ": " + ex.getMessage());
+            return null;
+        }
+    }
+
+    // Load the candidate catalog from the server; returns a line for the log
+    private String loadCatalog() {
+        String source;
+        try {
+            URL url = new URL(getServerUrl() + "/api/candidates");
+            HttpURLConnection conn = (HttpURLConnection) url.openConnection();
+            conn.setRequestMethod("GET");
+            conn.setConnectTimeout(3000);
+            conn.setReadTimeout(5000);
+            try (BufferedReader br = new BufferedReader(new InputStreamReader(conn.getInputStream()))) {
+                StringBuilder sb = new StringBuilder();
+                String line;
+                while ((line = br.readLine()) != null) {
+                    sb.append(line);
+                }
+                catalog = CandidateCatalog.fromJson(sb.toString());
+            }
+            source = "server " + url.getHost() + ":" + url.getPort();
+        } catch (Exception ex) {
+            source = "built-in list (" + ex.getMessage() + ")";
+        }
+        
+        ArrayList<String> names = new ArrayList<>();
+        ArrayList<String> ids = new ArrayList<>();
+        for (int i = 0; i < catalog.size(); i++) {
+            if (catalog.isActive(i)) {
+                names.add(catalog.name(i));
+                ids.add(catalog.id(i));
+            }
         }
+        candidates = names.toArray(new String[0]);
+        candidateIds = ids.toArray(new String[0]);
+        return "Candidates loaded from " + source + ", catalog version " + catalog.getVersion();
     }
 
     // Get voting results from server
@@ -6,11 +6,43 @@ import com.sun.net.httpserver.HttpExchange;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.net.InetSocketAddress;
-import java.util.concurrent.ConcurrentHashMap;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
 import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.Map;
-import java.util.concurrent.locks.ReentrantLock;
+
+import p.projectone.catalog.CandidateCatalog;
+import p.projectone.catalog.CandidateCatalogHolder;
+import p.projectone.catalog.CandidateFileWatcher;
+import p.projectone.concurrent.AdaptiveConcurrencyLimiter;
+import p.projectone.concurrent.BoundedExpiringMap;
+import p.projectone.cube.Breakdown;
+import p.projectone.cube.CubeCheckpoint;
+import p.projectone.cube.Dimension;
+import p.projectone.cube.VoteCube;
+import p.projectone.diagnostics.FlightRecordings;
+import p.projectone.diagnostics.VoteStageEvent;
+import p.projectone.ingest.VoteGateway;
+import p.projectone.ingest.VoteLedger;
+import p.projectone.leaderboard.Leaderboard;
+import p.projectone.logging.AsyncLog;
+import p.projectone.logging.VoteLogger;
+import p.projectone.metrics.MetricsRegistry;
+import p.projectone.metrics.Timer;
+import p.projectone.protocol.JsonText;
+import p.projectone.protocol.VoteCodec;
+import p.projectone.protocol.VoteMessage;
+import p.projectone.rollup.Granularity;
+import p.projectone.rollup.TurnoutSeries;
+import p.projectone.rollup.VoteRollup;
 
 /**
  * Simplified voting server
@@ -22,46 +54,125 @@ import java.util.concurrent.locks.ReentrantLock;
 public class SimpleVoteServer {
     
     private static final int PORT = 8080;
-    private static final Map<String, Integer> voteCounts = new ConcurrentHashMap<>();
-    private static final Map<String, String> userVotes = new ConcurrentHashMap<>();
-    private static final Map<String, ReentrantLock> userLocks = new ConcurrentHashMap<>();
+    private static final int WORKER_THREADS = 10;
+    private static final int QUEUE_CAPACITY = 100;
+    
+    // Admission control: a request still has to be served within LATENCY_SLO_MS once dequeued, so any
+    // request that already waited longer than the SLO minus the simulated service time is dropped
+    private static final long LATENCY_SLO_MS = 1000;
+    private static final long SERVICE_TIME_MS = 500;
+    private static final long QUEUE_DEADLINE_MS = LATENCY_SLO_MS - SERVICE_TIME_MS;
+    
+    // The concurrency limit starts at half the workers and probes upward, so it has room to grow back
+    // after a backoff instead of starting pinned at its ceiling
+    private static final int INITIAL_CONCURRENCY = Math.max(1, WORKER_THREADS / 2);
+    private static final int MAX_CONCURRENCY = WORKER_THREADS;
+    
+    // Kiosk TCP gateway for binary vote frames over long-lived connections
+    private static final int GATEWAY_PORT = 9090;
+    private static final int GATEWAY_SELECTOR_THREADS = Math.max(2, Runtime.getRuntime().availableProcessors());
     
     // Statistics information
     private static final AtomicInteger totalRequests = new AtomicInteger(0);
     private static final AtomicInteger successfulVotes = new AtomicInteger(0);
     private static final AtomicInteger failedVotes = new AtomicInteger(0);
+    private static final AtomicInteger shedRequests = new AtomicInteger(0);
+    private static final AtomicInteger replayedRequests = new AtomicInteger(0);
+    private static final AtomicInteger frameRequests = new AtomicInteger(0);
+    
+    // Idempotency: final outcomes (200/400) are kept per Idempotency-Key so client retries are replayed
+    // without touching locks or storage; transient outcomes (429/503/500) are not cached and may be retried
+    private static final String IDEMPOTENCY_HEADER = "Idempotency-Key";
+    private static final int IDEMPOTENCY_CACHE_SIZE = 100_000;
+    private static final long IDEMPOTENCY_TTL_MS = 10 * 60 * 1000;
+    private static final BoundedExpiringMap<String, IdempotentResponse> idempotentResponses =
+        new BoundedExpiringMap<>(IDEMPOTENCY_CACHE_SIZE, IDEMPOTENCY_TTL_MS);
+    
+    // Per-stage latency, exported with the counters above at /metrics
+    private static final MetricsRegistry metrics = new MetricsRegistry();
+    private static final Timer parseTimer = metrics.stageTimer("parse");
+    private static final Timer lockTimer = metrics.stageTimer("lock");
+    private static final Timer dedupeTimer = metrics.stageTimer("dedupe");
+    private static final Timer persistTimer = metrics.stageTimer("persist");
+    private static final Timer queueWaitTimer = metrics.stageTimer("queue_wait");
+    private static final Timer endToEndTimer = metrics.stageTimer("end_to_end");
+    
+    // Hot-path logging goes through the async logger; configure with -Dvote.log.level / vote.log.sample / vote.log.rate-limit
+    private static final VoteLogger LOG = VoteLogger.get(SimpleVoteServer.class);
+    
+    // Adaptive concurrency limit in front of vote processing
+    private static final AdaptiveConcurrencyLimiter limiter =
+        new AdaptiveConcurrencyLimiter(INITIAL_CONCURRENCY, 1, MAX_CONCURRENCY, LATENCY_SLO_MS);
+    
+    // Candidate catalog: built-in Alice/Bob/Charlie, or "id,name[,party][,inactive]" lines from
+    // -Dvote.candidates.file, reloaded when the file changes
+    private static final String CANDIDATES_FILE = System.getProperty("vote.candidates.file");
+    private static final long CANDIDATES_RELOAD_MS = 2000;
+    private static final CandidateCatalogHolder catalogs = new CandidateCatalogHolder(CandidateCatalog.defaults());
+    
+    // Per-minute vote counts for turnout charts; this server keeps a full day in memory, nothing is persisted
+    private static final String NODE_ID = "server-" + PORT;
+    private static final int ROLLUP_MINUTES = 24 * 60;
+    private static final VoteRollup rollup = new VoteRollup(NODE_ID, ROLLUP_MINUTES);
     
-    // Candidate information
-    private static final String[] candidates = {"Alice", "Bob", "Charlie"};
-    private static final String[] candidateIds = {"1", "2", "3"};
+    // Vote counts by candidate x node x region for group-by queries; with -Dvote.cube.checkpoint=path the
+    // cube is restored from that file at startup and written back periodically
+    private static final VoteCube cube = new VoteCube();
+    private static final String CUBE_CHECKPOINT = System.getProperty("vote.cube.checkpoint");
+    private static final long CUBE_CHECKPOINT_MS = 30_000;
+    
+    // Candidates ordered by votes, updated per accepted vote so top-K reads never sort
+    private static final Leaderboard leaderboard = new Leaderboard();
+    
+    // Dedupe and tally state, shared by the HTTP handlers and the kiosk gateway
+    private static final VoteLedger ledger = new VoteLedger(catalogs);
+    private static final VoteGateway gateway = new VoteGateway(ledger, GATEWAY_PORT, GATEWAY_SELECTOR_THREADS);
     
     public static void main(String[] args) throws IOException {
-        // Initialize voting data
-        for (String id : candidateIds) {
-            voteCounts.put(id, 0);
+        if (CANDIDATES_FILE != null) {
+            new CandidateFileWatcher(Paths.get(CANDIDATES_FILE), catalogs).start(CANDIDATES_RELOAD_MS);
+        }
+        ledger.addListener((ordinal, region, time) -> rollup.record(ordinal, time));
+        ledger.addListener((ordinal, region, time) -> cube.record(ordinal, NODE_ID, region));
+        ledger.addListener((ordinal, region, time) -> leaderboard.increment(ordinal));
+        if (CUBE_CHECKPOINT != null) {
+            startCubeCheckpoints(Paths.get(CUBE_CHECKPOINT));
         }
+        registerMetrics();
         
         // Create HTTP server
         HttpServer server = HttpServer.create(new InetSocketAddress(PORT), 0);
         
-        // Set thread pool (scheduling)
-        server.setExecutor(Executors.newFixedThreadPool(10));
+        // Set thread pool (scheduling) with a bounded queue
+        server.setExecutor(new AdmissionExecutor(WORKER_THREADS, QUEUE_CAPACITY));
         
         // Register route handlers
         server.createContext("/api/vote", new VoteHandler());
         server.createContext("/api/vote/results", new ResultsHandler());
         server.createContext("/api/stats", new StatsHandler());
+        server.createContext("/api/candidates", new CandidatesHandler());
+        server.createContext("/api/rollups", new RollupsHandler());
+        server.createContext("/api/breakdown", new BreakdownHandler());
+        server.createContext("/metrics", new MetricsHandler());
+        server.createContext("/admin/jfr", new RecordingHandler());
         server.createContext("/", new HomeHandler());
         
         // Start server
         server.start();
+        gateway.start();
         
         System.out.println("=== Distributed Voting System Server Started ===");
         System.out.println("Server Address: http://10.72.214.22:" + PORT);
         System.out.println("API Endpoints:");
-        System.out.println("  POST /api/vote - Vote");
-        System.out.println("  GET  /api/vote/results - Get Results");
+        System.out.println("  POST /api/vote - Vote (application/json or " + VoteCodec.FRAME_CONTENT_TYPE + ")");
+        System.out.println("  GET  /api/vote/results - Get Results (?top=K for the leaderboard, ?candidate=id for a rank)");
         System.out.println("  GET  /api/stats - Get Statistics");
+        System.out.println("  GET  /api/candidates - Candidate catalog with ordinals");
+        System.out.println("  GET  /api/rollups?from=&to=&granularity=minute|hour - Votes per time bucket");
+        System.out.println("  GET  /api/breakdown?by=party,region&node=&region= - Votes grouped by dimension");
+        System.out.println("  GET  /metrics - Prometheus metrics");
+        System.out.println("  POST /admin/jfr/{start,dump,stop} - Flight recording");
+        System.out.println("  TCP  :" + GATEWAY_PORT + " - Kiosk gateway, pipelined vote frames");
         System.out.println("=====================================");
         System.out.println("Demonstrating Distributed Algorithms:");
         System.out.println("1. Locking - Prevent duplicate voting");
@@ -85,70 +196,159 @@ public class SimpleVoteServer {
                 return;
             }
             
+            // Read and decode the request: JSON or binary vote frame, chosen by Content-Type
+            long parseStart = System.nanoTime();
+            VoteStageEvent parseEvent = VoteStageEvent.start("parse");
+            VoteMessage vote = decodeVote(exchange);
+            parseTimer.recordSince(parseStart);
+            parseEvent.finish(vote.getUserId(), vote.isValid());
+            LOG.debug("vote.received", "Received vote request: {}", vote);
+            
+            // Replayed request: answer with the original outcome, even when overloaded
+            String idempotencyKey = vote.getIdempotencyKey();
+            if (idempotencyKey != null) {
+                IdempotentResponse cached = idempotentResponses.get(idempotencyKey);
+                if (cached != null) {
+                    replayedRequests.incrementAndGet();
+                    LOG.debug("vote.replayed", "Replayed vote response - Key: {}, Status: {}", idempotencyKey, cached.code);
+                    exchange.getResponseHeaders().add("Idempotent-Replayed", "true");
+                    sendResponse(exchange, cached.code, cached.body);
+                    return;
+                }
+            }
+            
+            // Load shedding: reject fast instead of letting latency grow for everyone
+            if (AdmissionExecutor.isShed() || AdmissionExecutor.queueWaitMillis() > QUEUE_DEADLINE_MS
+                    || !limiter.tryAcquire()) {
+                shedRequests.incrementAndGet();
+                failedVotes.incrementAndGet();
+                exchange.getResponseHeaders().add("Retry-After", String.valueOf(limiter.getRetryAfterSeconds()));
+                sendResponse(exchange, 503, "Server overloaded, retry later");
+                return;
+            }
+            
+            long start = System.nanoTime();
+            long arrived = AdmissionExecutor.queuedAtNanos(start);
+            queueWaitTimer.record(start - arrived);
             try {
-                // Read request data
-                String requestBody = new String(exchange.getRequestBody().readAllBytes());
-                System.out.println("Received vote request: " + requestBody);
-                
-                // Parse request parameters (simplified)
-                String userId = extractUserId(requestBody);
-                String candidateId = extractCandidateId(requestBody);
-                String candidateName = extractCandidateName(requestBody);
-                
-                if (userId == null || candidateId == null) {
-                    sendResponse(exchange, 400, "Invalid request data");
+                processVote(exchange, vote);
+            } finally {
+                limiter.release(System.nanoTime() - start, false);
+                endToEndTimer.recordSince(arrived);
+            }
+        }
+        
+        /**
+         * Decode the request body; a malformed frame or unreadable body is treated as missing fields
+         */
+        private VoteMessage decodeVote(HttpExchange exchange) {
+            String headerKey = exchange.getRequestHeaders().getFirst(IDEMPOTENCY_HEADER);
+            try {
+                byte[] body = exchange.getRequestBody().readAllBytes();
+                if (VoteCodec.isFrame(exchange.getRequestHeaders().getFirst("Content-Type"))) {
+                    frameRequests.incrementAndGet();
+                    VoteMessage vote = VoteCodec.decode(body, catalogs.current());
+                    // A key carried in the frame wins over the header
+                    return vote.getIdempotencyKey() != null || headerKey == null ? vote
+                        : new VoteMessage(vote.getUserId(), vote.getCandidateId(), vote.getCandidateName(), headerKey);
+                }
+                return VoteCodec.parseJson(new String(body, StandardCharsets.UTF_8), headerKey);
+            } catch (IllegalArgumentException | IOException e) {
+                LOG.info("vote.malformed", "Malformed vote request: {}", e.getMessage());
+                return VoteMessage.invalid();
+            }
+        }
+        
+        private void processVote(HttpExchange exchange, VoteMessage vote) throws IOException {
+            String userId = vote.getUserId();
+            String candidateId = vote.getCandidateId();
+            String candidateName = vote.getCandidateName();
+            String idempotencyKey = vote.getIdempotencyKey();
+            try {
+                // Unknown or inactive candidates are rejected before taking any lock
+                if (!vote.isValid() || catalogs.current().resolve(candidateId) < 0) {
+                    respond(exchange, 400, "Invalid request data", userId, idempotencyKey);
                     failedVotes.incrementAndGet();
                     return;
                 }
                 
-                // Distributed lock implementation
-                ReentrantLock userLock = userLocks.computeIfAbsent(userId, k -> new ReentrantLock());
-                
                 boolean voteSuccess = false;
-                if (userLock.tryLock()) {
+                // Claim: take the user's lock and check that the user has not voted yet
+                VoteStageEvent claimEvent = VoteStageEvent.start("claim");
+                long lockStart = System.nanoTime();
+                boolean locked = ledger.tryLock(userId);
+                lockTimer.recordSince(lockStart);
+                if (locked) {
                     try {
-                        System.out.println("Acquired distributed lock - User: " + userId);
+                        LOG.debug("lock.acquired", "Acquired distributed lock - User: {}", userId);
                         
                         // Check if already voted
-                        if (userVotes.containsKey(userId)) {
-                            System.out.println("User has already voted - User: " + userId);
-                            sendResponse(exchange, 400, "User already voted");
+                        long dedupeStart = System.nanoTime();
+                        boolean voted = ledger.hasVoted(userId);
+                        dedupeTimer.recordSince(dedupeStart);
+                        claimEvent.finish(userId, !voted);
+                        if (voted) {
+                            LOG.info("vote.duplicate", "User has already voted - User: {}", userId);
+                            respond(exchange, 400, "User already voted", userId, idempotencyKey);
                             failedVotes.incrementAndGet();
                             return;
                         }
                         
                         // Simulate processing delay
-                        Thread.sleep(500);
+                        long persistStart = System.nanoTime();
+                        Thread.sleep(SERVICE_TIME_MS);
                         
-                        // Record vote
-                        userVotes.put(userId, candidateId);
-                        voteCounts.put(candidateId, voteCounts.get(candidateId) + 1);
+                        // Record vote; the gateway may have recorded this user in the meantime
+                        VoteLedger.Outcome outcome = ledger.record(userId, candidateId, vote.getRegion());
+                        persistTimer.recordSince(persistStart);
+                        if (outcome != VoteLedger.Outcome.ACCEPTED) {
+                            boolean duplicate = outcome == VoteLedger.Outcome.DUPLICATE;
+                            LOG.info("vote.rejected", "Vote rejected - User: {}, Outcome: {}", userId, outcome);
+                            respond(exchange, 400, duplicate ? "User already voted" : "Invalid request data", userId,
+                                idempotencyKey);
+                            failedVotes.incrementAndGet();
+                            return;
+                        }
                         
-                        System.out.println("Vote successful - User: " + userId + " voted for " + candidateName);
+                        LOG.info("vote.success", "Vote successful - User: {} voted for {}", userId, candidateName);
                         successfulVotes.incrementAndGet();
                         voteSuccess = true;
                         
                     } finally {
-                        userLock.unlock();
-                        System.out.println("Released distributed lock - User: " + userId);
+                        ledger.unlock(userId);
+                        LOG.debug("lock.released", "Released distributed lock - User: {}", userId);
                     }
                 } else {
-                    System.out.println("Failed to acquire distributed lock - User: " + userId + " is being processed");
-                    sendResponse(exchange, 429, "User is being processed");
+                    claimEvent.finish(userId, false);
+                    LOG.info("lock.contended", "Failed to acquire distributed lock - User: {} is being processed", userId);
+                    respond(exchange, 429, "User is being processed", userId, idempotencyKey);
                     failedVotes.incrementAndGet();
                     return;
                 }
                 
                 if (voteSuccess) {
-                    sendResponse(exchange, 200, "Vote successful");
+                    respond(exchange, 200, "Vote successful", userId, idempotencyKey);
                 }
                 
             } catch (Exception e) {
-                System.err.println("Error occurred while processing vote request: " + e.getMessage());
+                LOG.error("vote.error", "Error occurred while processing vote request: {}", e.getMessage());
                 sendResponse(exchange, 500, "Internal server error");
                 failedVotes.incrementAndGet();
             }
         }
+        
+        private void respond(HttpExchange exchange, int code, String response, String userId, String idempotencyKey)
+                throws IOException {
+            VoteStageEvent event = VoteStageEvent.start("respond");
+            try {
+                if (idempotencyKey != null && (code == 200 || code == 400)) {
+                    idempotentResponses.put(idempotencyKey, new IdempotentResponse(code, response));
+                }
+                sendResponse(exchange, code, response);
+            } finally {
+                event.finish(userId, code == 200);
+            }
+        }
     }
     
     /**
@@ -162,12 +362,23 @@ public class SimpleVoteServer {
                 return;
             }
             
+            String query = exchange.getRequestURI().getQuery();
+            String top = queryParam(query, "top", null);
+            String candidateId = queryParam(query, "candidate", null);
+            if (top != null) {
+                sendTop(exchange, top);
+                return;
+            }
+            if (candidateId != null) {
+                sendRank(exchange, candidateId);
+                return;
+            }
+            
             // Build JSON response
             StringBuilder json = new StringBuilder("{");
-            for (int i = 0; i < candidateIds.length; i++) {
-                if (i > 0) json.append(",");
-                json.append("\"").append(candidateIds[i]).append("\":")
-                    .append(voteCounts.getOrDefault(candidateIds[i], 0));
+            for (Map.Entry<String, Integer> entry : ledger.getResults().entrySet()) {
+                if (json.length() > 1) json.append(",");
+                JsonText.appendString(json, entry.getKey()).append(":").append(entry.getValue());
             }
             json.append("}");
             
@@ -176,6 +387,156 @@ public class SimpleVoteServer {
         }
     }
     
+    /**
+     * Top K from the leaderboard. The version changes only when the top K changes; the ETag combines it with
+     * the leaderboard's boot epoch and the catalog version, and a client that sends it back in If-None-Match
+     * gets 304 without a body.
+     */
+    private static void sendTop(HttpExchange exchange, String top) throws IOException {
+        int k;
+        try {
+            k = Integer.parseInt(top);
+        } catch (NumberFormatException e) {
+            k = 0;
+        }
+        if (k <= 0) {
+            sendResponse(exchange, 400, "Invalid top: " + top);
+            return;
+        }
+        CandidateCatalog catalog = catalogs.current();
+        Leaderboard.Standings standings = leaderboard.top(k, catalog.size());
+        String etag = standings.etag(catalog);
+        exchange.getResponseHeaders().add("ETag", etag);
+        if (etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+            exchange.sendResponseHeaders(304, -1);
+            exchange.close();
+            return;
+        }
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        sendResponse(exchange, 200, standings.toJson(catalog));
+    }
+    
+    /**
+     * One candidate's votes and rank; tied candidates share a rank
+     */
+    private static void sendRank(HttpExchange exchange, String candidateId) throws IOException {
+        CandidateCatalog catalog = catalogs.current();
+        int ordinal = catalog.ordinalOf(candidateId);
+        if (ordinal < 0) {
+            sendResponse(exchange, 404, "Unknown candidate: " + candidateId);
+            return;
+        }
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        sendResponse(exchange, 200, leaderboard.standingJson(catalog, ordinal));
+    }
+    
+    /**
+     * Candidate catalog handler
+     * Clients read the ordinals here to encode binary vote frames
+     */
+    static class CandidatesHandler implements HttpHandler {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                sendResponse(exchange, 405, "Method Not Allowed");
+                return;
+            }
+            
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            sendResponse(exchange, 200, catalogs.current().toJson());
+        }
+    }
+    
+    /**
+     * Turnout rollup handler
+     * GET /api/rollups?from=&to=&granularity=minute|hour, times in epoch millis, default the last hour by minute.
+     * Built from the per-minute ring, so the cost depends on the number of buckets, not the number of votes.
+     */
+    static class RollupsHandler implements HttpHandler {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                sendResponse(exchange, 405, "Method Not Allowed");
+                return;
+            }
+            
+            String query = exchange.getRequestURI().getQuery();
+            TurnoutSeries series;
+            try {
+                long now = System.currentTimeMillis();
+                long to = Long.parseLong(queryParam(query, "to", String.valueOf(now)));
+                long from = Long.parseLong(queryParam(query, "from", String.valueOf(to - 60 * VoteRollup.MINUTE_MS)));
+                CandidateCatalog catalog = catalogs.current();
+                series = new TurnoutSeries(catalog, Granularity.parse(queryParam(query, "granularity", "minute")), from, to);
+                rollup.addTo(series, catalog, now);
+            } catch (IllegalArgumentException e) {
+                sendResponse(exchange, 400, "Invalid rollup query: " + e.getMessage());
+                return;
+            }
+            
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            sendResponse(exchange, 200, series.toJson());
+        }
+    }
+    
+    /**
+     * Group-by handler
+     * GET /api/breakdown?by=party,region groups by any of candidate, party, node, region; a parameter named
+     * after a dimension (candidate=1, party=green, node=server-8080, region=north) keeps only that value.
+     * Scans the pre-aggregated cube, so the cost depends on the number of cells, not the number of votes.
+     */
+    static class BreakdownHandler implements HttpHandler {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                sendResponse(exchange, 405, "Method Not Allowed");
+                return;
+            }
+            
+            String query = exchange.getRequestURI().getQuery();
+            Breakdown breakdown;
+            try {
+                Map<Dimension, String> filters = new EnumMap<>(Dimension.class);
+                for (Dimension dimension : Dimension.values()) {
+                    String value = queryParam(query, dimension.key(), null);
+                    if (value != null) {
+                        filters.put(dimension, value);
+                    }
+                }
+                breakdown = new Breakdown(catalogs.current(), Dimension.parseList(queryParam(query, "by", "")), filters);
+                cube.addTo(breakdown);
+            } catch (IllegalArgumentException e) {
+                sendResponse(exchange, 400, "Invalid breakdown query: " + e.getMessage());
+                return;
+            }
+            
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            sendResponse(exchange, 200, breakdown.toJson());
+        }
+    }
+    
+    /**
+     * Restore the cube from the checkpoint file, then rewrite the file on a daemon thread
+     */
+    private static void startCubeCheckpoints(Path file) throws IOException {
+        int cells = CubeCheckpoint.read(cube, file);
+        System.out.println("Restored " + cells + " cube cells from " + file);
+        ScheduledExecutorService checkpoints = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "cube-checkpoint");
+            thread.setDaemon(true);
+            return thread;
+        });
+        Runnable checkpoint = () -> {
+            try {
+                CubeCheckpoint.write(cube, catalogs.current().size(), file);
+            } catch (IOException e) {
+                LOG.warn("cube.checkpoint_failed", "Cube checkpoint failed: {}", e.getMessage());
+            }
+        };
+        checkpoints.scheduleWithFixedDelay(checkpoint, CUBE_CHECKPOINT_MS, CUBE_CHECKPOINT_MS, TimeUnit.MILLISECONDS);
+        Runtime.getRuntime().addShutdownHook(new Thread(checkpoint, "cube-checkpoint-final"));
+    }
+    
     /**
      * Statistics handler
      */
@@ -191,8 +552,14 @@ public class SimpleVoteServer {
             json.append("\"totalRequests\":").append(totalRequests.get()).append(",");
             json.append("\"successfulVotes\":").append(successfulVotes.get()).append(",");
             json.append("\"failedVotes\":").append(failedVotes.get()).append(",");
-            json.append("\"totalVoters\":").append(userVotes.size()).append(",");
-            json.append("\"activeLocks\":").append(userLocks.size());
+            json.append("\"totalVoters\":").append(ledger.getVoterCount()).append(",");
+            json.append("\"activeLocks\":").append(ledger.getLockCount()).append(",");
+            json.append("\"shedRequests\":").append(shedRequests.get()).append(",");
+            json.append("\"replayedRequests\":").append(replayedRequests.get()).append(",");
+            json.append("\"frameRequests\":").append(frameRequests.get()).append(",");
+            json.append("\"gatewayConnections\":").append(gateway.getOpenConnections()).append(",");
+            json.append("\"gatewayVotes\":").append(gateway.getOutcomeCount(VoteLedger.Outcome.ACCEPTED)).append(",");
+            json.append("\"concurrencyLimit\":").append(limiter.getLimit());
             json.append("}");
             
             exchange.getResponseHeaders().add("Content-Type", "application/json");
@@ -200,6 +567,124 @@ public class SimpleVoteServer {
         }
     }
     
+    /**
+     * Prometheus metrics handler
+     */
+    static class MetricsHandler implements HttpHandler {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                sendResponse(exchange, 405, "Method Not Allowed");
+                return;
+            }
+            
+            exchange.getResponseHeaders().add("Content-Type", MetricsRegistry.CONTENT_TYPE);
+            sendResponse(exchange, 200, metrics.scrape());
+        }
+    }
+    
+    /**
+     * Flight recording handler
+     * POST /admin/jfr/start?settings=default|profile&maxAge=600, POST /admin/jfr/dump, POST /admin/jfr/stop,
+     * GET /admin/jfr for the current state. Files are written to ./recordings on the server.
+     */
+    static class RecordingHandler implements HttpHandler {
+        private final FlightRecordings recordings = new FlightRecordings(Paths.get("recordings"));
+        
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            String action = exchange.getRequestURI().getPath().substring("/admin/jfr".length());
+            String query = exchange.getRequestURI().getQuery();
+            try {
+                FlightRecordings.RecordingInfo info;
+                if (action.isEmpty() || "/".equals(action)) {
+                    info = recordings.status();
+                } else if (!"POST".equals(exchange.getRequestMethod())) {
+                    sendResponse(exchange, 405, "Method Not Allowed");
+                    return;
+                } else if ("/start".equals(action)) {
+                    String settings = queryParam(query, "settings", "default");
+                    long maxAge = Long.parseLong(queryParam(query, "maxAge", "600"));
+                    long threshold = Long.parseLong(queryParam(query, "threshold", "0"));
+                    info = recordings.start(settings, Duration.ofSeconds(maxAge), threshold);
+                } else if ("/dump".equals(action)) {
+                    info = recordings.dump();
+                } else if ("/stop".equals(action)) {
+                    info = recordings.stop();
+                } else {
+                    sendResponse(exchange, 404, "Not Found");
+                    return;
+                }
+                
+                String json = "{\"state\":\"" + info.getState() + "\"," +
+                    "\"settings\":" + JsonText.quote(info.getSettings()) + "," +
+                    "\"startTime\":" + JsonText.quote(info.getStartTime() != null ? info.getStartTime().toString() : null) + "," +
+                    "\"sizeBytes\":" + info.getSizeBytes() + "," +
+                    "\"file\":" + JsonText.quote(info.getFile()) + "}";
+                exchange.getResponseHeaders().add("Content-Type", "application/json");
+                sendResponse(exchange, 200, json);
+            } catch (IllegalStateException e) {
+                sendResponse(exchange, 409, e.getMessage());
+            } catch (Exception e) {
+                sendResponse(exchange, 400, "Recording failed: " + e.getMessage());
+            }
+        }
+    }
+    
+    private static String queryParam(String query, String name, String defaultValue) {
+        if (query != null) {
+            for (String pair : query.split("&")) {
+                if (pair.startsWith(name + "=")) {
+                    return pair.substring(name.length() + 1);
+                }
+            }
+        }
+        return defaultValue;
+    }
+    
+    /**
+     * Expose the statistics counters through the metrics registry
+     */
+    private static void registerMetrics() {
+        metrics.counter("vote_requests_total", "Vote requests by outcome", totalRequests::get, "outcome", "received");
+        metrics.counter("vote_requests_total", "Vote requests by outcome", successfulVotes::get, "outcome", "succeeded");
+        metrics.counter("vote_requests_total", "Vote requests by outcome", failedVotes::get, "outcome", "failed");
+        metrics.counter("vote_requests_total", "Vote requests by outcome", shedRequests::get, "outcome", "shed");
+        metrics.counter("vote_requests_total", "Vote requests by outcome", replayedRequests::get, "outcome", "replayed");
+        metrics.counter("vote_frame_requests_total", "Vote requests sent as binary frames", frameRequests::get);
+        metrics.gauge("vote_idempotency_keys", "Cached responses for idempotent replay", idempotentResponses::size);
+        metrics.gauge("vote_voters", "Users that have voted", ledger::getVoterCount);
+        metrics.gauge("vote_user_locks", "Per-user locks held in memory", ledger::getLockCount);
+        metrics.gauge("vote_gateway_connections", "Open kiosk gateway connections", gateway::getOpenConnections);
+        metrics.gauge("vote_gateway_buffers", "Direct buffers allocated by the kiosk gateway", gateway::getBuffersAllocated);
+        for (VoteLedger.Outcome outcome : VoteLedger.Outcome.values()) {
+            metrics.counter("vote_gateway_frames_total", "Kiosk gateway vote frames by outcome",
+                () -> gateway.getOutcomeCount(outcome), "outcome", outcome.name().toLowerCase());
+        }
+        metrics.gauge("vote_admission_limit", "Current adaptive concurrency limit", limiter::getLimit);
+        AsyncLog log = AsyncLog.getDefault();
+        metrics.counter("vote_log_records_total", "Log records by outcome", log::getWritten, "outcome", "written");
+        metrics.counter("vote_log_records_total", "Log records by outcome", log::getDropped, "outcome", "dropped");
+        metrics.counter("vote_log_records_total", "Log records by outcome", log::getSampledOut, "outcome", "sampled_out");
+        metrics.counter("vote_log_records_total", "Log records by outcome", log::getRateLimited, "outcome", "rate_limited");
+        metrics.counter("vote_rollup_late_votes_total", "Votes older than the rollup ring, not counted", rollup::getLateVotes);
+        metrics.gauge("vote_cube_regions", "Distinct regions in the group-by cube", cube::getRegionCount);
+        metrics.gauge("vote_candidate_catalog_version", "Candidate catalog version", () -> catalogs.current().getVersion());
+        registerCandidateGauges(catalogs.current());
+        catalogs.addListener(SimpleVoteServer::registerCandidateGauges);
+    }
+    
+    /**
+     * One vote gauge per candidate ordinal; called again when the catalog adds candidates
+     */
+    private static void registerCandidateGauges(CandidateCatalog catalog) {
+        for (int i = 0; i < catalog.size(); i++) {
+            int ordinal = i;
+            metrics.gauge("vote_candidate_votes", "Votes per candidate", () -> ledger.getVotes(ordinal),
+                "candidate", catalog.name(i));
+        }
+    }
+    
     /**
      * Home page handler
      */
@@ -212,8 +697,13 @@ public class SimpleVoteServer {
                 "<p>API Endpoints:</p>" +
                 "<ul>" +
                 "<li>POST /api/vote - Vote</li>" +
-                "<li>GET /api/vote/results - Get Results</li>" +
+                "<li>GET /api/vote/results - Get Results (?top=K, ?candidate=id)</li>" +
                 "<li>GET /api/stats - Get Statistics</li>" +
+                "<li>GET /api/candidates - Candidate catalog</li>" +
+                "<li>GET /api/rollups - Votes per minute or hour</li>" +
+                "<li>GET /api/breakdown - Votes grouped by party, region, node or candidate</li>" +
+                "<li>GET /metrics - Prometheus metrics</li>" +
+                "<li>POST /admin/jfr/{start,dump,stop} - Flight recording</li>" +
                 "</ul>" +
                 "</body></html>";
             
@@ -223,54 +713,78 @@ public class SimpleVoteServer {
     }
     
     /**
-     * Send HTTP response
+     * Request executor with a bounded queue
+     * Records when each request was queued so handlers can drop requests that waited too long.
+     * When the queue is full the request runs on the dispatcher thread flagged as shed,
+     * so the handler only writes a quick 503 instead of queueing more work.
      */
-    private static void sendResponse(HttpExchange exchange, int code, String response) throws IOException {
-        exchange.sendResponseHeaders(code, response.getBytes().length);
-        try (OutputStream os = exchange.getResponseBody()) {
-            os.write(response.getBytes());
+    static class AdmissionExecutor extends ThreadPoolExecutor {
+        private static final ThreadLocal<Long> queuedAt = new ThreadLocal<>();
+        private static final ThreadLocal<Boolean> shed = new ThreadLocal<>();
+        
+        AdmissionExecutor(int threads, int queueCapacity) {
+            super(threads, threads, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(queueCapacity),
+                (task, executor) -> {
+                    shed.set(Boolean.TRUE);
+                    try {
+                        task.run();
+                    } finally {
+                        shed.remove();
+                    }
+                });
         }
-    }
-    
-    /**
-     * Extract user ID from request body (simplified)
-     */
-    private static String extractUserId(String requestBody) {
-        if (requestBody.contains("\"userId\":")) {
-            int start = requestBody.indexOf("\"userId\":\"") + 10;
-            int end = requestBody.indexOf("\"", start);
-            if (start > 9 && end > start) {
-                return requestBody.substring(start, end);
-            }
+        
+        @Override
+        public void execute(Runnable task) {
+            long enqueued = System.nanoTime();
+            super.execute(() -> {
+                queuedAt.set(enqueued);
+                try {
+                    task.run();
+                } finally {
+                    queuedAt.remove();
+                }
+            });
+        }
+        
+        static boolean isShed() {
+            return Boolean.TRUE.equals(shed.get());
+        }
+        
+        /**
+         * When the current request was queued, or the given time when it did not go through the queue
+         */
+        static long queuedAtNanos(long orElse) {
+            Long enqueued = queuedAt.get();
+            return enqueued == null ? orElse : enqueued;
+        }
+        
+        static long queueWaitMillis() {
+            Long enqueued = queuedAt.get();
+            return enqueued == null ? 0 : TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - enqueued);
         }
-        return null;
     }
     
     /**
-     * Extract candidate ID from request body (simplified)
+     * Final vote outcome kept for idempotent replay
      */
-    private static String extractCandidateId(String requestBody) {
-        if (requestBody.contains("\"candidateId\":")) {
-            int start = requestBody.indexOf("\"candidateId\":\"") + 15;
-            int end = requestBody.indexOf("\"", start);
-            if (start > 14 && end > start) {
-                return requestBody.substring(start, end);
-            }
+    static final class IdempotentResponse {
+        final int code;
+        final String body;
+        
+        IdempotentResponse(int code, String body) {
+            this.code = code;
+            this.body = body;
         }
-        return null;
     }
     
     /**
-     * Extract candidate name from request body (simplified)
+     * Send HTTP response
      */
-    private static String extractCandidateName(String requestBody) {
-        if (requestBody.contains("\"candidateName\":")) {
-            int start = requestBody.indexOf("\"candidateName\":\"") + 17;
-            int end = requestBody.indexOf("\"", start);
-            if (start > 16 && end > start) {
-                return requestBody.substring(start, end);
-            }
+    private static void sendResponse(HttpExchange exchange, int code, String response) throws IOException {
+        exchange.sendResponseHeaders(code, response.getBytes().length);
+        try (OutputStream os = exchange.getResponseBody()) {
+            os.write(response.getBytes());
         }
-        return null;
     }
-} 
\ No newline at end of file
+}
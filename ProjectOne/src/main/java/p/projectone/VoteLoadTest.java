@@ -0,0 +1,204 @@
+package p.projectone;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import p.projectone.metrics.LatencyHistogram;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Vote API load test
+ * Keeps a fixed number of POST /api/vote requests in flight (every request is a new user) and reports
+ * throughput, latency and status codes. Works against any server speaking the SimpleVoteServer protocol:
+ *
+ *   VoteLoadTest http://localhost:8080 [concurrency] [seconds]
+ *
+ * Without arguments it compares the two server models in-process, both with the same simulated
+ * store latency (claim + persist + tally round trips):
+ *   blocking     - thread per request, 200 worker threads (Tomcat's default) sleeping through the store calls
+ *   non-blocking - 2 request threads hand the vote to a driver thread and return; the response is written
+ *                  when the store call completes, like the reactive API on the reactive Mongo/Redis drivers
+ */
+public class VoteLoadTest {
+    private static final int[] CONCURRENCY = {100, 1000, 5000};
+    private static final long CELL_SECONDS = 5;
+    private static final long STORE_MILLIS = 500;
+    private static final int BLOCKING_THREADS = 200;
+    private static final int REQUEST_THREADS = 2;
+    private static final String[] CANDIDATES = {"1", "2", "3"};
+    private static final String[] NAMES = {"Alice", "Bob", "Charlie"};
+
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0) {
+            int concurrency = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+            long seconds = args.length > 2 ? Long.parseLong(args[2]) : 10;
+            System.out.println("=== Vote Load Test: " + args[0] + ", " + concurrency + " in flight, " +
+                    seconds + " s ===");
+            run(args[0], concurrency, seconds).print("target", concurrency);
+            return;
+        }
+
+        System.out.println("=== Vote Load Test: blocking vs non-blocking ===");
+        System.out.println("Store latency: " + STORE_MILLIS + " ms per vote, " + CELL_SECONDS + " s per cell, " +
+                "blocking workers: " + BLOCKING_THREADS + ", non-blocking request threads: " + REQUEST_THREADS);
+        for (boolean blocking : new boolean[]{true, false}) {
+            for (int concurrency : CONCURRENCY) {
+                LocalServer server = new LocalServer(blocking);
+                try {
+                    run("http://127.0.0.1:" + server.port(), concurrency, CELL_SECONDS)
+                        .print(blocking ? "blocking" : "non-blocking", concurrency);
+                } finally {
+                    server.stop();
+                }
+            }
+        }
+    }
+
+    private static Result run(String baseUrl, int concurrency, long seconds) throws Exception {
+        ExecutorService clientPool = Executors.newFixedThreadPool(2);
+        HttpClient client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(10))
+            .executor(clientPool)
+            .build();
+        URI uri = URI.create(baseUrl + "/api/vote");
+        String runId = Long.toString(System.currentTimeMillis(), 36);
+
+        Result result = new Result();
+        Semaphore inFlight = new Semaphore(concurrency);
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.SECONDS.toNanos(seconds);
+        for (long i = 0; System.nanoTime() < deadline; i++) {
+            if (!inFlight.tryAcquire(100, TimeUnit.MILLISECONDS)) {
+                continue;
+            }
+            int candidate = (int) (i % CANDIDATES.length);
+            String body = "{\"userId\":\"load-" + runId + "-" + i + "\",\"candidateId\":\"" + CANDIDATES[candidate] +
+                    "\",\"candidateName\":\"" + NAMES[candidate] + "\"}";
+            HttpRequest request = HttpRequest.newBuilder(uri)
+                .timeout(Duration.ofSeconds(30))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+            long begin = System.nanoTime();
+            client.sendAsync(request, HttpResponse.BodyHandlers.discarding()).whenComplete((response, error) -> {
+                result.record(response != null ? response.statusCode() : -1, System.nanoTime() - begin);
+                inFlight.release();
+            });
+        }
+        // Let the requests already sent finish
+        inFlight.acquire(concurrency);
+        result.seconds = (System.nanoTime() - start) / 1e9;
+        clientPool.shutdownNow();
+        return result;
+    }
+
+    private static final class Result {
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final Map<Integer, AtomicLong> statuses = new ConcurrentHashMap<>();
+        private double seconds;
+
+        private void record(int status, long nanos) {
+            latency.record(nanos / 1000);
+            statuses.computeIfAbsent(status, key -> new AtomicLong()).incrementAndGet();
+        }
+
+        private void print(String name, int concurrency) {
+            long ok = statuses.getOrDefault(200, new AtomicLong()).get();
+            System.out.printf("%-12s %5d in flight: %8.0f votes/s ok, p50/p99/max %6.1f/%7.1f/%7.1f ms, statuses %s%n",
+                    name, concurrency, ok / seconds, latency.getValueAtPercentile(50) / 1000.0,
+                    latency.getValueAtPercentile(99) / 1000.0, latency.getMax() / 1000.0, statuses);
+        }
+    }
+
+    /**
+     * In-process server with the SimpleVoteServer protocol and a simulated store
+     */
+    private static final class LocalServer {
+        private final HttpServer server;
+        private final ExecutorService requestThreads;
+        private final ScheduledExecutorService driver;
+        private final Map<String, String> votes = new ConcurrentHashMap<>();
+
+        private LocalServer(boolean blocking) throws IOException {
+            server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 10_000);
+            requestThreads = Executors.newFixedThreadPool(blocking ? BLOCKING_THREADS : REQUEST_THREADS);
+            driver = blocking ? null : Executors.newSingleThreadScheduledExecutor();
+            server.setExecutor(requestThreads);
+            server.createContext("/api/vote", exchange -> {
+                String body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+                String userId = field(body, "userId");
+                if (userId == null) {
+                    send(exchange, 400, "Invalid request data");
+                } else if (blocking) {
+                    try {
+                        Thread.sleep(STORE_MILLIS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    finish(exchange, userId, field(body, "candidateId"));
+                } else {
+                    // The request thread returns right away; the driver completes the vote
+                    driver.schedule(() -> finish(exchange, userId, field(body, "candidateId")),
+                            STORE_MILLIS, TimeUnit.MILLISECONDS);
+                }
+            });
+            server.start();
+        }
+
+        private void finish(HttpExchange exchange, String userId, String candidateId) {
+            boolean first = votes.putIfAbsent(userId, candidateId) == null;
+            send(exchange, first ? 200 : 400, first ? "Vote successful" : "User already voted");
+        }
+
+        private int port() {
+            return server.getAddress().getPort();
+        }
+
+        private void stop() {
+            server.stop(0);
+            requestThreads.shutdownNow();
+            if (driver != null) {
+                driver.shutdownNow();
+            }
+        }
+
+        private static void send(HttpExchange exchange, int code, String response) {
+            byte[] bytes = response.getBytes(StandardCharsets.UTF_8);
+            try {
+                exchange.sendResponseHeaders(code, bytes.length);
+                try (OutputStream os = exchange.getResponseBody()) {
+                    os.write(bytes);
+                }
+            } catch (IOException e) {
+                exchange.close();
+            }
+        }
+
+        private static String field(String body, String name) {
+            int start = body.indexOf("\"" + name + "\":\"");
+            if (start < 0) {
+                return null;
+            }
+            start += name.length() + 4;
+            int end = body.indexOf('"', start);
+            return end > start ? body.substring(start, end) : null;
+        }
+    }
+}
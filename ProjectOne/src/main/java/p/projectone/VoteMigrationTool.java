@@ -0,0 +1,326 @@
+package p.projectone;
+
+import com.mongodb.MongoNamespace;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndReplaceOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+
+import p.projectone.catalog.CandidateCatalog;
+import p.projectone.model.Candidate;
+import p.projectone.model.Vote;
+import p.projectone.service.CandidateCatalogService;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.function.IntFunction;
+import java.util.stream.Stream;
+
+/**
+ * Vote storage migration: legacy vote documents to the compact Vote schema
+ *   legacy  - UUID string _id, userId, candidateId, candidateName, LocalDateTime voteTime,
+ *             serverNode with a thread id, sessionId, status name, _class with the full class name
+ *   compact - ObjectId _id, u, c (catalog ordinal), t (epoch millis), n, s, st (status code), _class "v"
+ *
+ * The copy runs while the old version keeps serving; only the swap needs writers paused:
+ *   1. backfill - stream votes in cursor batches into votes_compact with bulk upserts
+ *   2. catch-up - re-read votes newer than the last pass's newest voteTime minus a lag window,
+ *                 until a pass adds fewer than one batch of new votes
+ *   3. swap     - (--swap) rename votes to votes_legacy and votes_compact to votes, then one final
+ *                 catch-up from votes_legacy. Stop the old version first and start the new one after.
+ * The compact _id comes from the legacy voteTime and _id, so every pass and every re-run rewrites
+ * the same documents instead of adding copies. Votes for candidate ids that are not in the catalog
+ * are skipped and reported; they stay in votes_legacy.
+ *
+ *   VoteMigrationTool [--swap]      - migrate (-Dvote.mongo.uri, -Dvote.mongo.database, -Dvote.migration.batch)
+ *   VoteMigrationTool --bench N     - insert N synthetic votes per schema into scratch collections and
+ *                                     compare document size, index size and insert throughput
+ */
+public class VoteMigrationTool {
+    private static final String URI = System.getProperty("vote.mongo.uri", "mongodb://localhost:27017");
+    private static final String DATABASE = System.getProperty("vote.mongo.database", "voting_system");
+    private static final int BATCH = Integer.getInteger("vote.migration.batch", 1000);
+    private static final long LAG_MS = Long.getLong("vote.migration.lag-ms", 60_000L);
+    private static final int MAX_CATCH_UP_PASSES = 10;
+
+    private static final String SOURCE = "votes";
+    private static final String TARGET = "votes_compact";
+    private static final String LEGACY = "votes_legacy";
+
+    public static void main(String[] args) {
+        try (MongoClient client = MongoClients.create(URI)) {
+            MongoTemplate mongo = new MongoTemplate(client, DATABASE);
+            if (args.length > 1 && args[0].equals("--bench")) {
+                bench(mongo, Integer.parseInt(args[1]));
+            } else {
+                migrate(mongo, args.length > 0 && args[0].equals("--swap"));
+            }
+        }
+    }
+
+    private static void migrate(MongoTemplate mongo, boolean swap) {
+        System.out.println("=== Vote Storage Migration ===");
+        if (!mongo.collectionExists(SOURCE)) {
+            System.out.println("No " + SOURCE + " collection in " + DATABASE + ", nothing to migrate");
+            return;
+        }
+        CandidateCatalog catalog = loadCatalog(mongo);
+        System.out.println(URI + "/" + DATABASE + ", batch " + BATCH + ", lag window " + LAG_MS + " ms, catalog version " +
+                catalog.getVersion() + " (" + catalog.size() + " candidates)");
+        report("before  " + SOURCE, mongo, SOURCE);
+
+        ensureCompactIndexes(mongo, TARGET);
+        Migration migration = new Migration(mongo, catalog);
+        migration.pass("backfill", SOURCE, TARGET);
+        int passes = 0;
+        do {
+            migration.pass("catch-up", SOURCE, TARGET);
+        } while (migration.lastPassNew >= BATCH && ++passes < MAX_CATCH_UP_PASSES);
+
+        if (!swap) {
+            report("after   " + TARGET, mongo, TARGET);
+            migration.printSkipped();
+            System.out.println("Copy is caught up. Stop the old version, re-run with --swap, then start the new version.");
+            return;
+        }
+        if (mongo.collectionExists(LEGACY)) {
+            throw new IllegalStateException(LEGACY + " already exists, refusing to swap");
+        }
+        mongo.getCollection(SOURCE).renameCollection(new MongoNamespace(DATABASE, LEGACY));
+        mongo.getCollection(TARGET).renameCollection(new MongoNamespace(DATABASE, SOURCE));
+        migration.pass("final catch-up", LEGACY, SOURCE);
+        report("after   " + SOURCE, mongo, SOURCE);
+        migration.printSkipped();
+        System.out.println("Swapped: " + SOURCE + " is compact, the original documents are in " + LEGACY);
+    }
+
+    /**
+     * Same catalog as CandidateCatalogService builds from the ordinals persisted on the candidate documents
+     * (assigning any that are missing), so legacy candidate ids map to the ordinals the service uses
+     */
+    private static CandidateCatalog loadCatalog(MongoTemplate mongo) {
+        List<Candidate> candidates = CandidateCatalogService.loadCandidates(mongo);
+        return candidates.isEmpty() ? CandidateCatalog.defaults() : CandidateCatalog.defaults().next(candidates);
+    }
+
+    private static void ensureCompactIndexes(MongoTemplate mongo, String collection) {
+        IndexOperations indexes = mongo.indexOps(collection);
+        indexes.ensureIndex(new Index().on(Vote.USER_FIELD, Sort.Direction.ASC).unique().named(Vote.USER_INDEX));
+        indexes.ensureIndex(new Index().on(Vote.CANDIDATE_FIELD, Sort.Direction.ASC).named(Vote.CANDIDATE_INDEX));
+        indexes.ensureIndex(new Index().on(Vote.NODE_FIELD, Sort.Direction.ASC).on(Vote.TIME_FIELD, Sort.Direction.ASC)
+                .named(Vote.NODE_TIME_INDEX));
+    }
+
+    /**
+     * Copy state carried across passes: the newest legacy voteTime seen and what was skipped
+     */
+    private static final class Migration {
+        private final MongoTemplate mongo;
+        private final CandidateCatalog catalog;
+        private final Set<String> unmapped = new TreeSet<>();
+        private final Set<Object> malformed = new HashSet<>();
+        private long highWater = Long.MIN_VALUE;
+        private int lastPassNew;
+
+        Migration(MongoTemplate mongo, CandidateCatalog catalog) {
+            this.mongo = mongo;
+            this.catalog = catalog;
+        }
+
+        void pass(String name, String from, String to) {
+            Query query = highWater == Long.MIN_VALUE ? new Query()
+                    : new Query(Criteria.where("voteTime").gte(new Date(highWater - LAG_MS)));
+            query.cursorBatchSize(BATCH);
+
+            long start = System.nanoTime();
+            int read = 0;
+            int written = 0;
+            lastPassNew = 0;
+            List<Vote> batch = new ArrayList<>(BATCH);
+            try (Stream<Document> legacy = mongo.stream(query, Document.class, from)) {
+                Iterator<Document> documents = legacy.iterator();
+                while (documents.hasNext()) {
+                    read++;
+                    Vote vote = convert(documents.next());
+                    if (vote == null) {
+                        continue;
+                    }
+                    batch.add(vote);
+                    if (batch.size() == BATCH) {
+                        written += batch.size();
+                        lastPassNew += flush(batch, to);
+                    }
+                }
+            }
+            written += batch.size();
+            lastPassNew += flush(batch, to);
+
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.printf("%-15s %s -> %s: read %,d, written %,d (%,d new) in %.1f s, %,.0f docs/s%n",
+                    name, from, to, read, written, lastPassNew, seconds, read / Math.max(seconds, 1e-9));
+        }
+
+        private Vote convert(Document legacy) {
+            Date time = legacy.getDate("voteTime");
+            String userId = legacy.getString("userId");
+            if (time == null || userId == null) {
+                malformed.add(legacy.get("_id"));
+                return null;
+            }
+            highWater = Math.max(highWater, time.getTime());
+
+            String candidateId = legacy.getString("candidateId");
+            int candidate = catalog.ordinalOf(candidateId);
+            if (candidate < 0) {
+                unmapped.add(String.valueOf(candidateId));
+                return null;
+            }
+            Vote vote = new Vote(userId, candidate);
+            vote.setId(compactId(time, String.valueOf(legacy.get("_id"))));
+            vote.setVoteTime(time.getTime());
+            vote.setServerNode(withoutThreadId(legacy.getString("serverNode")));
+            vote.setSessionId(legacy.getString("sessionId"));
+            String status = legacy.getString("status");
+            vote.setStatus(status != null ? Vote.VoteStatus.valueOf(status) : Vote.VoteStatus.PENDING);
+            return vote;
+        }
+
+        /**
+         * Replace by _id: a vote copied while PROCESSING picks up CONFIRMED on a later pass
+         */
+        private int flush(List<Vote> batch, String to) {
+            if (batch.isEmpty()) {
+                return 0;
+            }
+            BulkOperations bulk = mongo.bulkOps(BulkOperations.BulkMode.UNORDERED, Vote.class, to);
+            for (Vote vote : batch) {
+                bulk.replaceOne(new Query(Criteria.where("_id").is(vote.getId())), vote,
+                        FindAndReplaceOptions.options().upsert());
+            }
+            BulkWriteResult result = bulk.execute();
+            batch.clear();
+            return result.getUpserts().size();
+        }
+
+        void printSkipped() {
+            if (!malformed.isEmpty()) {
+                System.out.println("Skipped " + malformed.size() + " documents without userId or voteTime");
+            }
+            if (!unmapped.isEmpty()) {
+                System.out.println("Skipped votes for candidate ids not in the catalog: " + unmapped);
+            }
+        }
+    }
+
+    /**
+     * Legacy voteTime seconds followed by 8 bytes hashed from the legacy _id: ordered by time like a new
+     * ObjectId, and identical on every run
+     */
+    static String compactId(Date time, String legacyId) {
+        UUID hash = UUID.nameUUIDFromBytes(legacyId.getBytes(StandardCharsets.UTF_8));
+        ByteBuffer bytes = ByteBuffer.allocate(12)
+                .putInt((int) (time.getTime() / 1000))
+                .putLong(hash.getMostSignificantBits());
+        return new ObjectId(bytes.array()).toHexString();
+    }
+
+    /**
+     * "server-8080-123" -> "server-8080"
+     */
+    private static String withoutThreadId(String serverNode) {
+        if (serverNode == null) {
+            return null;
+        }
+        int last = serverNode.lastIndexOf('-');
+        return last > serverNode.indexOf('-') ? serverNode.substring(0, last) : serverNode;
+    }
+
+    private static void bench(MongoTemplate mongo, int votes) {
+        System.out.println("=== Vote Storage Benchmark ===");
+        System.out.println(URI + "/" + DATABASE + ", " + votes + " single-document inserts per schema");
+        String legacy = "votes_bench_legacy";
+        String compact = "votes_bench_compact";
+        mongo.dropCollection(legacy);
+        mongo.dropCollection(compact);
+
+        // Indexes the old @Indexed annotations created on userId and candidateId
+        IndexOperations legacyIndexes = mongo.indexOps(legacy);
+        legacyIndexes.ensureIndex(new Index().on("userId", Sort.Direction.ASC).unique().named("userId"));
+        legacyIndexes.ensureIndex(new Index().on("candidateId", Sort.Direction.ASC).named("candidateId"));
+        ensureCompactIndexes(mongo, compact);
+
+        CandidateCatalog catalog = CandidateCatalog.defaults();
+        String[] candidateNames = {"Alice", "Bob", "Charlie"};
+        double legacyRate = insert(mongo, legacy, votes, i -> new Document("_id", UUID.randomUUID().toString())
+                .append("userId", "user_" + (100_000 + i))
+                .append("candidateId", catalog.id(i % catalog.size()))
+                .append("candidateName", candidateNames[i % candidateNames.length])
+                .append("voteTime", new Date())
+                .append("serverNode", "server-8080-" + (40 + i % 200))
+                .append("sessionId", UUID.randomUUID().toString())
+                .append("status", Vote.VoteStatus.CONFIRMED.name())
+                .append("_class", "p.projectone.model.Vote"));
+        double compactRate = insert(mongo, compact, votes, i -> {
+            Vote vote = new Vote("user_" + (100_000 + i), i % catalog.size());
+            vote.setServerNode("server-8080");
+            vote.setSessionId(UUID.randomUUID().toString());
+            vote.setStatus(Vote.VoteStatus.CONFIRMED);
+            return vote;
+        });
+
+        report("legacy", mongo, legacy);
+        report("compact", mongo, compact);
+        System.out.printf("insert throughput: legacy %,.0f votes/s, compact %,.0f votes/s%n", legacyRate, compactRate);
+        mongo.dropCollection(legacy);
+        mongo.dropCollection(compact);
+    }
+
+    private static double insert(MongoTemplate mongo, String collection, int votes, IntFunction<Object> vote) {
+        long start = System.nanoTime();
+        for (int i = 0; i < votes; i++) {
+            mongo.insert(vote.apply(i), collection);
+        }
+        return votes / ((System.nanoTime() - start) / 1e9);
+    }
+
+    private static void report(String label, MongoTemplate mongo, String collection) {
+        Document stats = mongo.executeCommand(new Document("collStats", collection));
+        System.out.printf("%-22s %,10d docs, avg %4d B/doc, data %s, storage %s, indexes %s%n", label,
+                number(stats, "count"), number(stats, "avgObjSize"), megabytes(number(stats, "size")),
+                megabytes(number(stats, "storageSize")), megabytes(number(stats, "totalIndexSize")));
+        Document indexSizes = stats.get("indexSizes", Document.class);
+        if (indexSizes != null) {
+            for (Map.Entry<String, Object> index : indexSizes.entrySet()) {
+                System.out.printf("    index %-16s %s%n", index.getKey(),
+                        megabytes(((Number) index.getValue()).longValue()));
+            }
+        }
+    }
+
+    private static long number(Document stats, String key) {
+        Object value = stats.get(key);
+        return value instanceof Number ? ((Number) value).longValue() : 0;
+    }
+
+    private static String megabytes(long bytes) {
+        return String.format("%.2f MB", bytes / (1024.0 * 1024.0));
+    }
+}
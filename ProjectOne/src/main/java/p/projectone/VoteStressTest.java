@@ -3,26 +3,43 @@ package p.projectone;
 import java.io.OutputStream;
 import java.net.HttpURLConnection;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.Random;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.atomic.AtomicInteger;
 
+import p.projectone.protocol.VoteCodec;
+
 public class VoteStressTest {
     // Support multiple server nodes
-    private static final String[] SERVER_NODES = {
+    private static String[] SERVER_NODES = {
         "http://10.72.214.22:8080",
         "http://10.72.214.22:8081"
         // More nodes can be added
     };
     private static final String[] CANDIDATES = {"1", "2", "3"};
+    // --binary sends compact vote frames instead of JSON
+    private static boolean binary = false;
     private static final int USER_COUNT = 100; // Number of concurrent users
     private static final int THREAD_POOL_SIZE = 20;
     private static final Random random = new Random();
     private static final AtomicInteger successCount = new AtomicInteger(0);
     private static final AtomicInteger failCount = new AtomicInteger(0);
+    private static final AtomicInteger shedCount = new AtomicInteger(0);
+    // Latency of accepted (non-503) requests in milliseconds, -1 for shed requests
+    private static final long[] latencies = new long[USER_COUNT];
 
     public static void main(String[] args) throws Exception {
+        // Server nodes can be overridden on the command line, e.g. http://localhost:8080
+        // Add --binary to send votes as binary frames
+        String[] nodes = Arrays.stream(args).filter(arg -> !arg.equals("--binary")).toArray(String[]::new);
+        binary = nodes.length < args.length;
+        if (nodes.length > 0) {
+            SERVER_NODES = nodes;
+        }
         System.out.println("=== Distributed Voting System Stress Test ===");
+        System.out.println("Wire format: " + (binary ? VoteCodec.FRAME_CONTENT_TYPE : VoteCodec.JSON_CONTENT_TYPE));
         System.out.println("Simulating concurrent voting for " + USER_COUNT + " users...");
         CountDownLatch latch = new CountDownLatch(USER_COUNT);
         long start = System.currentTimeMillis();
@@ -34,9 +51,13 @@ public class VoteStressTest {
                 String candidateId = CANDIDATES[random.nextInt(CANDIDATES.length)];
                 String candidateName = candidateId.equals("1") ? "Alice" : candidateId.equals("2") ? "Bob" : "Charlie";
                 String serverUrl = SERVER_NODES[random.nextInt(SERVER_NODES.length)];
-                boolean result = sendVote(serverUrl, userId, candidateId, candidateName);
-                if (result) {
+                long begin = System.currentTimeMillis();
+                int code = sendVote(serverUrl, userId, candidateId, candidateName);
+                latencies[userNum] = code == 503 ? -1 : System.currentTimeMillis() - begin;
+                if (code == 200) {
                     successCount.incrementAndGet();
+                } else if (code == 503) {
+                    shedCount.incrementAndGet();
                 } else {
                     failCount.incrementAndGet();
                 }
@@ -49,26 +70,34 @@ public class VoteStressTest {
         System.out.println("=== Test Completed ===");
         System.out.println("Successful votes: " + successCount.get());
         System.out.println("Failed votes: " + failCount.get());
+        System.out.println("Shed (503) votes: " + shedCount.get());
         System.out.println("Total time: " + (end - start) + " ms");
         System.out.println("Success rate: " + (successCount.get() * 100.0 / USER_COUNT) + "%");
+
+        long[] accepted = Arrays.stream(latencies).filter(l -> l >= 0).sorted().toArray();
+        if (accepted.length > 0) {
+            System.out.println("Accepted latency p50: " + accepted[accepted.length / 2] + " ms" +
+                    ", p99: " + accepted[(int) ((accepted.length - 1) * 0.99)] + " ms" +
+                    ", max: " + accepted[accepted.length - 1] + " ms");
+        }
     }
 
-    private static boolean sendVote(String serverUrl, String userId, String candidateId, String candidateName) {
+    private static int sendVote(String serverUrl, String userId, String candidateId, String candidateName) {
         try {
             URL url = new URL(serverUrl + "/api/vote");
             HttpURLConnection conn = (HttpURLConnection) url.openConnection();
             conn.setRequestMethod("POST");
-            conn.setRequestProperty("Content-Type", "application/json");
+            conn.setRequestProperty("Content-Type", binary ? VoteCodec.FRAME_CONTENT_TYPE : VoteCodec.JSON_CONTENT_TYPE);
             conn.setDoOutput(true);
-            String json = String.format("{\"userId\":\"%s\",\"candidateId\":\"%s\",\"candidateName\":\"%s\"}",
-                    userId, candidateId, candidateName);
+            byte[] body = binary
+                ? VoteCodec.encode(userId, Arrays.asList(CANDIDATES).indexOf(candidateId), null)
+                : VoteCodec.encodeJson(userId, candidateId, candidateName).getBytes(StandardCharsets.UTF_8);
             try (OutputStream os = conn.getOutputStream()) {
-                os.write(json.getBytes());
+                os.write(body);
             }
-            int code = conn.getResponseCode();
-            return code == 200;
+            return conn.getResponseCode();
         } catch (Exception ex) {
-            return false;
+            return -1;
         }
     }
 } 
\ No newline at end of file
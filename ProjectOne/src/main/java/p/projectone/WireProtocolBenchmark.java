@@ -0,0 +1,105 @@
+package p.projectone;
+
+import p.projectone.catalog.CandidateCatalog;
+import p.projectone.protocol.VoteCodec;
+import p.projectone.protocol.VoteMessage;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+import java.util.function.IntToLongFunction;
+
+/**
+ * Vote wire format benchmark: JSON vs binary vote frames
+ *   bytes  - request body plus the headers that differ between the formats (Content-Type,
+ *            Content-Length, Idempotency-Key), with and without an idempotency key
+ *   encode - client CPU per vote: String.format (old client), string concat, binary frame
+ *   decode - server CPU per vote: body to String + field scan (SimpleVoteServer's JSON path) vs frame decode
+ * CPU figures are thread CPU time per vote, so they do not depend on other load on the machine.
+ */
+public class WireProtocolBenchmark {
+    private static final int VOTES = 2_000_000;
+    private static final int ROUNDS = 5;
+    private static final String[] CANDIDATE_IDS = {"1", "2", "3"};
+    private static final String[] CANDIDATE_NAMES = {"Alice", "Bob", "Charlie"};
+    private static final int USERS = 1024;
+
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    public static void main(String[] args) {
+        CandidateCatalog catalog = CandidateCatalog.defaults();
+        String[] userIds = new String[USERS];
+        String[] keys = new String[USERS];
+        byte[][] jsonBodies = new byte[USERS][];
+        byte[][] frames = new byte[USERS][];
+        for (int i = 0; i < USERS; i++) {
+            userIds[i] = "user_" + (100_000 + i);
+            keys[i] = UUID.randomUUID().toString();
+            int c = i % CANDIDATE_IDS.length;
+            jsonBodies[i] = VoteCodec.encodeJson(userIds[i], CANDIDATE_IDS[c], CANDIDATE_NAMES[c])
+                .getBytes(StandardCharsets.UTF_8);
+            frames[i] = VoteCodec.encode(userIds[i], c, keys[i]);
+        }
+
+        System.out.println("=== Vote Wire Format Benchmark ===");
+        System.out.println("User IDs like " + userIds[0] + ", " + CANDIDATE_IDS.length + " candidates, " +
+                VOTES + " votes per round, best of " + ROUNDS + " rounds");
+
+        System.out.println("--- bytes per vote (body + format-specific headers) ---");
+        String key = keys[0];
+        printBytes("json", VoteCodec.JSON_CONTENT_TYPE, jsonBodies[0].length, null);
+        printBytes("json + key", VoteCodec.JSON_CONTENT_TYPE, jsonBodies[0].length, key);
+        printBytes("frame", VoteCodec.FRAME_CONTENT_TYPE, VoteCodec.encode(userIds[0], 0, null).length, null);
+        printBytes("frame + key", VoteCodec.FRAME_CONTENT_TYPE, frames[0].length, null);
+
+        System.out.println("--- client encode, CPU per vote ---");
+        measure("String.format", i -> {
+            int c = i % CANDIDATE_IDS.length;
+            return String.format("{\"userId\":\"%s\",\"candidateId\":\"%s\",\"candidateName\":\"%s\"}",
+                    userIds[i], CANDIDATE_IDS[c], CANDIDATE_NAMES[c]).getBytes().length;
+        });
+        measure("json concat", i -> {
+            int c = i % CANDIDATE_IDS.length;
+            return VoteCodec.encodeJson(userIds[i], CANDIDATE_IDS[c], CANDIDATE_NAMES[c])
+                .getBytes(StandardCharsets.UTF_8).length;
+        });
+        measure("frame", i -> VoteCodec.encode(userIds[i], i % CANDIDATE_IDS.length, null).length);
+        measure("frame + key", i -> VoteCodec.encode(userIds[i], i % CANDIDATE_IDS.length, keys[i]).length);
+
+        System.out.println("--- server decode, CPU per vote ---");
+        measure("json", i -> checksum(VoteCodec.parseJson(new String(jsonBodies[i], StandardCharsets.UTF_8), null)));
+        measure("frame + key", i -> checksum(VoteCodec.decode(frames[i], catalog)));
+    }
+
+    private static void printBytes(String name, String contentType, int bodyBytes, String idempotencyKey) {
+        int headerBytes = header("Content-Type", contentType) + header("Content-Length", String.valueOf(bodyBytes));
+        if (idempotencyKey != null) {
+            headerBytes += header("Idempotency-Key", idempotencyKey);
+        }
+        System.out.printf("%-14s body %3d B, headers %3d B, total %3d B%n",
+                name, bodyBytes, headerBytes, bodyBytes + headerBytes);
+    }
+
+    private static int header(String name, String value) {
+        return name.length() + 2 + value.length() + 2;
+    }
+
+    private static void measure(String name, IntToLongFunction vote) {
+        long sink = 0;
+        long best = Long.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; round++) {
+            long cpuStart = THREADS.getCurrentThreadCpuTime();
+            for (int i = 0; i < VOTES; i++) {
+                sink += vote.applyAsLong(i & (USERS - 1));
+            }
+            best = Math.min(best, THREADS.getCurrentThreadCpuTime() - cpuStart);
+        }
+        System.out.printf("%-14s %7.1f ns/vote  (checksum %d)%n", name, (double) best / VOTES, sink % 1000);
+    }
+
+    private static long checksum(VoteMessage vote) {
+        return vote.getUserId().length() + vote.getCandidateId().length() +
+               (vote.getIdempotencyKey() != null ? vote.getIdempotencyKey().length() : 0);
+    }
+}
@@ -0,0 +1,319 @@
+package p.projectone.catalog;
+
+import p.projectone.model.Candidate;
+import p.projectone.protocol.JsonText;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 候选人目录快照（不可变）
+ * 每个候选人有一个稠密序号（0..size-1），计票数组和二进制帧都按序号索引；
+ * ID到序号用HashMap查找，校验"未知或已停用"只需一次查表和一次数组访问。
+ *
+ * 序号一经分配不再改变：重新加载时已有候选人保留原序号，从数据源中消失的候选人保留序号并标记为停用。
+ * 数据源给出了序号（Candidate.ordinal，MongoDB中持久化）时新候选人放在该序号上，与加载顺序和节点无关；
+ * 中间缺失的序号（文档被删除、或另一个节点刚分配还未读到）用停用的占位候选人"#序号"补齐，
+ * 之后读到真正的候选人时替换占位。没有序号的候选人（目录文件）按数据源顺序追加在末尾。
+ *
+ * 复杂度：O(1) - 查询；O(n) - 构建
+ * 实现方式：并行数组 + ID索引HashMap
+ *
+ * @author Distributed Systems Team
+ */
+public final class CandidateCatalog {
+
+    /**
+     * 序号上限：二进制帧版本2中候选人序号为u16
+     * 按序号索引的计数（VoteLedger、VoteRollup、VoteCube）用OrdinalCounters按实际用到的序号分块分配，
+     * 排行榜随目录扩容，都不按这个上限预先分配
+     */
+    public static final int MAX_CANDIDATES = 1 << 16;
+
+    /**
+     * 未填写政党的候选人
+     */
+    public static final String NO_PARTY = "unknown";
+
+    /**
+     * 缺失序号的占位候选人ID前缀
+     */
+    public static final String PLACEHOLDER_PREFIX = "#";
+
+    private static final CandidateCatalog DEFAULT = new CandidateCatalog(1,
+            new String[]{"1", "2", "3"}, new String[]{"Alice", "Bob", "Charlie"},
+            new String[]{NO_PARTY, NO_PARTY, NO_PARTY}, new boolean[]{true, true, true});
+
+    private final long version;
+    private final String[] ids;
+    private final String[] names;
+    private final String[] parties;
+    private final boolean[] active;
+    private final Map<String, Integer> ordinals;
+
+    private CandidateCatalog(long version, String[] ids, String[] names, String[] parties, boolean[] active) {
+        if (ids.length > MAX_CANDIDATES) {
+            throw new IllegalArgumentException("too many candidates: " + ids.length + " > " + MAX_CANDIDATES);
+        }
+        this.version = version;
+        this.ids = ids;
+        this.names = names;
+        this.parties = parties;
+        this.active = active;
+        this.ordinals = new HashMap<>(ids.length * 2);
+        for (int i = 0; i < ids.length; i++) {
+            if (ordinals.put(ids[i], i) != null) {
+                throw new IllegalArgumentException("duplicate candidate id: " + ids[i]);
+            }
+        }
+    }
+
+    /**
+     * 内置目录：1/Alice、2/Bob、3/Charlie，没有配置数据源时使用
+     */
+    public static CandidateCatalog defaults() {
+        return DEFAULT;
+    }
+
+    /**
+     * 按数据源的候选人列表生成下一个快照，保持已有序号不变
+     *
+     * @param candidates 当前数据源中的候选人；带序号的放在该序号上，不带序号的新候选人按顺序追加
+     * @return 内容无变化时返回this，否则返回版本号加一的新快照
+     * @throws IllegalArgumentException 候选人超过MAX_CANDIDATES、ID为空或重复，
+     *         已有候选人的序号与数据源不一致，或两个候选人占用同一序号
+     */
+    public CandidateCatalog next(List<Candidate> candidates) {
+        Map<String, Candidate> incoming = new LinkedHashMap<>();
+        for (Candidate candidate : candidates) {
+            if (candidate.getId() == null || candidate.getId().isEmpty()) {
+                throw new IllegalArgumentException("candidate without id: " + candidate);
+            }
+            if (incoming.put(candidate.getId(), candidate) != null) {
+                throw new IllegalArgumentException("duplicate candidate id: " + candidate.getId());
+            }
+        }
+
+        List<String> nextIds = new ArrayList<>(Arrays.asList(ids));
+        List<String> appended = new ArrayList<>();
+        for (Candidate candidate : incoming.values()) {
+            String id = candidate.getId();
+            Integer known = ordinals.get(id);
+            Integer ordinal = candidate.getOrdinal();
+            if (ordinal == null) {
+                if (known == null) {
+                    appended.add(id);
+                }
+                continue;
+            }
+            if (ordinal < 0 || ordinal >= MAX_CANDIDATES) {
+                throw new IllegalArgumentException("ordinal out of range: " + candidate);
+            }
+            if (known != null) {
+                if (known.intValue() != ordinal) {
+                    throw new IllegalArgumentException("candidate " + id + " has ordinal " + ordinal +
+                            " but is loaded at " + known);
+                }
+                continue;
+            }
+            while (nextIds.size() <= ordinal) {
+                nextIds.add(placeholder(nextIds.size()));
+            }
+            String occupant = nextIds.get(ordinal);
+            if (!occupant.equals(placeholder(ordinal))) {
+                throw new IllegalArgumentException("ordinal " + ordinal + " is taken by " + occupant + ", not " + id);
+            }
+            nextIds.set(ordinal, id);
+        }
+        nextIds.addAll(appended);
+        int size = nextIds.size();
+        String[] nextNames = new String[size];
+        String[] nextParties = new String[size];
+        boolean[] nextActive = new boolean[size];
+        for (int i = 0; i < size; i++) {
+            Candidate candidate = incoming.get(nextIds.get(i));
+            if (candidate != null) {
+                nextNames[i] = candidate.getName() != null ? candidate.getName() : candidate.getId();
+                nextParties[i] = candidate.getParty() != null && !candidate.getParty().isEmpty()
+                        ? candidate.getParty() : NO_PARTY;
+                nextActive[i] = candidate.isActive();
+            } else if (i >= ids.length) {
+                // 缺失的序号：停用的占位
+                nextNames[i] = nextIds.get(i);
+                nextParties[i] = NO_PARTY;
+                nextActive[i] = false;
+            } else {
+                // 已从数据源删除：保留序号、姓名和政党，停用
+                nextNames[i] = names[i];
+                nextParties[i] = parties[i];
+                nextActive[i] = false;
+            }
+        }
+
+        String[] idArray = nextIds.toArray(new String[0]);
+        if (Arrays.equals(idArray, ids) && Arrays.equals(nextNames, names) && Arrays.equals(nextParties, parties)
+                && Arrays.equals(nextActive, active)) {
+            return this;
+        }
+        return new CandidateCatalog(version + 1, idArray, nextNames, nextParties, nextActive);
+    }
+
+    private static String placeholder(int ordinal) {
+        return PLACEHOLDER_PREFIX + ordinal;
+    }
+
+    /**
+     * 解析目录文件：每行"id,姓名[,政党][,inactive]"，#开头为注释
+     */
+    public static List<Candidate> parseLines(List<String> lines) {
+        List<Candidate> candidates = new ArrayList<>();
+        for (String raw : lines) {
+            String line = raw.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            String[] fields = line.split(",");
+            if (fields.length < 2) {
+                throw new IllegalArgumentException("expected id,name[,party][,inactive]: " + line);
+            }
+            boolean inactive = fields[fields.length - 1].trim().equalsIgnoreCase("inactive");
+            boolean hasParty = fields.length - (inactive ? 1 : 0) > 2;
+            Candidate candidate = new Candidate(fields[1].trim(), null, hasParty ? fields[2].trim() : null);
+            candidate.setId(fields[0].trim());
+            candidate.setActive(!inactive);
+            candidates.add(candidate);
+        }
+        return candidates;
+    }
+
+    /**
+     * 解析候选人ID
+     *
+     * @return 序号；未知或已停用返回-1
+     */
+    public int resolve(String candidateId) {
+        Integer ordinal = candidateId != null ? ordinals.get(candidateId) : null;
+        return ordinal != null && active[ordinal] ? ordinal : -1;
+    }
+
+    /**
+     * @return 序号，未知返回-1（不检查是否停用）
+     */
+    public int ordinalOf(String candidateId) {
+        Integer ordinal = candidateId != null ? ordinals.get(candidateId) : null;
+        return ordinal != null ? ordinal : -1;
+    }
+
+    public boolean isActive(int ordinal) {
+        return ordinal >= 0 && ordinal < active.length && active[ordinal];
+    }
+
+    public String id(int ordinal) {
+        return ids[ordinal];
+    }
+
+    public String name(int ordinal) {
+        return names[ordinal];
+    }
+
+    public String party(int ordinal) {
+        return parties[ordinal];
+    }
+
+    public int size() {
+        return ids.length;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * 导出为JSON，供客户端按序号编码二进制帧：
+     * {"version":1,"candidates":[{"ordinal":0,"id":"1","name":"Alice","party":"unknown","active":true},...]}
+     */
+    public String toJson() {
+        StringBuilder json = new StringBuilder(64 + ids.length * 64);
+        json.append("{\"version\":").append(version).append(",\"candidates\":[");
+        for (int i = 0; i < ids.length; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"ordinal\":").append(i).append(",\"id\":");
+            JsonText.appendString(json, ids[i]).append(",\"name\":");
+            JsonText.appendString(json, names[i]).append(",\"party\":");
+            JsonText.appendString(json, parties[i]).append(",\"active\":").append(active[i]).append('}');
+        }
+        return json.append("]}").toString();
+    }
+
+    /**
+     * 解析toJson的输出（简化实现，与服务端导出格式配套）
+     *
+     * @throws IllegalArgumentException 格式不符
+     */
+    public static CandidateCatalog fromJson(String json) {
+        long version = Long.parseLong(field(json, "\"version\":", ','));
+        List<String> ids = new ArrayList<>();
+        List<String> names = new ArrayList<>();
+        List<String> parties = new ArrayList<>();
+        List<Boolean> active = new ArrayList<>();
+        int from = json.indexOf("\"candidates\":");
+        while ((from = json.indexOf("{\"ordinal\":", from)) >= 0) {
+            int end = JsonText.indexOutsideStrings(json, '}', from);
+            if (end < 0) {
+                throw new IllegalArgumentException("unterminated candidate in " + json);
+            }
+            String entry = json.substring(from, end + 1);
+            if (Integer.parseInt(field(entry, "\"ordinal\":", ',')) != ids.size()) {
+                throw new IllegalArgumentException("ordinals are not dense: " + entry);
+            }
+            ids.add(stringField(entry, "\"id\":"));
+            names.add(stringField(entry, "\"name\":"));
+            // 旧版本服务端的目录没有政党字段
+            parties.add(entry.contains("\"party\":\"") ? stringField(entry, "\"party\":") : NO_PARTY);
+            active.add(Boolean.parseBoolean(field(entry, "\"active\":", '}')));
+            from = end;
+        }
+        boolean[] flags = new boolean[active.size()];
+        for (int i = 0; i < flags.length; i++) {
+            flags[i] = active.get(i);
+        }
+        return new CandidateCatalog(version, ids.toArray(new String[0]), names.toArray(new String[0]),
+                parties.toArray(new String[0]), flags);
+    }
+
+    private static String field(String json, String marker, char terminator) {
+        int start = json.indexOf(marker);
+        if (start < 0) {
+            throw new IllegalArgumentException("missing " + marker + " in " + json);
+        }
+        start += marker.length();
+        int end = json.indexOf(terminator, start);
+        if (end < 0) {
+            throw new IllegalArgumentException("unterminated " + marker + " in " + json);
+        }
+        return json.substring(start, end).trim();
+    }
+
+    /**
+     * 字符串字段：标记之后是带引号的值，按转义规则读取
+     * 字符串内的引号都带反斜杠，标记不会在其他字段的值中被误匹配
+     */
+    private static String stringField(String json, String marker) {
+        int start = json.indexOf(marker + "\"");
+        if (start < 0) {
+            throw new IllegalArgumentException("missing " + marker + " in " + json);
+        }
+        return JsonText.readString(json, start + marker.length());
+    }
+
+    @Override
+    public String toString() {
+        return "CandidateCatalog{version=" + version + ", size=" + ids.length + "}";
+    }
+}
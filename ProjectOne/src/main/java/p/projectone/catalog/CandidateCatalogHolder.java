@@ -0,0 +1,56 @@
+package p.projectone.catalog;
+
+import p.projectone.model.Candidate;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * 当前候选人目录的持有者
+ * 读方每次调用current()拿到一份完整快照，一次投票内只读这一份，不会看到新旧混合的目录；
+ * 重新加载时整体替换引用（volatile写），读方无锁。
+ *
+ * 复杂度：O(1) - 读取；O(n) - 重新加载
+ * 实现方式：volatile引用 + 写方串行化
+ *
+ * @author Distributed Systems Team
+ */
+public class CandidateCatalogHolder {
+
+    private volatile CandidateCatalog current;
+    private final List<Consumer<CandidateCatalog>> listeners = new CopyOnWriteArrayList<>();
+
+    public CandidateCatalogHolder(CandidateCatalog initial) {
+        this.current = initial;
+    }
+
+    public CandidateCatalog current() {
+        return current;
+    }
+
+    /**
+     * 按数据源内容生成新快照并替换，内容无变化时不替换
+     *
+     * @return 是否替换
+     * @throws IllegalArgumentException 数据源内容非法，当前快照保持不变
+     */
+    public synchronized boolean update(List<Candidate> candidates) {
+        CandidateCatalog next = current.next(candidates);
+        if (next == current) {
+            return false;
+        }
+        current = next;
+        for (Consumer<CandidateCatalog> listener : listeners) {
+            listener.accept(next);
+        }
+        return true;
+    }
+
+    /**
+     * 注册变更监听器，在替换快照的线程上回调
+     */
+    public void addListener(Consumer<CandidateCatalog> listener) {
+        listeners.add(listener);
+    }
+}
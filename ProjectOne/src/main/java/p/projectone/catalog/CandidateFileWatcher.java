@@ -0,0 +1,74 @@
+package p.projectone.catalog;
+
+import p.projectone.logging.VoteLogger;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 从文件加载候选人目录并在文件修改后热加载（SimpleVoteServer使用，不依赖MongoDB）
+ * 按修改时间和大小轮询，而不是WatchService：编辑器"写临时文件再改名"的保存方式和网络文件系统上都可靠。
+ * 文件内容非法时保留当前目录并记录警告。
+ *
+ * @author Distributed Systems Team
+ */
+public class CandidateFileWatcher {
+
+    private static final VoteLogger LOG = VoteLogger.get(CandidateFileWatcher.class);
+
+    private final Path file;
+    private final CandidateCatalogHolder holder;
+    private final ScheduledExecutorService scheduler;
+    private long lastModified = -1;
+    private long lastSize = -1;
+
+    public CandidateFileWatcher(Path file, CandidateCatalogHolder holder) {
+        this.file = file;
+        this.holder = holder;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "candidate-file-watcher");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * 立即加载一次，之后按周期检查
+     *
+     * @param periodMillis 检查周期（毫秒）
+     */
+    public void start(long periodMillis) {
+        reloadIfChanged();
+        scheduler.scheduleWithFixedDelay(this::reloadIfChanged, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public void stop() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * 文件修改时间或大小变化时重新加载
+     */
+    public void reloadIfChanged() {
+        try {
+            long modified = Files.getLastModifiedTime(file).toMillis();
+            long size = Files.size(file);
+            if (modified == lastModified && size == lastSize) {
+                return;
+            }
+            lastModified = modified;
+            lastSize = size;
+            if (holder.update(CandidateCatalog.parseLines(Files.readAllLines(file, StandardCharsets.UTF_8)))) {
+                LOG.info("catalog.reloaded", "候选人目录已更新 - 文件: {}, 版本: {}, 候选人: {}",
+                        file, holder.current().getVersion(), holder.current().size());
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            LOG.warn("catalog.reload_failed", "候选人目录加载失败，保留当前目录 - 文件: {}, 原因: {}", file, e.getMessage());
+        }
+    }
+}
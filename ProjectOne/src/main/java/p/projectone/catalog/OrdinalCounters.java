@@ -0,0 +1,85 @@
+package p.projectone.catalog;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 按候选人序号索引的计数
+ * 序号上限是CandidateCatalog.MAX_CANDIDATES，实际目录通常只有几个到几十个候选人，按上限预先分配
+ * 会让每个计数数组（分钟环每个槽位、立方体每个节点×地区）都占满上限。这里按每块256个序号分块，
+ * 某一块第一次被写入时才分配，用CAS安装；块一经安装不再移动，目录增长时不需要复制，
+ * 自增与读取都不加锁。
+ *
+ * 复杂度：O(1) - 自增与读取；O(已分配块数 × 256) - 清零
+ * 实现方式：AtomicReferenceArray按块索引 + 每块一个AtomicIntegerArray
+ *
+ * @author Distributed Systems Team
+ */
+public final class OrdinalCounters {
+
+    private static final int CHUNK_BITS = 8;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    private final AtomicReferenceArray<AtomicIntegerArray> chunks =
+            new AtomicReferenceArray<>((CandidateCatalog.MAX_CANDIDATES + CHUNK_SIZE - 1) >> CHUNK_BITS);
+
+    /**
+     * @throws IndexOutOfBoundsException 序号为负或不小于MAX_CANDIDATES
+     */
+    public int incrementAndGet(int ordinal) {
+        return chunk(ordinal).incrementAndGet(ordinal & CHUNK_MASK);
+    }
+
+    /**
+     * @throws IndexOutOfBoundsException 序号为负或不小于MAX_CANDIDATES
+     */
+    public int addAndGet(int ordinal, int delta) {
+        return chunk(ordinal).addAndGet(ordinal & CHUNK_MASK, delta);
+    }
+
+    /**
+     * 计数，所在块尚未分配时为0
+     */
+    public int get(int ordinal) {
+        AtomicIntegerArray chunk = chunks.get(ordinal >> CHUNK_BITS);
+        return chunk != null ? chunk.get(ordinal & CHUNK_MASK) : 0;
+    }
+
+    /**
+     * 已分配的块原地清零，不释放
+     */
+    public void clear() {
+        for (int i = 0; i < chunks.length(); i++) {
+            AtomicIntegerArray chunk = chunks.get(i);
+            if (chunk != null) {
+                for (int j = 0; j < CHUNK_SIZE; j++) {
+                    chunk.set(j, 0);
+                }
+            }
+        }
+    }
+
+    private AtomicIntegerArray chunk(int ordinal) {
+        int index = ordinal >> CHUNK_BITS;
+        AtomicIntegerArray chunk = chunks.get(index);
+        if (chunk == null) {
+            chunks.compareAndSet(index, null, new AtomicIntegerArray(CHUNK_SIZE));
+            chunk = chunks.get(index);
+        }
+        return chunk;
+    }
+
+    /**
+     * 已分配的序号数（块数 × 256）
+     */
+    public int getAllocated() {
+        int allocated = 0;
+        for (int i = 0; i < chunks.length(); i++) {
+            if (chunks.get(i) != null) {
+                allocated += CHUNK_SIZE;
+            }
+        }
+        return allocated;
+    }
+}
@@ -0,0 +1,165 @@
+package p.projectone.concurrent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * 批量调度器基类
+ * 管理工作线程的生命周期：启动、运行时调整线程数、停止；子类只负责从缓冲区取出一批元素
+ *
+ * 实现方式：按序号编号的工作线程，缩容时序号超出目标数的线程处理完当前批次后退出
+ *
+ * @author Distributed Systems Team
+ */
+public abstract class AbstractBatchDispatcher<E> implements Dispatcher<E> {
+
+    private static final long IDLE_TIMEOUT_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final String name;
+    private final int batchSize;
+    private final Consumer<List<E>> batchHandler;
+    protected final WaitStrategy waitStrategy;
+    // 下标为工作线程序号，已退出的为null
+    private final List<Thread> workers = new ArrayList<>();
+
+    private volatile int targetWorkers = 0;
+    private volatile boolean running = false;
+
+    /**
+     * @param name 工作线程名前缀
+     * @param batchSize 每批最多取出的数量
+     * @param waitStrategy 空闲等待策略
+     * @param batchHandler 批处理回调，在工作线程上执行
+     */
+    protected AbstractBatchDispatcher(String name, int batchSize, WaitStrategy waitStrategy,
+                                      Consumer<List<E>> batchHandler) {
+        this.name = name;
+        this.batchSize = batchSize;
+        this.waitStrategy = waitStrategy;
+        this.batchHandler = batchHandler;
+    }
+
+    /**
+     * 取出一批元素
+     *
+     * @param batch 接收元素的列表
+     * @param maxElements 最多取出的数量
+     * @return 实际取出的数量
+     */
+    protected abstract int drain(List<E> batch, int maxElements);
+
+    /**
+     * 是否有待处理的元素
+     */
+    protected abstract boolean hasPending();
+
+    /**
+     * 启动工作线程
+     *
+     * @param workerCount 工作线程数
+     */
+    public synchronized void start(int workerCount) {
+        if (running) {
+            return;
+        }
+        running = true;
+        resize(workerCount);
+    }
+
+    /**
+     * 调整工作线程数
+     * 扩容立即启动新线程；缩容时多余线程处理完当前批次后退出
+     *
+     * @param workerCount 目标线程数
+     */
+    public synchronized void resize(int workerCount) {
+        if (workerCount < 1) {
+            throw new IllegalArgumentException("workerCount must be positive");
+        }
+        targetWorkers = workerCount;
+        if (!running) {
+            return;
+        }
+        for (int i = 0; i < workerCount; i++) {
+            if (i == workers.size()) {
+                workers.add(null);
+            }
+            if (workers.get(i) == null) {
+                final int index = i;
+                Thread worker = new Thread(() -> workerLoop(index), name + "-" + i);
+                worker.setDaemon(true);
+                workers.set(i, worker);
+                worker.start();
+            }
+        }
+        // 唤醒等待中的线程，让多余的线程尽快退出
+        waitStrategy.signal();
+    }
+
+    /**
+     * 判断序号为index的线程是否应退出，退出前释放其序号
+     */
+    private boolean shouldRetire(int index) {
+        if (running && index < targetWorkers) {
+            return false;
+        }
+        synchronized (this) {
+            if (running && index < targetWorkers) {
+                return false;
+            }
+            retire(index);
+            return true;
+        }
+    }
+
+    private synchronized void retire(int index) {
+        workers.set(index, null);
+    }
+
+    /**
+     * 工作线程主循环：批量取出并处理，空闲时按等待策略等待
+     */
+    private void workerLoop(int index) {
+        List<E> batch = new ArrayList<>(batchSize);
+        while (!shouldRetire(index)) {
+            try {
+                if (drain(batch, batchSize) == 0) {
+                    waitStrategy.waitFor(() -> !running || index >= targetWorkers || hasPending(),
+                        IDLE_TIMEOUT_NANOS);
+                    continue;
+                }
+                batchHandler.accept(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                retire(index);
+                break;
+            } catch (Exception e) {
+                System.err.println(Thread.currentThread().getName() + " 处理批次时发生错误: " + e.getMessage());
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * 目标工作线程数
+     */
+    public int getWorkerCount() {
+        return targetWorkers;
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * 停止工作线程，当前批次处理完后退出
+     */
+    @Override
+    public synchronized void shutdown() {
+        running = false;
+        waitStrategy.signal();
+    }
+}
@@ -0,0 +1,109 @@
+package p.projectone.concurrent;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 自适应并发限制器（AIMD）
+ * 请求在延迟目标内完成时并发上限线性增长（每轮约+1），
+ * 超出延迟目标或被丢弃时按比例收缩；达到上限的请求立即被拒绝，而不是继续排队
+ *
+ * 复杂度：O(1) - 获取和释放
+ * 实现方式：原子计数 + 加性增/乘性减
+ *
+ * @author Distributed Systems Team
+ */
+public class AdaptiveConcurrencyLimiter {
+
+    private static final double BACKOFF_RATIO = 0.9;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final long latencySloNanos;
+
+    private final AtomicInteger inFlight = new AtomicInteger(0);
+    private final AtomicLong rejected = new AtomicLong(0);
+    private volatile double limit;
+    private long lastDecreaseNanos = System.nanoTime();
+
+    /**
+     * @param initialLimit 初始并发上限
+     * @param minLimit 最小并发上限
+     * @param maxLimit 最大并发上限
+     * @param latencySloMillis 延迟目标（毫秒）
+     */
+    public AdaptiveConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit, long latencySloMillis) {
+        this.limit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.latencySloNanos = TimeUnit.MILLISECONDS.toNanos(latencySloMillis);
+    }
+
+    /**
+     * 尝试获取一个并发许可
+     *
+     * @return 已达上限时返回false
+     */
+    public boolean tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= (int) limit) {
+                rejected.incrementAndGet();
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * 释放许可并根据观测结果调整上限
+     *
+     * @param latencyNanos 本次请求耗时（纳秒）
+     * @param dropped 请求是否因超时等原因被丢弃
+     */
+    public void release(long latencyNanos, boolean dropped) {
+        int current = inFlight.getAndDecrement();
+        if (dropped || latencyNanos > latencySloNanos) {
+            decrease();
+        } else if (current * 2 >= limit) {
+            // 只有上限真正被用到时才增长，避免空闲期把上限抬得过高
+            increase();
+        }
+    }
+
+    private synchronized void increase() {
+        limit = Math.min(maxLimit, limit + 1.0 / limit);
+    }
+
+    private synchronized void decrease() {
+        // 一个延迟目标周期内最多收缩一次，避免同一批慢请求把上限压到底
+        long now = System.nanoTime();
+        if (now - lastDecreaseNanos < latencySloNanos) {
+            return;
+        }
+        lastDecreaseNanos = now;
+        limit = Math.max(minLimit, limit * BACKOFF_RATIO);
+    }
+
+    /**
+     * 建议客户端的重试间隔（秒），用于 Retry-After
+     */
+    public long getRetryAfterSeconds() {
+        return Math.max(1, TimeUnit.NANOSECONDS.toSeconds(latencySloNanos));
+    }
+
+    public int getLimit() {
+        return (int) limit;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    public long getRejected() {
+        return rejected.get();
+    }
+}
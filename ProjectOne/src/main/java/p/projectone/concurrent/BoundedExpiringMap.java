@@ -0,0 +1,192 @@
+package p.projectone.concurrent;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+import java.util.function.LongSupplier;
+
+/**
+ * 有界、按TTL过期的并发映射
+ * 条目按首次写入顺序排队，过期时间从首次写入算起，因此队首总是最早过期的条目，
+ * 淘汰只需从队首弹出，不需要扫描整张表。
+ * 队列中存放的是条目的队列节点而不只是键：键过期后重新写入会生成新节点，旧节点留在队列中，
+ * 淘汰时发现表中条目已不属于该节点就直接丢弃，不会挡住后面的过期条目，也不会误删新条目。
+ *
+ * 复杂度：O(1) - 读写；淘汰摊还O(1)
+ * 实现方式：ConcurrentHashMap + 插入顺序队列 + 单线程淘汰
+ *
+ * @author Distributed Systems Team
+ */
+public class BoundedExpiringMap<K, V> {
+
+    private final ConcurrentHashMap<K, Entry<K, V>> entries = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<Node<K>> insertionOrder = new ConcurrentLinkedQueue<>();
+    private final ReentrantLock evictionLock = new ReentrantLock();
+    private final int maxEntries;
+    private final long ttlMillis;
+    private final LongSupplier clock;
+    private final AtomicLong evictions = new AtomicLong(0);
+
+    /**
+     * @param maxEntries 最大条目数
+     * @param ttlMillis 条目存活时间（毫秒）
+     */
+    public BoundedExpiringMap(int maxEntries, long ttlMillis) {
+        this(maxEntries, ttlMillis, System::currentTimeMillis);
+    }
+
+    /**
+     * @param clock 毫秒时钟，测试中替换
+     */
+    BoundedExpiringMap(int maxEntries, long ttlMillis, LongSupplier clock) {
+        this.maxEntries = maxEntries;
+        this.ttlMillis = ttlMillis;
+        this.clock = clock;
+    }
+
+    /**
+     * 写入条目；键已存在时替换值，但保留首次写入时间
+     */
+    public void put(K key, V value) {
+        long now = clock.getAsLong();
+        Node<K> node = new Node<>(key);
+        Entry<K, V> stored = entries.compute(key, (k, previous) ->
+            previous == null || previous.isExpired(now, ttlMillis)
+                ? new Entry<>(value, now, node)
+                : new Entry<>(value, previous.createdAt, previous.node));
+        if (stored.node == node) {
+            insertionOrder.add(node);
+        }
+        evict(now);
+    }
+
+    /**
+     * 键不存在时写入
+     *
+     * @return 已存在的未过期值，写入成功时返回null
+     */
+    public V putIfAbsent(K key, V value) {
+        long now = clock.getAsLong();
+        Entry<K, V> created = new Entry<>(value, now, new Node<>(key));
+        while (true) {
+            Entry<K, V> existing = entries.putIfAbsent(key, created);
+            if (existing == null) {
+                insertionOrder.add(created.node);
+                evict(now);
+                return null;
+            }
+            if (!existing.isExpired(now, ttlMillis)) {
+                return existing.value;
+            }
+            entries.remove(key, existing);
+        }
+    }
+
+    /**
+     * 读取未过期的值
+     */
+    public V get(K key) {
+        Entry<K, V> entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.isExpired(clock.getAsLong(), ttlMillis)) {
+            entries.remove(key, entry);
+            return null;
+        }
+        return entry.value;
+    }
+
+    public V remove(K key) {
+        Entry<K, V> entry = entries.remove(key);
+        return entry != null ? entry.value : null;
+    }
+
+    /**
+     * 遍历未过期的条目，弱一致：遍历期间的写入可能可见也可能不可见
+     */
+    public void forEach(BiConsumer<? super K, ? super V> action) {
+        long now = clock.getAsLong();
+        entries.forEach((key, entry) -> {
+            if (!entry.isExpired(now, ttlMillis)) {
+                action.accept(key, entry.value);
+            }
+        });
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    /**
+     * 从队首淘汰过期或超出容量的条目；同一时刻只有一个线程执行淘汰
+     * 队首节点已不对应表中条目（被删除、过期后重新写入）时直接丢弃
+     */
+    private void evict(long now) {
+        if (!evictionLock.tryLock()) {
+            return;
+        }
+        try {
+            Node<K> node;
+            while ((node = insertionOrder.peek()) != null) {
+                Entry<K, V> entry = entries.get(node.key);
+                if (entry == null || entry.node != node) {
+                    insertionOrder.poll();
+                    continue;
+                }
+                if (entries.size() <= maxEntries && !entry.isExpired(now, ttlMillis)) {
+                    break;
+                }
+                insertionOrder.poll();
+                Node<K> head = node;
+                boolean[] removed = {false};
+                // 值可能刚被替换（同一节点），按节点而不是按条目删除
+                entries.computeIfPresent(head.key, (k, current) -> {
+                    if (current.node != head) {
+                        return current;
+                    }
+                    removed[0] = true;
+                    return null;
+                });
+                if (removed[0]) {
+                    evictions.incrementAndGet();
+                }
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    /**
+     * 插入顺序队列中的节点，条目首次写入时创建，替换值时沿用
+     */
+    private static final class Node<K> {
+        final K key;
+
+        Node(K key) {
+            this.key = key;
+        }
+    }
+
+    private static final class Entry<K, V> {
+        final V value;
+        final long createdAt;
+        final Node<K> node;
+
+        Entry(V value, long createdAt, Node<K> node) {
+            this.value = value;
+            this.createdAt = createdAt;
+            this.node = node;
+        }
+
+        boolean isExpired(long now, long ttlMillis) {
+            return now - createdAt > ttlMillis;
+        }
+    }
+}
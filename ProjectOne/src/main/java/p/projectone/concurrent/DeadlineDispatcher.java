@@ -0,0 +1,263 @@
+package p.projectone.concurrent;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+import java.util.function.ToIntFunction;
+import java.util.function.ToLongFunction;
+
+/**
+ * 截止时间优先（EDF）调度器
+ * 每个优先级一个环形缓冲区作为入口，生产者无锁提交；工作线程取批时先把各入口中的元素移入该优先级的
+ * 最小堆（按截止时间排序），同一优先级内客户端超时不同也严格按截止时间出队，
+ * 再在各优先级的堆顶之间选择截止时间最早的一个批量取出。
+ * 饥饿保护按每个优先级中等待最久的元素计算：其等待时间超过阈值时优先服务该优先级，并按到达顺序取出，
+ * 保证等待最久的元素确实被处理。
+ *
+ * 复杂度：O(1) - 提交；O(log n) - 每个元素入堆和出堆；O(k) - 每次选择，k为优先级数量
+ * 实现方式：按优先级分组的环形缓冲区 + 消费侧最小堆和到达顺序队列（惰性删除）+ 饥饿保护
+ *
+ * @author Distributed Systems Team
+ */
+public class DeadlineDispatcher<E> extends AbstractBatchDispatcher<E> {
+
+    // 截止时间相同时先到先出
+    private static final Comparator<Pending<?>> BY_DEADLINE =
+        Comparator.<Pending<?>>comparingLong(p -> p.deadline).thenComparingLong(p -> p.arrival);
+
+    private final List<Level> levels;
+    private final int capacity;
+    private final ToIntFunction<E> priorityFunction;
+    private final ToLongFunction<E> deadlineFunction;
+    private final long starvationNanos;
+    private final LongSupplier clock;
+    // 移入堆和取批都在这把锁内完成，生产者不经过这里
+    private final ReentrantLock stagingLock = new ReentrantLock();
+    private long arrivals = 0;
+
+    /**
+     * @param name 工作线程名前缀
+     * @param priorityLevels 优先级数量，0为最高
+     * @param capacity 每个优先级的容量
+     * @param batchSize 每批最多取出的数量
+     * @param waitStrategy 空闲等待策略
+     * @param priorityFunction 元素的优先级
+     * @param deadlineFunction 元素的截止时间（毫秒时间戳）
+     * @param starvationMillis 饥饿阈值（毫秒）
+     * @param batchHandler 批处理回调，在工作线程上执行
+     */
+    public DeadlineDispatcher(String name, int priorityLevels, int capacity, int batchSize,
+                              WaitStrategy waitStrategy, ToIntFunction<E> priorityFunction,
+                              ToLongFunction<E> deadlineFunction, long starvationMillis,
+                              Consumer<List<E>> batchHandler) {
+        this(name, priorityLevels, capacity, batchSize, waitStrategy, priorityFunction, deadlineFunction,
+            starvationMillis, batchHandler, System::nanoTime);
+    }
+
+    /**
+     * @param clock 纳秒时钟，测试中替换
+     */
+    DeadlineDispatcher(String name, int priorityLevels, int capacity, int batchSize,
+                       WaitStrategy waitStrategy, ToIntFunction<E> priorityFunction,
+                       ToLongFunction<E> deadlineFunction, long starvationMillis,
+                       Consumer<List<E>> batchHandler, LongSupplier clock) {
+        super(name, batchSize, waitStrategy, batchHandler);
+        this.levels = new ArrayList<>(priorityLevels);
+        for (int i = 0; i < priorityLevels; i++) {
+            levels.add(new Level(capacity));
+        }
+        this.capacity = capacity;
+        this.priorityFunction = priorityFunction;
+        this.deadlineFunction = deadlineFunction;
+        this.starvationNanos = TimeUnit.MILLISECONDS.toNanos(starvationMillis);
+        this.clock = clock;
+    }
+
+    @Override
+    public boolean offer(E element) {
+        Level level = levels.get(priorityFunction.applyAsInt(element));
+        // 容量按入口和堆中的元素合计，入口缓冲区本身不会先满
+        if (!level.reserve()) {
+            return false;
+        }
+        if (!level.ring.offer(new Pending<>(element, deadlineFunction.applyAsLong(element), clock.getAsLong()))) {
+            level.depth.decrementAndGet();
+            return false;
+        }
+        waitStrategy.signal();
+        return true;
+    }
+
+    @Override
+    protected int drain(List<E> batch, int maxElements) {
+        stagingLock.lock();
+        try {
+            long now = clock.getAsLong();
+            int starved = -1;
+            long oldestArrival = Long.MAX_VALUE;
+            int earliest = -1;
+            long earliestDeadline = Long.MAX_VALUE;
+            for (int i = 0; i < levels.size(); i++) {
+                Level level = levels.get(i);
+                level.stage();
+                Pending<E> oldest = level.oldest();
+                if (oldest == null) {
+                    continue;
+                }
+                // 饥饿保护：取最老元素等待最久的那个优先级
+                if (now - oldest.enqueuedNanos > starvationNanos && oldest.enqueuedNanos < oldestArrival) {
+                    oldestArrival = oldest.enqueuedNanos;
+                    starved = i;
+                }
+                long deadline = level.earliest().deadline;
+                if (deadline < earliestDeadline) {
+                    earliestDeadline = deadline;
+                    earliest = i;
+                }
+            }
+            if (starved >= 0) {
+                return levels.get(starved).take(batch, maxElements, true);
+            }
+            return earliest >= 0 ? levels.get(earliest).take(batch, maxElements, false) : 0;
+        } finally {
+            stagingLock.unlock();
+        }
+    }
+
+    @Override
+    protected boolean hasPending() {
+        for (Level level : levels) {
+            if (level.depth.get() > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 各优先级当前排队数量
+     */
+    public int[] getPriorityDepths() {
+        int[] depths = new int[levels.size()];
+        for (int i = 0; i < depths.length; i++) {
+            depths[i] = levels.get(i).depth.get();
+        }
+        return depths;
+    }
+
+    @Override
+    public int size() {
+        int size = 0;
+        for (Level level : levels) {
+            size += level.depth.get();
+        }
+        return size;
+    }
+
+    @Override
+    public int capacity() {
+        return levels.size() * capacity;
+    }
+
+    /**
+     * 一个优先级：无锁入口 + 按截止时间的堆 + 按到达顺序的队列
+     * 堆和队列持有同一批元素，取出时标记taken，另一侧遇到时丢弃；到达顺序队列中已取出的元素最多
+     * 积压到最老元素被取出为止，饥饿保护保证这不超过饥饿阈值内的到达量
+     */
+    private final class Level {
+        final RingBuffer<Pending<E>> ring;
+        final AtomicInteger depth = new AtomicInteger(0);
+        // 以下仅在stagingLock内访问
+        final PriorityQueue<Pending<E>> byDeadline = new PriorityQueue<>(BY_DEADLINE);
+        final ArrayDeque<Pending<E>> byArrival = new ArrayDeque<>();
+        final List<Pending<E>> incoming = new ArrayList<>();
+
+        Level(int capacity) {
+            this.ring = new RingBuffer<>(Math.max(2, capacity));
+        }
+
+        boolean reserve() {
+            while (true) {
+                int current = depth.get();
+                if (current >= capacity) {
+                    return false;
+                }
+                if (depth.compareAndSet(current, current + 1)) {
+                    return true;
+                }
+            }
+        }
+
+        /**
+         * 把入口中已发布的元素移入堆和到达顺序队列
+         */
+        void stage() {
+            ring.drainTo(incoming, Integer.MAX_VALUE);
+            for (Pending<E> pending : incoming) {
+                pending.arrival = arrivals++;
+                byDeadline.add(pending);
+                byArrival.addLast(pending);
+            }
+            incoming.clear();
+        }
+
+        Pending<E> oldest() {
+            while (!byArrival.isEmpty() && byArrival.peekFirst().taken) {
+                byArrival.pollFirst();
+            }
+            return byArrival.peekFirst();
+        }
+
+        Pending<E> earliest() {
+            while (!byDeadline.isEmpty() && byDeadline.peek().taken) {
+                byDeadline.poll();
+            }
+            return byDeadline.peek();
+        }
+
+        /**
+         * @param fifo true时按到达顺序取出（饥饿时），否则按截止时间
+         */
+        int take(List<E> batch, int maxElements, boolean fifo) {
+            int count = 0;
+            while (count < maxElements) {
+                Pending<E> next = fifo ? oldest() : earliest();
+                if (next == null) {
+                    break;
+                }
+                if (fifo) {
+                    byArrival.pollFirst();
+                } else {
+                    byDeadline.poll();
+                }
+                next.taken = true;
+                batch.add(next.element);
+                count++;
+            }
+            depth.addAndGet(-count);
+            return count;
+        }
+    }
+
+    private static final class Pending<E> {
+        final E element;
+        final long deadline;
+        final long enqueuedNanos;
+        // 以下仅在stagingLock内访问
+        long arrival;
+        boolean taken;
+
+        Pending(E element, long deadline, long enqueuedNanos) {
+            this.element = element;
+            this.deadline = deadline;
+            this.enqueuedNanos = enqueuedNanos;
+        }
+    }
+}
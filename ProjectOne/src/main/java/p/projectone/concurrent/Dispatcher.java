@@ -0,0 +1,33 @@
+package p.projectone.concurrent;
+
+/**
+ * 请求调度器
+ * 生产者提交元素，由调度器自己的工作线程批量处理
+ *
+ * @author Distributed Systems Team
+ */
+public interface Dispatcher<E> {
+
+    /**
+     * 提交一个元素
+     *
+     * @param element 元素
+     * @return 队列已满时返回false
+     */
+    boolean offer(E element);
+
+    /**
+     * 排队中的元素数量
+     */
+    int size();
+
+    /**
+     * 队列总容量
+     */
+    int capacity();
+
+    /**
+     * 停止工作线程
+     */
+    void shutdown();
+}
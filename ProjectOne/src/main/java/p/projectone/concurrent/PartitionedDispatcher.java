@@ -0,0 +1,390 @@
+package p.projectone.concurrent;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * 按键分区的单线程通道调度器
+ * 键先哈希到固定数量的桶，桶再映射到通道；每个通道只有一个工作线程和自己的队列，
+ * 同一个键的请求天然串行，不同通道之间互不竞争。
+ *
+ * 再平衡：后台线程把积压最深通道上负载最高的桶迁移到最浅的通道。迁移立即生效，
+ * 新请求进入新通道；旧通道里尚未处理完的该桶请求形成一道"栅栏"，新通道会先跳过
+ * 该桶的请求继续处理其他请求，直到旧请求全部完成，因此同一个键永远不会被两个通道同时处理。
+ *
+ * 每个桶的状态打包在一个long里：纪元(16位) | 通道(16位) | 排队数(32位)，
+ * 提交时一次CAS同时完成计数和读取通道，迁移时一次CAS同时切换通道和纪元。
+ *
+ * 复杂度：O(1) - 提交；再平衡 O(桶数)
+ * 实现方式：哈希分桶 + 单线程环形缓冲区通道 + 带栅栏的桶迁移
+ *
+ * @author Distributed Systems Team
+ */
+public class PartitionedDispatcher<E> implements Dispatcher<E> {
+
+    private static final int BUCKETS_PER_LANE = 16;
+    private static final long REBALANCE_INTERVAL_MS = 200;
+    // 最深通道比最浅通道至少多出这么多请求时才迁移
+    private static final int REBALANCE_THRESHOLD = 8;
+    // 每轮最多迁移的桶数，分别迁往不同的浅通道
+    private static final int MAX_MIGRATIONS_PER_ROUND = 4;
+    private static final long IDLE_TIMEOUT_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    // 有被栅栏挡住的请求时，空闲等待改为短间隔重试
+    private static final long FENCED_RETRY_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final Function<E, String> keyFunction;
+    private final Consumer<List<E>> batchHandler;
+    private final int batchSize;
+    private final List<Lane> lanes = new ArrayList<>();
+    private final AtomicLongArray bucketState;
+    // 迁移前留在旧通道、尚未完成的请求数
+    private final AtomicIntegerArray oldPending;
+    private final AtomicLongArray bucketLoad;
+    private final AtomicLong rebalances = new AtomicLong(0);
+    private final Thread rebalancer;
+
+    private volatile boolean running = true;
+
+    /**
+     * @param name 通道线程名前缀
+     * @param laneCount 通道数
+     * @param laneCapacity 每个通道的队列容量
+     * @param batchSize 每批最多取出的数量
+     * @param waitStrategyName 空闲等待策略名
+     * @param keyFunction 分区键（如用户ID）
+     * @param batchHandler 批处理回调，在通道线程上执行
+     */
+    public PartitionedDispatcher(String name, int laneCount, int laneCapacity, int batchSize,
+                                 String waitStrategyName, Function<E, String> keyFunction,
+                                 Consumer<List<E>> batchHandler) {
+        this.keyFunction = keyFunction;
+        this.batchHandler = batchHandler;
+        this.batchSize = batchSize;
+
+        int bucketCount = laneCount * BUCKETS_PER_LANE;
+        this.bucketState = new AtomicLongArray(bucketCount);
+        this.oldPending = new AtomicIntegerArray(bucketCount);
+        this.bucketLoad = new AtomicLongArray(bucketCount);
+        for (int bucket = 0; bucket < bucketCount; bucket++) {
+            bucketState.set(bucket, pack(0, bucket % laneCount, 0));
+        }
+
+        for (int i = 0; i < laneCount; i++) {
+            Lane lane = new Lane(laneCapacity, WaitStrategy.forName(waitStrategyName));
+            lanes.add(lane);
+            Thread worker = new Thread(lane, name + "-" + i);
+            worker.setDaemon(true);
+            worker.start();
+        }
+
+        this.rebalancer = new Thread(this::rebalanceLoop, name + "-Rebalancer");
+        rebalancer.setDaemon(true);
+        rebalancer.start();
+    }
+
+    /**
+     * 提交元素到其键所属的通道
+     */
+    @Override
+    public boolean offer(E element) {
+        int bucket = bucketOf(element);
+        long state;
+        do {
+            state = bucketState.get(bucket);
+        } while (!bucketState.compareAndSet(bucket, state, state + 1));
+
+        Lane lane = lanes.get(laneOf(state));
+        Slot<E> slot = new Slot<>(element, bucket, epochOf(state));
+        if (!lane.ring.offer(slot)) {
+            complete(slot);
+            return false;
+        }
+        lane.waitStrategy.signal();
+        bucketLoad.incrementAndGet(bucket);
+        return true;
+    }
+
+    private int bucketOf(E element) {
+        int hash = keyFunction.apply(element).hashCode();
+        hash ^= (hash >>> 16);
+        return Math.floorMod(hash, bucketState.length());
+    }
+
+    /**
+     * 请求处理完成：属于当前纪元则减少桶计数，否则减少旧通道计数
+     */
+    private void complete(Slot<E> slot) {
+        while (true) {
+            long state = bucketState.get(slot.bucket);
+            if (epochOf(state) != slot.epoch) {
+                oldPending.decrementAndGet(slot.bucket);
+                return;
+            }
+            if (bucketState.compareAndSet(slot.bucket, state, state - 1)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * 请求是否被栅栏挡住：它属于迁移后的新纪元，而旧通道里该桶还有请求未完成
+     */
+    private boolean isFenced(Slot<E> slot) {
+        return oldPending.get(slot.bucket) > 0 && epochOf(bucketState.get(slot.bucket)) == slot.epoch;
+    }
+
+    /**
+     * 把桶迁移到目标通道；上一次迁移的旧请求尚未完成时不迁移
+     */
+    private boolean migrate(int bucket, int targetLane) {
+        if (oldPending.get(bucket) != 0) {
+            return false;
+        }
+        long state = bucketState.get(bucket);
+        int pending = countOf(state);
+        // 先登记旧请求数再切换，保证栅栏不会提前打开
+        oldPending.addAndGet(bucket, pending);
+        long next = pack((epochOf(state) + 1) & 0xFFFF, targetLane, 0);
+        if (bucketState.compareAndSet(bucket, state, next)) {
+            return true;
+        }
+        oldPending.addAndGet(bucket, -pending);
+        return false;
+    }
+
+    /**
+     * 再平衡主循环
+     */
+    private void rebalanceLoop() {
+        while (running) {
+            try {
+                TimeUnit.MILLISECONDS.sleep(REBALANCE_INTERVAL_MS);
+                rebalance();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * 把积压最深通道上近期负载最高的几个桶迁移到较浅的通道
+     */
+    void rebalance() {
+        int[] depths = getLaneDepths();
+        int deepest = 0;
+        for (int i = 1; i < depths.length; i++) {
+            if (depths[i] > depths[deepest]) {
+                deepest = i;
+            }
+        }
+
+        for (int round = 0; round < MAX_MIGRATIONS_PER_ROUND; round++) {
+            int shallowest = deepest == 0 ? 1 : 0;
+            for (int i = 0; i < depths.length; i++) {
+                if (i != deepest && depths[i] < depths[shallowest]) {
+                    shallowest = i;
+                }
+            }
+            if (depths[deepest] - depths[shallowest] < REBALANCE_THRESHOLD) {
+                break;
+            }
+
+            int candidate = -1;
+            for (int bucket = 0; bucket < bucketState.length(); bucket++) {
+                if (laneOf(bucketState.get(bucket)) == deepest && oldPending.get(bucket) == 0
+                        && (candidate < 0 || bucketLoad.get(bucket) > bucketLoad.get(candidate))) {
+                    candidate = bucket;
+                }
+            }
+            // 通道只剩一个桶时迁移没有意义
+            if (candidate < 0 || bucketLoad.get(candidate) == 0 || bucketsOnLane(deepest) <= 1
+                    || !migrate(candidate, shallowest)) {
+                break;
+            }
+            rebalances.incrementAndGet();
+            // 按该桶排队数估算迁移后的深度，下一轮选另一个浅通道
+            int moved = oldPending.get(candidate);
+            depths[deepest] -= moved;
+            depths[shallowest] += moved + REBALANCE_THRESHOLD;
+        }
+
+        // 负载按周期衰减，只反映最近的热点
+        for (int bucket = 0; bucket < bucketLoad.length(); bucket++) {
+            bucketLoad.set(bucket, bucketLoad.get(bucket) / 2);
+        }
+    }
+
+    private int bucketsOnLane(int lane) {
+        int count = 0;
+        for (int bucket = 0; bucket < bucketState.length(); bucket++) {
+            if (laneOf(bucketState.get(bucket)) == lane) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static long pack(int epoch, int lane, int count) {
+        return ((long) epoch << 48) | ((long) lane << 32) | (count & 0xFFFFFFFFL);
+    }
+
+    private static int epochOf(long state) {
+        return (int) (state >>> 48);
+    }
+
+    private static int laneOf(long state) {
+        return (int) ((state >>> 32) & 0xFFFF);
+    }
+
+    private static int countOf(long state) {
+        return (int) state;
+    }
+
+    /**
+     * 各通道当前排队深度（含被栅栏挡住的请求）
+     */
+    public int[] getLaneDepths() {
+        int[] depths = new int[lanes.size()];
+        for (int i = 0; i < depths.length; i++) {
+            depths[i] = lanes.get(i).depth();
+        }
+        return depths;
+    }
+
+    public long getRebalanceCount() {
+        return rebalances.get();
+    }
+
+    public int getLaneCount() {
+        return lanes.size();
+    }
+
+    @Override
+    public int size() {
+        int size = 0;
+        for (Lane lane : lanes) {
+            size += lane.depth();
+        }
+        return size;
+    }
+
+    @Override
+    public int capacity() {
+        return lanes.size() * lanes.get(0).ring.capacity();
+    }
+
+    @Override
+    public void shutdown() {
+        running = false;
+        rebalancer.interrupt();
+        for (Lane lane : lanes) {
+            lane.waitStrategy.signal();
+        }
+    }
+
+    /**
+     * 单线程通道
+     */
+    private final class Lane implements Runnable {
+        final RingBuffer<Slot<E>> ring;
+        final WaitStrategy waitStrategy;
+        // 仅通道线程访问
+        private final List<Slot<E>> deferred = new ArrayList<>();
+        private volatile int deferredCount = 0;
+
+        Lane(int capacity, WaitStrategy waitStrategy) {
+            this.ring = new RingBuffer<>(capacity);
+            this.waitStrategy = waitStrategy;
+        }
+
+        int depth() {
+            return ring.size() + deferredCount;
+        }
+
+        @Override
+        public void run() {
+            List<Slot<E>> incoming = new ArrayList<>(batchSize);
+            List<Slot<E>> ready = new ArrayList<>(batchSize);
+            List<E> batch = new ArrayList<>(batchSize);
+
+            while (running) {
+                try {
+                    ring.drainTo(incoming, batchSize);
+
+                    // 先放行栅栏已打开的旧请求，保持同一个桶内的顺序
+                    Iterator<Slot<E>> it = deferred.iterator();
+                    while (it.hasNext()) {
+                        Slot<E> slot = it.next();
+                        if (!isFenced(slot)) {
+                            ready.add(slot);
+                            it.remove();
+                        }
+                    }
+                    for (Slot<E> slot : incoming) {
+                        if (isFenced(slot) || isDeferred(slot.bucket)) {
+                            deferred.add(slot);
+                        } else {
+                            ready.add(slot);
+                        }
+                    }
+                    deferredCount = deferred.size();
+
+                    if (ready.isEmpty()) {
+                        waitStrategy.waitFor(() -> !running || !ring.isEmpty(),
+                            deferred.isEmpty() ? IDLE_TIMEOUT_NANOS : FENCED_RETRY_NANOS);
+                        continue;
+                    }
+
+                    for (Slot<E> slot : ready) {
+                        batch.add(slot.element);
+                    }
+                    try {
+                        batchHandler.accept(batch);
+                    } finally {
+                        for (Slot<E> slot : ready) {
+                            complete(slot);
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                } catch (Exception e) {
+                    System.err.println(Thread.currentThread().getName() + " 处理批次时发生错误: " + e.getMessage());
+                } finally {
+                    incoming.clear();
+                    ready.clear();
+                    batch.clear();
+                }
+            }
+        }
+
+        private boolean isDeferred(int bucket) {
+            for (Slot<E> slot : deferred) {
+                if (slot.bucket == bucket) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    private static final class Slot<E> {
+        final E element;
+        final int bucket;
+        final int epoch;
+
+        Slot(E element, int bucket, int epoch) {
+            this.element = element;
+            this.bucket = bucket;
+            this.epoch = epoch;
+        }
+    }
+}
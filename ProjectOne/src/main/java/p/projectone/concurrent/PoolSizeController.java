@@ -0,0 +1,157 @@
+package p.projectone.concurrent;
+
+/**
+ * 工作线程数控制器
+ * 按利特尔法则估算所需并发：L = λ × S，线程数取 L / 目标利用率；排队等待超过目标时额外扩容。
+ * 服务时间明显高于基线时视为下游饱和，不再扩容，并按吞吐 × 基线服务时间回落，避免线程越多下游越慢
+ *
+ * 复杂度：O(1) - 每个采样周期
+ * 实现方式：利特尔法则 + EWMA平滑 + 步长限制与缩容迟滞
+ *
+ * @author Distributed Systems Team
+ */
+public class PoolSizeController {
+
+    // EWMA平滑系数
+    private static final double ALPHA = 0.5;
+    // 服务时间超过基线该倍数视为下游饱和
+    private static final double SATURATION_RATIO = 2.0;
+    // 目标线程数低于当前的该比例才缩容
+    private static final double SHRINK_HYSTERESIS = 0.75;
+
+    private final int minSize;
+    private final int maxSize;
+    private final double targetUtilization;
+    private final double queueWaitTargetMillis;
+
+    private double serviceMillisEwma = -1;
+    private double arrivalRateEwma = -1;
+    // 观测到的最低服务时间，缓慢上浮以适应下游变化
+    private double baselineServiceMillis = -1;
+
+    /**
+     * @param minSize 最小线程数
+     * @param maxSize 最大线程数
+     * @param targetUtilization 目标利用率（0-1）
+     * @param queueWaitTargetMillis 平均排队等待目标（毫秒）
+     */
+    public PoolSizeController(int minSize, int maxSize, double targetUtilization, long queueWaitTargetMillis) {
+        if (minSize < 1 || maxSize < minSize) {
+            throw new IllegalArgumentException("invalid pool bounds: " + minSize + ".." + maxSize);
+        }
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.targetUtilization = targetUtilization;
+        this.queueWaitTargetMillis = queueWaitTargetMillis;
+    }
+
+    /**
+     * 根据一个采样周期的测量值计算目标线程数
+     *
+     * @param currentSize 当前线程数
+     * @param intervalMillis 采样周期（毫秒）
+     * @param arrivals 周期内到达的请求数
+     * @param completions 周期内处理完成的请求数
+     * @param avgServiceMillis 周期内平均服务时间（含下游Redis/Mongo耗时）
+     * @param avgQueueWaitMillis 周期内平均排队等待
+     * @return 调整决策
+     */
+    public synchronized Decision evaluate(int currentSize, long intervalMillis, long arrivals, long completions,
+                                          double avgServiceMillis, double avgQueueWaitMillis) {
+        double arrivalRate = arrivals * 1000.0 / Math.max(1, intervalMillis);
+        // 到达率上升立即采用，下降时平滑，突发时尽快扩容
+        arrivalRateEwma = arrivalRateEwma < 0 || arrivalRate > arrivalRateEwma
+            ? arrivalRate : ALPHA * arrivalRate + (1 - ALPHA) * arrivalRateEwma;
+
+        if (arrivals == 0 && completions == 0) {
+            int target = Math.max(minSize, currentSize - 1);
+            return new Decision(currentSize, target, arrivalRateEwma, serviceMillisEwma, avgQueueWaitMillis, "idle");
+        }
+
+        if (completions > 0) {
+            serviceMillisEwma = serviceMillisEwma < 0
+                ? avgServiceMillis : ALPHA * avgServiceMillis + (1 - ALPHA) * serviceMillisEwma;
+            baselineServiceMillis = baselineServiceMillis < 0
+                ? serviceMillisEwma : Math.min(baselineServiceMillis * 1.01, serviceMillisEwma);
+        }
+        if (serviceMillisEwma < 0) {
+            // 还没有完成的请求，无法估算服务时间
+            return new Decision(currentSize, currentSize, arrivalRateEwma, 0, avgQueueWaitMillis, "warming up");
+        }
+
+        // 利特尔法则：平均在处理中的请求数
+        double inService = arrivalRateEwma * serviceMillisEwma / 1000.0;
+        int target = (int) Math.ceil(inService / targetUtilization);
+        String reason = "little's law";
+
+        boolean saturated = serviceMillisEwma > baselineServiceMillis * SATURATION_RATIO;
+        if (avgQueueWaitMillis > queueWaitTargetMillis && !saturated) {
+            // 有积压：除稳态需求外再补足排空积压的并发
+            target = Math.max(target, currentSize + Math.max(1, currentSize / 4));
+            reason = "queue wait above target";
+        }
+        if (saturated) {
+            // 下游饱和：按实际吞吐和基线服务时间估算，多出的线程只会在下游排队
+            double completionRate = completions * 1000.0 / Math.max(1, intervalMillis);
+            target = Math.min(currentSize,
+                (int) Math.ceil(completionRate * baselineServiceMillis / 1000.0 / targetUtilization));
+            reason = "downstream saturated";
+        }
+
+        // 步长限制：扩容至多翻倍，缩容需低于迟滞阈值且每次至多减四分之一
+        if (target > currentSize) {
+            target = Math.min(target, currentSize * 2);
+        } else if (target < currentSize) {
+            if (target >= currentSize * SHRINK_HYSTERESIS) {
+                target = currentSize;
+            } else {
+                target = Math.max(target, currentSize - Math.max(1, currentSize / 4));
+            }
+        }
+        target = Math.max(minSize, Math.min(maxSize, target));
+        return new Decision(currentSize, target, arrivalRateEwma, serviceMillisEwma, avgQueueWaitMillis, reason);
+    }
+
+    /**
+     * 一次调整决策
+     */
+    public static class Decision {
+        private final long timestamp;
+        private final int fromSize;
+        private final int toSize;
+        private final double arrivalRate;
+        private final double serviceMillis;
+        private final double queueWaitMillis;
+        private final String reason;
+
+        public Decision(int fromSize, int toSize, double arrivalRate, double serviceMillis,
+                        double queueWaitMillis, String reason) {
+            this.timestamp = System.currentTimeMillis();
+            this.fromSize = fromSize;
+            this.toSize = toSize;
+            this.arrivalRate = arrivalRate;
+            this.serviceMillis = serviceMillis;
+            this.queueWaitMillis = queueWaitMillis;
+            this.reason = reason;
+        }
+
+        public boolean isResize() {
+            return fromSize != toSize;
+        }
+
+        // Getter方法
+        public long getTimestamp() { return timestamp; }
+        public int getFromSize() { return fromSize; }
+        public int getToSize() { return toSize; }
+        public double getArrivalRate() { return arrivalRate; }
+        public double getServiceMillis() { return serviceMillis; }
+        public double getQueueWaitMillis() { return queueWaitMillis; }
+        public String getReason() { return reason; }
+
+        @Override
+        public String toString() {
+            return String.format("%d -> %d (%s, rate=%.1f/s, S=%.1fms, Wq=%.1fms)",
+                fromSize, toSize, reason, arrivalRate, serviceMillis, queueWaitMillis);
+        }
+    }
+}
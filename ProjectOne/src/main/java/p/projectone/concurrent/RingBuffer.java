@@ -0,0 +1,142 @@
+package p.projectone.concurrent;
+
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 有界多生产者/多消费者环形缓冲区
+ * 每个槽位带一个序号，生产者和消费者只通过CAS推进各自的游标，不使用锁
+ *
+ * 复杂度：O(1) - 入队；O(k) - 批量取出k个元素
+ * 实现方式：序号槽位数组 + CAS游标（Vyukov MPMC队列）
+ *
+ * @author Distributed Systems Team
+ */
+public class RingBuffer<E> {
+
+    private final Object[] buffer;
+    private final AtomicLongArray sequences;
+    private final int mask;
+
+    // 生产者和消费者游标
+    private final AtomicLong enqueuePosition = new AtomicLong(0);
+    private final AtomicLong dequeuePosition = new AtomicLong(0);
+
+    /**
+     * @param capacity 容量，向上取整为2的幂
+     */
+    public RingBuffer(int capacity) {
+        if (capacity < 2) {
+            throw new IllegalArgumentException("capacity must be at least 2");
+        }
+        int size = Integer.highestOneBit(capacity - 1) << 1;
+        this.buffer = new Object[size];
+        this.sequences = new AtomicLongArray(size);
+        this.mask = size - 1;
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    /**
+     * 尝试写入一个元素
+     *
+     * @param element 元素
+     * @return 缓冲区已满时返回false
+     */
+    public boolean offer(E element) {
+        if (element == null) {
+            throw new NullPointerException();
+        }
+        long position = enqueuePosition.get();
+        while (true) {
+            int index = (int) (position & mask);
+            long diff = sequences.get(index) - position;
+            if (diff == 0) {
+                if (enqueuePosition.compareAndSet(position, position + 1)) {
+                    buffer[index] = element;
+                    sequences.set(index, position + 1);
+                    return true;
+                }
+                position = enqueuePosition.get();
+            } else if (diff < 0) {
+                return false;
+            } else {
+                position = enqueuePosition.get();
+            }
+        }
+    }
+
+    /**
+     * 批量取出已发布的元素，一次CAS认领一段连续槽位
+     *
+     * @param sink 接收元素的集合
+     * @param maxElements 最多取出的数量
+     * @return 实际取出的数量
+     */
+    @SuppressWarnings("unchecked")
+    public int drainTo(Collection<? super E> sink, int maxElements) {
+        while (true) {
+            long position = dequeuePosition.get();
+            int count = 0;
+            while (count < maxElements) {
+                long p = position + count;
+                if (sequences.get((int) (p & mask)) != p + 1) {
+                    break;
+                }
+                count++;
+            }
+
+            if (count == 0) {
+                if (dequeuePosition.get() == position) {
+                    return 0;
+                }
+                continue;
+            }
+
+            if (dequeuePosition.compareAndSet(position, position + count)) {
+                for (int i = 0; i < count; i++) {
+                    long p = position + i;
+                    int index = (int) (p & mask);
+                    E element = (E) buffer[index];
+                    buffer[index] = null;
+                    sequences.set(index, p + buffer.length);
+                    sink.add(element);
+                }
+                return count;
+            }
+        }
+    }
+
+    /**
+     * 查看队首元素但不取出（并发下仅作调度参考，可能已被其他消费者取走）
+     *
+     * @return 队首元素，为空时返回null
+     */
+    @SuppressWarnings("unchecked")
+    public E peek() {
+        long position = dequeuePosition.get();
+        int index = (int) (position & mask);
+        if (sequences.get(index) != position + 1) {
+            return null;
+        }
+        return (E) buffer[index];
+    }
+
+    /**
+     * 当前元素数量（并发下为近似值）
+     */
+    public int size() {
+        long size = enqueuePosition.get() - dequeuePosition.get();
+        return (int) Math.max(0, Math.min(size, buffer.length));
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    public int capacity() {
+        return buffer.length;
+    }
+}
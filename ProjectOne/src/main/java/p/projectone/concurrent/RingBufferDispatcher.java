@@ -0,0 +1,66 @@
+package p.projectone.concurrent;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * 环形缓冲区调度器
+ * 生产者直接写入有界环形缓冲区，工作线程批量取出后直接处理，中间没有调度线程和二次排队
+ *
+ * 复杂度：O(1) - 提交；O(k) - 每批处理k个请求
+ * 实现方式：MPMC环形缓冲区 + 批量取出 + 可配置等待策略
+ *
+ * @author Distributed Systems Team
+ */
+public class RingBufferDispatcher<E> extends AbstractBatchDispatcher<E> {
+
+    private final RingBuffer<E> ringBuffer;
+
+    /**
+     * @param name 工作线程名前缀
+     * @param capacity 缓冲区容量
+     * @param batchSize 每批最多取出的数量
+     * @param waitStrategy 空闲等待策略
+     * @param batchHandler 批处理回调，在工作线程上执行
+     */
+    public RingBufferDispatcher(String name, int capacity, int batchSize,
+                                WaitStrategy waitStrategy, Consumer<List<E>> batchHandler) {
+        super(name, batchSize, waitStrategy, batchHandler);
+        this.ringBuffer = new RingBuffer<>(capacity);
+    }
+
+    /**
+     * 提交一个元素
+     *
+     * @param element 元素
+     * @return 缓冲区已满时返回false
+     */
+    @Override
+    public boolean offer(E element) {
+        if (!ringBuffer.offer(element)) {
+            return false;
+        }
+        waitStrategy.signal();
+        return true;
+    }
+
+    @Override
+    protected int drain(List<E> batch, int maxElements) {
+        return ringBuffer.drainTo(batch, maxElements);
+    }
+
+    @Override
+    protected boolean hasPending() {
+        return !ringBuffer.isEmpty();
+    }
+
+    @Override
+    public int size() {
+        return ringBuffer.size();
+    }
+
+    @Override
+    public int capacity() {
+        return ringBuffer.capacity();
+    }
+}
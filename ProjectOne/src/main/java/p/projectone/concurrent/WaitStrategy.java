@@ -0,0 +1,123 @@
+package p.projectone.concurrent;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+/**
+ * 消费者空闲等待策略
+ * blocking：条件变量等待，空闲时不占CPU；spin-park：先自旋再短暂park，唤醒延迟更低
+ *
+ * @author Distributed Systems Team
+ */
+public interface WaitStrategy {
+
+    /**
+     * 等待直到有数据可取或超时
+     *
+     * @param hasWork 是否有数据可取
+     * @param timeoutNanos 最长等待时间（纳秒）
+     */
+    void waitFor(BooleanSupplier hasWork, long timeoutNanos) throws InterruptedException;
+
+    /**
+     * 生产者发布数据后调用，唤醒等待中的消费者
+     */
+    void signal();
+
+    /**
+     * 按配置名创建等待策略
+     *
+     * @param name blocking 或 spin-park
+     * @return 等待策略
+     */
+    static WaitStrategy forName(String name) {
+        if ("spin-park".equalsIgnoreCase(name) || "spin-then-park".equalsIgnoreCase(name)) {
+            return new SpinThenParkWaitStrategy(1000, TimeUnit.MICROSECONDS.toNanos(50));
+        }
+        if ("blocking".equalsIgnoreCase(name)) {
+            return new BlockingWaitStrategy();
+        }
+        throw new IllegalArgumentException("Unknown wait strategy: " + name);
+    }
+
+    /**
+     * 阻塞等待策略
+     */
+    class BlockingWaitStrategy implements WaitStrategy {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition available = lock.newCondition();
+        private final AtomicInteger waiters = new AtomicInteger(0);
+
+        @Override
+        public void waitFor(BooleanSupplier hasWork, long timeoutNanos) throws InterruptedException {
+            waiters.incrementAndGet();
+            lock.lock();
+            try {
+                long remaining = timeoutNanos;
+                while (!hasWork.getAsBoolean() && remaining > 0) {
+                    remaining = available.awaitNanos(remaining);
+                }
+            } finally {
+                lock.unlock();
+                waiters.decrementAndGet();
+            }
+        }
+
+        @Override
+        public void signal() {
+            // 没有等待者时不加锁，生产者快路径只多一次原子读
+            if (waiters.get() > 0) {
+                lock.lock();
+                try {
+                    available.signalAll();
+                } finally {
+                    lock.unlock();
+                }
+            }
+        }
+    }
+
+    /**
+     * 自旋后park的等待策略
+     */
+    class SpinThenParkWaitStrategy implements WaitStrategy {
+        private final int spinTries;
+        private final long parkNanos;
+
+        public SpinThenParkWaitStrategy(int spinTries, long parkNanos) {
+            this.spinTries = spinTries;
+            this.parkNanos = parkNanos;
+        }
+
+        @Override
+        public void waitFor(BooleanSupplier hasWork, long timeoutNanos) throws InterruptedException {
+            for (int i = 0; i < spinTries; i++) {
+                if (hasWork.getAsBoolean()) {
+                    return;
+                }
+                Thread.onSpinWait();
+            }
+
+            long deadline = System.nanoTime() + timeoutNanos;
+            while (!hasWork.getAsBoolean()) {
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return;
+                }
+                LockSupport.parkNanos(Math.min(parkNanos, remaining));
+            }
+        }
+
+        @Override
+        public void signal() {
+            // 消费者按固定间隔轮询，无需显式唤醒
+        }
+    }
+}
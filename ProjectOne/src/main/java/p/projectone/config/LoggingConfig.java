@@ -0,0 +1,63 @@
+package p.projectone.config;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+
+import p.projectone.logging.AsyncLog;
+import p.projectone.logging.LogLevel;
+import p.projectone.metrics.MetricsRegistry;
+
+/**
+ * 投票热路径日志配置
+ * 按 distributed.logging.* 配置进程默认的异步日志，并把写出、丢弃、采样、限流计数注册到 /metrics
+ *
+ * @author Distributed Systems Team
+ */
+@Configuration
+public class LoggingConfig {
+
+    @Autowired
+    private MetricsRegistry metricsRegistry;
+
+    @Value("${distributed.logging.level:INFO}")
+    private String level;
+
+    @Value("${distributed.logging.format:text}")
+    private String format;
+
+    @Value("${distributed.logging.buffer-size:8192}")
+    private int bufferSize;
+
+    @Value("${distributed.logging.sample:}")
+    private String sample;
+
+    @Value("${distributed.logging.rate-limit:}")
+    private String rateLimit;
+
+    @Value("${distributed.logging.default-rate-limit:0}")
+    private int defaultRateLimit;
+
+    @PostConstruct
+    public void init() {
+        AsyncLog log = AsyncLog.initDefault(bufferSize);
+        log.setLevel(LogLevel.parse(level));
+        log.setFormat(format);
+        log.setSampling(sample);
+        log.setRateLimits(rateLimit, defaultRateLimit);
+
+        metricsRegistry.counter("vote_log_records_total", "Log records by outcome", log::getWritten,
+                "outcome", "written");
+        metricsRegistry.counter("vote_log_records_total", "Log records by outcome", log::getDropped,
+                "outcome", "dropped");
+        metricsRegistry.counter("vote_log_records_total", "Log records by outcome", log::getSampledOut,
+                "outcome", "sampled_out");
+        metricsRegistry.counter("vote_log_records_total", "Log records by outcome", log::getRateLimited,
+                "outcome", "rate_limited");
+        metricsRegistry.gauge("vote_log_buffered", "Log records waiting for the writer thread", log::getBuffered);
+
+        System.out.println("异步日志已配置 - 级别: " + log.getLevel() + ", 格式: " + format +
+                         ", 缓冲区: " + log.getCapacity());
+    }
+}
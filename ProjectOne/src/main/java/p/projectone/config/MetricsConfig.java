@@ -0,0 +1,21 @@
+package p.projectone.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import p.projectone.metrics.MetricsRegistry;
+
+/**
+ * 指标注册表配置
+ * 各服务在初始化时注册自己的计时器和计数器，由 /metrics 统一导出
+ *
+ * @author Distributed Systems Team
+ */
+@Configuration
+public class MetricsConfig {
+
+    @Bean
+    public MetricsRegistry metricsRegistry() {
+        return new MetricsRegistry();
+    }
+}
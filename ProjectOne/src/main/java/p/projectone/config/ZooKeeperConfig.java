@@ -0,0 +1,48 @@
+package p.projectone.config;
+
+import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.framework.CuratorFrameworkFactory;
+import org.apache.curator.retry.ExponentialBackoffRetry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
+
+/**
+ * ZooKeeper客户端配置
+ * 延迟创建：只有用到ZooKeeper的功能（如leader复制模式）才会建立连接
+ *
+ * @author Distributed Systems Team
+ */
+@Configuration
+public class ZooKeeperConfig {
+
+    @Value("${distributed.zookeeper.connect-string:localhost:2181}")
+    private String connectString;
+
+    @Value("${distributed.zookeeper.session-timeout:60000}")
+    private int sessionTimeout;
+
+    @Value("${distributed.zookeeper.connection-timeout:15000}")
+    private int connectionTimeout;
+
+    @Value("${distributed.zookeeper.base-sleep-time:1000}")
+    private int baseSleepTime;
+
+    @Value("${distributed.zookeeper.max-retries:3}")
+    private int maxRetries;
+
+    @Bean(destroyMethod = "close")
+    @Lazy
+    public CuratorFramework curatorFramework() {
+        CuratorFramework client = CuratorFrameworkFactory.builder()
+            .connectString(connectString)
+            .sessionTimeoutMs(sessionTimeout)
+            .connectionTimeoutMs(connectionTimeout)
+            .retryPolicy(new ExponentialBackoffRetry(baseSleepTime, maxRetries))
+            .build();
+        client.start();
+        System.out.println("ZooKeeper客户端已启动 - 地址: " + connectString);
+        return client;
+    }
+}
@@ -0,0 +1,88 @@
+package p.projectone.controller;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import p.projectone.diagnostics.FlightRecordings;
+import p.projectone.diagnostics.FlightRecordings.RecordingInfo;
+
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * 诊断管理接口
+ * POST /api/admin/jfr/start 开始JFR录制，POST /api/admin/jfr/dump 导出当前内容，
+ * POST /api/admin/jfr/stop 停止并写出文件，GET /api/admin/jfr 查看状态。
+ * 录制文件写在服务器本地的 distributed.diagnostics.recording-dir 目录。
+ *
+ * @author Distributed Systems Team
+ */
+@RestController
+@RequestMapping("/api/admin/jfr")
+public class DiagnosticsController {
+
+    @Value("${distributed.diagnostics.recording-dir:recordings}")
+    private String recordingDir;
+
+    private FlightRecordings recordings;
+
+    @PostConstruct
+    public void init() {
+        recordings = new FlightRecordings(Paths.get(recordingDir));
+    }
+
+    @GetMapping
+    public RecordingInfo status() {
+        return recordings.status();
+    }
+
+    /**
+     * 开始录制
+     *
+     * @param settings default 或 profile
+     * @param maxAge 保留时间（秒）
+     * @param threshold 投票事件的最小持续时间（毫秒）
+     */
+    @PostMapping("/start")
+    public ResponseEntity<?> start(@RequestParam(name = "settings", defaultValue = "default") String settings,
+                                   @RequestParam(name = "maxAge", defaultValue = "600") long maxAge,
+                                   @RequestParam(name = "threshold", defaultValue = "0") long threshold) {
+        try {
+            return ResponseEntity.ok(recordings.start(settings, Duration.ofSeconds(maxAge), threshold));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Cannot start recording: " + e.getMessage()));
+        }
+    }
+
+    @PostMapping("/dump")
+    public ResponseEntity<?> dump() {
+        try {
+            return ResponseEntity.ok(recordings.dump());
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    @PostMapping("/stop")
+    public ResponseEntity<?> stop() {
+        try {
+            return ResponseEntity.ok(recordings.stop());
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(Map.of("error", e.getMessage()));
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package p.projectone.controller;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import p.projectone.metrics.MetricsRegistry;
+
+/**
+ * 指标导出接口
+ * GET /metrics 以Prometheus文本格式返回所有已注册的指标
+ *
+ * @author Distributed Systems Team
+ */
+@RestController
+public class MetricsController {
+
+    @Autowired
+    private MetricsRegistry metricsRegistry;
+
+    @GetMapping("/metrics")
+    public ResponseEntity<String> scrape() {
+        return ResponseEntity.ok()
+            .header(HttpHeaders.CONTENT_TYPE, MetricsRegistry.CONTENT_TYPE)
+            .body(metricsRegistry.scrape());
+    }
+}
@@ -0,0 +1,37 @@
+package p.projectone.controller;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import p.projectone.service.ReplicationService;
+import p.projectone.service.ReplicationService.ReplicaLag;
+import p.projectone.service.ReplicationService.ReplicationStats;
+
+import java.util.List;
+
+/**
+ * 复制状态接口
+ * GET /api/replication/lag 各副本的确认水位、落后条数和落后时间（leader模式下为空列表）；
+ * GET /api/replication/stats 复制统计信息
+ *
+ * @author Distributed Systems Team
+ */
+@RestController
+@RequestMapping("/api/replication")
+public class ReplicationController {
+
+    @Autowired
+    private ReplicationService replicationService;
+
+    @GetMapping("/lag")
+    public List<ReplicaLag> getReplicaLag() {
+        return replicationService.getReplicaLag();
+    }
+
+    @GetMapping("/stats")
+    public ReplicationStats getStats() {
+        return replicationService.getReplicationStats();
+    }
+}
@@ -0,0 +1,186 @@
+package p.projectone.controller;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Mono;
+
+import p.projectone.catalog.CandidateCatalog;
+import p.projectone.cube.Dimension;
+import p.projectone.leaderboard.Leaderboard;
+import p.projectone.rollup.Granularity;
+import p.projectone.rollup.VoteRollup;
+import p.projectone.service.CandidateCatalogService;
+import p.projectone.service.CubeService;
+import p.projectone.service.ReactiveVoteService;
+import p.projectone.service.ReactiveVoteService.Outcome;
+import p.projectone.service.RollupService;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * 投票接口，与SimpleVoteServer线路兼容
+ * POST /api/vote 请求体 {"userId":"...","candidateId":"...","candidateName":"...","region":"..."}（region可选），返回纯文本结果；
+ * GET /api/vote/results 各候选人票数，?top=K 前K名（带版本，ETag/If-None-Match），?candidate=ID 名次；GET /api/stats 统计信息；GET /api/candidates 候选人目录（含序号）；
+ * GET /api/rollups?from=&to=&granularity=minute|hour 按时间桶的票数（epoch毫秒，默认最近一小时按分钟）；
+ * GET /api/breakdown?by=party,region&node=&region= 按维度分组、按取值过滤的票数。
+ * POST /api/vote/tally/rebuild 从votes集合补计Redis计数（已计过的用户不变），返回补计的票数。
+ * 返回Mono，Spring MVC按异步请求处理：Servlet线程在订阅后立即归还，进行中的投票只占一个连接。
+ *
+ * @author Distributed Systems Team
+ */
+@RestController
+public class VoteController {
+
+    @Autowired
+    private ReactiveVoteService reactiveVoteService;
+
+    @Autowired
+    private CandidateCatalogService catalogService;
+
+    @Autowired
+    private RollupService rollupService;
+
+    @Autowired
+    private CubeService cubeService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @PostMapping("/api/vote")
+    public Mono<ResponseEntity<String>> vote(@RequestBody(required = false) String body,
+                                             @RequestHeader(name = "Idempotency-Key", required = false)
+                                             String idempotencyKey) {
+        String userId = null;
+        String candidateId = null;
+        String candidateName = null;
+        String region = null;
+        try {
+            JsonNode request = body != null ? objectMapper.readTree(body) : null;
+            if (request != null) {
+                userId = text(request, "userId");
+                candidateId = text(request, "candidateId");
+                candidateName = text(request, "candidateName");
+                region = text(request, "region");
+            }
+        } catch (Exception e) {
+            // 与SimpleVoteServer一致，格式错误按缺少字段处理
+        }
+        return reactiveVoteService.vote(userId, candidateId, candidateName, idempotencyKey, region).map(this::toResponse);
+    }
+
+    @PostMapping("/api/vote/tally/rebuild")
+    public Mono<ResponseEntity<String>> rebuildTally() {
+        return reactiveVoteService.rebuildTally().map(repaired -> repaired < 0
+            ? ResponseEntity.status(HttpStatus.CONFLICT).contentType(MediaType.TEXT_PLAIN).body("Rebuild already running")
+            : ResponseEntity.ok().contentType(MediaType.TEXT_PLAIN).body("Tally rebuilt, repaired " + repaired + " votes"));
+    }
+
+    @GetMapping("/api/vote/results")
+    public Mono<Map<String, Long>> getResults() {
+        return reactiveVoteService.getResults();
+    }
+
+    @GetMapping(value = "/api/vote/results", params = "top")
+    public ResponseEntity<String> getTop(@RequestParam(name = "top") int top,
+                                         @RequestHeader(name = "If-None-Match", required = false) String ifNoneMatch) {
+        if (top <= 0) {
+            return ResponseEntity.badRequest().contentType(MediaType.TEXT_PLAIN).body("Invalid top: " + top);
+        }
+        CandidateCatalog catalog = catalogService.current();
+        Leaderboard.Standings standings = reactiveVoteService.top(top, catalog);
+        String etag = standings.etag(catalog);
+        if (etag.equals(ifNoneMatch)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+        }
+        return ResponseEntity.ok().eTag(etag).contentType(MediaType.APPLICATION_JSON)
+            .body(standings.toJson(catalog));
+    }
+
+    @GetMapping(value = "/api/vote/results", params = "candidate")
+    public ResponseEntity<String> getStanding(@RequestParam(name = "candidate") String candidate) {
+        String standing = reactiveVoteService.standing(candidate);
+        if (standing == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).contentType(MediaType.TEXT_PLAIN)
+                .body("Unknown candidate: " + candidate);
+        }
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(standing);
+    }
+
+    @GetMapping("/api/stats")
+    public Mono<Map<String, Object>> getStats() {
+        return reactiveVoteService.getStats();
+    }
+
+    @GetMapping("/api/candidates")
+    public ResponseEntity<String> getCandidates() {
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(catalogService.current().toJson());
+    }
+
+    @GetMapping("/api/rollups")
+    public ResponseEntity<String> getRollups(@RequestParam(name = "from", required = false) Long from,
+                                             @RequestParam(name = "to", required = false) Long to,
+                                             @RequestParam(name = "granularity", defaultValue = "minute") String granularity) {
+        long end = to != null ? to : System.currentTimeMillis();
+        long start = from != null ? from : end - 60 * VoteRollup.MINUTE_MS;
+        try {
+            return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON)
+                .body(rollupService.query(start, end, Granularity.parse(granularity)).toJson());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().contentType(MediaType.TEXT_PLAIN)
+                .body("Invalid rollup query: " + e.getMessage());
+        }
+    }
+
+    @GetMapping("/api/breakdown")
+    public ResponseEntity<String> getBreakdown(@RequestParam(name = "by", defaultValue = "") String by,
+                                               @RequestParam(name = "candidate", required = false) String candidate,
+                                               @RequestParam(name = "party", required = false) String party,
+                                               @RequestParam(name = "node", required = false) String node,
+                                               @RequestParam(name = "region", required = false) String region) {
+        Map<Dimension, String> filters = new EnumMap<>(Dimension.class);
+        putIfPresent(filters, Dimension.CANDIDATE, candidate);
+        putIfPresent(filters, Dimension.PARTY, party);
+        putIfPresent(filters, Dimension.NODE, node);
+        putIfPresent(filters, Dimension.REGION, region);
+        try {
+            return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON)
+                .body(cubeService.query(Dimension.parseList(by), filters).toJson());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().contentType(MediaType.TEXT_PLAIN)
+                .body("Invalid breakdown query: " + e.getMessage());
+        }
+    }
+
+    private static void putIfPresent(Map<Dimension, String> filters, Dimension dimension, String value) {
+        if (value != null) {
+            filters.put(dimension, value);
+        }
+    }
+
+    private ResponseEntity<String> toResponse(Outcome outcome) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.status(outcome.getStatus()).contentType(MediaType.TEXT_PLAIN);
+        if (outcome == Outcome.OVERLOADED) {
+            response.header(HttpHeaders.RETRY_AFTER, "1");
+        } else if (outcome == Outcome.REPLAYED) {
+            response.header("Idempotent-Replayed", "true");
+        }
+        return response.body(outcome.getMessage());
+    }
+
+    private static String text(JsonNode request, String field) {
+        JsonNode value = request.get(field);
+        return value != null && value.isTextual() && !value.asText().isEmpty() ? value.asText() : null;
+    }
+}
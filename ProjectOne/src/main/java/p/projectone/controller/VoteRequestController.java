@@ -0,0 +1,116 @@
+package p.projectone.controller;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import p.projectone.service.VoteSchedulingService;
+import p.projectone.service.VoteSchedulingService.Priority;
+import p.projectone.service.VoteSchedulingService.VoteTicket;
+
+import java.net.URI;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 投票请求接口（经调度器异步处理）
+ * POST /api/vote/requests 请求体 {"userId":"...","candidateId":"...","candidateName":"...","sessionId":"...",
+ * "priority":"HIGH|NORMAL|LOW","timeout":毫秒}（后三项可选），入队后返回202和凭据（含requestId），被拒绝时返回503；
+ * GET /api/vote/requests/{id} 立即返回当前状态；
+ * 带 wait 参数时为长轮询，请求完成的瞬间返回结果，超时则返回当时的状态
+ *
+ * @author Distributed Systems Team
+ */
+@RestController
+@RequestMapping("/api/vote/requests")
+public class VoteRequestController {
+
+    // 长轮询最长等待时间（毫秒）
+    private static final long MAX_WAIT = 30000;
+
+    @Autowired
+    private VoteSchedulingService voteSchedulingService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    /**
+     * 提交投票请求
+     *
+     * @param body 请求体
+     * @return 202和凭据，Location指向状态查询地址；缺少字段返回400，被拒绝（过载、队列满、停机）返回503
+     */
+    @PostMapping
+    public ResponseEntity<?> submit(@RequestBody(required = false) String body) {
+        String userId;
+        String candidateId;
+        String candidateName;
+        String sessionId;
+        Priority priority;
+        long timeout;
+        try {
+            JsonNode request = objectMapper.readTree(body != null ? body : "{}");
+            userId = text(request, "userId");
+            candidateId = text(request, "candidateId");
+            candidateName = text(request, "candidateName");
+            sessionId = text(request, "sessionId");
+            String priorityName = text(request, "priority");
+            priority = priorityName != null ? Priority.valueOf(priorityName.toUpperCase(Locale.ROOT)) : Priority.NORMAL;
+            timeout = request.path("timeout").asLong(0);
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body("Invalid request: " + e.getMessage());
+        }
+        if (userId == null || candidateId == null) {
+            return ResponseEntity.badRequest().body("Missing userId or candidateId");
+        }
+
+        VoteTicket ticket = voteSchedulingService.submitVote(userId, candidateId,
+            candidateName != null ? candidateName : candidateId, sessionId, priority, timeout);
+        if (ticket.getStatus() == VoteTicket.Status.REJECTED) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(ticket);
+        }
+        return ResponseEntity.accepted()
+            .location(URI.create("/api/vote/requests/" + ticket.getRequestId()))
+            .body(ticket);
+    }
+
+    /**
+     * 查询请求状态
+     *
+     * @param requestId 请求ID
+     * @param wait 长轮询等待时间（毫秒），0表示立即返回
+     * @return 请求状态，不存在或已过期时返回404
+     */
+    @GetMapping("/{requestId}")
+    public CompletableFuture<ResponseEntity<VoteTicket>> getRequestStatus(
+            @PathVariable("requestId") String requestId,
+            @RequestParam(name = "wait", defaultValue = "0") long wait) {
+        VoteTicket ticket = voteSchedulingService.getRequestStatus(requestId);
+        if (ticket == null) {
+            return CompletableFuture.completedFuture(ResponseEntity.notFound().build());
+        }
+        if (wait <= 0 || ticket.isDone()) {
+            return CompletableFuture.completedFuture(ResponseEntity.ok(ticket));
+        }
+
+        // 派生一个新的Future再加超时，不影响凭据本身的completion
+        return ticket.completion()
+            .thenApply(ResponseEntity::ok)
+            .completeOnTimeout(ResponseEntity.ok(ticket), Math.min(wait, MAX_WAIT), TimeUnit.MILLISECONDS);
+    }
+
+    private static String text(JsonNode request, String field) {
+        JsonNode value = request.get(field);
+        return value != null && value.isTextual() && !value.asText().isEmpty() ? value.asText() : null;
+    }
+}
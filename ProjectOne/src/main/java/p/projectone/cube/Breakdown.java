@@ -0,0 +1,126 @@
+package p.projectone.cube;
+
+import p.projectone.catalog.CandidateCatalog;
+import p.projectone.protocol.JsonText;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 一次分组查询：按groupBy中的维度上卷，filters中的维度只保留给定取值（切片）
+ * 输入是立方体格子（可来自本节点的立方体和其他节点的检查点），输出按票数降序的行。
+ *
+ * 复杂度：O(格子数) - 累加；O(行数 log 行数) - 输出
+ * 实现方式：按分组键累加的HashMap
+ *
+ * @author Distributed Systems Team
+ */
+public class Breakdown implements VoteCube.CellVisitor {
+
+    private final CandidateCatalog catalog;
+    private final List<Dimension> groupBy;
+    private final Map<Dimension, String> filters;
+    private final Map<List<String>, long[]> rows = new HashMap<>();
+    private long total;
+
+    /**
+     * @param groupBy 分组维度，为空时只求总数
+     * @param filters 切片条件，候选人按ID、政党按名称匹配
+     */
+    public Breakdown(CandidateCatalog catalog, List<Dimension> groupBy, Map<Dimension, String> filters) {
+        this.catalog = catalog;
+        this.groupBy = groupBy;
+        this.filters = new EnumMap<>(Dimension.class);
+        for (Map.Entry<Dimension, String> filter : filters.entrySet()) {
+            this.filters.put(filter.getKey(), filter.getKey() == Dimension.REGION
+                    ? VoteCube.normalizeRegion(filter.getValue()) : filter.getValue());
+        }
+    }
+
+    @Override
+    public boolean accepts(String node, String region) {
+        String nodeFilter = filters.get(Dimension.NODE);
+        String regionFilter = filters.get(Dimension.REGION);
+        return (nodeFilter == null || nodeFilter.equals(node)) && (regionFilter == null || regionFilter.equals(region));
+    }
+
+    @Override
+    public void visit(int candidate, String node, String region, long count) {
+        add(candidate, node, region, count);
+    }
+
+    /**
+     * 累加一个格子；超出本目录的序号（其他节点已加载的新候选人）忽略
+     */
+    public void add(int candidate, String node, String region, long count) {
+        if (candidate >= catalog.size()) {
+            return;
+        }
+        for (Map.Entry<Dimension, String> filter : filters.entrySet()) {
+            if (!filter.getValue().equals(value(filter.getKey(), candidate, node, region))) {
+                return;
+            }
+        }
+        List<String> key = new ArrayList<>(groupBy.size());
+        for (Dimension dimension : groupBy) {
+            key.add(value(dimension, candidate, node, region));
+        }
+        rows.computeIfAbsent(key, k -> new long[1])[0] += count;
+        total += count;
+    }
+
+    private String value(Dimension dimension, int candidate, String node, String region) {
+        switch (dimension) {
+            case CANDIDATE: return catalog.id(candidate);
+            case PARTY: return catalog.party(candidate);
+            case NODE: return node;
+            default: return region;
+        }
+    }
+
+    /**
+     * {"by":["party","region"],"filters":{"node":"server-8080"},"catalogVersion":1,"total":12,
+     *  "rows":[{"party":"green","region":"north","votes":7},...]}
+     */
+    public String toJson() {
+        List<Map.Entry<List<String>, long[]>> sorted = new ArrayList<>(rows.entrySet());
+        sorted.sort((a, b) -> {
+            int byVotes = Long.compare(b.getValue()[0], a.getValue()[0]);
+            return byVotes != 0 ? byVotes : String.join(",", a.getKey()).compareTo(String.join(",", b.getKey()));
+        });
+
+        StringBuilder json = new StringBuilder(128 + sorted.size() * 64);
+        json.append("{\"by\":[");
+        for (int i = 0; i < groupBy.size(); i++) {
+            json.append(i > 0 ? ",\"" : "\"").append(groupBy.get(i).key()).append('"');
+        }
+        json.append("],\"filters\":{");
+        boolean first = true;
+        for (Map.Entry<Dimension, String> filter : filters.entrySet()) {
+            json.append(first ? "\"" : ",\"").append(filter.getKey().key()).append("\":");
+            JsonText.appendString(json, filter.getValue());
+            first = false;
+        }
+        json.append("},\"catalogVersion\":").append(catalog.getVersion())
+            .append(",\"total\":").append(total)
+            .append(",\"rows\":[");
+        for (int row = 0; row < sorted.size(); row++) {
+            json.append(row > 0 ? ",{" : "{");
+            List<String> key = sorted.get(row).getKey();
+            for (int i = 0; i < key.size(); i++) {
+                json.append('"').append(groupBy.get(i).key()).append("\":");
+                JsonText.appendString(json, key.get(i)).append(',');
+            }
+            json.append("\"votes\":").append(sorted.get(row).getValue()[0]).append('}');
+        }
+        return json.append("]}").toString();
+    }
+
+    // Getter方法
+    public CandidateCatalog getCatalog() { return catalog; }
+    public long getTotal() { return total; }
+    public int getRowCount() { return rows.size(); }
+}
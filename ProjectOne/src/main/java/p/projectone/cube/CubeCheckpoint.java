@@ -0,0 +1,83 @@
+package p.projectone.cube;
+
+import p.projectone.catalog.CandidateCatalog;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * 立方体的文件检查点，每行一个非零格子："候选人序号,节点,地区,票数"
+ * 先写同目录下的临时文件再原子替换，进程在写入中途退出也不会留下半个检查点。
+ * 节点和地区都经过规范化，不含逗号。
+ *
+ * @author Distributed Systems Team
+ */
+public final class CubeCheckpoint {
+
+    private CubeCheckpoint() {
+    }
+
+    /**
+     * 写出全部非零格子
+     *
+     * @param candidates 目录中的候选人数
+     * @return 写出的格子数
+     */
+    public static int write(VoteCube cube, int candidates, Path file) throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        int[] written = new int[1];
+        try (BufferedWriter writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            IOException[] failure = new IOException[1];
+            cube.forEachCell(candidates, (candidate, node, region, count) -> {
+                if (failure[0] != null) {
+                    return;
+                }
+                try {
+                    writer.write(candidate + "," + node + "," + region + "," + count);
+                    writer.newLine();
+                    written[0]++;
+                } catch (IOException e) {
+                    failure[0] = e;
+                }
+            });
+            if (failure[0] != null) {
+                throw failure[0];
+            }
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return written[0];
+    }
+
+    /**
+     * 把检查点累加到立方体中；文件不存在时什么也不做，格式错误的行跳过
+     *
+     * @return 读入的格子数
+     */
+    public static int read(VoteCube cube, Path file) throws IOException {
+        if (!Files.exists(file)) {
+            return 0;
+        }
+        int read = 0;
+        for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+            String[] fields = line.split(",");
+            if (fields.length != 4) {
+                continue;
+            }
+            try {
+                int candidate = Integer.parseInt(fields[0]);
+                int count = Integer.parseInt(fields[3]);
+                if (candidate >= 0 && candidate < CandidateCatalog.MAX_CANDIDATES && count > 0) {
+                    cube.add(candidate, fields[1], fields[2], count);
+                    read++;
+                }
+            } catch (NumberFormatException e) {
+                // 跳过损坏的行
+            }
+        }
+        return read;
+    }
+}
@@ -0,0 +1,55 @@
+package p.projectone.cube;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 分组和切片可用的维度；政党不单独存储，由候选人序号经目录映射得到
+ *
+ * @author Distributed Systems Team
+ */
+public enum Dimension {
+    CANDIDATE,
+    PARTY,
+    NODE,
+    REGION;
+
+    /**
+     * 查询参数和结果中使用的名字
+     */
+    public String key() {
+        return name().toLowerCase();
+    }
+
+    /**
+     * @throws IllegalArgumentException 未知维度
+     */
+    public static Dimension parse(String name) {
+        for (Dimension dimension : values()) {
+            if (dimension.key().equalsIgnoreCase(name.trim())) {
+                return dimension;
+            }
+        }
+        throw new IllegalArgumentException("unknown dimension: " + name + " (candidate, party, node, region)");
+    }
+
+    /**
+     * 解析"party,region"形式的分组列表，空串表示只求总数
+     *
+     * @throws IllegalArgumentException 未知或重复的维度
+     */
+    public static List<Dimension> parseList(String names) {
+        List<Dimension> dimensions = new ArrayList<>();
+        if (names == null || names.trim().isEmpty()) {
+            return dimensions;
+        }
+        for (String name : names.split(",")) {
+            Dimension dimension = parse(name);
+            if (dimensions.contains(dimension)) {
+                throw new IllegalArgumentException("duplicate dimension: " + dimension.key());
+            }
+            dimensions.add(dimension);
+        }
+        return dimensions;
+    }
+}
@@ -0,0 +1,53 @@
+package p.projectone.cube;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 维度取值到稠密下标的字典，下标只增不改，用作立方体数组的坐标
+ * 容量满后新取值都映射到最后一个下标（VoteCube.OTHER），数组大小固定。
+ *
+ * 复杂度：O(1) - 查找；O(n) - 新增（复制取值数组，每个取值只发生一次）
+ * 实现方式：ConcurrentHashMap + 写时复制的取值数组
+ *
+ * @author Distributed Systems Team
+ */
+final class DimensionDictionary {
+
+    private final int capacity;
+    private final Map<String, Integer> indexes = new ConcurrentHashMap<>();
+    private volatile String[] values = new String[0];
+
+    DimensionDictionary(int capacity) {
+        this.capacity = capacity;
+    }
+
+    int indexOf(String value) {
+        Integer index = indexes.get(value);
+        return index != null ? index : add(value);
+    }
+
+    private synchronized int add(String value) {
+        Integer index = indexes.get(value);
+        if (index != null) {
+            return index;
+        }
+        if (values.length >= capacity - 1 && !VoteCube.OTHER.equals(value)) {
+            return indexOf(VoteCube.OTHER);
+        }
+        String[] next = Arrays.copyOf(values, values.length + 1);
+        next[values.length] = value;
+        values = next;
+        indexes.put(value, values.length - 1);
+        return values.length - 1;
+    }
+
+    String value(int index) {
+        return values[index];
+    }
+
+    int size() {
+        return values.length;
+    }
+}
@@ -0,0 +1,157 @@
+package p.projectone.cube;
+
+import p.projectone.catalog.CandidateCatalog;
+import p.projectone.catalog.OrdinalCounters;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 预聚合的投票立方体：候选人 × 节点 × 地区，每个格子一个计数
+ * 投票确认时对一个格子自增；分组（上卷）和过滤（切片）查询只扫描已出现过的节点和地区，
+ * 格子数与投票数无关，峰值期间任意组合的分组报表都能在毫秒级从内存得出。
+ * 政党按候选人序号经目录映射，不占维度。
+ *
+ * 每个出现过的(地区, 节点)组合一行，行是按候选人序号索引的OrdinalCounters，第一次有票时才分配，
+ * 行内也只分配用到的序号块；地区、节点下标由各维度字典给出，节点和地区超过容量后归入OTHER。
+ * 序号上限为65536时，按上限预先分配的定长数组（64 × 16 × 65536个计数）不可接受，稀疏布局的内存
+ * 只与实际出现的组合数和目录大小有关。
+ *
+ * 复杂度：O(1) - 记录；O(已有行数 × 候选人数) - 查询
+ * 实现方式：按(地区, 节点)下标懒分配的OrdinalCounters行 + 节点/地区字典
+ *
+ * @author Distributed Systems Team
+ */
+public class VoteCube {
+
+    public static final int MAX_NODES = 16;
+    public static final int MAX_REGIONS = 64;
+
+    /**
+     * 未带地区标签的投票
+     */
+    public static final String UNKNOWN_REGION = "unknown";
+
+    /**
+     * 字典容量满后的取值，以及不合规的地区标签
+     */
+    public static final String OTHER = "other";
+
+    private static final int MAX_REGION_LENGTH = 32;
+
+    private final AtomicReferenceArray<OrdinalCounters> rows = new AtomicReferenceArray<>(MAX_REGIONS * MAX_NODES);
+    private final DimensionDictionary nodes = new DimensionDictionary(MAX_NODES);
+    private final DimensionDictionary regions = new DimensionDictionary(MAX_REGIONS);
+
+    /**
+     * 遍历非零格子
+     */
+    @FunctionalInterface
+    public interface CellVisitor {
+        void visit(int candidate, String node, String region, long count);
+
+        /**
+         * 返回false时跳过该节点、地区下的全部格子
+         */
+        default boolean accepts(String node, String region) {
+            return true;
+        }
+    }
+
+    /**
+     * 记录一票
+     *
+     * @param candidate 候选人序号
+     * @param node 处理节点
+     * @param region 地区标签，可为null
+     */
+    public void record(int candidate, String node, String region) {
+        add(candidate, node, region, 1);
+    }
+
+    /**
+     * 累加计数，用于从检查点恢复
+     */
+    public void add(int candidate, String node, String region, int count) {
+        int regionIndex = regions.indexOf(normalizeRegion(region));
+        int nodeIndex = nodes.indexOf(node);
+        row(regionIndex * MAX_NODES + nodeIndex).addAndGet(candidate, count);
+    }
+
+    /**
+     * 地区标签统一小写；空值为UNKNOWN_REGION，过长或含字母数字、'-'、'_'、'.'以外字符的为OTHER
+     */
+    public static String normalizeRegion(String region) {
+        if (region == null) {
+            return UNKNOWN_REGION;
+        }
+        // 已规范的标签原样返回，投票路径上不分配
+        if (isNormalized(region)) {
+            return region;
+        }
+        String normalized = region.trim().toLowerCase();
+        if (normalized.isEmpty()) {
+            return UNKNOWN_REGION;
+        }
+        return isNormalized(normalized) ? normalized : OTHER;
+    }
+
+    private static boolean isNormalized(String region) {
+        if (region.isEmpty() || region.length() > MAX_REGION_LENGTH) {
+            return false;
+        }
+        for (int i = 0; i < region.length(); i++) {
+            char c = region.charAt(i);
+            if (!(c >= 'a' && c <= 'z' || c >= '0' && c <= '9' || c == '-' || c == '_' || c == '.')) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 遍历序号小于candidates的非零格子
+     *
+     * @param candidates 目录中的候选人数
+     */
+    public void forEachCell(int candidates, CellVisitor visitor) {
+        int regionCount = regions.size();
+        int nodeCount = nodes.size();
+        int width = Math.min(candidates, CandidateCatalog.MAX_CANDIDATES);
+        for (int r = 0; r < regionCount; r++) {
+            String region = regions.value(r);
+            for (int n = 0; n < nodeCount; n++) {
+                String node = nodes.value(n);
+                OrdinalCounters row = rows.get(r * MAX_NODES + n);
+                if (row == null || !visitor.accepts(node, region)) {
+                    continue;
+                }
+                for (int c = 0; c < width; c++) {
+                    int count = row.get(c);
+                    if (count != 0) {
+                        visitor.visit(c, node, region, count);
+                    }
+                }
+            }
+        }
+    }
+
+    private OrdinalCounters row(int index) {
+        OrdinalCounters row = rows.get(index);
+        if (row == null) {
+            rows.compareAndSet(index, null, new OrdinalCounters());
+            row = rows.get(index);
+        }
+        return row;
+    }
+
+    /**
+     * 把全部格子累加到查询结果中
+     */
+    public void addTo(Breakdown breakdown) {
+        forEachCell(breakdown.getCatalog().size(), breakdown);
+    }
+
+    // Getter方法
+    public int getNodeCount() { return nodes.size(); }
+    public int getRegionCount() { return regions.size(); }
+}
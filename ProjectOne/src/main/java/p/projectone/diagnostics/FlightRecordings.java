@@ -0,0 +1,139 @@
+package p.projectone.diagnostics;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * 按需JFR录制
+ * 同一时间最多一个录制：start开始（default或profile配置，附带投票事件），dump把当前内容写成文件而不停止，
+ * stop停止并写出文件。录制期间投票事件与GC、锁等待、文件/网络I/O等JDK事件在同一时间线上，便于对照。
+ *
+ * @author Distributed Systems Team
+ */
+public class FlightRecordings {
+
+    private static final String RECORDING_NAME = "vote-pipeline";
+    private static final DateTimeFormatter FILE_TIME = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss-SSS");
+
+    private final Path directory;
+    private Recording recording;
+    private String settings;
+
+    /**
+     * @param directory 录制文件输出目录
+     */
+    public FlightRecordings(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * 开始录制
+     *
+     * @param settings JFR配置名：default（约1%开销）或 profile（约2%开销，含方法采样）
+     * @param maxAge 保留的最长时间，超出部分滚动丢弃
+     * @param thresholdMillis 投票事件的最小持续时间（毫秒），0表示全部记录
+     */
+    public synchronized RecordingInfo start(String settings, Duration maxAge, long thresholdMillis)
+            throws IOException, ParseException {
+        if (recording != null && recording.getState() == RecordingState.RUNNING) {
+            throw new IllegalStateException("Recording already running since " + recording.getStartTime());
+        }
+        Recording created = new Recording(Configuration.getConfiguration(settings));
+        created.setName(RECORDING_NAME);
+        created.setToDisk(true);
+        created.setMaxAge(maxAge);
+        created.enable(VoteStageEvent.class).withThreshold(Duration.ofMillis(thresholdMillis));
+        created.enable(ReplicaWriteEvent.class).withThreshold(Duration.ofMillis(thresholdMillis));
+        created.start();
+        if (recording != null) {
+            recording.close();
+        }
+        recording = created;
+        this.settings = settings;
+        System.out.println("JFR录制已开始 - 配置: " + settings + ", 保留: " + maxAge.toSeconds() + "s");
+        return status();
+    }
+
+    /**
+     * 把当前录制内容写成文件，录制继续
+     */
+    public synchronized RecordingInfo dump() throws IOException {
+        if (recording == null || recording.getState() != RecordingState.RUNNING) {
+            throw new IllegalStateException("No running recording");
+        }
+        Path file = newFile();
+        recording.dump(file);
+        System.out.println("JFR录制已导出 - 文件: " + file);
+        return new RecordingInfo(recording.getState().name(), settings, recording.getStartTime(), Files.size(file), file);
+    }
+
+    /**
+     * 停止录制并写出文件
+     */
+    public synchronized RecordingInfo stop() throws IOException {
+        if (recording == null || recording.getState() != RecordingState.RUNNING) {
+            throw new IllegalStateException("No running recording");
+        }
+        Path file = newFile();
+        Instant startTime = recording.getStartTime();
+        // 设置了目标文件时，stop()写出文件后录制即关闭
+        recording.setDestination(file);
+        recording.stop();
+        recording.close();
+        recording = null;
+        RecordingInfo info = new RecordingInfo(RecordingState.STOPPED.name(), settings, startTime, Files.size(file), file);
+        System.out.println("JFR录制已停止 - 文件: " + file);
+        return info;
+    }
+
+    /**
+     * 当前录制状态
+     */
+    public synchronized RecordingInfo status() {
+        if (recording == null) {
+            return new RecordingInfo("NONE", null, null, 0, null);
+        }
+        return new RecordingInfo(recording.getState().name(), settings, recording.getStartTime(), recording.getSize(), null);
+    }
+
+    private Path newFile() throws IOException {
+        Files.createDirectories(directory);
+        return directory.resolve(RECORDING_NAME + "-" + LocalDateTime.now().format(FILE_TIME) + ".jfr").toAbsolutePath();
+    }
+
+    /**
+     * 录制信息
+     */
+    public static class RecordingInfo {
+        private final String state;
+        private final String settings;
+        private final Instant startTime;
+        private final long sizeBytes;
+        private final String file;
+
+        RecordingInfo(String state, String settings, Instant startTime, long sizeBytes, Path file) {
+            this.state = state;
+            this.settings = settings;
+            this.startTime = startTime;
+            this.sizeBytes = sizeBytes;
+            this.file = file != null ? file.toString() : null;
+        }
+
+        // Getter方法
+        public String getState() { return state; }
+        public String getSettings() { return settings; }
+        public Instant getStartTime() { return startTime; }
+        public long getSizeBytes() { return sizeBytes; }
+        public String getFile() { return file; }
+    }
+}
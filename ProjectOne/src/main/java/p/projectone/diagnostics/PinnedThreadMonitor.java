@@ -0,0 +1,100 @@
+package p.projectone.diagnostics;
+
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordedStackTrace;
+import jdk.jfr.consumer.RecordingStream;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 虚拟线程钉住（pinned）监控
+ * 通过JFR事件流订阅jdk.VirtualThreadPinned：虚拟线程在synchronized块或本地方法中阻塞时无法卸载，
+ * 会占住载体线程，超过阈值即记录并输出钉住位置（本项目代码中最靠近栈顶的帧）
+ *
+ * @author Distributed Systems Team
+ */
+public class PinnedThreadMonitor implements AutoCloseable {
+
+    private static final String PINNED_EVENT = "jdk.VirtualThreadPinned";
+    private static final String APP_PACKAGE = "p.projectone.";
+
+    private final long thresholdMillis;
+    private final AtomicLong pinnedEvents = new AtomicLong(0);
+    private final AtomicLong maxPinnedMillis = new AtomicLong(0);
+    private volatile String lastPinnedFrame;
+    private RecordingStream stream;
+
+    /**
+     * @param thresholdMillis 钉住时间超过该值才记录（毫秒）
+     */
+    public PinnedThreadMonitor(long thresholdMillis) {
+        this.thresholdMillis = thresholdMillis;
+    }
+
+    /**
+     * 开始监控（后台线程消费事件流）
+     *
+     * @return JFR不可用时返回false
+     */
+    public synchronized boolean start() {
+        if (stream != null) {
+            return true;
+        }
+        try {
+            RecordingStream recording = new RecordingStream();
+            recording.enable(PINNED_EVENT).withThreshold(Duration.ofMillis(thresholdMillis)).withStackTrace();
+            recording.onEvent(PINNED_EVENT, this::onPinned);
+            recording.startAsync();
+            stream = recording;
+            return true;
+        } catch (Throwable e) {
+            System.err.println("虚拟线程钉住监控启动失败: " + e.getMessage());
+            return false;
+        }
+    }
+
+    private void onPinned(RecordedEvent event) {
+        long millis = event.getDuration().toMillis();
+        pinnedEvents.incrementAndGet();
+        maxPinnedMillis.accumulateAndGet(millis, Math::max);
+        String frame = topApplicationFrame(event.getStackTrace());
+        lastPinnedFrame = frame;
+        System.err.println("检测到虚拟线程钉住 - 耗时: " + millis + "ms, 位置: " + frame);
+    }
+
+    private static String topApplicationFrame(RecordedStackTrace stackTrace) {
+        if (stackTrace == null || stackTrace.getFrames().isEmpty()) {
+            return "unknown";
+        }
+        for (RecordedFrame frame : stackTrace.getFrames()) {
+            String type = frame.getMethod().getType().getName();
+            if (type.startsWith(APP_PACKAGE)) {
+                return type + "." + frame.getMethod().getName() + ":" + frame.getLineNumber();
+            }
+        }
+        RecordedFrame top = stackTrace.getFrames().get(0);
+        return top.getMethod().getType().getName() + "." + top.getMethod().getName();
+    }
+
+    public long getPinnedEvents() {
+        return pinnedEvents.get();
+    }
+
+    public long getMaxPinnedMillis() {
+        return maxPinnedMillis.get();
+    }
+
+    public String getLastPinnedFrame() {
+        return lastPinnedFrame;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (stream != null) {
+            stream.close();
+            stream = null;
+        }
+    }
+}
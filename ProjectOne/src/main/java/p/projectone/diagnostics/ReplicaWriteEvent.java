@@ -0,0 +1,65 @@
+package p.projectone.diagnostics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * 副本写入的JFR事件
+ * 日志发送按批写入，一个事件对应一批（涉及多个用户，因此不带用户哈希），以序号区间关联到具体投票。
+ *
+ * @author Distributed Systems Team
+ */
+@Name("p.projectone.ReplicaWrite")
+@Label("Replica Write")
+@Category({"Voting", "Replication"})
+@Description("One write of replicated votes to a replica")
+@StackTrace(false)
+public class ReplicaWriteEvent extends Event {
+
+    @Label("Replica")
+    String replica;
+
+    @Label("Node")
+    String node;
+
+    @Label("From Sequence")
+    long fromSequence;
+
+    @Label("To Sequence")
+    long toSequence;
+
+    @Label("Entries")
+    int entries;
+
+    @Label("Success")
+    boolean success;
+
+    /**
+     * 开始一次副本写入
+     */
+    public static ReplicaWriteEvent start(String replica) {
+        ReplicaWriteEvent event = new ReplicaWriteEvent();
+        event.replica = replica;
+        event.begin();
+        return event;
+    }
+
+    /**
+     * 结束写入，录制中且超过阈值时提交
+     */
+    public void finish(long fromSequence, long toSequence, int entries, boolean success) {
+        end();
+        if (shouldCommit()) {
+            this.node = VoteStageEvent.currentNode();
+            this.fromSequence = fromSequence;
+            this.toSequence = toSequence;
+            this.entries = entries;
+            this.success = success;
+            commit();
+        }
+    }
+}
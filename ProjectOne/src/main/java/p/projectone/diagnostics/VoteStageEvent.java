@@ -0,0 +1,90 @@
+package p.projectone.diagnostics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * 投票处理阶段的JFR事件
+ * 事件自带开始时间和持续时间；用户ID只记录哈希，不落原文。
+ * 未录制时begin()/end()几乎没有开销，字段只在shouldCommit()为真时才计算。
+ *
+ * 用法：
+ * <pre>
+ * VoteStageEvent event = VoteStageEvent.start("lock");
+ * ...
+ * event.finish(userId, success);
+ * </pre>
+ *
+ * @author Distributed Systems Team
+ */
+@Name("p.projectone.VoteStage")
+@Label("Vote Stage")
+@Category({"Voting", "Pipeline"})
+@Description("Time a vote spent in one stage of the processing pipeline")
+@StackTrace(false)
+public class VoteStageEvent extends Event {
+
+    private static volatile String nodeName = ManagementFactory.getRuntimeMXBean().getName();
+
+    @Label("Stage")
+    String stage;
+
+    @Label("User Hash")
+    @Description("Hash of the user ID, for correlating the stages of one vote")
+    String userHash;
+
+    @Label("Node")
+    String node;
+
+    @Label("Success")
+    boolean success;
+
+    /**
+     * 开始一个阶段
+     */
+    public static VoteStageEvent start(String stage) {
+        VoteStageEvent event = new VoteStageEvent();
+        event.stage = stage;
+        event.begin();
+        return event;
+    }
+
+    /**
+     * 结束阶段，录制中且超过阈值时提交
+     */
+    public void finish(String userId, boolean success) {
+        end();
+        if (shouldCommit()) {
+            this.userHash = userHash(userId);
+            this.node = nodeName;
+            this.success = success;
+            commit();
+        }
+    }
+
+    /**
+     * 设置事件中的节点名，默认为 pid@host
+     */
+    public static void setNode(String node) {
+        nodeName = node;
+    }
+
+    static String currentNode() {
+        return nodeName;
+    }
+
+    private static String userHash(String userId) {
+        if (userId == null) {
+            return "";
+        }
+        // 32位哈希再做一次混合，避免相近的ID得到相近的值
+        int h = userId.hashCode() * 0x9E3779B9;
+        return Integer.toHexString(h ^ (h >>> 16));
+    }
+}
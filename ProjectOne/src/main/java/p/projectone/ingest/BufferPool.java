@@ -0,0 +1,59 @@
+package p.projectone.ingest;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+
+/**
+ * 定长直接缓冲区池，每个选择器线程持有一个，因此不需要同步
+ * 连接只在有未处理完的半帧或未写完的确认时占用缓冲区，空闲连接不占内存，
+ * 一万个长连接也只需要与活跃连接数相当的缓冲区
+ *
+ * 复杂度：O(1) - 借出与归还
+ * 实现方式：ArrayDeque空闲栈，超出上限的归还直接丢弃交给GC
+ *
+ * @author Distributed Systems Team
+ */
+public class BufferPool {
+
+    private final ArrayDeque<ByteBuffer> free = new ArrayDeque<>();
+    private final int bufferSize;
+    private final int maxPooled;
+    private long allocated;
+    private int inUse;
+
+    /**
+     * @param bufferSize 每个缓冲区的字节数
+     * @param maxPooled 空闲栈最多保留的缓冲区数
+     */
+    public BufferPool(int bufferSize, int maxPooled) {
+        this.bufferSize = bufferSize;
+        this.maxPooled = maxPooled;
+    }
+
+    /**
+     * 借出一个已清空的缓冲区，池空时新分配
+     */
+    public ByteBuffer acquire() {
+        inUse++;
+        ByteBuffer buffer = free.pollLast();
+        if (buffer == null) {
+            allocated++;
+            return ByteBuffer.allocateDirect(bufferSize);
+        }
+        return buffer;
+    }
+
+    public void release(ByteBuffer buffer) {
+        inUse--;
+        if (free.size() < maxPooled) {
+            buffer.clear();
+            free.addLast(buffer);
+        }
+    }
+
+    // Getter方法
+    public int getBufferSize() { return bufferSize; }
+    public long getAllocated() { return allocated; }
+    public int getInUse() { return inUse; }
+    public int getPooled() { return free.size(); }
+}
@@ -0,0 +1,431 @@
+package p.projectone.ingest;
+
+import p.projectone.concurrent.BoundedExpiringMap;
+import p.projectone.ingest.VoteLedger.Outcome;
+import p.projectone.logging.VoteLogger;
+import p.projectone.protocol.VoteCodec;
+import p.projectone.protocol.VoteMessage;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 投票终端（kiosk）TCP接入网关
+ * 终端保持长连接，连续发送VoteCodec二进制帧（可流水线发送，不必等待确认），
+ * 网关对每帧按顺序回一个确认字节（VoteLedger.Outcome.code）。
+ *
+ * 线程模型：一个接收线程阻塞accept，按轮询把连接分给若干选择器线程；
+ * 每个选择器线程独占自己的Selector和直接缓冲区池，连接从建立到关闭只由一个线程处理，无需加锁。
+ * 一次可读事件中读到的所有完整帧解码、记账后，确认合并为一次write写回；
+ * 确认写不完时暂停读取该连接，直到对端把确认读走（背压）。
+ *
+ * 投票直接进入与HTTP接口共用的VoteLedger；HTTP路径中模拟持久化的500毫秒延迟不在此执行，
+ * 否则一个选择器线程会拖住它上面的数千个连接。
+ *
+ * 复杂度：O(1) - 每帧
+ * 实现方式：Java NIO多Selector + 每线程直接缓冲区池
+ *
+ * @author Distributed Systems Team
+ */
+public class VoteGateway {
+
+    private static final VoteLogger LOG = VoteLogger.get(VoteGateway.class);
+
+    private static final int BUFFER_SIZE = 4096;
+    private static final int MAX_POOLED_BUFFERS = 1024;
+    private static final int MAX_READS_PER_EVENT = 4;
+    private static final int ACCEPT_BACKLOG = 4096;
+    private static final int IDEMPOTENCY_CACHE_SIZE = 100_000;
+    private static final long IDEMPOTENCY_TTL_MS = 10 * 60 * 1000;
+
+    private final VoteLedger ledger;
+    private final int port;
+    private final SelectorLoop[] loops;
+    private final BoundedExpiringMap<String, Outcome> idempotentOutcomes =
+        new BoundedExpiringMap<>(IDEMPOTENCY_CACHE_SIZE, IDEMPOTENCY_TTL_MS);
+
+    private ServerSocketChannel serverChannel;
+    private Thread acceptor;
+    private volatile boolean running = false;
+    private int nextLoop = 0;
+
+    // 统计信息
+    private final AtomicInteger openConnections = new AtomicInteger(0);
+    private final AtomicLong acceptedConnections = new AtomicLong(0);
+    private final LongAdder frames = new LongAdder();
+    private final LongAdder[] outcomes = new LongAdder[Outcome.values().length];
+    private final LongAdder replayed = new LongAdder();
+    private final LongAdder protocolErrors = new LongAdder();
+    private final LongAdder bytesRead = new LongAdder();
+    private final LongAdder bytesWritten = new LongAdder();
+
+    /**
+     * @param ledger 去重计票核心
+     * @param port 监听端口，0表示随机端口
+     * @param selectorThreads 选择器线程数
+     */
+    public VoteGateway(VoteLedger ledger, int port, int selectorThreads) {
+        this.ledger = ledger;
+        this.port = port;
+        this.loops = new SelectorLoop[selectorThreads];
+        for (int i = 0; i < outcomes.length; i++) {
+            outcomes[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * 绑定端口并启动接收线程和选择器线程
+     */
+    public synchronized void start() throws IOException {
+        if (running) {
+            return;
+        }
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+        serverChannel.bind(new InetSocketAddress(port), ACCEPT_BACKLOG);
+        running = true;
+        for (int i = 0; i < loops.length; i++) {
+            loops[i] = new SelectorLoop(i);
+            loops[i].thread.start();
+        }
+        acceptor = new Thread(this::acceptLoop, "vote-gateway-acceptor");
+        acceptor.start();
+        LOG.info("gateway.started", "投票网关已启动 - 端口: {}, 选择器线程: {}", getPort(), loops.length);
+    }
+
+    /**
+     * 停止接收并关闭所有连接
+     */
+    public synchronized void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        try {
+            serverChannel.close();
+        } catch (IOException e) {
+            LOG.warn("gateway.error", "关闭监听端口失败: {}", e.getMessage());
+        }
+        for (SelectorLoop loop : loops) {
+            loop.selector.wakeup();
+        }
+        try {
+            acceptor.join(1000);
+            for (SelectorLoop loop : loops) {
+                loop.thread.join(1000);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        LOG.info("gateway.stopped", "投票网关已停止");
+    }
+
+    private void acceptLoop() {
+        while (running) {
+            try {
+                SocketChannel channel = serverChannel.accept();
+                channel.configureBlocking(false);
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                acceptedConnections.incrementAndGet();
+                openConnections.incrementAndGet();
+                loops[nextLoop].register(channel);
+                nextLoop = (nextLoop + 1) % loops.length;
+            } catch (ClosedChannelException e) {
+                return;
+            } catch (IOException e) {
+                // 如文件描述符耗尽：稍后重试，已有连接不受影响
+                LOG.warn("gateway.accept_failed", "接收连接失败: {}", e.getMessage());
+                try {
+                    Thread.sleep(10);
+                } catch (InterruptedException ie) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * 处理一帧，返回要回给终端的结果
+     */
+    private Outcome handle(ByteBuffer in) {
+        frames.increment();
+        VoteMessage vote;
+        try {
+            vote = VoteCodec.decode(in, ledger.getCatalog());
+        } catch (IllegalArgumentException e) {
+            return count(Outcome.INVALID);
+        }
+        if (!vote.isValid()) {
+            return count(Outcome.INVALID);
+        }
+
+        String idempotencyKey = vote.getIdempotencyKey();
+        if (idempotencyKey != null) {
+            Outcome cached = idempotentOutcomes.get(idempotencyKey);
+            if (cached != null) {
+                replayed.increment();
+                return cached;
+            }
+        }
+        Outcome outcome = ledger.submit(vote.getUserId(), vote.getCandidateId(), vote.getRegion());
+        if (idempotencyKey != null && outcome != Outcome.IN_PROGRESS) {
+            idempotentOutcomes.put(idempotencyKey, outcome);
+        }
+        return count(outcome);
+    }
+
+    private Outcome count(Outcome outcome) {
+        outcomes[outcome.ordinal()].increment();
+        return outcome;
+    }
+
+    /**
+     * 选择器线程：负责分到它上面的连接的全部读写
+     */
+    private final class SelectorLoop implements Runnable {
+        private final Selector selector;
+        private final Thread thread;
+        private final BufferPool pool = new BufferPool(BUFFER_SIZE, MAX_POOLED_BUFFERS);
+        private final ByteBuffer acks = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        private final ConcurrentLinkedQueue<SocketChannel> pending = new ConcurrentLinkedQueue<>();
+
+        private SelectorLoop(int index) throws IOException {
+            this.selector = Selector.open();
+            this.thread = new Thread(this, "vote-gateway-selector-" + index);
+        }
+
+        private void register(SocketChannel channel) {
+            pending.add(channel);
+            selector.wakeup();
+        }
+
+        @Override
+        public void run() {
+            while (running) {
+                try {
+                    selector.select();
+                } catch (IOException e) {
+                    LOG.error("gateway.error", "选择器异常: {}", e.getMessage());
+                    break;
+                }
+                registerPending();
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    Connection connection = (Connection) key.attachment();
+                    try {
+                        if (key.isValid() && key.isWritable()) {
+                            connection.flush();
+                        }
+                        if (key.isValid() && key.isReadable()) {
+                            connection.read();
+                        }
+                    } catch (IOException e) {
+                        connection.close();
+                    }
+                }
+            }
+            for (SelectionKey key : selector.keys()) {
+                ((Connection) key.attachment()).close();
+            }
+            SocketChannel channel;
+            while ((channel = pending.poll()) != null) {
+                closeQuietly(channel);
+            }
+            try {
+                selector.close();
+            } catch (IOException e) {
+                // 已停止，忽略
+            }
+        }
+
+        private void registerPending() {
+            SocketChannel channel;
+            while ((channel = pending.poll()) != null) {
+                try {
+                    SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+                    key.attach(new Connection(this, channel, key));
+                } catch (IOException e) {
+                    closeQuietly(channel);
+                }
+            }
+        }
+    }
+
+    /**
+     * 一个终端连接；in只在有半帧时持有，out只在确认未写完时持有
+     */
+    private final class Connection {
+        private final SelectorLoop loop;
+        private final SocketChannel channel;
+        private final SelectionKey key;
+        private ByteBuffer in;
+        private ByteBuffer out;
+
+        private Connection(SelectorLoop loop, SocketChannel channel, SelectionKey key) {
+            this.loop = loop;
+            this.channel = channel;
+            this.key = key;
+        }
+
+        private void read() throws IOException {
+            for (int i = 0; i < MAX_READS_PER_EVENT; i++) {
+                if (in == null) {
+                    in = loop.pool.acquire();
+                }
+                int n = channel.read(in);
+                if (n < 0) {
+                    close();
+                    return;
+                }
+                bytesRead.add(n);
+                boolean filled = !in.hasRemaining();
+
+                in.flip();
+                boolean valid = decodeFrames();
+                in.compact();
+                if (!valid) {
+                    close();
+                    return;
+                }
+                writeAcks();
+                // 确认积压时不再读，等对端读走确认
+                if (out != null || !filled) {
+                    break;
+                }
+            }
+            if (in != null && in.position() == 0) {
+                loop.pool.release(in);
+                in = null;
+            }
+        }
+
+        /**
+         * 解码缓冲区中所有完整帧，确认字节追加到本线程的acks缓冲区
+         *
+         * @return false表示帧长度超出协议上限，连接应关闭
+         */
+        private boolean decodeFrames() {
+            while (in.remaining() >= 2) {
+                int total = 2 + (in.getShort(in.position()) & 0xFFFF);
+                if (total > VoteCodec.MAX_FRAME_BYTES) {
+                    protocolErrors.increment();
+                    LOG.warn("gateway.protocol_error", "帧长度超出上限 - 连接: {}, 长度: {}", remoteAddress(), total);
+                    return false;
+                }
+                if (in.remaining() < total) {
+                    break;
+                }
+                loop.acks.put(handle(in).getCode());
+            }
+            return true;
+        }
+
+        private void writeAcks() throws IOException {
+            ByteBuffer acks = loop.acks;
+            acks.flip();
+            if (acks.hasRemaining()) {
+                bytesWritten.add(channel.write(acks));
+                if (acks.hasRemaining()) {
+                    out = loop.pool.acquire();
+                    out.put(acks).flip();
+                    key.interestOps(SelectionKey.OP_WRITE);
+                }
+            }
+            acks.clear();
+        }
+
+        private void flush() throws IOException {
+            bytesWritten.add(channel.write(out));
+            if (!out.hasRemaining()) {
+                loop.pool.release(out);
+                out = null;
+                key.interestOps(SelectionKey.OP_READ);
+            }
+        }
+
+        private void close() {
+            if (!channel.isOpen()) {
+                return;
+            }
+            key.cancel();
+            closeQuietly(channel);
+            if (in != null) {
+                loop.pool.release(in);
+                in = null;
+            }
+            if (out != null) {
+                loop.pool.release(out);
+                out = null;
+            }
+            openConnections.decrementAndGet();
+        }
+
+        private Object remoteAddress() {
+            try {
+                return channel.getRemoteAddress();
+            } catch (IOException e) {
+                return "unknown";
+            }
+        }
+    }
+
+    private static void closeQuietly(SocketChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            // 连接已断开，忽略
+        }
+    }
+
+    /**
+     * 实际监听的端口
+     */
+    public int getPort() {
+        try {
+            return serverChannel != null ? ((InetSocketAddress) serverChannel.getLocalAddress()).getPort() : port;
+        } catch (IOException e) {
+            return port;
+        }
+    }
+
+    public long getOutcomeCount(Outcome outcome) {
+        return outcomes[outcome.ordinal()].sum();
+    }
+
+    /**
+     * 各选择器线程已分配的直接缓冲区总数（读取自其他线程，仅供监控）
+     */
+    public long getBuffersAllocated() {
+        long total = 0;
+        for (SelectorLoop loop : loops) {
+            if (loop != null) {
+                total += loop.pool.getAllocated();
+            }
+        }
+        return total;
+    }
+
+    // Getter方法
+    public int getSelectorThreads() { return loops.length; }
+    public int getOpenConnections() { return openConnections.get(); }
+    public long getAcceptedConnections() { return acceptedConnections.get(); }
+    public long getFrames() { return frames.sum(); }
+    public long getReplayed() { return replayed.sum(); }
+    public long getProtocolErrors() { return protocolErrors.sum(); }
+    public long getBytesRead() { return bytesRead.sum(); }
+    public long getBytesWritten() { return bytesWritten.sum(); }
+}
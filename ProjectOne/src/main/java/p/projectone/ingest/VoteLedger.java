@@ -0,0 +1,162 @@
+package p.projectone.ingest;
+
+import p.projectone.catalog.CandidateCatalog;
+import p.projectone.catalog.CandidateCatalogHolder;
+import p.projectone.catalog.OrdinalCounters;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 投票去重与计票核心，HTTP接口和TCP网关共用同一份状态
+ * 去重以userVotes.putIfAbsent为准：无论从哪条路径进入，同一用户只会成功一次；
+ * 每用户锁只用于HTTP路径在模拟持久化期间标记"处理中"，网关路径只检查不加锁。
+ * 候选人按目录序号计票；目录热加载只会追加序号，计数按实际用到的序号分块分配（OrdinalCounters），无需随目录扩容。
+ * 每张成功的票依次通知已注册的监听器（分钟汇总、分组立方体），监听器在投票线程上同步执行，应只做内存自增。
+ *
+ * 复杂度：O(1) - 记录与查询
+ * 实现方式：ConcurrentHashMap去重 + 按候选人序号索引的OrdinalCounters计票
+ *
+ * @author Distributed Systems Team
+ */
+public class VoteLedger {
+
+    /**
+     * 一次投票的结果；code为TCP网关确认字节
+     */
+    public enum Outcome {
+        ACCEPTED(0),
+        DUPLICATE(1),
+        IN_PROGRESS(2),
+        INVALID(3);
+
+        private final byte code;
+
+        Outcome(int code) {
+            this.code = (byte) code;
+        }
+
+        public byte getCode() {
+            return code;
+        }
+
+        public static Outcome fromCode(int code) {
+            for (Outcome outcome : values()) {
+                if (outcome.code == code) {
+                    return outcome;
+                }
+            }
+            throw new IllegalArgumentException("unknown outcome code: " + code);
+        }
+    }
+
+    /**
+     * 成功投票的监听器
+     */
+    @FunctionalInterface
+    public interface Listener {
+        /**
+         * @param ordinal 候选人序号
+         * @param region 地区标签，可为null
+         * @param timeMillis 确认时间
+         */
+        void accepted(int ordinal, String region, long timeMillis);
+    }
+
+    private final CandidateCatalogHolder catalogs;
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private final OrdinalCounters tallies = new OrdinalCounters();
+    private final Map<String, Integer> userVotes = new ConcurrentHashMap<>();
+    private final Map<String, ReentrantLock> userLocks = new ConcurrentHashMap<>();
+
+    /**
+     * @param catalogs 候选人目录，投票时读取当前快照
+     */
+    public VoteLedger(CandidateCatalogHolder catalogs) {
+        this.catalogs = catalogs;
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * 尝试获取用户锁（HTTP路径），失败表示该用户的另一请求正在处理
+     */
+    public boolean tryLock(String userId) {
+        return userLocks.computeIfAbsent(userId, k -> new ReentrantLock()).tryLock();
+    }
+
+    public void unlock(String userId) {
+        userLocks.get(userId).unlock();
+    }
+
+    public boolean hasVoted(String userId) {
+        return userVotes.containsKey(userId);
+    }
+
+    /**
+     * 记录投票并计票
+     *
+     * @param region 地区标签，可为null
+     * @return ACCEPTED；用户已投过返回DUPLICATE；候选人未知或已停用返回INVALID
+     */
+    public Outcome record(String userId, String candidateId, String region) {
+        int ordinal = catalogs.current().resolve(candidateId);
+        if (ordinal < 0) {
+            return Outcome.INVALID;
+        }
+        if (userVotes.putIfAbsent(userId, ordinal) != null) {
+            return Outcome.DUPLICATE;
+        }
+        tallies.incrementAndGet(ordinal);
+        if (!listeners.isEmpty()) {
+            long now = System.currentTimeMillis();
+            for (Listener listener : listeners) {
+                listener.accepted(ordinal, region, now);
+            }
+        }
+        return Outcome.ACCEPTED;
+    }
+
+    /**
+     * 不阻塞的投票入口（TCP网关）：用户正被HTTP路径处理时返回IN_PROGRESS，否则直接记录
+     */
+    public Outcome submit(String userId, String candidateId, String region) {
+        ReentrantLock lock = userLocks.get(userId);
+        if (lock != null && lock.isLocked()) {
+            return Outcome.IN_PROGRESS;
+        }
+        return record(userId, candidateId, region);
+    }
+
+    public int getVotes(String candidateId) {
+        int ordinal = catalogs.current().ordinalOf(candidateId);
+        return ordinal >= 0 ? tallies.get(ordinal) : 0;
+    }
+
+    public int getVotes(int ordinal) {
+        return tallies.get(ordinal);
+    }
+
+    /**
+     * 按候选人序号顺序返回票数（含已停用候选人此前得到的票）
+     */
+    public Map<String, Integer> getResults() {
+        CandidateCatalog catalog = catalogs.current();
+        Map<String, Integer> results = new LinkedHashMap<>();
+        for (int i = 0; i < catalog.size(); i++) {
+            results.put(catalog.id(i), tallies.get(i));
+        }
+        return results;
+    }
+
+    // Getter方法
+    public CandidateCatalog getCatalog() { return catalogs.current(); }
+    public int getVoterCount() { return userVotes.size(); }
+    public int getLockCount() { return userLocks.size(); }
+}
@@ -0,0 +1,220 @@
+package p.projectone.leaderboard;
+
+import p.projectone.catalog.CandidateCatalog;
+import p.projectone.protocol.JsonText;
+
+import java.util.Arrays;
+
+/**
+ * 按票数降序排列的候选人排行榜，随计票增量维护
+ * order按票数降序存放候选人序号，positions是其反向索引。票数只增不减：一个候选人加票后，
+ * 与它上方票数更少的每一段（票数相同的一段连续位置）的最前一位交换，段首用二分查找定位，
+ * 只移动这一个候选人，不整体排序。查询前K名直接读order的前K项；名次是所在票数段的段首位置加一
+ * （并列同名次）。
+ *
+ * 版本：每次改动记下改动到的最靠前位置（touched），前K名的版本是touched前K项的最大值，
+ * 只有前K名的候选人或票数真正变化时才会变，客户端据此判断是否需要重新获取。
+ * 改动序号每个进程从0开始，重启或换到另一个节点后会重复，因此HTTP的ETag由etag()生成：
+ * 排行榜创建时刻（启动纪元）、目录版本和前K名版本三者组合，姓名等目录内容变化也会让ETag变化。
+ *
+ * 复杂度：O(跨过的票数段数 × log n) - 加票；O(K) - 前K名；O(log n) - 名次
+ * 数组按目录的候选人数分配，目录增长时在锁内成倍扩容，不按序号上限预先分配。
+ *
+ * 实现方式：有序序号数组 + 反向索引 + 按位置的改动序号，读写都在同一把锁内
+ *
+ * @author Distributed Systems Team
+ */
+public class Leaderboard {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private int[] votes;
+    private int[] order;
+    private int[] positions;
+    private long[] touched;
+    private final long epoch = System.currentTimeMillis();
+    private int size;
+    private long sequence;
+
+    public Leaderboard() {
+        this(INITIAL_CAPACITY);
+    }
+
+    /**
+     * @param capacity 初始容量，候选人更多时自动扩容
+     */
+    public Leaderboard(int capacity) {
+        this.votes = new int[capacity];
+        this.order = new int[capacity];
+        this.positions = new int[capacity];
+        this.touched = new long[capacity];
+    }
+
+    /**
+     * 候选人加一票
+     */
+    public synchronized void increment(int ordinal) {
+        grow(ordinal + 1);
+        moveUp(ordinal, votes[ordinal] + 1);
+    }
+
+    /**
+     * 把候选人票数提高到count，count不大于当前票数时忽略
+     * 用于票数来自外部计数器的场景（如Redis中的全局计票），重复或乱序的读数都不会让票数回退
+     */
+    public synchronized void raiseTo(int ordinal, long count) {
+        grow(ordinal + 1);
+        if (count > votes[ordinal]) {
+            moveUp(ordinal, (int) Math.min(count, Integer.MAX_VALUE));
+        }
+    }
+
+    private void moveUp(int ordinal, int count) {
+        votes[ordinal] = count;
+        int position = positions[ordinal];
+        // 逐段上移：与上方票数更少的一段的段首交换，交换后上方各位置仍然有序
+        while (position > 0 && votes[order[position - 1]] < count) {
+            int head = blockHead(votes[order[position - 1]], position - 1);
+            int displaced = order[head];
+            order[position] = displaced;
+            positions[displaced] = position;
+            position = head;
+        }
+        order[position] = ordinal;
+        positions[ordinal] = position;
+        touched[position] = ++sequence;
+    }
+
+    /**
+     * [0, end]中票数等于count的一段的第一个位置（order在此范围内按票数降序，order[end]的票数为count）
+     */
+    private int blockHead(int count, int end) {
+        int low = 0;
+        int high = end;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (votes[order[mid]] > count) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * 目录新增的候选人以0票排在末尾
+     */
+    private void grow(int candidates) {
+        int target = Math.min(candidates, CandidateCatalog.MAX_CANDIDATES);
+        if (target > order.length) {
+            int capacity = Math.min(Math.max(target, order.length * 2), CandidateCatalog.MAX_CANDIDATES);
+            votes = Arrays.copyOf(votes, capacity);
+            order = Arrays.copyOf(order, capacity);
+            positions = Arrays.copyOf(positions, capacity);
+            touched = Arrays.copyOf(touched, capacity);
+        }
+        while (size < target) {
+            order[size] = size;
+            positions[size] = size;
+            touched[size] = ++sequence;
+            size++;
+        }
+    }
+
+    /**
+     * 前K名的快照
+     *
+     * @param k 名次数，大于候选人数时返回全部
+     * @param candidates 当前目录的候选人数
+     */
+    public synchronized Standings top(int k, int candidates) {
+        grow(candidates);
+        int count = Math.max(0, Math.min(k, Math.min(size, candidates)));
+        int[] ordinals = new int[count];
+        int[] topVotes = new int[count];
+        int[] ranks = new int[count];
+        long version = 0;
+        for (int i = 0; i < count; i++) {
+            ordinals[i] = order[i];
+            topVotes[i] = votes[order[i]];
+            ranks[i] = i > 0 && topVotes[i] == topVotes[i - 1] ? ranks[i - 1] : i + 1;
+            version = Math.max(version, touched[i]);
+        }
+        return new Standings(ordinals, topVotes, ranks, version, epoch);
+    }
+
+    /**
+     * 名次，从1开始，票数相同的候选人名次相同
+     */
+    public synchronized int rank(int ordinal) {
+        grow(ordinal + 1);
+        int position = positions[ordinal];
+        return blockHead(votes[ordinal], position) + 1;
+    }
+
+    /**
+     * 单个候选人的票数和名次，同一把锁内读取，两者一致
+     * {"candidate":"2","name":"Bob","votes":7,"rank":1}
+     */
+    public synchronized String standingJson(CandidateCatalog catalog, int ordinal) {
+        return "{\"candidate\":" + JsonText.quote(catalog.id(ordinal)) + ",\"name\":" + JsonText.quote(catalog.name(ordinal)) +
+               ",\"votes\":" + getVotes(ordinal) + ",\"rank\":" + rank(ordinal) + "}";
+    }
+
+    public synchronized int getVotes(int ordinal) {
+        return ordinal < size ? votes[ordinal] : 0;
+    }
+
+    /**
+     * 前K名：按名次排列的候选人序号、票数和名次，以及前K名的版本
+     */
+    public static final class Standings {
+        private final int[] ordinals;
+        private final int[] votes;
+        private final int[] ranks;
+        private final long version;
+        private final long epoch;
+
+        Standings(int[] ordinals, int[] votes, int[] ranks, long version, long epoch) {
+            this.ordinals = ordinals;
+            this.votes = votes;
+            this.ranks = ranks;
+            this.version = version;
+            this.epoch = epoch;
+        }
+
+        /**
+         * HTTP强ETag："<启动纪元>-<目录版本>-<前K名版本>"，跨重启、跨节点不会与旧响应的ETag相同
+         *
+         * @param catalog 生成响应体所用的目录
+         */
+        public String etag(CandidateCatalog catalog) {
+            return "\"" + Long.toString(epoch, 36) + "-" + catalog.getVersion() + "-" + version + "\"";
+        }
+
+        /**
+         * {"version":42,"top":[{"rank":1,"candidate":"2","name":"Bob","votes":7},...]}
+         */
+        public String toJson(CandidateCatalog catalog) {
+            StringBuilder json = new StringBuilder(32 + ordinals.length * 64);
+            json.append("{\"version\":").append(version).append(",\"top\":[");
+            for (int i = 0; i < ordinals.length; i++) {
+                json.append(i > 0 ? ",{" : "{")
+                    .append("\"rank\":").append(ranks[i])
+                    .append(",\"candidate\":");
+                JsonText.appendString(json, catalog.id(ordinals[i])).append(",\"name\":");
+                JsonText.appendString(json, catalog.name(ordinals[i]))
+                    .append(",\"votes\":").append(votes[i]).append('}');
+            }
+            return json.append("]}").toString();
+        }
+
+        // Getter方法
+        public int size() { return ordinals.length; }
+        public int getOrdinal(int i) { return ordinals[i]; }
+        public int getVotes(int i) { return votes[i]; }
+        public int getRank(int i) { return ranks[i]; }
+        public long getVersion() { return version; }
+    }
+}
@@ -0,0 +1,75 @@
+package p.projectone.lock;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 进程内投票锁
+ * 适用于单节点部署：每个用户一个租约条目，加锁和释放都是一次ConcurrentHashMap原子操作，
+ * 不同用户之间互不阻塞。租约过期后可被其他会话接管，与Redis锁的过期语义一致。
+ *
+ * 复杂度：O(1) - 加锁和释放
+ * 实现方式：ConcurrentHashMap + 租约时间
+ *
+ * @author Distributed Systems Team
+ */
+public class LocalVoteLockProvider implements VoteLockProvider {
+
+    private final ConcurrentHashMap<String, Lease> leases = new ConcurrentHashMap<>();
+    private final long leaseMillis;
+
+    public LocalVoteLockProvider(long leaseMillis) {
+        this.leaseMillis = leaseMillis;
+    }
+
+    @Override
+    public boolean tryLock(String userId, String sessionId) {
+        long now = System.currentTimeMillis();
+        Lease lease = new Lease(sessionId, now + leaseMillis);
+        return leases.compute(userId, (key, current) ->
+                current == null || current.expiresAt <= now ? lease : current) == lease;
+    }
+
+    @Override
+    public boolean releaseLock(String userId, String sessionId) {
+        boolean[] released = {false};
+        leases.computeIfPresent(userId, (key, current) -> {
+            if (current.sessionId.equals(sessionId)) {
+                released[0] = true;
+                return null;
+            }
+            return current;
+        });
+        return released[0];
+    }
+
+    @Override
+    public boolean isLocked(String userId) {
+        return getRemainingMillis(userId) > 0;
+    }
+
+    @Override
+    public long getRemainingMillis(String userId) {
+        Lease lease = leases.get(userId);
+        return lease != null ? Math.max(0, lease.expiresAt - System.currentTimeMillis()) : 0;
+    }
+
+    @Override
+    public void forceRelease(String userId) {
+        leases.remove(userId);
+    }
+
+    @Override
+    public String getName() {
+        return "local";
+    }
+
+    private static final class Lease {
+        private final String sessionId;
+        private final long expiresAt;
+
+        private Lease(String sessionId, long expiresAt) {
+            this.sessionId = sessionId;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package p.projectone.lock;
+
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Redis投票锁
+ * 加锁是一次带过期时间的SETNX，释放是一次比较并删除脚本，各一次往返；
+ * 不再用节点级本地锁串行化所有用户，SETNX本身是原子的。
+ *
+ * 复杂度：O(1) - 每次操作一次Redis往返
+ * 实现方式：SET NX PX + Lua比较删除
+ *
+ * @author Distributed Systems Team
+ */
+public class RedisVoteLockProvider implements VoteLockProvider {
+
+    private static final String LOCK_PREFIX = "vote_lock:";
+
+    private final LockStore store;
+    private final long lockTimeoutMillis;
+
+    /**
+     * 锁的键值存储，生产环境由Redis实现，基准测试可以换成本地替身
+     */
+    public interface LockStore {
+
+        boolean setIfAbsent(String key, String value, long ttlMillis);
+
+        boolean deleteIfEquals(String key, String value);
+
+        boolean exists(String key);
+
+        /**
+         * 剩余过期时间（毫秒），键不存在返回0
+         */
+        long remainingMillis(String key);
+
+        void delete(String key);
+    }
+
+    public RedisVoteLockProvider(LockStore store, long lockTimeoutMillis) {
+        this.store = store;
+        this.lockTimeoutMillis = lockTimeoutMillis;
+    }
+
+    public RedisVoteLockProvider(RedisTemplate<String, String> redisTemplate, long lockTimeoutMillis) {
+        this(new RedisTemplateLockStore(redisTemplate), lockTimeoutMillis);
+    }
+
+    @Override
+    public boolean tryLock(String userId, String sessionId) {
+        return store.setIfAbsent(LOCK_PREFIX + userId, sessionId, lockTimeoutMillis);
+    }
+
+    @Override
+    public boolean releaseLock(String userId, String sessionId) {
+        return store.deleteIfEquals(LOCK_PREFIX + userId, sessionId);
+    }
+
+    @Override
+    public boolean isLocked(String userId) {
+        return store.exists(LOCK_PREFIX + userId);
+    }
+
+    @Override
+    public long getRemainingMillis(String userId) {
+        return store.remainingMillis(LOCK_PREFIX + userId);
+    }
+
+    @Override
+    public void forceRelease(String userId) {
+        store.delete(LOCK_PREFIX + userId);
+    }
+
+    @Override
+    public String getName() {
+        return "redis";
+    }
+
+    /**
+     * 基于RedisTemplate的锁存储
+     */
+    private static final class RedisTemplateLockStore implements LockStore {
+
+        // 只有值仍是自己的会话ID时才删除，避免删掉过期后被别人重新获取的锁
+        private static final RedisScript<Long> DELETE_IF_EQUALS = new DefaultRedisScript<>(
+                "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('del', KEYS[1]) else return 0 end",
+                Long.class);
+
+        private final RedisTemplate<String, String> redisTemplate;
+
+        private RedisTemplateLockStore(RedisTemplate<String, String> redisTemplate) {
+            this.redisTemplate = redisTemplate;
+        }
+
+        @Override
+        public boolean setIfAbsent(String key, String value, long ttlMillis) {
+            return Boolean.TRUE.equals(redisTemplate.opsForValue()
+                    .setIfAbsent(key, value, ttlMillis, TimeUnit.MILLISECONDS));
+        }
+
+        @Override
+        public boolean deleteIfEquals(String key, String value) {
+            Long deleted = redisTemplate.execute(DELETE_IF_EQUALS, Collections.singletonList(key), value);
+            return deleted != null && deleted > 0;
+        }
+
+        @Override
+        public boolean exists(String key) {
+            return Boolean.TRUE.equals(redisTemplate.hasKey(key));
+        }
+
+        @Override
+        public long remainingMillis(String key) {
+            Long ttl = redisTemplate.getExpire(key, TimeUnit.MILLISECONDS);
+            return ttl != null && ttl > 0 ? ttl : 0;
+        }
+
+        @Override
+        public void delete(String key) {
+            redisTemplate.delete(key);
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package p.projectone.lock;
+
+/**
+ * 投票锁提供者
+ * 按用户加锁，防止同一用户的投票被并发处理；加锁不等待，锁已被持有时直接失败。
+ * 实现：redis（SETNX + 过期时间）、zookeeper（Curator InterProcessMutex）、local（单节点进程内）
+ *
+ * @author Distributed Systems Team
+ */
+public interface VoteLockProvider {
+
+    /**
+     * 尝试获取用户锁
+     *
+     * @param userId 用户ID
+     * @param sessionId 会话ID（锁的持有者）
+     * @return 是否成功获取锁
+     */
+    boolean tryLock(String userId, String sessionId) throws Exception;
+
+    /**
+     * 释放用户锁，只有持有者才能释放
+     *
+     * @param userId 用户ID
+     * @param sessionId 会话ID
+     * @return 是否成功释放锁
+     */
+    boolean releaseLock(String userId, String sessionId) throws Exception;
+
+    /**
+     * 检查用户是否已被锁定
+     */
+    boolean isLocked(String userId) throws Exception;
+
+    /**
+     * 锁的剩余时间（毫秒），未锁定返回0，不会过期的锁返回-1
+     */
+    long getRemainingMillis(String userId) throws Exception;
+
+    /**
+     * 强制释放锁（管理员功能）
+     */
+    void forceRelease(String userId) throws Exception;
+
+    /**
+     * 提供者名称（redis、zookeeper、local）
+     */
+    String getName();
+}
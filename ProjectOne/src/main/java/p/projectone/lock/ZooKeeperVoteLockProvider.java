@@ -0,0 +1,112 @@
+package p.projectone.lock;
+
+import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.framework.recipes.locks.InterProcessMutex;
+import org.apache.zookeeper.KeeperException;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ZooKeeper投票锁
+ * 每个用户一把Curator InterProcessMutex（{basePath}/{userId}下的临时顺序节点），
+ * 持有者会话断开时锁自动释放，不依赖过期时间。
+ * 同一节点内的竞争先在本地表里判定，失败方不必访问ZooKeeper。
+ *
+ * 注意：InterProcessMutex与线程绑定，必须由加锁的线程释放。
+ *
+ * 复杂度：O(1) - 本地判定；加锁约2-3次ZooKeeper往返（创建节点、列子节点），释放1次
+ * 实现方式：ConcurrentHashMap + InterProcessMutex
+ *
+ * @author Distributed Systems Team
+ */
+public class ZooKeeperVoteLockProvider implements VoteLockProvider {
+
+    private final CuratorFramework client;
+    private final String basePath;
+    private final long acquireWaitMillis;
+    private final ConcurrentHashMap<String, HeldLock> heldLocks = new ConcurrentHashMap<>();
+
+    public ZooKeeperVoteLockProvider(CuratorFramework client, String basePath, long acquireWaitMillis) {
+        this.client = client;
+        this.basePath = basePath;
+        this.acquireWaitMillis = acquireWaitMillis;
+    }
+
+    @Override
+    public boolean tryLock(String userId, String sessionId) throws Exception {
+        HeldLock held = new HeldLock(sessionId, new InterProcessMutex(client, lockPath(userId)));
+        if (heldLocks.putIfAbsent(userId, held) != null) {
+            return false;
+        }
+        boolean acquired = false;
+        try {
+            acquired = held.mutex.acquire(acquireWaitMillis, TimeUnit.MILLISECONDS);
+            return acquired;
+        } finally {
+            if (!acquired) {
+                heldLocks.remove(userId, held);
+            }
+        }
+    }
+
+    @Override
+    public boolean releaseLock(String userId, String sessionId) throws Exception {
+        HeldLock held = heldLocks.get(userId);
+        if (held == null || !held.sessionId.equals(sessionId)) {
+            return false;
+        }
+        try {
+            held.mutex.release();
+        } finally {
+            heldLocks.remove(userId, held);
+        }
+        return true;
+    }
+
+    @Override
+    public boolean isLocked(String userId) throws Exception {
+        if (heldLocks.containsKey(userId)) {
+            return true;
+        }
+        try {
+            return !client.getChildren().forPath(lockPath(userId)).isEmpty();
+        } catch (KeeperException.NoNodeException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public long getRemainingMillis(String userId) throws Exception {
+        return isLocked(userId) ? -1 : 0;
+    }
+
+    @Override
+    public void forceRelease(String userId) throws Exception {
+        heldLocks.remove(userId);
+        try {
+            client.delete().deletingChildrenIfNeeded().forPath(lockPath(userId));
+        } catch (KeeperException.NoNodeException e) {
+            // 没有人持有
+        }
+    }
+
+    @Override
+    public String getName() {
+        return "zookeeper";
+    }
+
+    private String lockPath(String userId) {
+        return basePath + "/" + userId;
+    }
+
+    private static final class HeldLock {
+        private final String sessionId;
+        private final InterProcessMutex mutex;
+
+        private HeldLock(String sessionId, InterProcessMutex mutex) {
+            this.sessionId = sessionId;
+            this.mutex = mutex;
+        }
+    }
+}
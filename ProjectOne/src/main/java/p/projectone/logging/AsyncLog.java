@@ -0,0 +1,470 @@
+package p.projectone.logging;
+
+import p.projectone.concurrent.RingBuffer;
+import p.projectone.concurrent.WaitStrategy;
+
+import java.io.PrintStream;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 异步结构化日志
+ * 业务线程只做级别判断、采样/限流判断，然后把未格式化的记录放进无锁环形缓冲区；
+ * 单个后台线程批量取出、格式化并一次性写出。缓冲区满时丢弃并计数，业务线程永远不会阻塞在输出上。
+ *
+ * 每条记录带事件名（如 vote.success），可按事件配置采样（每N条输出1条）和限流（每秒最多M条），
+ * 被限流的条数附在该事件下一条输出的 suppressed 字段上。
+ * 注意：参数在写出线程中才格式化，调用方不要传入之后还会被修改的可变对象。
+ *
+ * 复杂度：O(1) - 记录；O(k) - 批量写出k条
+ * 实现方式：RingBuffer（MPMC无锁队列） + 单写出线程 + 按事件的采样/限流状态
+ *
+ * @author Distributed Systems Team
+ */
+public class AsyncLog {
+
+    private static final int BATCH_SIZE = 256;
+    private static final long IDLE_WAIT_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final DateTimeFormatter TIME_FORMAT =
+            DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss").withZone(ZoneId.systemDefault());
+
+    private static volatile AsyncLog defaultLog;
+
+    private final RingBuffer<LogRecord> buffer;
+    private final PrintStream out;
+    private final Thread writer;
+    // 写出线程每毫秒轮询一次，生产者不需要任何唤醒操作
+    private final WaitStrategy waitStrategy =
+            new WaitStrategy.SpinThenParkWaitStrategy(0, TimeUnit.MILLISECONDS.toNanos(1));
+
+    private volatile LogLevel level;
+    private volatile boolean json;
+    private volatile int defaultRateLimit;
+    private volatile boolean running = true;
+
+    private final Map<String, EventPolicy> policies = new ConcurrentHashMap<>();
+
+    // 统计
+    private final LongAdder written = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder sampledOut = new LongAdder();
+    private final LongAdder rateLimited = new LongAdder();
+    private long reportedDropped = 0;
+
+    // 写出线程按秒缓存格式化好的时间，只在该线程访问
+    private long cachedSecond = -1;
+    private String cachedTime;
+
+    /**
+     * @param out 输出流
+     * @param level 最低输出级别
+     * @param bufferSize 缓冲区容量（条）
+     */
+    public AsyncLog(PrintStream out, LogLevel level, int bufferSize) {
+        this.out = out;
+        this.level = level;
+        this.buffer = new RingBuffer<>(bufferSize);
+        this.writer = new Thread(this::writeLoop, "async-log-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * 进程默认日志，首次使用时按系统属性创建：
+     * vote.log.level、vote.log.format（text|json）、vote.log.buffer-size、vote.log.sample、
+     * vote.log.rate-limit、vote.log.default-rate-limit
+     */
+    public static AsyncLog getDefault() {
+        AsyncLog log = defaultLog;
+        return log != null ? log : initDefault(Integer.getInteger("vote.log.buffer-size", 8192));
+    }
+
+    /**
+     * 创建进程默认日志（写到System.out），已创建时直接返回，缓冲区容量只在创建时生效
+     */
+    public static synchronized AsyncLog initDefault(int bufferSize) {
+        if (defaultLog == null) {
+            AsyncLog log = new AsyncLog(System.out, LogLevel.parse(System.getProperty("vote.log.level", "INFO")),
+                    bufferSize);
+            log.setFormat(System.getProperty("vote.log.format", "text"));
+            log.setSampling(System.getProperty("vote.log.sample", ""));
+            log.setRateLimits(System.getProperty("vote.log.rate-limit", ""),
+                    Integer.getInteger("vote.log.default-rate-limit", 0));
+            Runtime.getRuntime().addShutdownHook(new Thread(log::close, "async-log-shutdown"));
+            defaultLog = log;
+        }
+        return defaultLog;
+    }
+
+    /**
+     * 判断某个级别是否输出，调用方在构造参数前先判断
+     */
+    public boolean isEnabled(LogLevel messageLevel) {
+        return messageLevel.ordinal() >= level.ordinal() && messageLevel != LogLevel.OFF;
+    }
+
+    /**
+     * 记录一条日志，不格式化、不做I/O
+     *
+     * @param messageLevel 级别
+     * @param logger 记录者名称
+     * @param event 事件名，用于采样、限流和检索
+     * @param template 消息模板，{} 按顺序替换为参数
+     * @param args 参数
+     */
+    public void log(LogLevel messageLevel, String logger, String event, String template, Object[] args) {
+        if (!isEnabled(messageLevel)) {
+            return;
+        }
+        EventPolicy policy = policyFor(event);
+        long suppressed = 0;
+        long sampleEvery = 1;
+        if (policy != null) {
+            if (!policy.sample()) {
+                sampledOut.increment();
+                return;
+            }
+            if (!policy.tryAcquire()) {
+                rateLimited.increment();
+                return;
+            }
+            suppressed = policy.takeSuppressed();
+            sampleEvery = policy.sampleEvery;
+        }
+        LogRecord record = new LogRecord(System.currentTimeMillis(), messageLevel, logger, event,
+                Thread.currentThread().getName(), template, args, sampleEvery, suppressed);
+        if (!buffer.offer(record)) {
+            dropped.increment();
+        }
+    }
+
+    private EventPolicy policyFor(String event) {
+        EventPolicy policy = policies.get(event);
+        if (policy == null && defaultRateLimit > 0) {
+            int limit = defaultRateLimit;
+            policy = policies.computeIfAbsent(event, key -> new EventPolicy(1, limit));
+        }
+        return policy;
+    }
+
+    /**
+     * 设置最低输出级别，立即生效
+     */
+    public void setLevel(LogLevel level) {
+        this.level = level;
+    }
+
+    public LogLevel getLevel() {
+        return level;
+    }
+
+    /**
+     * 输出格式：text（人读）或 json（每行一个JSON对象）
+     */
+    public void setFormat(String format) {
+        if (!"text".equalsIgnoreCase(format) && !"json".equalsIgnoreCase(format)) {
+            throw new IllegalArgumentException("Unknown log format: " + format);
+        }
+        this.json = "json".equalsIgnoreCase(format);
+    }
+
+    /**
+     * 按事件配置采样，格式 "event=N,event=N"，每N条输出1条
+     */
+    public void setSampling(String spec) {
+        for (Map.Entry<String, Integer> entry : parseSpec(spec).entrySet()) {
+            policies.compute(entry.getKey(), (event, current) -> new EventPolicy(entry.getValue(),
+                    current != null ? current.maxPerSecond : defaultRateLimit));
+        }
+    }
+
+    /**
+     * 按事件配置限流，格式 "event=M,event=M"，每秒最多输出M条；defaultLimit对未配置的事件生效（0不限）
+     */
+    public void setRateLimits(String spec, int defaultLimit) {
+        this.defaultRateLimit = defaultLimit;
+        for (Map.Entry<String, Integer> entry : parseSpec(spec).entrySet()) {
+            policies.compute(entry.getKey(), (event, current) ->
+                    new EventPolicy(current != null ? current.sampleEvery : 1, entry.getValue()));
+        }
+    }
+
+    private static Map<String, Integer> parseSpec(String spec) {
+        Map<String, Integer> parsed = new ConcurrentHashMap<>();
+        if (spec == null || spec.isBlank()) {
+            return parsed;
+        }
+        for (String item : spec.split(",")) {
+            String[] pair = item.split("=");
+            if (pair.length != 2) {
+                throw new IllegalArgumentException("Expected event=value but got: " + item);
+            }
+            parsed.put(pair[0].trim(), Integer.parseInt(pair[1].trim()));
+        }
+        return parsed;
+    }
+
+    /**
+     * 停止写出线程，先把缓冲区中剩余的记录写完
+     */
+    public void close() {
+        running = false;
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(2));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void writeLoop() {
+        List<LogRecord> batch = new ArrayList<>(BATCH_SIZE);
+        StringBuilder text = new StringBuilder(16 * 1024);
+        while (running || !buffer.isEmpty()) {
+            if (buffer.drainTo(batch, BATCH_SIZE) == 0) {
+                reportDropped(text);
+                try {
+                    waitStrategy.waitFor(() -> !running || !buffer.isEmpty(), IDLE_WAIT_NANOS);
+                } catch (InterruptedException e) {
+                    running = false;
+                }
+                continue;
+            }
+            for (LogRecord record : batch) {
+                try {
+                    format(record, text);
+                } catch (RuntimeException e) {
+                    // 参数的toString出错时不能让写出线程退出
+                    text.append("日志格式化失败 - 事件: ").append(record.event).append(", 错误: ").append(e).append('\n');
+                }
+            }
+            written.add(batch.size());
+            batch.clear();
+            reportDropped(text);
+        }
+        reportDropped(text);
+        out.flush();
+    }
+
+    private void reportDropped(StringBuilder text) {
+        long total = dropped.sum();
+        if (total > reportedDropped) {
+            format(new LogRecord(System.currentTimeMillis(), LogLevel.WARN, "AsyncLog", "log.dropped",
+                    Thread.currentThread().getName(), "日志缓冲区已满，丢弃 {} 条日志",
+                    new Object[]{total - reportedDropped}, 1, 0), text);
+            reportedDropped = total;
+        }
+        if (text.length() > 0) {
+            out.print(text);
+            out.flush();
+            text.setLength(0);
+        }
+    }
+
+    private void format(LogRecord record, StringBuilder text) {
+        if (json) {
+            text.append("{\"ts\":\"");
+            appendTime(text, record.timeMillis);
+            text.append("\",\"level\":\"").append(record.level).append('"');
+            jsonField(text, "logger", record.logger);
+            jsonField(text, "event", record.event);
+            jsonField(text, "thread", record.thread);
+            text.append(",\"msg\":\"");
+            int start = text.length();
+            appendMessage(text, record.template, record.args);
+            escapeJson(text, start);
+            text.append('"');
+            if (record.args != null && record.args.length > 0) {
+                text.append(",\"args\":[");
+                for (int i = 0; i < record.args.length; i++) {
+                    if (i > 0) {
+                        text.append(',');
+                    }
+                    Object arg = record.args[i];
+                    if (arg instanceof Number || arg instanceof Boolean) {
+                        text.append(arg);
+                    } else if (arg == null) {
+                        text.append("null");
+                    } else {
+                        text.append('"');
+                        int argStart = text.length();
+                        text.append(arg);
+                        escapeJson(text, argStart);
+                        text.append('"');
+                    }
+                }
+                text.append(']');
+            }
+            if (record.sampleEvery > 1) {
+                text.append(",\"sample\":").append(record.sampleEvery);
+            }
+            if (record.suppressed > 0) {
+                text.append(",\"suppressed\":").append(record.suppressed);
+            }
+            text.append("}\n");
+        } else {
+            appendTime(text, record.timeMillis);
+            text.append(' ').append(record.level);
+            if (record.level.name().length() == 4) {
+                text.append(' ');
+            }
+            text.append(" [").append(record.thread).append("] ").append(record.logger)
+                .append(' ').append(record.event).append(" - ");
+            appendMessage(text, record.template, record.args);
+            if (record.sampleEvery > 1) {
+                text.append(" sample=1/").append(record.sampleEvery);
+            }
+            if (record.suppressed > 0) {
+                text.append(" suppressed=").append(record.suppressed);
+            }
+            text.append('\n');
+        }
+    }
+
+    private void appendTime(StringBuilder text, long timeMillis) {
+        long second = timeMillis / 1000;
+        if (second != cachedSecond) {
+            cachedTime = TIME_FORMAT.format(Instant.ofEpochSecond(second));
+            cachedSecond = second;
+        }
+        int millis = (int) (timeMillis % 1000);
+        text.append(cachedTime).append('.');
+        if (millis < 100) {
+            text.append('0');
+        }
+        if (millis < 10) {
+            text.append('0');
+        }
+        text.append(millis);
+    }
+
+    private static void appendMessage(StringBuilder text, String template, Object[] args) {
+        int argIndex = 0;
+        int from = 0;
+        int length = template.length();
+        while (from < length) {
+            int placeholder = template.indexOf("{}", from);
+            if (placeholder < 0 || args == null || argIndex >= args.length) {
+                text.append(template, from, length);
+                return;
+            }
+            text.append(template, from, placeholder).append(args[argIndex++]);
+            from = placeholder + 2;
+        }
+    }
+
+    private static void jsonField(StringBuilder text, String name, String value) {
+        text.append(",\"").append(name).append("\":\"");
+        int start = text.length();
+        text.append(value);
+        escapeJson(text, start);
+        text.append('"');
+    }
+
+    private static void escapeJson(StringBuilder text, int start) {
+        for (int i = start; i < text.length(); i++) {
+            char ch = text.charAt(i);
+            String replacement = null;
+            if (ch == '"' || ch == '\\') {
+                replacement = "\\" + ch;
+            } else if (ch == '\n') {
+                replacement = "\\n";
+            } else if (ch == '\r') {
+                replacement = "\\r";
+            } else if (ch == '\t') {
+                replacement = "\\t";
+            } else if (ch < 0x20) {
+                replacement = String.format("\\u%04x", (int) ch);
+            }
+            if (replacement != null) {
+                text.replace(i, i + 1, replacement);
+                i += replacement.length() - 1;
+            }
+        }
+    }
+
+    // Getter方法
+    public long getWritten() { return written.sum(); }
+    public long getDropped() { return dropped.sum(); }
+    public long getSampledOut() { return sampledOut.sum(); }
+    public long getRateLimited() { return rateLimited.sum(); }
+    public int getBuffered() { return buffer.size(); }
+    public int getCapacity() { return buffer.capacity(); }
+
+    /**
+     * 未格式化的日志记录
+     */
+    private static final class LogRecord {
+        private final long timeMillis;
+        private final LogLevel level;
+        private final String logger;
+        private final String event;
+        private final String thread;
+        private final String template;
+        private final Object[] args;
+        private final long sampleEvery;
+        private final long suppressed;
+
+        private LogRecord(long timeMillis, LogLevel level, String logger, String event, String thread,
+                          String template, Object[] args, long sampleEvery, long suppressed) {
+            this.timeMillis = timeMillis;
+            this.level = level;
+            this.logger = logger;
+            this.event = event;
+            this.thread = thread;
+            this.template = template;
+            this.args = args;
+            this.sampleEvery = sampleEvery;
+            this.suppressed = suppressed;
+        }
+    }
+
+    /**
+     * 单个事件的采样和限流状态
+     * 限流按秒计窗：窗口内计数超过上限的记录被丢弃，并累计到suppressed
+     */
+    private static final class EventPolicy {
+        private final long sampleEvery;
+        private final int maxPerSecond;
+        private final AtomicLong seen = new AtomicLong(0);
+        private final AtomicLong window = new AtomicLong(0);
+        private final AtomicLong windowCount = new AtomicLong(0);
+        private final AtomicLong suppressed = new AtomicLong(0);
+
+        private EventPolicy(long sampleEvery, int maxPerSecond) {
+            this.sampleEvery = Math.max(1, sampleEvery);
+            this.maxPerSecond = maxPerSecond;
+        }
+
+        private boolean sample() {
+            return sampleEvery == 1 || seen.getAndIncrement() % sampleEvery == 0;
+        }
+
+        private boolean tryAcquire() {
+            if (maxPerSecond <= 0) {
+                return true;
+            }
+            long second = System.nanoTime() / 1_000_000_000L;
+            long current = window.get();
+            if (second != current && window.compareAndSet(current, second)) {
+                windowCount.set(0);
+            }
+            if (windowCount.incrementAndGet() <= maxPerSecond) {
+                return true;
+            }
+            suppressed.incrementAndGet();
+            return false;
+        }
+
+        private long takeSuppressed() {
+            return suppressed.get() == 0 ? 0 : suppressed.getAndSet(0);
+        }
+    }
+}
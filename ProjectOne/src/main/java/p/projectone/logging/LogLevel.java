@@ -0,0 +1,17 @@
+package p.projectone.logging;
+
+/**
+ * 日志级别，按严重程度递增；OFF 关闭全部输出
+ *
+ * @author Distributed Systems Team
+ */
+public enum LogLevel {
+    DEBUG, INFO, WARN, ERROR, OFF;
+
+    /**
+     * 按配置名解析级别，忽略大小写
+     */
+    public static LogLevel parse(String name) {
+        return valueOf(name.trim().toUpperCase());
+    }
+}
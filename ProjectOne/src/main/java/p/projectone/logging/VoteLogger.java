@@ -0,0 +1,149 @@
+package p.projectone.logging;
+
+/**
+ * 日志记录者
+ * 固定参数个数的重载避免了可变参数数组：级别关闭时调用只剩一次级别判断，不分配对象、不拼接字符串。
+ * 消息模板中的 {} 在写出线程中按顺序替换为参数。
+ *
+ * @author Distributed Systems Team
+ */
+public final class VoteLogger {
+
+    private final String name;
+    private final AsyncLog log;
+
+    /**
+     * @param name 记录者名称
+     * @param log 日志实例，null表示使用进程默认日志
+     */
+    public VoteLogger(String name, AsyncLog log) {
+        this.name = name;
+        this.log = log;
+    }
+
+    /**
+     * 绑定进程默认日志的记录者
+     */
+    public static VoteLogger get(Class<?> type) {
+        return new VoteLogger(type.getSimpleName(), null);
+    }
+
+    private AsyncLog log() {
+        return log != null ? log : AsyncLog.getDefault();
+    }
+
+    public boolean isEnabled(LogLevel level) {
+        return log().isEnabled(level);
+    }
+
+    public boolean isDebugEnabled() {
+        return isEnabled(LogLevel.DEBUG);
+    }
+
+    public void log(LogLevel level, String event, String message, Object... args) {
+        AsyncLog target = log();
+        if (target.isEnabled(level)) {
+            target.log(level, name, event, message, args);
+        }
+    }
+
+    public void debug(String event, String message) {
+        log(LogLevel.DEBUG, event, message, (Object[]) null);
+    }
+
+    public void debug(String event, String message, Object arg) {
+        AsyncLog target = log();
+        if (target.isEnabled(LogLevel.DEBUG)) {
+            target.log(LogLevel.DEBUG, name, event, message, new Object[]{arg});
+        }
+    }
+
+    public void debug(String event, String message, Object arg1, Object arg2) {
+        AsyncLog target = log();
+        if (target.isEnabled(LogLevel.DEBUG)) {
+            target.log(LogLevel.DEBUG, name, event, message, new Object[]{arg1, arg2});
+        }
+    }
+
+    public void debug(String event, String message, Object arg1, Object arg2, Object arg3) {
+        AsyncLog target = log();
+        if (target.isEnabled(LogLevel.DEBUG)) {
+            target.log(LogLevel.DEBUG, name, event, message, new Object[]{arg1, arg2, arg3});
+        }
+    }
+
+    public void info(String event, String message) {
+        log(LogLevel.INFO, event, message, (Object[]) null);
+    }
+
+    public void info(String event, String message, Object arg) {
+        AsyncLog target = log();
+        if (target.isEnabled(LogLevel.INFO)) {
+            target.log(LogLevel.INFO, name, event, message, new Object[]{arg});
+        }
+    }
+
+    public void info(String event, String message, Object arg1, Object arg2) {
+        AsyncLog target = log();
+        if (target.isEnabled(LogLevel.INFO)) {
+            target.log(LogLevel.INFO, name, event, message, new Object[]{arg1, arg2});
+        }
+    }
+
+    public void info(String event, String message, Object arg1, Object arg2, Object arg3) {
+        AsyncLog target = log();
+        if (target.isEnabled(LogLevel.INFO)) {
+            target.log(LogLevel.INFO, name, event, message, new Object[]{arg1, arg2, arg3});
+        }
+    }
+
+    public void warn(String event, String message) {
+        log(LogLevel.WARN, event, message, (Object[]) null);
+    }
+
+    public void warn(String event, String message, Object arg) {
+        AsyncLog target = log();
+        if (target.isEnabled(LogLevel.WARN)) {
+            target.log(LogLevel.WARN, name, event, message, new Object[]{arg});
+        }
+    }
+
+    public void warn(String event, String message, Object arg1, Object arg2) {
+        AsyncLog target = log();
+        if (target.isEnabled(LogLevel.WARN)) {
+            target.log(LogLevel.WARN, name, event, message, new Object[]{arg1, arg2});
+        }
+    }
+
+    public void warn(String event, String message, Object arg1, Object arg2, Object arg3) {
+        AsyncLog target = log();
+        if (target.isEnabled(LogLevel.WARN)) {
+            target.log(LogLevel.WARN, name, event, message, new Object[]{arg1, arg2, arg3});
+        }
+    }
+
+    public void error(String event, String message) {
+        log(LogLevel.ERROR, event, message, (Object[]) null);
+    }
+
+    public void error(String event, String message, Object arg) {
+        AsyncLog target = log();
+        if (target.isEnabled(LogLevel.ERROR)) {
+            target.log(LogLevel.ERROR, name, event, message, new Object[]{arg});
+        }
+    }
+
+    public void error(String event, String message, Object arg1, Object arg2) {
+        AsyncLog target = log();
+        if (target.isEnabled(LogLevel.ERROR)) {
+            target.log(LogLevel.ERROR, name, event, message, new Object[]{arg1, arg2});
+        }
+    }
+
+    public void error(String event, String message, Object arg1, Object arg2, Object arg3) {
+        AsyncLog target = log();
+        if (target.isEnabled(LogLevel.ERROR)) {
+            target.log(LogLevel.ERROR, name, event, message, new Object[]{arg1, arg2, arg3});
+        }
+    }
+}
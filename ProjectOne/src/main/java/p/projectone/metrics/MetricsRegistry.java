@@ -0,0 +1,181 @@
+package p.projectone.metrics;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.DoubleSupplier;
+import java.util.function.LongSupplier;
+
+/**
+ * 指标注册表
+ * 计时器（各投票阶段的延迟分布）、计数器和仪表盘，按Prometheus文本格式（0.0.4）导出。
+ * 计数器和仪表盘以函数形式注册，直接读取各服务已有的原子变量，热路径上没有额外开销；
+ * 计时器导出为summary（分位数 + _sum + _count），另附 _max 仪表盘。
+ *
+ * 复杂度：O(1) - 记录；O(指标数 × 桶数) - 导出
+ * 实现方式：ConcurrentSkipListMap（按名称排序，导出稳定） + LatencyHistogram
+ *
+ * @author Distributed Systems Team
+ */
+public class MetricsRegistry {
+
+    public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+    private final Map<String, Family> families = new ConcurrentSkipListMap<>();
+
+    /**
+     * 获取或创建计时器，同名同标签返回同一个实例
+     *
+     * @param name 指标名（秒为单位，建议以_seconds结尾）
+     * @param help 说明
+     * @param labels 标签，键值交替
+     * @return 计时器
+     */
+    public Timer timer(String name, String help, String... labels) {
+        return (Timer) family(name, help, Type.SUMMARY).metrics.computeIfAbsent(labelText(labels), key -> new Timer());
+    }
+
+    /**
+     * 投票处理某个阶段的计时器：vote_stage_seconds{stage="..."}
+     * 阶段：parse、lock、dedupe、persist、replicate、queue_wait、end_to_end
+     */
+    public Timer stageTimer(String stage) {
+        return timer("vote_stage_seconds", "Vote processing latency by stage", "stage", stage);
+    }
+
+    /**
+     * 注册计数器（单调递增），值由调用方提供
+     */
+    public void counter(String name, String help, LongSupplier value, String... labels) {
+        family(name, help, Type.COUNTER).metrics.put(labelText(labels), value);
+    }
+
+    /**
+     * 注册仪表盘，值由调用方提供
+     */
+    public void gauge(String name, String help, DoubleSupplier value, String... labels) {
+        family(name, help, Type.GAUGE).metrics.put(labelText(labels), value);
+    }
+
+    /**
+     * 按Prometheus文本格式导出所有指标
+     */
+    public String scrape() {
+        StringBuilder out = new StringBuilder(4096);
+        for (Family family : families.values()) {
+            family.write(out);
+        }
+        return out.toString();
+    }
+
+    private Family family(String name, String help, Type type) {
+        Family family = families.computeIfAbsent(name, key -> new Family(name, help, type));
+        if (family.type != type) {
+            throw new IllegalArgumentException("Metric " + name + " already registered as " + family.type);
+        }
+        return family;
+    }
+
+    private static String labelText(String... labels) {
+        if (labels.length % 2 != 0) {
+            throw new IllegalArgumentException("Labels must be key/value pairs");
+        }
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < labels.length; i += 2) {
+            if (i > 0) {
+                text.append(',');
+            }
+            text.append(labels[i]).append("=\"");
+            String value = labels[i + 1];
+            for (int c = 0; c < value.length(); c++) {
+                char ch = value.charAt(c);
+                if (ch == '\\' || ch == '"') {
+                    text.append('\\').append(ch);
+                } else if (ch == '\n') {
+                    text.append("\\n");
+                } else {
+                    text.append(ch);
+                }
+            }
+            text.append('"');
+        }
+        return text.toString();
+    }
+
+    private enum Type {
+        COUNTER("counter"), GAUGE("gauge"), SUMMARY("summary");
+
+        private final String text;
+
+        Type(String text) {
+            this.text = text;
+        }
+    }
+
+    private static final class Family {
+        private final String name;
+        private final String help;
+        private final Type type;
+        private final Map<String, Object> metrics = new ConcurrentSkipListMap<>();
+
+        private Family(String name, String help, Type type) {
+            this.name = name;
+            this.help = help;
+            this.type = type;
+        }
+
+        private void write(StringBuilder out) {
+            header(out, name, help, type.text);
+            for (Map.Entry<String, Object> entry : metrics.entrySet()) {
+                String labels = entry.getKey();
+                Object metric = entry.getValue();
+                if (metric instanceof LongSupplier) {
+                    sample(out, name, labels, null, Long.toString(((LongSupplier) metric).getAsLong()));
+                } else if (metric instanceof DoubleSupplier) {
+                    sample(out, name, labels, null, Double.toString(((DoubleSupplier) metric).getAsDouble()));
+                } else {
+                    LatencyHistogram histogram = ((Timer) metric).getHistogram();
+                    for (double quantile : QUANTILES) {
+                        sample(out, name, labels, "quantile=\"" + quantile + "\"",
+                                seconds(histogram.getValueAtPercentile(quantile * 100)));
+                    }
+                    sample(out, name + "_sum", labels, null, seconds(histogram.getSum()));
+                    sample(out, name + "_count", labels, null, Long.toString(histogram.getCount()));
+                }
+            }
+            if (type == Type.SUMMARY) {
+                header(out, name + "_max", "Maximum of " + name, "gauge");
+                for (Map.Entry<String, Object> entry : metrics.entrySet()) {
+                    sample(out, name + "_max", entry.getKey(), null,
+                            seconds(((Timer) entry.getValue()).getHistogram().getMax()));
+                }
+            }
+        }
+
+        private static void header(StringBuilder out, String name, String help, String type) {
+            out.append("# HELP ").append(name).append(' ').append(help.replace("\\", "\\\\").replace("\n", "\\n"))
+               .append('\n');
+            out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+        }
+
+        private static void sample(StringBuilder out, String name, String labels, String extraLabel, String value) {
+            out.append(name);
+            if (!labels.isEmpty() || extraLabel != null) {
+                out.append('{').append(labels);
+                if (extraLabel != null) {
+                    if (!labels.isEmpty()) {
+                        out.append(',');
+                    }
+                    out.append(extraLabel);
+                }
+                out.append('}');
+            }
+            out.append(' ').append(value).append('\n');
+        }
+
+        private static String seconds(long micros) {
+            return Double.toString(micros / 1_000_000.0);
+        }
+    }
+}
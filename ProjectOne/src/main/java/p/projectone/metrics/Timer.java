@@ -0,0 +1,37 @@
+package p.projectone.metrics;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 计时器
+ * 以微秒记录到LatencyHistogram，导出时换算为秒。记录一次只有一次原子自增和两次LongAdder累加。
+ *
+ * @author Distributed Systems Team
+ */
+public class Timer {
+
+    private final LatencyHistogram histogram = new LatencyHistogram();
+
+    /**
+     * 记录一段耗时
+     *
+     * @param nanos 耗时（纳秒）
+     */
+    public void record(long nanos) {
+        histogram.record(TimeUnit.NANOSECONDS.toMicros(nanos));
+    }
+
+    /**
+     * 记录从startNanos（System.nanoTime()）到现在的耗时
+     */
+    public void recordSince(long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * 微秒直方图
+     */
+    public LatencyHistogram getHistogram() {
+        return histogram;
+    }
+}
@@ -2,18 +2,25 @@ package p.projectone.model;
 
 import org.springframework.data.annotation.Id;
 import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.Field;
 
 import java.time.LocalDateTime;
 import java.util.UUID;
 
 /**
  * 候选人数据模型
+ * ordinal是目录序号，首次加载时由CandidateCatalogService分配并写回文档，之后不再改变；
+ * 投票记录中存的就是这个序号，所以它不能依赖加载顺序。
  * 
  * @author Distributed Systems Team
  */
 @Document(collection = "candidates")
 public class Candidate {
     
+    // 存储字段名与索引名，分配序号时建唯一索引使用
+    public static final String ORDINAL_FIELD = "ordinal";
+    public static final String ORDINAL_INDEX = "candidate_ordinal";
+    
     @Id
     private String id;
     
@@ -27,6 +34,9 @@ public class Candidate {
     
     private boolean active;
     
+    @Field(ORDINAL_FIELD)
+    private Integer ordinal; // 目录序号，尚未分配时为null
+    
     // 构造函数
     public Candidate() {
         this.id = UUID.randomUUID().toString();
@@ -90,6 +100,14 @@ public class Candidate {
         this.active = active;
     }
     
+    public Integer getOrdinal() {
+        return ordinal;
+    }
+    
+    public void setOrdinal(Integer ordinal) {
+        this.ordinal = ordinal;
+    }
+    
     @Override
     public String toString() {
         return "Candidate{" +
@@ -98,6 +116,7 @@ public class Candidate {
                 ", description='" + description + '\'' +
                 ", party='" + party + '\'' +
                 ", active=" + active +
+                ", ordinal=" + ordinal +
                 '}';
     }
 } 
\ No newline at end of file
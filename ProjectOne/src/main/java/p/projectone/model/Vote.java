@@ -1,59 +1,109 @@
 package p.projectone.model;
 
+import org.bson.types.ObjectId;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.TypeAlias;
 import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.Field;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
 import org.springframework.data.mongodb.core.index.Indexed;
 
-import java.time.LocalDateTime;
-import java.util.UUID;
-
 /**
  * 投票数据模型
  * 展示分布式系统中的数据复制和一致性
- * 
+ *
+ * 紧凑存储格式：字段名在每个文档中都要存一遍，因此使用单字母短名；
+ * ID为ObjectId（12字节，按时间递增，索引只在右端追加），时间为epoch毫秒，
+ * 候选人存目录序号而不是ID和姓名，状态存整数编码，_class存别名"v"。
+ * 地区标签为可选字段，未带地区的投票不写该字段。
+ * (n, t)索引供汇总和分组统计重启时重放本节点检查点之后的投票。
+ * 旧格式（UUID字符串ID、candidateName、LocalDateTime）由VoteMigrationTool转换。
+ *
  * @author Distributed Systems Team
  */
 @Document(collection = "votes")
+@TypeAlias("v")
+@CompoundIndex(name = Vote.NODE_TIME_INDEX, def = "{'n': 1, 't': 1}")
 public class Vote {
     
+    // 存储字段名与索引名，迁移工具建索引时使用同一组名字
+    public static final String USER_FIELD = "u";
+    public static final String CANDIDATE_FIELD = "c";
+    public static final String TIME_FIELD = "t";
+    public static final String NODE_FIELD = "n";
+    public static final String SESSION_FIELD = "s";
+    public static final String STATUS_FIELD = "st";
+    public static final String REGION_FIELD = "r";
+    public static final String USER_INDEX = "vote_user";
+    public static final String CANDIDATE_INDEX = "vote_candidate";
+    public static final String NODE_TIME_INDEX = "vote_node_time";
+    
     @Id
-    private String id;
+    private String id; // ObjectId的十六进制形式，写入时转换为ObjectId
     
-    @Indexed(unique = true)
+    @Indexed(name = USER_INDEX, unique = true)
+    @Field(USER_FIELD)
     private String userId;
     
-    @Indexed
-    private String candidateId;
-    
-    private String candidateName;
+    @Indexed(name = CANDIDATE_INDEX)
+    @Field(CANDIDATE_FIELD)
+    private int candidate; // 候选人目录序号
     
-    private LocalDateTime voteTime;
+    @Field(TIME_FIELD)
+    private long voteTime; // epoch毫秒
     
+    @Field(NODE_FIELD)
     private String serverNode; // 记录处理该投票的服务器节点
     
+    @Field(SESSION_FIELD)
     private String sessionId; // 用于分布式锁验证
     
-    private VoteStatus status;
+    @Field(STATUS_FIELD)
+    private int status;
+    
+    @Field(REGION_FIELD)
+    private String region; // 地区标签（规范化后），用于分组统计
     
     public enum VoteStatus {
-        PENDING,    // 待处理
-        PROCESSING, // 处理中
-        CONFIRMED,  // 已确认
-        REJECTED    // 被拒绝
+        PENDING(0),    // 待处理
+        PROCESSING(1), // 处理中
+        CONFIRMED(2),  // 已确认
+        REJECTED(3);   // 被拒绝
+        
+        private final int code;
+        
+        VoteStatus(int code) {
+            this.code = code;
+        }
+        
+        /**
+         * 存储编码，查询条件中按状态过滤时使用
+         */
+        public int getCode() {
+            return code;
+        }
+        
+        public static VoteStatus fromCode(int code) {
+            for (VoteStatus status : values()) {
+                if (status.code == code) {
+                    return status;
+                }
+            }
+            throw new IllegalArgumentException("unknown vote status code: " + code);
+        }
     }
     
     // 构造函数
     public Vote() {
-        this.id = UUID.randomUUID().toString();
-        this.voteTime = LocalDateTime.now();
-        this.status = VoteStatus.PENDING;
+        this.id = new ObjectId().toHexString();
+        this.voteTime = System.currentTimeMillis();
+        this.status = VoteStatus.PENDING.getCode();
     }
     
-    public Vote(String userId, String candidateId, String candidateName) {
+    public Vote(String userId, int candidate) {
         this();
         this.userId = userId;
-        this.candidateId = candidateId;
-        this.candidateName = candidateName;
+        this.candidate = candidate;
     }
     
     // Getter和Setter方法
@@ -73,27 +123,19 @@ public class Vote {
         this.userId = userId;
     }
     
-    public String getCandidateId() {
-        return candidateId;
-    }
-    
-    public void setCandidateId(String candidateId) {
-        this.candidateId = candidateId;
+    public int getCandidate() {
+        return candidate;
     }
     
-    public String getCandidateName() {
-        return candidateName;
+    public void setCandidate(int candidate) {
+        this.candidate = candidate;
     }
     
-    public void setCandidateName(String candidateName) {
-        this.candidateName = candidateName;
-    }
-    
-    public LocalDateTime getVoteTime() {
+    public long getVoteTime() {
         return voteTime;
     }
     
-    public void setVoteTime(LocalDateTime voteTime) {
+    public void setVoteTime(long voteTime) {
         this.voteTime = voteTime;
     }
     
@@ -113,12 +155,20 @@ public class Vote {
         this.sessionId = sessionId;
     }
     
+    public String getRegion() {
+        return region;
+    }
+    
+    public void setRegion(String region) {
+        this.region = region;
+    }
+    
     public VoteStatus getStatus() {
-        return status;
+        return VoteStatus.fromCode(status);
     }
     
     public void setStatus(VoteStatus status) {
-        this.status = status;
+        this.status = status.getCode();
     }
     
     @Override
@@ -126,11 +176,11 @@ public class Vote {
         return "Vote{" +
                 "id='" + id + '\'' +
                 ", userId='" + userId + '\'' +
-                ", candidateId='" + candidateId + '\'' +
-                ", candidateName='" + candidateName + '\'' +
+                ", candidate=" + candidate +
                 ", voteTime=" + voteTime +
                 ", serverNode='" + serverNode + '\'' +
-                ", status=" + status +
+                ", status=" + getStatus() +
+                (region != null ? ", region='" + region + '\'' : "") +
                 '}';
     }
-} 
\ No newline at end of file
+}
@@ -0,0 +1,147 @@
+package p.projectone.protocol;
+
+/**
+ * 手写JSON时的字符串转义和读取
+ * 候选人ID、姓名、政党和节点ID来自目录文件或配置，可能含引号、反斜杠或控制字符，
+ * 拼进JSON前都经过这里，逐字符转义引号、反斜杠和控制字符。
+ * 读取与写入配套：从开引号开始，按转义规则找到未转义的闭引号并还原原值，供手写的解析器
+ * （目录JSON、投票请求体）使用，值中的引号、逗号和花括号不会被误当成结构字符。
+ *
+ * 复杂度：O(n) - n为字符串长度
+ * 实现方式：逐字符扫描；读取时没有转义的字符串直接截取子串
+ *
+ * @author Distributed Systems Team
+ */
+public final class JsonText {
+
+    private JsonText() {
+    }
+
+    /**
+     * 追加带引号的JSON字符串，null追加为null字面量
+     */
+    public static StringBuilder appendString(StringBuilder json, String value) {
+        if (value == null) {
+            return json.append("null");
+        }
+        json.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char ch = value.charAt(i);
+            if (ch == '"' || ch == '\\') {
+                json.append('\\').append(ch);
+            } else if (ch == '\n') {
+                json.append("\\n");
+            } else if (ch == '\r') {
+                json.append("\\r");
+            } else if (ch == '\t') {
+                json.append("\\t");
+            } else if (ch < 0x20) {
+                json.append(String.format("\\u%04x", (int) ch));
+            } else {
+                json.append(ch);
+            }
+        }
+        return json.append('"');
+    }
+
+    /**
+     * 带引号的JSON字符串
+     */
+    public static String quote(String value) {
+        return appendString(new StringBuilder(value != null ? value.length() + 2 : 4), value).toString();
+    }
+
+    /**
+     * 读取从开引号位置开始的字符串
+     *
+     * @param json JSON文本
+     * @param quote 开引号的位置
+     * @return 还原转义后的值
+     * @throws IllegalArgumentException 没有闭引号或转义不完整
+     */
+    public static String readString(String json, int quote) {
+        StringBuilder value = null;
+        int i = quote + 1;
+        int plainFrom = i;
+        while (i < json.length()) {
+            char ch = json.charAt(i);
+            if (ch == '"') {
+                return value == null ? json.substring(plainFrom, i) : value.append(json, plainFrom, i).toString();
+            }
+            if (ch != '\\') {
+                i++;
+                continue;
+            }
+            if (value == null) {
+                value = new StringBuilder();
+            }
+            value.append(json, plainFrom, i);
+            if (i + 1 >= json.length()) {
+                break;
+            }
+            char escaped = json.charAt(i + 1);
+            i += 2;
+            if (escaped == 'u') {
+                if (i + 4 > json.length()) {
+                    throw new IllegalArgumentException("truncated \\u escape at " + (i - 2));
+                }
+                value.append((char) Integer.parseInt(json.substring(i, i + 4), 16));
+                i += 4;
+            } else {
+                value.append(unescape(escaped));
+            }
+            plainFrom = i;
+        }
+        throw new IllegalArgumentException("unterminated string at " + quote);
+    }
+
+    private static char unescape(char escaped) {
+        if (escaped == 'n') {
+            return '\n';
+        } else if (escaped == 'r') {
+            return '\r';
+        } else if (escaped == 't') {
+            return '\t';
+        } else if (escaped == 'b') {
+            return '\b';
+        } else if (escaped == 'f') {
+            return '\f';
+        }
+        // \" \\ \/
+        return escaped;
+    }
+
+    /**
+     * 从开引号位置跳过整个字符串
+     *
+     * @return 闭引号之后的位置
+     */
+    public static int skipString(String json, int quote) {
+        int i = quote + 1;
+        while (i < json.length()) {
+            char ch = json.charAt(i);
+            if (ch == '"') {
+                return i + 1;
+            }
+            i += ch == '\\' ? 2 : 1;
+        }
+        throw new IllegalArgumentException("unterminated string at " + quote);
+    }
+
+    /**
+     * from之后第一个不在字符串内的target字符
+     *
+     * @return 位置，没有时返回-1
+     */
+    public static int indexOutsideStrings(String json, char target, int from) {
+        int i = from;
+        while (i < json.length()) {
+            char ch = json.charAt(i);
+            if (ch == target) {
+                return i;
+            }
+            i = ch == '"' ? skipString(json, i) : i + 1;
+        }
+        return -1;
+    }
+}
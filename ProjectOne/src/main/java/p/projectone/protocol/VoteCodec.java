@@ -0,0 +1,263 @@
+package p.projectone.protocol;
+
+import p.projectone.catalog.CandidateCatalog;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+/**
+ * 投票请求的线路编解码
+ * JSON：{"userId":"...","candidateId":"...","candidateName":"..."}，幂等键放在Idempotency-Key请求头；
+ * 二进制帧（Content-Type: application/x-vote-frame），所有整数为大端：
+ *
+ *   u16 长度（不含这2字节） | u8 版本(1) | u8 标志 | u8 候选人序号 | u8 userId长度 | userId(UTF-8)
+ *   [标志bit1: 16字节UUID幂等键 | 标志bit0: u8长度 + UTF-8幂等键]
+ *
+ * 版本2只把候选人序号换成u16，其余不变；序号超过255时才编码为版本2，已有客户端发出的版本1帧照常解码。
+ * 候选人用序号代替ID和姓名，姓名由服务端按序号补齐；UUID幂等键按16字节原样编码。
+ * 一次投票约20~40字节，只需按偏移读取，不需要扫描文本。
+ *
+ * 复杂度：O(n) - n为userId长度
+ * 实现方式：ByteBuffer定长头 + 长度前缀字符串
+ *
+ * @author Distributed Systems Team
+ */
+public final class VoteCodec {
+
+    public static final String FRAME_CONTENT_TYPE = "application/x-vote-frame";
+    public static final String JSON_CONTENT_TYPE = "application/json";
+
+    private static final int VERSION = 1;
+    private static final int VERSION_WIDE_ORDINAL = 2;
+    private static final int FLAG_KEY = 0x01;
+    private static final int FLAG_UUID_KEY = 0x02;
+    private static final int HEADER_BYTES = 6;
+    private static final int WIDE_HEADER_BYTES = 7;
+    private static final int MAX_STRING_BYTES = 255;
+
+    /**
+     * 合法帧的最大字节数：定长头 + 最长userId + 最长字符串幂等键
+     */
+    public static final int MAX_FRAME_BYTES = WIDE_HEADER_BYTES + MAX_STRING_BYTES + 1 + MAX_STRING_BYTES;
+
+    private VoteCodec() {
+    }
+
+    /**
+     * 按Content-Type判断是否为二进制帧
+     */
+    public static boolean isFrame(String contentType) {
+        return contentType != null && contentType.regionMatches(true, 0, FRAME_CONTENT_TYPE, 0,
+                FRAME_CONTENT_TYPE.length());
+    }
+
+    /**
+     * 编码一次投票
+     *
+     * @param userId 用户ID，UTF-8后1~255字节
+     * @param candidateOrdinal 候选人序号（0~65535），超过255时编码为版本2
+     * @param idempotencyKey 幂等键，可为空；UUID格式时编码为16字节
+     * @return 完整的帧（含长度前缀）
+     */
+    public static byte[] encode(String userId, int candidateOrdinal, String idempotencyKey) {
+        byte[] user = userId.getBytes(StandardCharsets.UTF_8);
+        if (user.length == 0 || user.length > MAX_STRING_BYTES) {
+            throw new IllegalArgumentException("userId must be 1-255 bytes");
+        }
+        if (candidateOrdinal < 0 || candidateOrdinal >= CandidateCatalog.MAX_CANDIDATES) {
+            throw new IllegalArgumentException("candidate ordinal out of range: " + candidateOrdinal);
+        }
+
+        int flags = 0;
+        UUID uuid = null;
+        byte[] key = null;
+        int keyBytes = 0;
+        if (idempotencyKey != null) {
+            uuid = parseUuid(idempotencyKey);
+            if (uuid != null) {
+                flags = FLAG_UUID_KEY;
+                keyBytes = 16;
+            } else {
+                key = idempotencyKey.getBytes(StandardCharsets.UTF_8);
+                if (key.length > MAX_STRING_BYTES) {
+                    throw new IllegalArgumentException("idempotency key must be at most 255 bytes");
+                }
+                flags = FLAG_KEY;
+                keyBytes = 1 + key.length;
+            }
+        }
+
+        boolean wide = candidateOrdinal > 0xFF;
+        int length = (wide ? WIDE_HEADER_BYTES : HEADER_BYTES) + user.length + keyBytes;
+        ByteBuffer frame = ByteBuffer.allocate(length);
+        frame.putShort((short) (length - 2));
+        frame.put((byte) (wide ? VERSION_WIDE_ORDINAL : VERSION));
+        frame.put((byte) flags);
+        if (wide) {
+            frame.putShort((short) candidateOrdinal);
+        } else {
+            frame.put((byte) candidateOrdinal);
+        }
+        frame.put((byte) user.length);
+        frame.put(user);
+        if (uuid != null) {
+            frame.putLong(uuid.getMostSignificantBits());
+            frame.putLong(uuid.getLeastSignificantBits());
+        } else if (key != null) {
+            frame.put((byte) key.length);
+            frame.put(key);
+        }
+        return frame.array();
+    }
+
+    /**
+     * 解码一帧
+     *
+     * @param frame 请求体
+     * @param catalog 候选人目录，按序号补齐候选人ID和姓名
+     * @return 投票请求
+     * @throws IllegalArgumentException 帧不完整、版本不支持或候选人序号越界
+     */
+    public static VoteMessage decode(byte[] frame, CandidateCatalog catalog) {
+        if (frame.length < 2 || (((frame[0] & 0xFF) << 8) | (frame[1] & 0xFF)) != frame.length - 2) {
+            throw new IllegalArgumentException("frame length does not match body of " + frame.length + " bytes");
+        }
+        return decode(ByteBuffer.wrap(frame), catalog);
+    }
+
+    /**
+     * 从缓冲区当前位置解码一帧（可为直接缓冲区），返回后position指向下一帧
+     * 帧内容非法时同样跳过整帧，连接上的后续帧不受影响
+     *
+     * @throws IllegalArgumentException 缓冲区中没有完整的一帧，或帧内容非法
+     */
+    public static VoteMessage decode(ByteBuffer in, CandidateCatalog catalog) {
+        int total = completeFrameLength(in);
+        if (total < 0) {
+            throw new IllegalArgumentException("incomplete frame: " + in.remaining() + " bytes available");
+        }
+        int end = in.position() + total;
+        int limit = in.limit();
+        in.limit(end);
+        try {
+            in.position(in.position() + 2);
+            return decodeBody(in, catalog);
+        } finally {
+            in.limit(limit);
+            in.position(end);
+        }
+    }
+
+    /**
+     * 缓冲区当前位置的一帧是否已完整到达
+     *
+     * @return 整帧字节数（含长度前缀），不完整时返回-1
+     */
+    public static int completeFrameLength(ByteBuffer in) {
+        if (in.remaining() < 2) {
+            return -1;
+        }
+        int total = 2 + (in.getShort(in.position()) & 0xFFFF);
+        return in.remaining() >= total ? total : -1;
+    }
+
+    private static VoteMessage decodeBody(ByteBuffer in, CandidateCatalog catalog) {
+        if (in.remaining() < HEADER_BYTES - 2) {
+            throw new IllegalArgumentException("frame too short: " + (in.remaining() + 2));
+        }
+        int version = in.get() & 0xFF;
+        if (version != VERSION && version != VERSION_WIDE_ORDINAL) {
+            throw new IllegalArgumentException("unsupported frame version: " + version);
+        }
+        if (version == VERSION_WIDE_ORDINAL && in.remaining() < WIDE_HEADER_BYTES - 3) {
+            throw new IllegalArgumentException("frame too short: " + (in.remaining() + 3));
+        }
+        int flags = in.get() & 0xFF;
+        int ordinal = version == VERSION_WIDE_ORDINAL ? in.getShort() & 0xFFFF : in.get() & 0xFF;
+        if (ordinal >= catalog.size()) {
+            throw new IllegalArgumentException("unknown candidate ordinal: " + ordinal);
+        }
+        String userId = readString(in, in.get() & 0xFF);
+
+        String idempotencyKey = null;
+        if ((flags & FLAG_UUID_KEY) != 0) {
+            if (in.remaining() < 16) {
+                throw new IllegalArgumentException("truncated idempotency key");
+            }
+            idempotencyKey = new UUID(in.getLong(), in.getLong()).toString();
+        } else if ((flags & FLAG_KEY) != 0) {
+            if (!in.hasRemaining()) {
+                throw new IllegalArgumentException("truncated idempotency key");
+            }
+            idempotencyKey = readString(in, in.get() & 0xFF);
+        }
+        if (in.hasRemaining()) {
+            throw new IllegalArgumentException("trailing bytes in frame: " + in.remaining());
+        }
+        return new VoteMessage(userId.isEmpty() ? null : userId, catalog.id(ordinal), catalog.name(ordinal),
+                idempotencyKey);
+    }
+
+    /**
+     * 编码JSON请求体
+     */
+    public static String encodeJson(String userId, String candidateId, String candidateName) {
+        return "{\"userId\":" + JsonText.quote(userId) + ",\"candidateId\":" + JsonText.quote(candidateId) +
+               ",\"candidateName\":" + JsonText.quote(candidateName) + "}";
+    }
+
+    /**
+     * 解析JSON请求体（简化实现，只识别字符串字段）
+     *
+     * @param body 请求体
+     * @param idempotencyKey Idempotency-Key请求头，可为空
+     * @return 投票请求，缺少的字段为null
+     */
+    public static VoteMessage parseJson(String body, String idempotencyKey) {
+        return new VoteMessage(jsonField(body, "userId"), jsonField(body, "candidateId"),
+                jsonField(body, "candidateName"), idempotencyKey, jsonField(body, "region"));
+    }
+
+    private static String jsonField(String body, String name) {
+        String marker = "\"" + name + "\":\"";
+        int start = body.indexOf(marker);
+        if (start < 0) {
+            return null;
+        }
+        try {
+            String value = JsonText.readString(body, start + marker.length() - 1);
+            return value.isEmpty() ? null : value;
+        } catch (IllegalArgumentException e) {
+            // 字符串未闭合，按缺少字段处理
+            return null;
+        }
+    }
+
+    private static String readString(ByteBuffer in, int length) {
+        if (in.remaining() < length) {
+            throw new IllegalArgumentException("truncated string: need " + length + " bytes, have " + in.remaining());
+        }
+        if (in.hasArray()) {
+            String value = new String(in.array(), in.arrayOffset() + in.position(), length, StandardCharsets.UTF_8);
+            in.position(in.position() + length);
+            return value;
+        }
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static UUID parseUuid(String value) {
+        if (value.length() != 36) {
+            return null;
+        }
+        try {
+            UUID uuid = UUID.fromString(value);
+            // 只有规范小写形式才能无损往返
+            return uuid.toString().equals(value) ? uuid : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
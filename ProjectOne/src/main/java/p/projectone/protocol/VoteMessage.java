@@ -0,0 +1,54 @@
+package p.projectone.protocol;
+
+/**
+ * 解码后的投票请求，与线路格式（JSON或二进制帧）无关
+ * 字段缺失或格式错误时userId/candidateId为null，由服务端按"Invalid request data"处理
+ * region为可选的地区标签（只在JSON请求中出现），用于分组统计
+ *
+ * @author Distributed Systems Team
+ */
+public final class VoteMessage {
+
+    private final String userId;
+    private final String candidateId;
+    private final String candidateName;
+    private final String idempotencyKey;
+    private final String region;
+
+    public VoteMessage(String userId, String candidateId, String candidateName, String idempotencyKey) {
+        this(userId, candidateId, candidateName, idempotencyKey, null);
+    }
+
+    public VoteMessage(String userId, String candidateId, String candidateName, String idempotencyKey, String region) {
+        this.userId = userId;
+        this.candidateId = candidateId;
+        this.candidateName = candidateName;
+        this.idempotencyKey = idempotencyKey;
+        this.region = region;
+    }
+
+    /**
+     * 无法解码的请求
+     */
+    public static VoteMessage invalid() {
+        return new VoteMessage(null, null, null, null);
+    }
+
+    public boolean isValid() {
+        return userId != null && candidateId != null;
+    }
+
+    // Getter方法
+    public String getUserId() { return userId; }
+    public String getCandidateId() { return candidateId; }
+    public String getCandidateName() { return candidateName; }
+    public String getIdempotencyKey() { return idempotencyKey; }
+    public String getRegion() { return region; }
+
+    @Override
+    public String toString() {
+        return "VoteMessage{userId=" + userId + ", candidateId=" + candidateId + ", candidateName=" + candidateName +
+               (idempotencyKey != null ? ", idempotencyKey=" + idempotencyKey : "") +
+               (region != null ? ", region=" + region : "") + "}";
+    }
+}
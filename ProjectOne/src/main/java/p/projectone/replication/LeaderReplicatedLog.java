@@ -0,0 +1,842 @@
+package p.projectone.replication;
+
+import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.framework.api.transaction.CuratorOp;
+import org.apache.curator.framework.recipes.leader.LeaderLatch;
+import org.apache.curator.framework.recipes.leader.LeaderLatchListener;
+import org.apache.curator.framework.recipes.nodes.PersistentNode;
+import org.apache.zookeeper.CreateMode;
+import org.apache.zookeeper.KeeperException;
+import org.apache.zookeeper.Watcher;
+import org.apache.zookeeper.data.Stat;
+import p.projectone.logging.LogLevel;
+import p.projectone.logging.VoteLogger;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 基于ZooKeeper选主的复制投票日志
+ * 各节点通过Curator LeaderLatch选出领导者；领导者为投票分配单调递增的序号并写入ZooKeeper日志节点，
+ * 所有节点（含领导者）按序号顺序读取、应用，并把已应用序号写回各自的进度节点；多数节点应用后领导者推进提交序号。
+ * 多数派只统计在线成员（members下有临时节点）的进度，但仍需达到 clusterSize/2+1 个；
+ * 离线超过stale-progress期限的节点的进度节点被删除，不再阻止日志删除。
+ * 跟随者收到的投票以临时顺序节点提交到proposals下，领导者在同一个事务里追加日志并把分配的序号写回提案节点，
+ * 跟随者读到序号后删除提案，等待提交序号越过它；跟随者会话失效时未处理的提案随之消失。
+ * 领导者切换时新领导者先递增epoch（epoch节点的版本号），旧领导者之后的写入因版本检查失败被隔离；
+ * 新领导者从日志末尾继续分配序号，从持久化的提交序号继续推进提交。
+ *
+ * ZooKeeper节点：
+ *   {base}/leader          LeaderLatch
+ *   {base}/epoch           版本号即epoch，数据为当前领导者ID
+ *   {base}/log/{seq}       日志条目，序号补零到19位
+ *   {base}/commit          已提交序号
+ *   {base}/applied/{node}  各节点已应用序号
+ *   {base}/members/{node}  在线成员，临时节点，会话恢复后自动重建
+ *   {base}/proposals/p-{n} 跟随者转发的投票，临时顺序节点；领导者分配序号后数据改为序号（版本号变为1）
+ *   {base}/snapshots/{node} 正在从快照初始化的节点，数据为源节点ID
+ *
+ * 日志写入ZooKeeper即持久，不会被截断，因此各节点应用的内容一致；调用方收到失败（超时、领导者切换）时
+ * 条目仍可能在之后被提交，应用回调需按投票ID幂等。所有节点（在线的和尚未过期的离线节点）都应用过的条目会被删除。
+ * 删除之后才加入的新节点、以及进度节点已过期后才回来的节点，下一条要应用的条目已不在日志里：
+ * 这样的节点进度低于删除位置，领导者既不把它计入多数派也不让它阻止删除；节点自己从进度最大的在线成员初始化——
+ * 先登记快照节点并把进度写成源节点的进度（此后该进度阻止删除），确认之后的条目仍在日志里，
+ * 再由SnapshotLoader复制源节点的状态，最后删除快照节点，从源进度之后继续应用。
+ * 快照节点存在期间该节点的进度不计入多数派；初始化中途退出的节点重启时看到快照节点会重新初始化。
+ * 没有配置SnapshotLoader的节点只记录告警，始终不计入多数派。
+ *
+ * 复杂度：O(1) - 每条日志一次条件写入；每个节点每批一次进度写入
+ * 实现方式：LeaderLatch选主 + epoch版本检查隔离 + 顺序日志节点 + 多数派应用提交
+ *
+ * @author Distributed Systems Team
+ */
+public class LeaderReplicatedLog implements Closeable {
+
+    private static final VoteLogger LOG = VoteLogger.get(LeaderReplicatedLog.class);
+
+    // 连续应用多少条后写一次进度，追上日志末尾时立即写
+    private static final int PROGRESS_BATCH = 64;
+    // 没有新条目或进度变化时的兜底轮询间隔，正常由Watcher唤醒
+    private static final long IDLE_WAIT_MILLIS = 50;
+    private static final long RETRY_WAIT_MILLIS = 500;
+    // 一次事务删除的已应用条目数
+    private static final int TRIM_BATCH = 256;
+    // 离线节点的进度节点保留多久（毫秒）
+    public static final long DEFAULT_STALE_PROGRESS_MILLIS = TimeUnit.MINUTES.toMillis(10);
+
+    /**
+     * 日志应用回调，需按投票ID幂等：节点重启后会重放最后一次写进度之后的条目
+     */
+    @FunctionalInterface
+    public interface Applier {
+        void apply(long sequence, String voteId, String voteData) throws Exception;
+    }
+
+    /**
+     * 快照加载回调：把源节点已应用的状态复制到本节点
+     * 源节点的已应用序号不小于upTo；复制时源节点可能已应用到更后面，这些条目之后会被本节点重放，应用回调幂等即可
+     */
+    @FunctionalInterface
+    public interface SnapshotLoader {
+        void load(String source, long upTo) throws Exception;
+    }
+
+    private final CuratorFramework client;
+    private final String nodeId;
+    private final int clusterSize;
+    private final Applier applier;
+    private final SnapshotLoader snapshotLoader;
+    private final String logPath;
+    private final String epochPath;
+    private final String commitPath;
+    private final String appliedPath;
+    private final String membersPath;
+    private final String proposalsPath;
+    private final String snapshotsPath;
+    private final long staleProgressMillis;
+    private final LeaderLatch latch;
+    private PersistentNode membership;
+
+    // 领导者状态：序号和epoch在appendLock内读写
+    private final Object appendLock = new Object();
+    private volatile boolean leaderReady;
+    private int epochVersion;
+    private long nextSequence;
+    private long trimmedTo;
+    // 离线节点首次被发现离线的时间，仅提交线程访问
+    private final Map<String, Long> offlineSince = new HashMap<>();
+    // 没有SnapshotLoader时只告警一次，仅应用线程访问
+    private boolean snapshotWarned;
+    private volatile long lastSequence;
+    private volatile long commitIndex;
+    private volatile long appliedIndex;
+    private final ConcurrentSkipListMap<Long, CompletableFuture<Long>> commitWaiters = new ConcurrentSkipListMap<>();
+    // 本节点转发、尚未拿到序号的提案：提案节点路径 -> 提交时完成的Future
+    private final Map<String, CompletableFuture<Long>> forwarded = new ConcurrentHashMap<>();
+
+    // 唤醒信号用信号量而不是unpark：线程阻塞在ZooKeeper调用里时，unpark的许可会被该调用消耗掉
+    private volatile boolean running;
+    private final Semaphore applierSignal = new Semaphore(0);
+    private final Semaphore committerSignal = new Semaphore(0);
+    private final Watcher applierWakeup = event -> applierSignal.release();
+    private final Watcher committerWakeup = event -> committerSignal.release();
+
+    // 统计
+    private final AtomicLong appliedEntries = new AtomicLong(0);
+    private final AtomicInteger leaderTerms = new AtomicInteger(0);
+    private final AtomicInteger snapshotLoads = new AtomicInteger(0);
+    private volatile long leaderSince;
+
+    /**
+     * @param client 已启动的Curator客户端
+     * @param basePath ZooKeeper根路径
+     * @param nodeId 节点ID，集群内唯一
+     * @param clusterSize 集群节点数，多数派为 clusterSize/2+1
+     * @param applier 日志应用回调
+     */
+    public LeaderReplicatedLog(CuratorFramework client, String basePath, String nodeId, int clusterSize,
+                               Applier applier) {
+        this(client, basePath, nodeId, clusterSize, DEFAULT_STALE_PROGRESS_MILLIS, applier);
+    }
+
+    /**
+     * @param staleProgressMillis 节点离线超过该时间后删除其进度节点
+     */
+    public LeaderReplicatedLog(CuratorFramework client, String basePath, String nodeId, int clusterSize,
+                               long staleProgressMillis, Applier applier) {
+        this(client, basePath, nodeId, clusterSize, staleProgressMillis, applier, null);
+    }
+
+    /**
+     * @param snapshotLoader 需要的日志已删除时从其他节点初始化，为null时不初始化
+     */
+    public LeaderReplicatedLog(CuratorFramework client, String basePath, String nodeId, int clusterSize,
+                               long staleProgressMillis, Applier applier, SnapshotLoader snapshotLoader) {
+        this.client = client;
+        this.nodeId = nodeId;
+        this.clusterSize = clusterSize;
+        this.applier = applier;
+        this.snapshotLoader = snapshotLoader;
+        this.logPath = basePath + "/log";
+        this.epochPath = basePath + "/epoch";
+        this.commitPath = basePath + "/commit";
+        this.appliedPath = basePath + "/applied";
+        this.membersPath = basePath + "/members";
+        this.proposalsPath = basePath + "/proposals";
+        this.snapshotsPath = basePath + "/snapshots";
+        this.staleProgressMillis = staleProgressMillis;
+        this.latch = new LeaderLatch(client, basePath + "/leader", nodeId);
+    }
+
+    /**
+     * 创建节点、恢复本节点已应用序号，启动应用线程和提交线程并参与选主
+     * 需要的日志已删除时由应用线程从快照初始化
+     */
+    public void start() throws Exception {
+        ensurePath(logPath, "");
+        ensurePath(epochPath, "");
+        ensurePath(commitPath, "0");
+        ensurePath(appliedPath, "");
+        ensurePath(membersPath, "");
+        ensurePath(proposalsPath, "");
+        ensurePath(snapshotsPath, "");
+        ensurePath(progressPath(), "0");
+        appliedIndex = readLong(progressPath(), null);
+        // 进度节点之后再登记成员，领导者看到的在线成员总有进度可读
+        membership = new PersistentNode(client, CreateMode.EPHEMERAL, false, membersPath + "/" + nodeId, new byte[0]);
+        membership.start();
+
+        running = true;
+        Thread applierThread = new Thread(this::applyLoop, "LogApplier-" + nodeId);
+        applierThread.setDaemon(true);
+        applierThread.start();
+        Thread committerThread = new Thread(this::commitLoop, "LogCommitter-" + nodeId);
+        committerThread.setDaemon(true);
+        committerThread.start();
+
+        latch.addListener(new LeaderLatchListener() {
+            @Override
+            public void isLeader() {
+                committerSignal.release();
+            }
+
+            @Override
+            public void notLeader() {
+                stepDown("失去领导权");
+            }
+        });
+        latch.start();
+        LOG.info("leader_log.started", "复制日志节点已启动 - 节点: {}, 已应用: {}", nodeId, appliedIndex);
+    }
+
+    /**
+     * 追加一条投票，只能在领导者上调用
+     * 返回时条目已写入ZooKeeper，是否提交用whenCommitted等待
+     *
+     * @param voteId 投票ID
+     * @param voteData 投票数据
+     * @return 分配的序号
+     * @throws IllegalStateException 当前节点不是领导者，或已被新的epoch隔离
+     */
+    public long append(String voteId, String voteData) throws Exception {
+        long seq = appendEntry(encode(voteId, voteData), null);
+        applierSignal.release();
+        return seq;
+    }
+
+    /**
+     * 提交一条投票：领导者上直接追加，跟随者上转发给领导者
+     *
+     * @return 投票被多数节点应用后以序号完成；领导者切换、提案丢失时以异常完成
+     */
+    public CompletableFuture<Long> submit(String voteId, String voteData) throws Exception {
+        if (leaderReady) {
+            try {
+                return whenCommitted(append(voteId, voteData));
+            } catch (IllegalStateException e) {
+                // 刚刚失去领导权，改为转发
+            }
+        }
+        return forward(voteId, voteData);
+    }
+
+    /**
+     * 把投票作为提案转发给领导者
+     */
+    private CompletableFuture<Long> forward(String voteId, String voteData) throws Exception {
+        CompletableFuture<Long> future = new CompletableFuture<>();
+        String path = client.create().withMode(CreateMode.EPHEMERAL_SEQUENTIAL)
+            .forPath(proposalsPath + "/p-", encode(voteId, voteData));
+        forwarded.put(path, future);
+        committerSignal.release();
+        return future;
+    }
+
+    /**
+     * 在当前epoch下写入一个日志条目
+     *
+     * @param proposal 同一事务中改为序号的提案节点，为null时没有
+     * @return 分配的序号；提案已被处理或已消失时返回-1
+     */
+    private long appendEntry(byte[] data, String proposal) throws Exception {
+        synchronized (appendLock) {
+            if (!leaderReady) {
+                throw new IllegalStateException("not the leader, current leader: " + getLeaderId());
+            }
+            long seq = nextSequence;
+            while (true) {
+                List<CuratorOp> ops = new ArrayList<>(3);
+                ops.add(client.transactionOp().check().withVersion(epochVersion).forPath(epochPath));
+                ops.add(client.transactionOp().create().forPath(entryPath(seq), data));
+                if (proposal != null) {
+                    ops.add(client.transactionOp().setData().withVersion(0)
+                        .forPath(proposal, Long.toString(seq).getBytes(StandardCharsets.UTF_8)));
+                }
+                try {
+                    client.transaction().forOperations(ops);
+                    break;
+                } catch (KeeperException.NodeExistsException e) {
+                    // 上一次写入在连接中断前已成功，该序号已被占用
+                    seq++;
+                } catch (KeeperException.NoNodeException e) {
+                    // 提案的会话已失效
+                    return -1;
+                } catch (KeeperException.BadVersionException e) {
+                    if (proposal != null && client.checkExists().forPath(epochPath).getVersion() == epochVersion) {
+                        // epoch未变，是提案已被处理过
+                        return -1;
+                    }
+                    leaderReady = false;
+                    committerSignal.release();
+                    throw new IllegalStateException("fenced by a newer leader epoch");
+                }
+            }
+            nextSequence = seq + 1;
+            lastSequence = seq;
+            return seq;
+        }
+    }
+
+    /**
+     * 领导者：把尚未处理的提案（版本号为0）按创建顺序追加到日志
+     */
+    private void acceptProposals() throws Exception {
+        List<String> proposals = client.getChildren().usingWatcher(committerWakeup).forPath(proposalsPath);
+        if (proposals.isEmpty()) {
+            return;
+        }
+        proposals.sort(null);
+        boolean appended = false;
+        for (String name : proposals) {
+            String path = proposalsPath + "/" + name;
+            Stat stat = new Stat();
+            byte[] data;
+            try {
+                data = client.getData().storingStatIn(stat).forPath(path);
+            } catch (KeeperException.NoNodeException e) {
+                continue;
+            }
+            if (stat.getVersion() == 0 && appendEntry(data, path) > 0) {
+                appended = true;
+            }
+        }
+        if (appended) {
+            applierSignal.release();
+        }
+    }
+
+    /**
+     * 转发方：读取提案上分配的序号，读到后删除提案并等待该序号提交
+     */
+    private void resolveForwarded() {
+        for (Map.Entry<String, CompletableFuture<Long>> entry : forwarded.entrySet()) {
+            String path = entry.getKey();
+            CompletableFuture<Long> future = entry.getValue();
+            try {
+                Stat stat = new Stat();
+                byte[] data = client.getData().storingStatIn(stat).usingWatcher(committerWakeup).forPath(path);
+                if (stat.getVersion() == 0) {
+                    continue;
+                }
+                forwarded.remove(path);
+                client.delete().forPath(path);
+                long seq = Long.parseLong(new String(data, StandardCharsets.UTF_8).trim());
+                whenCommitted(seq).whenComplete((committed, error) -> {
+                    if (error != null) {
+                        future.completeExceptionally(error);
+                    } else {
+                        future.complete(committed);
+                    }
+                });
+            } catch (KeeperException.NoNodeException e) {
+                forwarded.remove(path);
+                future.completeExceptionally(new IllegalStateException("proposal lost with the ZooKeeper session"));
+            } catch (Exception e) {
+                LOG.warn("leader_log.proposal_failed", "读取提案失败 - 节点: {}, 提案: {}, 错误: {}", nodeId, path, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 序号被多数节点应用后完成；领导者切换时以异常完成
+     */
+    public CompletableFuture<Long> whenCommitted(long sequence) {
+        CompletableFuture<Long> future = new CompletableFuture<>();
+        commitWaiters.put(sequence, future);
+        // 注册后再检查一次，避免与提交线程错过
+        if (sequence <= commitIndex) {
+            commitWaiters.remove(sequence);
+            future.complete(sequence);
+        }
+        return future;
+    }
+
+    /**
+     * 按序号顺序应用日志：读到条目就应用，读不到时写进度并在该序号上注册创建通知后等待
+     * 启动时、以及读不到已提交的条目时，检查需要的条目是否已被删除，是则先从快照初始化
+     */
+    private void applyLoop() {
+        long persisted = appliedIndex;
+        boolean checkTrimmed = true;
+        while (running) {
+            try {
+                if (checkTrimmed) {
+                    if (behindTrimmedLog()) {
+                        if (!loadSnapshot()) {
+                            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(RETRY_WAIT_MILLIS));
+                            continue;
+                        }
+                        persisted = appliedIndex;
+                    }
+                    checkTrimmed = false;
+                }
+                long next = appliedIndex + 1;
+                byte[] data = readEntry(next);
+                if (data != null) {
+                    String[] vote = decode(data);
+                    applier.apply(next, vote[0], vote[1]);
+                    appliedIndex = next;
+                    appliedEntries.incrementAndGet();
+                    if (next - persisted >= PROGRESS_BATCH) {
+                        writeProgress(next);
+                        persisted = next;
+                    }
+                    continue;
+                }
+                if (next <= commitIndex) {
+                    // 已提交的条目一定写入过，读不到说明已被删除
+                    checkTrimmed = true;
+                    continue;
+                }
+                if (appliedIndex > persisted) {
+                    writeProgress(appliedIndex);
+                    persisted = appliedIndex;
+                }
+                if (client.checkExists().usingWatcher(applierWakeup).forPath(entryPath(next)) == null) {
+                    awaitSignal(applierSignal);
+                }
+            } catch (Exception e) {
+                if (running) {
+                    LOG.warn("leader_log.apply_failed", "应用复制日志失败 - 节点: {}, 序号: {}, 错误: {}",
+                        nodeId, appliedIndex + 1, e.getMessage());
+                    LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(RETRY_WAIT_MILLIS));
+                }
+            }
+        }
+    }
+
+    /**
+     * 领导者职责：接管、推进提交序号、删除已全部应用的条目；跟随者只同步提交序号
+     */
+    private void commitLoop() {
+        while (running) {
+            try {
+                boolean leader = latch.hasLeadership();
+                if (leader && !leaderReady) {
+                    takeOver();
+                } else if (!leader && leaderReady) {
+                    stepDown("失去领导权");
+                }
+                if (leaderReady) {
+                    acceptProposals();
+                    advanceCommit();
+                } else {
+                    commitIndex = Math.max(commitIndex, readLong(commitPath, committerWakeup));
+                    completeWaiters(commitIndex);
+                }
+                if (!forwarded.isEmpty()) {
+                    resolveForwarded();
+                }
+            } catch (Exception e) {
+                if (running) {
+                    LOG.warn("leader_log.commit_failed", "推进提交序号失败 - 节点: {}, 错误: {}", nodeId, e.getMessage());
+                }
+            }
+            awaitSignal(committerSignal);
+        }
+    }
+
+    /**
+     * 成为领导者：递增epoch隔离旧领导者，再从日志末尾和已提交序号恢复
+     */
+    private void takeOver() throws Exception {
+        synchronized (appendLock) {
+            Stat stat = client.setData().forPath(epochPath, nodeId.getBytes(StandardCharsets.UTF_8));
+            epochVersion = stat.getVersion();
+            long committed = readLong(commitPath, null);
+            List<String> entries = client.getChildren().forPath(logPath);
+            long last = committed;
+            long first = Long.MAX_VALUE;
+            for (String entry : entries) {
+                long seq = Long.parseLong(entry);
+                last = Math.max(last, seq);
+                first = Math.min(first, seq);
+            }
+            nextSequence = last + 1;
+            lastSequence = last;
+            trimmedTo = entries.isEmpty() ? last : first - 1;
+            commitIndex = Math.max(commitIndex, committed);
+            leaderReady = true;
+        }
+        leaderTerms.incrementAndGet();
+        leaderSince = System.currentTimeMillis();
+        LOG.log(LogLevel.INFO, "leader_log.elected", "成为领导者 - 节点: {}, epoch: {}, 日志末尾: {}, 已提交: {}",
+            nodeId, epochVersion, lastSequence, commitIndex);
+    }
+
+    /**
+     * 不再是领导者：停止接受追加，等待中的调用以异常完成（转发给旧领导者的提案仍在，由新领导者处理）
+     */
+    private void stepDown(String reason) {
+        boolean wasLeader = leaderReady;
+        leaderReady = false;
+        for (Map.Entry<Long, CompletableFuture<Long>> waiter; (waiter = commitWaiters.pollFirstEntry()) != null; ) {
+            waiter.getValue().completeExceptionally(new IllegalStateException(reason));
+        }
+        committerSignal.release();
+        if (wasLeader) {
+            LOG.info("leader_log.stepped_down", "不再是领导者 - 节点: {}, 原因: {}", nodeId, reason);
+        }
+    }
+
+    /**
+     * 完成序号不大于committed的等待
+     */
+    private void completeWaiters(long committed) {
+        for (Map.Entry<Long, CompletableFuture<Long>> waiter;
+             (waiter = commitWaiters.firstEntry()) != null && waiter.getKey() <= committed; ) {
+            commitWaiters.remove(waiter.getKey());
+            waiter.getValue().complete(waiter.getKey());
+        }
+    }
+
+    /**
+     * 读取在线成员的进度（同时注册变化通知），多数节点都已应用的最大序号即提交序号
+     * 不足clusterSize个在线成员时按0补齐，多数派仍为 clusterSize/2+1 个节点。
+     * 离线节点的进度不计入多数派；未过期前仍计入删除下限，避免删除它回来后还要应用的条目。
+     * 进度低于删除位置的节点需要从快照初始化，既不计入多数派也不计入删除下限；
+     * 正在初始化的节点只计入删除下限。
+     */
+    private void advanceCommit() throws Exception {
+        List<String> members = client.getChildren().usingWatcher(committerWakeup).forPath(membersPath);
+        Set<String> loading = new HashSet<>(client.getChildren().usingWatcher(committerWakeup).forPath(snapshotsPath));
+        long[] applied = new long[Math.max(members.size(), clusterSize)];
+        long minApplied = Long.MAX_VALUE;
+        for (int i = 0; i < members.size(); i++) {
+            long progress = readProgress(members.get(i), committerWakeup);
+            if (progress < trimmedTo) {
+                continue;
+            }
+            minApplied = Math.min(minApplied, progress);
+            if (!loading.contains(members.get(i))) {
+                applied[i] = progress;
+            }
+        }
+        minApplied = Math.min(minApplied, expireOfflineProgress(new HashSet<>(members)));
+        Arrays.sort(applied);
+        long majorityApplied = applied[applied.length - (clusterSize / 2 + 1)];
+        boolean advanced = majorityApplied > commitIndex;
+        if (advanced) {
+            synchronized (appendLock) {
+                client.transaction().forOperations(
+                    client.transactionOp().check().withVersion(epochVersion).forPath(epochPath),
+                    client.transactionOp().setData().forPath(commitPath,
+                        Long.toString(majorityApplied).getBytes(StandardCharsets.UTF_8)));
+            }
+            commitIndex = majorityApplied;
+            completeWaiters(majorityApplied);
+        }
+        // 删除不占用提交路径：攒够一批或本轮没有新提交时才删
+        if (members.size() >= clusterSize && minApplied != Long.MAX_VALUE && (minApplied - trimmedTo >= TRIM_BATCH || (!advanced && minApplied > trimmedTo))) {
+            trim(minApplied);
+        }
+    }
+
+    /**
+     * 节点的已应用序号，进度节点不存在（已过期）时为-1
+     */
+    private long readProgress(String node, Watcher watcher) throws Exception {
+        try {
+            return readLong(appliedPath + "/" + node, watcher);
+        } catch (KeeperException.NoNodeException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * 删除离线超过期限的节点的进度节点
+     *
+     * @param live 在线成员
+     * @return 尚未过期、进度不低于删除位置的离线节点的最小已应用序号，没有时为Long.MAX_VALUE
+     */
+    private long expireOfflineProgress(Set<String> live) throws Exception {
+        long now = System.currentTimeMillis();
+        long offlineMin = Long.MAX_VALUE;
+        List<String> nodes = client.getChildren().forPath(appliedPath);
+        offlineSince.keySet().retainAll(nodes);
+        for (String node : nodes) {
+            if (live.contains(node)) {
+                offlineSince.remove(node);
+                continue;
+            }
+            long since = offlineSince.computeIfAbsent(node, n -> now);
+            if (now - since < staleProgressMillis) {
+                long progress = readProgress(node, null);
+                if (progress >= trimmedTo) {
+                    offlineMin = Math.min(offlineMin, progress);
+                }
+                continue;
+            }
+            try {
+                client.delete().forPath(appliedPath + "/" + node);
+                LOG.info("leader_log.progress_expired", "节点 {} 离线超过 {}ms，已删除其进度", node, staleProgressMillis);
+            } catch (KeeperException.NoNodeException ignored) {
+                // 已删除
+            }
+            offlineSince.remove(node);
+        }
+        return offlineMin;
+    }
+
+    /**
+     * 删除所有节点都已应用的条目，一批在一个事务里删除，同样受epoch检查保护
+     */
+    private void trim(long minApplied) throws Exception {
+        long upTo = Math.min(minApplied, trimmedTo + TRIM_BATCH);
+        List<CuratorOp> ops = new ArrayList<>();
+        synchronized (appendLock) {
+            ops.add(client.transactionOp().check().withVersion(epochVersion).forPath(epochPath));
+        }
+        for (long seq = trimmedTo + 1; seq <= upTo; seq++) {
+            ops.add(client.transactionOp().delete().forPath(entryPath(seq)));
+        }
+        try {
+            client.transaction().forOperations(ops);
+        } catch (KeeperException.NoNodeException e) {
+            // 部分条目已被之前的领导者删除，逐条补删
+            for (long seq = trimmedTo + 1; seq <= upTo; seq++) {
+                try {
+                    client.delete().forPath(entryPath(seq));
+                } catch (KeeperException.NoNodeException ignored) {
+                    // 已删除
+                }
+            }
+        }
+        trimmedTo = upTo;
+    }
+
+    /**
+     * 本节点下一条要应用的条目是否已被删除：日志最小条目在它之后，或日志为空而提交序号已越过本节点；
+     * 快照节点还在时说明上次初始化没有完成，也需要重新初始化
+     */
+    private boolean behindTrimmedLog() throws Exception {
+        if (client.checkExists().forPath(snapshotPath()) != null) {
+            return true;
+        }
+        long lowest = lowestEntry();
+        return lowest > 0 ? lowest > appliedIndex + 1 : readLong(commitPath, null) > appliedIndex;
+    }
+
+    /**
+     * 从进度最大的在线成员初始化本节点
+     *
+     * @return 是否完成；没有SnapshotLoader、没有可用的源节点、或写进度之前源进度之后的条目已被删除时返回false，稍后重试
+     */
+    private boolean loadSnapshot() throws Exception {
+        if (snapshotLoader == null) {
+            if (!snapshotWarned) {
+                snapshotWarned = true;
+                LOG.warn("leader_log.snapshot_unavailable", "节点 {} 需要的日志已删除，未配置快照加载，不计入多数派", nodeId);
+            }
+            return false;
+        }
+        Set<String> loading = new HashSet<>(client.getChildren().forPath(snapshotsPath));
+        String source = null;
+        long upTo = -1;
+        for (String member : client.getChildren().forPath(membersPath)) {
+            if (member.equals(nodeId) || loading.contains(member)) {
+                continue;
+            }
+            long progress = readProgress(member, null);
+            if (progress > upTo) {
+                source = member;
+                upTo = progress;
+            }
+        }
+        if (source == null) {
+            return false;
+        }
+        byte[] marker = source.getBytes(StandardCharsets.UTF_8);
+        if (!ensurePath(snapshotPath(), source)) {
+            client.setData().forPath(snapshotPath(), marker);
+        }
+        writeProgress(upTo);
+        // 写进度之前领导者可能已删除源进度之后的条目
+        long lowest = lowestEntry();
+        if (lowest > 0 ? lowest > upTo + 1 : readLong(commitPath, null) > upTo) {
+            return false;
+        }
+        snapshotLoader.load(source, upTo);
+        appliedIndex = upTo;
+        client.delete().forPath(snapshotPath());
+        snapshotLoads.incrementAndGet();
+        LOG.info("leader_log.snapshot_loaded", "已从快照初始化 - 节点: {}, 源节点: {}, 序号: {}", nodeId, source, upTo);
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        running = false;
+        stepDown("节点关闭");
+        for (CompletableFuture<Long> future : forwarded.values()) {
+            future.completeExceptionally(new IllegalStateException("节点关闭"));
+        }
+        forwarded.clear();
+        applierSignal.release();
+        committerSignal.release();
+        if (membership != null) {
+            membership.close();
+        }
+        latch.close();
+    }
+
+    public boolean isLeader() {
+        return leaderReady;
+    }
+
+    /**
+     * 当前领导者ID，未知时返回null
+     */
+    public String getLeaderId() {
+        try {
+            String id = latch.getLeader().getId();
+            return id.isEmpty() ? null : id;
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    // Getter方法
+    public String getNodeId() { return nodeId; }
+    public long getLastSequence() { return lastSequence; }
+    public long getCommitIndex() { return commitIndex; }
+    public long getAppliedIndex() { return appliedIndex; }
+    public long getAppliedEntries() { return appliedEntries.get(); }
+    public int getLeaderTerms() { return leaderTerms.get(); }
+    public int getSnapshotLoads() { return snapshotLoads.get(); }
+    public long getLeaderSince() { return leaderSince; }
+    public int getPendingCommits() { return commitWaiters.size(); }
+    public int getPendingForwards() { return forwarded.size(); }
+
+    /**
+     * 等待唤醒信号，最多等待兜底轮询间隔；醒来后清空多余的信号
+     */
+    private static void awaitSignal(Semaphore signal) {
+        try {
+            if (signal.tryAcquire(IDLE_WAIT_MILLIS, TimeUnit.MILLISECONDS)) {
+                signal.drainPermits();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private String progressPath() {
+        return appliedPath + "/" + nodeId;
+    }
+
+    private String snapshotPath() {
+        return snapshotsPath + "/" + nodeId;
+    }
+
+    private String entryPath(long seq) {
+        return String.format("%s/%019d", logPath, seq);
+    }
+
+    private void writeProgress(long applied) throws Exception {
+        byte[] data = Long.toString(applied).getBytes(StandardCharsets.UTF_8);
+        try {
+            client.setData().forPath(progressPath(), data);
+        } catch (KeeperException.NoNodeException e) {
+            // 会话失效期间离线过久，进度节点已被领导者删除
+            client.create().forPath(progressPath(), data);
+        }
+    }
+
+    private byte[] readEntry(long seq) throws Exception {
+        try {
+            return client.getData().forPath(entryPath(seq));
+        } catch (KeeperException.NoNodeException e) {
+            return null;
+        }
+    }
+
+    private long readLong(String path, Watcher watcher) throws Exception {
+        byte[] data = watcher != null
+            ? client.getData().usingWatcher(watcher).forPath(path)
+            : client.getData().forPath(path);
+        String text = data == null ? "" : new String(data, StandardCharsets.UTF_8).trim();
+        return text.isEmpty() ? 0 : Long.parseLong(text);
+    }
+
+    private long lowestEntry() throws Exception {
+        long lowest = 0;
+        for (String entry : client.getChildren().forPath(logPath)) {
+            long seq = Long.parseLong(entry);
+            lowest = lowest == 0 ? seq : Math.min(lowest, seq);
+        }
+        return lowest;
+    }
+
+    /**
+     * 节点不存在时创建
+     *
+     * @return 是否新创建
+     */
+    private boolean ensurePath(String path, String initial) throws Exception {
+        if (client.checkExists().forPath(path) != null) {
+            return false;
+        }
+        try {
+            client.create().creatingParentsIfNeeded().forPath(path, initial.getBytes(StandardCharsets.UTF_8));
+            return true;
+        } catch (KeeperException.NodeExistsException e) {
+            return false;
+        }
+    }
+
+    private static byte[] encode(String voteId, String voteData) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeUTF(voteId);
+            out.writeUTF(voteData == null ? "" : voteData);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static String[] decode(byte[] data) throws IOException {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(data))) {
+            return new String[]{in.readUTF(), in.readUTF()};
+        }
+    }
+}
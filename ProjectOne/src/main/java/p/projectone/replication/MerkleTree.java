@@ -0,0 +1,214 @@
+package p.projectone.replication;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * 按键哈希区间划分的Merkle树
+ * 叶子对应键哈希的一个区间（桶），叶子哈希为桶内各条目摘要的异或，新增和替换条目可O(depth)增量更新；
+ * 异或对同一摘要计两次会抵消，因此新增只用于此前不在树中的键，已在树中的键用原摘要替换；
+ * 无法确定键是否已在树中、或不知道原摘要的桶（覆盖写入、状态不确定）标记为脏，由调用方按桶重新计算后回填。
+ * 两棵树比较时只沿哈希不同的子树向下，找到不同的叶子。
+ *
+ * 复杂度：O(depth) - 更新；O(d · depth) - 比较，d为不同的叶子数
+ * 实现方式：堆式数组存储的满二叉树 + 异或叶子摘要 + 脏叶子位图
+ *
+ * @author Distributed Systems Team
+ */
+public class MerkleTree {
+
+    private final int depth;
+    private final int leafCount;
+    // 下标1为根，叶子位于 [leafCount, 2 * leafCount)
+    private final long[] nodes;
+    private final BitSet dirtyLeaves;
+
+    /**
+     * @param depth 树深度，叶子数为 2^depth
+     */
+    public MerkleTree(int depth) {
+        if (depth < 1 || depth > 20) {
+            throw new IllegalArgumentException("depth must be between 1 and 20");
+        }
+        this.depth = depth;
+        this.leafCount = 1 << depth;
+        this.nodes = new long[2 * leafCount];
+        this.dirtyLeaves = new BitSet(leafCount);
+        for (int node = leafCount - 1; node >= 1; node--) {
+            nodes[node] = combine(nodes[2 * node], nodes[2 * node + 1]);
+        }
+    }
+
+    /**
+     * 键所属的桶（叶子序号），取键哈希的高位，相邻桶对应相邻的哈希区间
+     */
+    public int bucketOf(String key) {
+        return (int) (mix(fnv1a(key.getBytes(StandardCharsets.UTF_8), 0xcbf29ce484222325L)) >>> (64 - depth));
+    }
+
+    /**
+     * 条目摘要
+     *
+     * @param key 键
+     * @param value 值
+     * @return 64位摘要
+     */
+    public static long digest(String key, String value) {
+        long hash = fnv1a(key.getBytes(StandardCharsets.UTF_8), 0xcbf29ce484222325L);
+        hash = fnv1a(new byte[]{0}, hash);
+        hash = fnv1a(value == null ? new byte[0] : value.getBytes(StandardCharsets.UTF_8), hash);
+        return mix(hash);
+    }
+
+    /**
+     * 新增一个条目，只用于此前不在树中的键：对已在树中的键调用会抵消其原摘要，应改用replace或markDirty
+     *
+     * @param key 键
+     * @param digest 条目摘要
+     */
+    public synchronized void add(String key, long digest) {
+        int leaf = leafCount + bucketOf(key);
+        nodes[leaf] ^= digest;
+        updatePath(leaf);
+    }
+
+    /**
+     * 替换一个已在树中的条目：去掉原摘要、计入新摘要，值未变时叶子不变
+     *
+     * @param key 键
+     * @param previousDigest 树中该键当前的摘要
+     * @param digest 新摘要
+     */
+    public synchronized void replace(String key, long previousDigest, long digest) {
+        int leaf = leafCount + bucketOf(key);
+        nodes[leaf] ^= previousDigest ^ digest;
+        updatePath(leaf);
+    }
+
+    /**
+     * 用按桶重新计算的结果覆盖叶子，并清除脏标记
+     *
+     * @param bucket 桶序号
+     * @param leafHash 桶内所有条目摘要的异或
+     */
+    public synchronized void setLeaf(int bucket, long leafHash) {
+        int leaf = leafCount + bucket;
+        nodes[leaf] = leafHash;
+        dirtyLeaves.clear(bucket);
+        updatePath(leaf);
+    }
+
+    /**
+     * 标记桶需要重新计算
+     */
+    public synchronized void markDirty(int bucket) {
+        dirtyLeaves.set(bucket);
+    }
+
+    public synchronized void markAllDirty() {
+        dirtyLeaves.set(0, leafCount);
+    }
+
+    /**
+     * 需要重新计算的桶
+     */
+    public synchronized List<Integer> getDirtyBuckets() {
+        List<Integer> buckets = new ArrayList<>(dirtyLeaves.cardinality());
+        for (int bucket = dirtyLeaves.nextSetBit(0); bucket >= 0; bucket = dirtyLeaves.nextSetBit(bucket + 1)) {
+            buckets.add(bucket);
+        }
+        return buckets;
+    }
+
+    public synchronized long getRootHash() {
+        return nodes[1];
+    }
+
+    public int getLeafCount() {
+        return leafCount;
+    }
+
+    /**
+     * 比较两棵同深度的树，只进入哈希不同的子树
+     *
+     * @param left 一棵树
+     * @param right 另一棵树
+     * @return 不同的桶及比较过的节点数
+     */
+    public static Difference diff(MerkleTree left, MerkleTree right) {
+        if (left.depth != right.depth) {
+            throw new IllegalArgumentException("trees must have the same depth");
+        }
+        long[] leftNodes;
+        long[] rightNodes;
+        synchronized (left) {
+            leftNodes = left.nodes.clone();
+        }
+        synchronized (right) {
+            rightNodes = right.nodes.clone();
+        }
+
+        List<Integer> buckets = new ArrayList<>();
+        int compared = 0;
+        int[] stack = new int[left.depth + 2];
+        int top = 0;
+        stack[top++] = 1;
+        while (top > 0) {
+            int node = stack[--top];
+            compared++;
+            if (leftNodes[node] == rightNodes[node]) {
+                continue;
+            }
+            if (node >= left.leafCount) {
+                buckets.add(node - left.leafCount);
+            } else {
+                stack[top++] = 2 * node + 1;
+                stack[top++] = 2 * node;
+            }
+        }
+        return new Difference(buckets, compared);
+    }
+
+    private void updatePath(int node) {
+        for (node >>>= 1; node >= 1; node >>>= 1) {
+            nodes[node] = combine(nodes[2 * node], nodes[2 * node + 1]);
+        }
+    }
+
+    private static long combine(long left, long right) {
+        return mix(left ^ Long.rotateLeft(right, 31) ^ 0x9e3779b97f4a7c15L);
+    }
+
+    private static long fnv1a(byte[] bytes, long hash) {
+        for (byte b : bytes) {
+            hash ^= (b & 0xff);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    // splitmix64 终结函数
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * 比较结果
+     */
+    public static class Difference {
+        private final List<Integer> buckets;
+        private final int nodesCompared;
+
+        public Difference(List<Integer> buckets, int nodesCompared) {
+            this.buckets = buckets;
+            this.nodesCompared = nodesCompared;
+        }
+
+        public List<Integer> getBuckets() { return buckets; }
+        public int getNodesCompared() { return nodesCompared; }
+    }
+}
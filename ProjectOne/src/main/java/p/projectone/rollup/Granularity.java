@@ -0,0 +1,40 @@
+package p.projectone.rollup;
+
+/**
+ * 汇总粒度：分钟桶由环形缓冲和持久化文档直接提供，小时桶由60个分钟桶相加得到
+ *
+ * @author Distributed Systems Team
+ */
+public enum Granularity {
+    MINUTE(60_000L),
+    HOUR(3_600_000L);
+
+    private final long millis;
+
+    Granularity(long millis) {
+        this.millis = millis;
+    }
+
+    public long getMillis() {
+        return millis;
+    }
+
+    /**
+     * 时间所在桶的起点
+     */
+    public long floor(long timeMillis) {
+        return Math.floorDiv(timeMillis, millis) * millis;
+    }
+
+    /**
+     * @throws IllegalArgumentException 不是minute或hour
+     */
+    public static Granularity parse(String name) {
+        for (Granularity granularity : values()) {
+            if (granularity.name().equalsIgnoreCase(name)) {
+                return granularity;
+            }
+        }
+        throw new IllegalArgumentException("granularity must be minute or hour: " + name);
+    }
+}
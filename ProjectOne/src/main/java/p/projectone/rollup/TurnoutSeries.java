@@ -0,0 +1,130 @@
+package p.projectone.rollup;
+
+import p.projectone.catalog.CandidateCatalog;
+import p.projectone.protocol.JsonText;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 一次范围查询的结果：[from, to)内每个桶各候选人的票数和各节点的票数
+ * 由分钟计数累加而成，构建和输出都只与桶数、候选人数、节点数有关，与投票总数无关。
+ *
+ * 复杂度：O(桶数 × 候选人数) - 构建与输出
+ * 实现方式：按桶索引的二维计数数组 + 按节点的每桶合计
+ *
+ * @author Distributed Systems Team
+ */
+public class TurnoutSeries {
+
+    /**
+     * 单次查询的桶数上限：一周的分钟桶
+     */
+    public static final int MAX_BUCKETS = 7 * 24 * 60;
+
+    private final CandidateCatalog catalog;
+    private final Granularity granularity;
+    private final long from;
+    private final long to;
+    private final long[][] counts;
+    private final Map<String, long[]> nodeTotals = new TreeMap<>();
+
+    /**
+     * @param from 起点（含），向下对齐到桶边界
+     * @param to 终点（不含），向上对齐到桶边界
+     * @throws IllegalArgumentException 范围为空或超过MAX_BUCKETS个桶
+     */
+    public TurnoutSeries(CandidateCatalog catalog, Granularity granularity, long from, long to) {
+        this.catalog = catalog;
+        this.granularity = granularity;
+        this.from = granularity.floor(from);
+        this.to = granularity.floor(to + granularity.getMillis() - 1);
+        long buckets = (this.to - this.from) / granularity.getMillis();
+        if (buckets <= 0 || buckets > MAX_BUCKETS) {
+            throw new IllegalArgumentException("range must cover 1.." + MAX_BUCKETS + " " +
+                    granularity.name().toLowerCase() + " buckets, got " + buckets);
+        }
+        this.counts = new long[(int) buckets][catalog.size()];
+    }
+
+    /**
+     * 累加一个节点一分钟的计数；范围外的分钟忽略，超出本目录的序号（其他节点已加载的新候选人）忽略
+     *
+     * @param minuteStart 分钟起点（epoch毫秒）
+     * @param minuteCounts 按候选人序号的票数
+     */
+    public void add(String node, long minuteStart, int[] minuteCounts) {
+        if (minuteStart < from || minuteStart >= to) {
+            return;
+        }
+        int bucket = (int) ((minuteStart - from) / granularity.getMillis());
+        long[] bucketCounts = counts[bucket];
+        long total = 0;
+        int size = Math.min(minuteCounts.length, bucketCounts.length);
+        for (int i = 0; i < size; i++) {
+            bucketCounts[i] += minuteCounts[i];
+            total += minuteCounts[i];
+        }
+        if (total > 0) {
+            nodeTotals.computeIfAbsent(node, k -> new long[counts.length])[bucket] += total;
+        }
+    }
+
+    public boolean contains(long minuteStart) {
+        return minuteStart >= from && minuteStart < to;
+    }
+
+    /**
+     * {"granularity":"minute","from":...,"to":...,"catalogVersion":1,"candidates":["1","2","3"],
+     *  "buckets":[{"start":...,"total":5,"counts":[2,3,0],"nodes":{"server-8080":5}},...]}
+     * 空桶也输出，图表的横轴连续
+     */
+    public String toJson() {
+        StringBuilder json = new StringBuilder(128 + counts.length * (48 + catalog.size() * 4));
+        json.append("{\"granularity\":\"").append(granularity.name().toLowerCase())
+            .append("\",\"from\":").append(from)
+            .append(",\"to\":").append(to)
+            .append(",\"catalogVersion\":").append(catalog.getVersion())
+            .append(",\"candidates\":[");
+        for (int i = 0; i < catalog.size(); i++) {
+            JsonText.appendString(json.append(i > 0 ? "," : ""), catalog.id(i));
+        }
+        json.append("],\"buckets\":[");
+        for (int bucket = 0; bucket < counts.length; bucket++) {
+            if (bucket > 0) {
+                json.append(',');
+            }
+            json.append("{\"start\":").append(from + bucket * granularity.getMillis())
+                .append(",\"total\":").append(getTotal(bucket))
+                .append(",\"counts\":[");
+            for (int i = 0; i < counts[bucket].length; i++) {
+                json.append(i > 0 ? "," : "").append(counts[bucket][i]);
+            }
+            json.append("],\"nodes\":{");
+            boolean first = true;
+            for (Map.Entry<String, long[]> node : nodeTotals.entrySet()) {
+                if (node.getValue()[bucket] > 0) {
+                    JsonText.appendString(json.append(first ? "" : ","), node.getKey()).append(':').append(node.getValue()[bucket]);
+                    first = false;
+                }
+            }
+            json.append("}}");
+        }
+        return json.append("]}").toString();
+    }
+
+    public long getTotal(int bucket) {
+        long total = 0;
+        for (long count : counts[bucket]) {
+            total += count;
+        }
+        return total;
+    }
+
+    // Getter方法
+    public Granularity getGranularity() { return granularity; }
+    public long getFrom() { return from; }
+    public long getTo() { return to; }
+    public int getBucketCount() { return counts.length; }
+    public long getCount(int bucket, int ordinal) { return counts[bucket][ordinal]; }
+}
@@ -0,0 +1,200 @@
+package p.projectone.rollup;
+
+import p.projectone.catalog.CandidateCatalog;
+import p.projectone.catalog.OrdinalCounters;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 本节点最近若干分钟的投票计数（环形缓冲）
+ * 每个槽位对应一分钟，按候选人序号计数；分钟号对槽位数取模定位槽位，
+ * 槽位里的分钟号落后时原地清零复用，不分配新对象。投票确认时调用record，只是一次数组自增。
+ * 有改动的分钟标记为脏，由持久化方按固定周期取走写入数据库；刷写周期以秒计，远小于保留窗口，
+ * 槽位复用时其中的改动早已写出。
+ *
+ * 比保留窗口更早的投票计入lateVotes而不计数。一个线程在确认分钟号之后、自增之前停顿超过整个
+ * 保留窗口时，这次自增会落到复用后的槽位上；窗口以小时计，实际不会发生，因此不加锁。
+ *
+ * 复杂度：O(1) - 记录；O(分钟数 × 候选人数) - 查询
+ * 实现方式：AtomicLongArray分钟号 + 每槽位一个OrdinalCounters（按实际用到的序号分块分配）+ 脏标记
+ *
+ * @author Distributed Systems Team
+ */
+public class VoteRollup {
+
+    public static final long MINUTE_MS = Granularity.MINUTE.getMillis();
+
+    private final String node;
+    private final int minutes;
+    private final AtomicLongArray slotMinutes;
+    private final OrdinalCounters[] counts;
+    private final AtomicIntegerArray dirty;
+    private final AtomicLong lateVotes = new AtomicLong(0);
+
+    /**
+     * @param node 本节点ID，查询结果中按节点分列
+     * @param minutes 保留的分钟数
+     */
+    public VoteRollup(String node, int minutes) {
+        this.node = node;
+        this.minutes = minutes;
+        this.slotMinutes = new AtomicLongArray(minutes);
+        this.counts = new OrdinalCounters[minutes];
+        this.dirty = new AtomicIntegerArray(minutes);
+        for (int slot = 0; slot < minutes; slot++) {
+            slotMinutes.set(slot, -1);
+            counts[slot] = new OrdinalCounters();
+        }
+    }
+
+    /**
+     * 记录一票
+     *
+     * @param ordinal 候选人序号
+     * @param timeMillis 确认时间
+     */
+    public void record(int ordinal, long timeMillis) {
+        long minute = Math.floorDiv(timeMillis, MINUTE_MS);
+        int slot = slot(minute);
+        if (slotMinutes.get(slot) != minute && !claim(slot, minute)) {
+            lateVotes.incrementAndGet();
+            return;
+        }
+        counts[slot].incrementAndGet(ordinal);
+        // 先自增再标脏：持久化方先清标记再读计数，晚于读取的自增一定会留下标记
+        if (dirty.get(slot) == 0) {
+            dirty.set(slot, 1);
+        }
+    }
+
+    /**
+     * 槽位切换到新的分钟，每个槽位每分钟最多一次
+     *
+     * @return 槽位已是该分钟；该分钟早于槽位当前分钟（超出保留窗口）返回false
+     */
+    private synchronized boolean claim(int slot, long minute) {
+        long current = slotMinutes.get(slot);
+        if (current >= minute) {
+            return current == minute;
+        }
+        counts[slot].clear();
+        dirty.set(slot, 0);
+        slotMinutes.set(slot, minute);
+        return true;
+    }
+
+    /**
+     * 启动时从持久化数据恢复一分钟的计数，之后的自增在此基础上累加，刷写时不会覆盖掉重启前的票
+     */
+    public void load(long minute, int[] minuteCounts) {
+        int slot = slot(minute);
+        if (!claim(slot, minute)) {
+            return;
+        }
+        for (int i = 0; i < Math.min(minuteCounts.length, CandidateCatalog.MAX_CANDIDATES); i++) {
+            if (minuteCounts[i] != 0) {
+                counts[slot].addAndGet(i, minuteCounts[i]);
+            }
+        }
+    }
+
+    /**
+     * 取走有改动的分钟，调用方写入失败时应对每一项调用markDirty
+     *
+     * @param size 返回数组的长度（当前目录的候选人数）
+     */
+    public List<MinuteCounts> drainDirty(int size) {
+        List<MinuteCounts> drained = new ArrayList<>();
+        for (int slot = 0; slot < minutes; slot++) {
+            if (dirty.get(slot) != 0 && dirty.getAndSet(slot, 0) != 0) {
+                long minute = slotMinutes.get(slot);
+                int[] minuteCounts = snapshot(minute, size);
+                if (minuteCounts != null) {
+                    drained.add(new MinuteCounts(minute, minuteCounts));
+                }
+            }
+        }
+        return drained;
+    }
+
+    public void markDirty(long minute) {
+        int slot = slot(minute);
+        if (slotMinutes.get(slot) == minute) {
+            dirty.set(slot, 1);
+        }
+    }
+
+    /**
+     * 一分钟的计数副本
+     *
+     * @return 该分钟不在环中返回null
+     */
+    public int[] snapshot(long minute, int size) {
+        int slot = slot(minute);
+        if (slotMinutes.get(slot) != minute) {
+            return null;
+        }
+        int[] minuteCounts = new int[Math.min(size, CandidateCatalog.MAX_CANDIDATES)];
+        for (int i = 0; i < minuteCounts.length; i++) {
+            minuteCounts[i] = counts[slot].get(i);
+        }
+        // 读取期间槽位被复用则丢弃
+        return slotMinutes.get(slot) == minute ? minuteCounts : null;
+    }
+
+    /**
+     * 该分钟在保留窗口内且环中有计数，此时以环为准（addTo会计入）
+     */
+    public boolean covers(long minute, long nowMillis) {
+        return minute > Math.floorDiv(nowMillis, MINUTE_MS) - minutes && slotMinutes.get(slot(minute)) == minute;
+    }
+
+    /**
+     * 把环中落在查询范围内的分钟累加到结果里，只遍历范围与保留窗口的交集
+     *
+     * @param nowMillis 当前时间，决定保留窗口
+     */
+    public void addTo(TurnoutSeries series, CandidateCatalog catalog, long nowMillis) {
+        long newest = Math.floorDiv(nowMillis, MINUTE_MS);
+        // 与covers的窗口一致
+        long first = Math.max(series.getFrom() / MINUTE_MS, newest - minutes + 1);
+        long last = Math.min(series.getTo() / MINUTE_MS - 1, newest);
+        for (long minute = first; minute <= last; minute++) {
+            int[] minuteCounts = snapshot(minute, catalog.size());
+            if (minuteCounts != null) {
+                series.add(node, minute * MINUTE_MS, minuteCounts);
+            }
+        }
+    }
+
+    /**
+     * 一分钟的计数
+     */
+    public static final class MinuteCounts {
+        private final long minute;
+        private final int[] counts;
+
+        MinuteCounts(long minute, int[] counts) {
+            this.minute = minute;
+            this.counts = counts;
+        }
+
+        // Getter方法
+        public long getMinute() { return minute; }
+        public long getStartMillis() { return minute * MINUTE_MS; }
+        public int[] getCounts() { return counts; }
+    }
+
+    private int slot(long minute) {
+        return (int) Math.floorMod(minute, (long) minutes);
+    }
+
+    // Getter方法
+    public String getNode() { return node; }
+    public int getMinutes() { return minutes; }
+    public long getLateVotes() { return lateVotes.get(); }
+}
@@ -0,0 +1,186 @@
+package p.projectone.service;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import p.projectone.catalog.CandidateCatalog;
+import p.projectone.catalog.CandidateCatalogHolder;
+import p.projectone.logging.VoteLogger;
+import p.projectone.metrics.MetricsRegistry;
+import p.projectone.model.Candidate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * 候选人目录服务
+ * 从candidates集合加载候选人，生成按序号索引的不可变快照，定期重新加载并原子替换。
+ * 序号持久化在候选人文档的ordinal字段：加载时发现没有序号的候选人，按createdAt、_id顺序为其分配
+ * 当前最大序号加一，用"ordinal不存在"作条件写回，ordinal上有唯一索引。两个节点同时分配时，
+ * 抢到同一序号的一方收到重复键错误，换下一个序号重试；同一候选人已被别人分配则不再覆盖。
+ * 不用单独的计数器文档：节点在加一和写回之间宕机会留下空洞，而目录序号要求稠密。
+ * 内置目录的ID（1/2/3）沿用内置序号，与此前按加载顺序得到的序号一致，已有的投票记录不受影响。
+ * 下线候选人应置active=false而不是删除；删除后它的序号在新节点上是停用的占位，不会被复用。
+ * 集合为空或加载失败时保留当前目录（启动时为内置的1/Alice、2/Bob、3/Charlie）。
+ *
+ * 采用轮询而不是change stream：change stream要求副本集，单机开发环境的MongoDB没有。
+ *
+ * 复杂度：O(1) - 查询；O(n) - 重新加载
+ * 实现方式：定时全量读取 + CandidateCatalogHolder整体替换
+ *
+ * @author Distributed Systems Team
+ */
+@Service
+public class CandidateCatalogService {
+
+    private static final VoteLogger LOG = VoteLogger.get(CandidateCatalogService.class);
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private MetricsRegistry metricsRegistry;
+
+    private final CandidateCatalogHolder holder = new CandidateCatalogHolder(CandidateCatalog.defaults());
+
+    @PostConstruct
+    public void init() {
+        metricsRegistry.gauge("vote_candidate_catalog_version", "Candidate catalog version",
+                () -> holder.current().getVersion());
+        metricsRegistry.gauge("vote_candidate_catalog_size", "Candidates in the catalog, active or not",
+                () -> holder.current().size());
+        reload();
+        LOG.info("catalog.loaded", "候选人目录已加载 - 版本: {}, 候选人: {}",
+                holder.current().getVersion(), holder.current().size());
+    }
+
+    /**
+     * 定期从MongoDB重新加载，内容无变化时不替换快照
+     */
+    @Scheduled(fixedDelayString = "${distributed.catalog.reload-interval:5000}",
+               initialDelayString = "${distributed.catalog.reload-interval:5000}")
+    public void reload() {
+        try {
+            List<Candidate> candidates = loadCandidates(mongoTemplate);
+            if (candidates.isEmpty()) {
+                return;
+            }
+            if (holder.update(candidates)) {
+                LOG.info("catalog.reloaded", "候选人目录已更新 - 版本: {}, 候选人: {}",
+                        holder.current().getVersion(), holder.current().size());
+            }
+        } catch (Exception e) {
+            LOG.warn("catalog.reload_failed", "候选人目录加载失败，保留当前目录: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 读取候选人集合，先为没有序号的候选人分配并持久化序号；迁移工具也经过这里，序号与服务一致
+     *
+     * @return 已有序号的候选人，按序号排序；分配失败（下次加载重试）的候选人不在其中
+     */
+    public static List<Candidate> loadCandidates(MongoTemplate mongoTemplate) {
+        List<Candidate> candidates = mongoTemplate.find(new Query(), Candidate.class);
+        if (candidates.stream().anyMatch(candidate -> candidate.getOrdinal() == null)) {
+            assignOrdinals(mongoTemplate, candidates);
+            candidates = mongoTemplate.find(new Query(), Candidate.class);
+        }
+        List<Candidate> assigned = new ArrayList<>(candidates.size());
+        for (Candidate candidate : candidates) {
+            if (candidate.getOrdinal() != null) {
+                assigned.add(candidate);
+            } else {
+                LOG.warn("catalog.ordinal_unassigned", "候选人尚未分配序号，下次加载重试 - 候选人: {}", candidate.getId());
+            }
+        }
+        assigned.sort(Comparator.comparing(Candidate::getOrdinal));
+        return assigned;
+    }
+
+    /**
+     * 按createdAt、_id顺序为没有序号的候选人分配序号并写回
+     */
+    private static void assignOrdinals(MongoTemplate mongoTemplate, List<Candidate> candidates) {
+        mongoTemplate.indexOps(Candidate.class).ensureIndex(new Index().on(Candidate.ORDINAL_FIELD, Sort.Direction.ASC)
+                .unique().sparse().named(Candidate.ORDINAL_INDEX));
+        CandidateCatalog builtIn = CandidateCatalog.defaults();
+        int next = builtIn.size();
+        List<Candidate> unassigned = new ArrayList<>();
+        for (Candidate candidate : candidates) {
+            if (candidate.getOrdinal() != null) {
+                next = Math.max(next, candidate.getOrdinal() + 1);
+            } else {
+                unassigned.add(candidate);
+            }
+        }
+        unassigned.sort(Comparator.comparing(Candidate::getCreatedAt, Comparator.nullsLast(Comparator.<LocalDateTime>naturalOrder()))
+                .thenComparing(Candidate::getId));
+
+        for (Candidate candidate : unassigned) {
+            int preferred = builtIn.ordinalOf(candidate.getId());
+            while (next < CandidateCatalog.MAX_CANDIDATES) {
+                int ordinal = preferred >= 0 ? preferred : next;
+                Query unassignedOnly = new Query(Criteria.where("_id").is(candidate.getId())
+                        .and(Candidate.ORDINAL_FIELD).exists(false));
+                try {
+                    if (mongoTemplate.updateFirst(unassignedOnly, new Update().set(Candidate.ORDINAL_FIELD, ordinal),
+                            Candidate.class).getModifiedCount() > 0) {
+                        LOG.info("catalog.ordinal_assigned", "候选人序号已分配 - 候选人: {}, 序号: {}", candidate.getId(), ordinal);
+                        next = Math.max(next, ordinal + 1);
+                    }
+                    // 未修改：其他节点已为它分配
+                    break;
+                } catch (DuplicateKeyException e) {
+                    // 序号已被其他候选人占用
+                    if (ordinal == preferred) {
+                        preferred = -1;
+                    } else {
+                        next++;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * 当前快照；一次投票内应只取一次
+     */
+    public CandidateCatalog current() {
+        return holder.current();
+    }
+
+    /**
+     * 包含该序号的快照：序号超出当前目录（其他节点已为新候选人分配了序号）时立即重新加载一次
+     * 序号是持久化的，重新加载后同一序号一定指向同一个候选人；重新加载失败时返回的目录仍可能不包含它
+     */
+    public CandidateCatalog covering(int ordinal) {
+        if (ordinal >= holder.current().size()) {
+            reload();
+        }
+        return holder.current();
+    }
+
+    /**
+     * 解析候选人ID
+     *
+     * @return 序号；未知或已停用返回-1
+     */
+    public int resolve(String candidateId) {
+        return holder.current().resolve(candidateId);
+    }
+
+    public CandidateCatalogHolder getHolder() {
+        return holder;
+    }
+}
@@ -0,0 +1,212 @@
+package p.projectone.service;
+
+import jakarta.annotation.PostConstruct;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import p.projectone.cube.Breakdown;
+import p.projectone.cube.Dimension;
+import p.projectone.cube.VoteCube;
+import p.projectone.logging.VoteLogger;
+import p.projectone.metrics.MetricsRegistry;
+import p.projectone.model.Vote;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * 投票分组统计服务
+ * 投票确认时计入本节点的立方体（候选人 × 节点 × 地区），分组查询从立方体得出，不扫描votes集合。
+ *
+ * 每个节点定期把自己的立方体整体写入vote_cube_checkpoints集合（每节点一个文档
+ * {_id:"node-1", node, time, cells:[{c:候选人序号, r:地区, v:票数}]}），替换写入，重复执行幂等；
+ * 查询时本节点用内存中的立方体，其他节点用其最近一次检查点。检查点只供其他节点查询，本节点恢复不读它。
+ *
+ * 启动时取时刻F，按投票时间分成两部分：投票时间早于F的票由恢复从votes集合按(n, t)索引全量重新统计，
+ * 不早于F的票由record实时计入。两条投票路径都是本进程先取投票时间、写入已确认的投票，再调用record，
+ * 所以本进程处理的票时间都不早于F；早于F的票都由上一个进程写入，F时已在votes集合中。
+ * 两部分按投票时间互斥，各自完整，不重不漏，与恢复何时执行无关。
+ * 重新统计写入单独的立方体，成功后再并入实时立方体；失败时丢弃，实时计入的部分不受影响，
+ * 由之后每次checkpoint重试。恢复成功之前本节点的立方体不完整，checkpoint不写，查询改读本节点的检查点。
+ *
+ * 复杂度：O(1) - 记录；O(格子数) - 查询与检查点；O(本节点票数) - 恢复
+ * 实现方式：内存立方体 + 按投票时间划分的全量重新统计 + 定时整体替换的节点检查点
+ *
+ * @author Distributed Systems Team
+ */
+@Service
+public class CubeService {
+
+    private static final VoteLogger LOG = VoteLogger.get(CubeService.class);
+
+    private static final String COLLECTION = "vote_cube_checkpoints";
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private MetricsRegistry metricsRegistry;
+
+    @Autowired
+    private CandidateCatalogService catalogService;
+
+    // 与复制服务同一个节点ID，投票记录的n字段、汇总和检查点都按它区分节点
+    @Value("${distributed.replication.node-id:node-1}")
+    private String nodeId;
+
+    private final VoteCube cube = new VoteCube();
+
+    // 投票时间不早于它的票由record实时计入，早于它的由恢复重新统计；启动时取定，之后不变
+    private volatile long countFrom = Long.MAX_VALUE;
+    private volatile boolean restored = false;
+
+    private final AtomicLong checkpoints = new AtomicLong(0);
+    private final AtomicLong failedCheckpoints = new AtomicLong(0);
+    private final AtomicLong recountedVotes = new AtomicLong(0);
+
+    @PostConstruct
+    public void init() {
+        metricsRegistry.counter("vote_cube_checkpoints_total", "Cube checkpoints written to MongoDB", checkpoints::get);
+        metricsRegistry.counter("vote_cube_checkpoint_failures_total", "Failed cube checkpoints", failedCheckpoints::get);
+        metricsRegistry.counter("vote_cube_recounted_votes_total", "Votes recounted into the cube on restore", recountedVotes::get);
+        metricsRegistry.gauge("vote_cube_regions", "Distinct regions in the group-by cube", () -> cube.getRegionCount());
+        metricsRegistry.gauge("vote_cube_restored", "1 once votes before startup are recounted into the cube", () -> restored ? 1 : 0);
+
+        countFrom = System.currentTimeMillis();
+        restore();
+        LOG.info("cube.started", "分组统计服务已启动 - 节点: {}", nodeId);
+    }
+
+    /**
+     * 从votes集合重新统计本节点投票时间早于countFrom的已确认投票，成功后并入实时立方体
+     * 失败时丢弃重新统计的结果，由下次checkpoint重试
+     */
+    private synchronized void restore() {
+        if (restored) {
+            return;
+        }
+        try {
+            VoteCube recounted = new VoteCube();
+            Query recount = new Query(Criteria.where(Vote.NODE_FIELD).is(nodeId)
+                    .and(Vote.TIME_FIELD).lt(countFrom)
+                    .and(Vote.STATUS_FIELD).is(Vote.VoteStatus.CONFIRMED.getCode()));
+            recount.fields().include(Vote.CANDIDATE_FIELD).include(Vote.REGION_FIELD);
+            long votes = 0;
+            try (Stream<Document> stream = mongoTemplate.stream(recount, Document.class, "votes")) {
+                for (Document vote : (Iterable<Document>) stream::iterator) {
+                    recounted.record(((Number) vote.get(Vote.CANDIDATE_FIELD)).intValue(), nodeId,
+                            vote.getString(Vote.REGION_FIELD));
+                    votes++;
+                }
+            }
+            int[] cells = {0};
+            recounted.forEachCell(catalogService.current().size(), (candidate, node, region, count) -> {
+                cube.add(candidate, node, region, (int) count);
+                cells[0]++;
+            });
+            recountedVotes.addAndGet(votes);
+            restored = true;
+            LOG.info("cube.restored", "分组立方体已恢复 - 节点: {}, 格子数: {}, 重新统计投票: {}", nodeId, cells[0], votes);
+        } catch (Exception e) {
+            LOG.warn("cube.restore_failed", "分组立方体恢复失败，恢复前不写检查点，下次检查点时重试: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 计入一张已确认的票；投票时间早于countFrom的票由恢复重新统计，这里不计
+     *
+     * @param candidate 候选人序号
+     * @param region 地区标签，可为null
+     * @param voteTime 确认时间（epoch毫秒）
+     */
+    public void record(int candidate, String region, long voteTime) {
+        if (voteTime >= countFrom) {
+            cube.record(candidate, nodeId, region);
+        }
+    }
+
+    /**
+     * 把本节点的立方体整体写入检查点文档
+     */
+    @Scheduled(fixedDelayString = "${distributed.cube.checkpoint-interval:30000}")
+    public void checkpoint() {
+        if (!restored) {
+            restore();
+            if (!restored) {
+                return;
+            }
+        }
+        // 时间只用于观察检查点的新旧，恢复不依赖它
+        long time = System.currentTimeMillis();
+        List<Document> cells = new ArrayList<>();
+        cube.forEachCell(catalogService.current().size(), (candidate, node, region, count) ->
+            cells.add(new Document("c", candidate).append("r", region).append("v", count)));
+        if (cells.isEmpty()) {
+            return;
+        }
+        try {
+            Document checkpoint = new Document("_id", nodeId)
+                .append("node", nodeId)
+                .append("time", time)
+                .append("cells", cells);
+            mongoTemplate.save(checkpoint, COLLECTION);
+            checkpoints.incrementAndGet();
+        } catch (Exception e) {
+            failedCheckpoints.incrementAndGet();
+            LOG.warn("cube.checkpoint_failed", "分组立方体检查点写入失败，下次重试 - 格子数: {}, 错误: {}",
+                    cells.size(), e.getMessage());
+        }
+    }
+
+    /**
+     * 按维度分组、按取值过滤的票数
+     *
+     * @param groupBy 分组维度
+     * @param filters 切片条件
+     */
+    public Breakdown query(List<Dimension> groupBy, Map<Dimension, String> filters) {
+        Breakdown breakdown = new Breakdown(catalogService.current(), groupBy, filters);
+        // 未恢复时本节点的立方体不完整，本节点也读其检查点
+        boolean local = restored;
+        Query stored = local ? new Query(Criteria.where("_id").ne(nodeId)) : new Query();
+        if (local) {
+            cube.addTo(breakdown);
+        }
+        for (Document checkpoint : mongoTemplate.find(stored, Document.class, COLLECTION)) {
+            addCells(checkpoint, breakdown::add);
+        }
+        return breakdown;
+    }
+
+    /**
+     * 遍历检查点文档中的格子
+     *
+     * @return 格子数
+     */
+    private static int addCells(Document checkpoint, VoteCube.CellVisitor visitor) {
+        String node = checkpoint.getString("node");
+        List<?> cells = checkpoint.get("cells", List.class);
+        if (cells == null) {
+            return 0;
+        }
+        for (Object value : cells) {
+            Document cell = (Document) value;
+            visitor.visit(((Number) cell.get("c")).intValue(), node, cell.getString("r"),
+                    ((Number) cell.get("v")).longValue());
+        }
+        return cells.size();
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+}
@@ -1,143 +1,164 @@
 package p.projectone.service;
 
+import jakarta.annotation.PostConstruct;
+import org.apache.curator.framework.CuratorFramework;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.stereotype.Service;
 
-import java.util.concurrent.TimeUnit;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
+import p.projectone.diagnostics.VoteStageEvent;
+import p.projectone.lock.LocalVoteLockProvider;
+import p.projectone.lock.RedisVoteLockProvider;
+import p.projectone.lock.VoteLockProvider;
+import p.projectone.lock.ZooKeeperVoteLockProvider;
+import p.projectone.logging.VoteLogger;
 
 /**
  * 分布式锁服务
  * 实现分布式算法中的锁定机制，防止重复投票
- * 
+ * 锁的后端由distributed.locking.provider选择：redis（默认）、zookeeper、local（单节点部署）
+ *
  * 复杂度：O(1) - 常量时间复杂度
- * 实现方式：Redis分布式锁 + 本地锁
- * 
+ * 实现方式：VoteLockProvider（Redis SETNX / ZooKeeper InterProcessMutex / 进程内租约）
+ *
  * @author Distributed Systems Team
  */
 @Service
 public class DistributedLockService {
     
+    private static final VoteLogger LOG = VoteLogger.get(DistributedLockService.class);
+    
+    @Autowired
+    private ObjectProvider<RedisTemplate<String, String>> redisTemplateProvider;
+    
     @Autowired
-    private RedisTemplate<String, String> redisTemplate;
+    private ObjectProvider<CuratorFramework> curatorProvider;
+    
+    @Value("${distributed.locking.provider:redis}")
+    private String providerName;
     
-    // 本地锁，用于单机并发控制
-    private final Lock localLock = new ReentrantLock();
+    @Value("${distributed.locking.lock-timeout:10000}")
+    private long lockTimeout;
     
-    private static final String LOCK_PREFIX = "vote_lock:";
-    private static final String SESSION_PREFIX = "vote_session:";
-    private static final long LOCK_TIMEOUT = 10; // 锁超时时间（秒）
-    private static final long SESSION_TIMEOUT = 300; // 会话超时时间（秒）
+    @Value("${distributed.locking.zk-path:/voting/locks}")
+    private String zkPath;
+    
+    @Value("${distributed.locking.zk-acquire-wait:0}")
+    private long zkAcquireWait;
+    
+    private VoteLockProvider provider;
+    
+    @PostConstruct
+    public void init() {
+        switch (providerName.toLowerCase()) {
+            case "redis":
+                provider = new RedisVoteLockProvider(redisTemplateProvider.getObject(), lockTimeout);
+                break;
+            case "zookeeper":
+                provider = new ZooKeeperVoteLockProvider(curatorProvider.getObject(), zkPath, zkAcquireWait);
+                break;
+            case "local":
+                provider = new LocalVoteLockProvider(lockTimeout);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown lock provider: " + providerName);
+        }
+        System.out.println("分布式锁服务已启动 - 后端: " + provider.getName());
+    }
     
     /**
      * 尝试获取分布式锁
      * 实现分布式算法中的锁定机制
-     * 
+     *
      * @param userId 用户ID
      * @param sessionId 会话ID
      * @return 是否成功获取锁
      */
     public boolean tryLock(String userId, String sessionId) {
-        String lockKey = LOCK_PREFIX + userId;
-        String sessionKey = SESSION_PREFIX + userId;
-        
+        VoteStageEvent event = VoteStageEvent.start("lock");
+        boolean acquired = false;
         try {
-            // 使用本地锁确保原子性
-            if (localLock.tryLock(100, TimeUnit.MILLISECONDS)) {
-                try {
-                    // 检查Redis分布式锁
-                    Boolean lockAcquired = redisTemplate.opsForValue()
-                            .setIfAbsent(lockKey, sessionId, LOCK_TIMEOUT, TimeUnit.SECONDS);
-                    
-                    if (Boolean.TRUE.equals(lockAcquired)) {
-                        // 设置会话信息
-                        redisTemplate.opsForValue().set(sessionKey, sessionId, SESSION_TIMEOUT, TimeUnit.SECONDS);
-                        System.out.println("分布式锁获取成功 - 用户: " + userId + ", 会话: " + sessionId);
-                        return true;
-                    }
-                    
-                    System.out.println("分布式锁获取失败 - 用户: " + userId + " 已被锁定");
-                    return false;
-                } finally {
-                    localLock.unlock();
-                }
+            acquired = provider.tryLock(userId, sessionId);
+            if (acquired) {
+                LOG.debug("lock.acquired", "分布式锁获取成功 - 用户: {}, 会话: {}", userId, sessionId);
+                return true;
             }
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-            System.err.println("获取本地锁时被中断: " + e.getMessage());
+            
+            LOG.info("lock.contended", "分布式锁获取失败 - 用户: {} 已被锁定", userId);
+            return false;
+        } catch (Exception e) {
+            LOG.error("lock.error", "获取分布式锁时发生错误: {}", e.getMessage());
+            return false;
+        } finally {
+            event.finish(userId, acquired);
         }
-        
-        return false;
     }
     
     /**
      * 释放分布式锁
-     * 
+     *
      * @param userId 用户ID
      * @param sessionId 会话ID
      * @return 是否成功释放锁
      */
     public boolean releaseLock(String userId, String sessionId) {
-        String lockKey = LOCK_PREFIX + userId;
-        String sessionKey = SESSION_PREFIX + userId;
-        
         try {
             // 验证锁的所有者
-            String currentSessionId = redisTemplate.opsForValue().get(lockKey);
-            if (sessionId.equals(currentSessionId)) {
-                // 删除锁和会话
-                redisTemplate.delete(lockKey);
-                redisTemplate.delete(sessionKey);
-                System.out.println("分布式锁释放成功 - 用户: " + userId + ", 会话: " + sessionId);
+            if (provider.releaseLock(userId, sessionId)) {
+                LOG.debug("lock.released", "分布式锁释放成功 - 用户: {}, 会话: {}", userId, sessionId);
                 return true;
             }
             
-            System.out.println("分布式锁释放失败 - 会话不匹配 - 用户: " + userId);
+            LOG.warn("lock.release_mismatch", "分布式锁释放失败 - 会话不匹配 - 用户: {}", userId);
             return false;
         } catch (Exception e) {
-            System.err.println("释放分布式锁时发生错误: " + e.getMessage());
+            LOG.error("lock.error", "释放分布式锁时发生错误: {}", e.getMessage());
             return false;
         }
     }
     
     /**
      * 检查用户是否已被锁定
-     * 
+     *
      * @param userId 用户ID
      * @return 是否被锁定
      */
     public boolean isLocked(String userId) {
-        String lockKey = LOCK_PREFIX + userId;
-        return Boolean.TRUE.equals(redisTemplate.hasKey(lockKey));
+        try {
+            return provider.isLocked(userId);
+        } catch (Exception e) {
+            System.err.println("查询分布式锁时发生错误: " + e.getMessage());
+            return false;
+        }
     }
     
     /**
      * 获取锁的剩余时间
-     * 
+     *
      * @param userId 用户ID
-     * @return 剩余时间（秒）
+     * @return 剩余时间（秒），ZooKeeper锁随会话释放、不会过期，返回-1
      */
     public long getLockRemainingTime(String userId) {
-        String lockKey = LOCK_PREFIX + userId;
-        Long ttl = redisTemplate.getExpire(lockKey, TimeUnit.SECONDS);
-        return ttl != null ? ttl : 0;
+        try {
+            long remaining = provider.getRemainingMillis(userId);
+            return remaining < 0 ? -1 : (remaining + 999) / 1000;
+        } catch (Exception e) {
+            System.err.println("查询分布式锁时发生错误: " + e.getMessage());
+            return 0;
+        }
     }
     
     /**
      * 强制释放锁（管理员功能）
-     * 
+     *
      * @param userId 用户ID
      * @return 是否成功释放
      */
     public boolean forceReleaseLock(String userId) {
-        String lockKey = LOCK_PREFIX + userId;
-        String sessionKey = SESSION_PREFIX + userId;
-        
         try {
-            redisTemplate.delete(lockKey);
-            redisTemplate.delete(sessionKey);
+            provider.forceRelease(userId);
             System.out.println("强制释放分布式锁 - 用户: " + userId);
             return true;
         } catch (Exception e) {
@@ -145,4 +166,11 @@ public class DistributedLockService {
             return false;
         }
     }
-} 
\ No newline at end of file
+    
+    /**
+     * 当前使用的锁后端名称
+     */
+    public String getProviderName() {
+        return provider.getName();
+    }
+}
@@ -0,0 +1,489 @@
+package p.projectone.service;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+import p.projectone.catalog.CandidateCatalog;
+import p.projectone.concurrent.BoundedExpiringMap;
+import p.projectone.cube.VoteCube;
+import p.projectone.leaderboard.Leaderboard;
+import p.projectone.logging.VoteLogger;
+import p.projectone.metrics.MetricsRegistry;
+import p.projectone.metrics.Timer;
+import p.projectone.model.Vote;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 非阻塞投票服务
+ * 基于响应式Mongo和Redis驱动，一次投票在等待I/O时不占用任何线程，
+ * 单节点少量事件循环线程即可同时承载数万个进行中的投票。
+ *
+ * 流程：
+ * 1. Redis SET NX 认领用户（值为pending并带TTL），同时完成加锁和去重，只需一次往返
+ * 2. Mongo 插入投票记录，userId唯一索引兜底跨节点的重复投票
+ * 3. 一个Lua脚本把认领键改为"已投票"标记（候选人ID，去掉TTL）并 HINCRBY 累加候选人计数
+ * 认领键为pending时返回"处理中"，为候选人ID时返回"已投票"；插入失败时删除认领键，用户可以重试。
+ *
+ * 计票：脚本只在认领键仍是pending（或已过期）时加票，写入标记和加票是原子的，所以同一用户最多被计一次，
+ * 计票可以放心重试。插入成功后投票已经落盘：计票重试仍失败时保留认领键、照常返回成功，
+ * 并标记计数待修复，定时任务从votes集合逐条补计（对已计过的用户脚本不做任何事），
+ * 也可以通过 {@link #rebuildTally()} 手动触发。
+ *
+ * 幂等：客户端对同一次投票的所有重试携带同一个Idempotency-Key。本节点的最终结果（成功/重复/无效）
+ * 缓存在有界、按TTL过期的表中，重放请求直接返回原结果，不访问Redis和Mongo；
+ * 已投票标记中也带上该键，故障转移到其他节点的重试在认领失败后同样识别为重放，返回原来的成功结果。
+ * 计数以Redis哈希为准，Mongo中的votes集合是权威记录，可以据此重建计数。
+ *
+ * 与 /api/vote/requests（VoteSchedulingService → VoteProcessingService）的关系：两条路径写同一个votes集合，
+ * userId唯一索引对两者都生效，votes是唯一的权威记录。本路径不经过DistributedLockService和调度服务：
+ * 认领键本身就是按用户的锁（SET NX + TTL，且比锁更强，带去重），max-in-flight是本路径的准入控制。
+ * 两条路径都不调用ReplicationService.replicateVoteData。
+ *
+ * 复杂度：O(1) - 每次投票固定3~4次往返
+ * 实现方式：ReactiveStringRedisTemplate + ReactiveMongoTemplate + 进行中投票数上限
+ *
+ * @author Distributed Systems Team
+ */
+@Service
+public class ReactiveVoteService {
+
+    private static final VoteLogger LOG = VoteLogger.get(ReactiveVoteService.class);
+
+    private static final String CLAIM_PREFIX = "vote:claim:";
+    private static final String TALLY_KEY = "vote:tally";
+    private static final String PENDING = "pending";
+    private static final String KEY_SEPARATOR = "|";
+
+    // 认领键已是投票标记时返回-1，不加票；否则写入标记（去掉TTL）并加票，返回新票数
+    private static final RedisScript<Long> TALLY_ONCE = new DefaultRedisScript<>(
+            "local v = redis.call('get', KEYS[1]) " +
+            "if v and string.sub(v, 1, string.len(ARGV[3])) ~= ARGV[3] then return -1 end " +
+            "redis.call('set', KEYS[1], ARGV[1]) " +
+            "return redis.call('hincrby', KEYS[2], ARGV[2], 1)",
+            Long.class);
+
+    @Autowired
+    private ReactiveMongoTemplate reactiveMongoTemplate;
+
+    @Autowired
+    private ReactiveStringRedisTemplate reactiveRedisTemplate;
+
+    @Autowired
+    private MetricsRegistry metricsRegistry;
+
+    @Autowired
+    private CandidateCatalogService catalogService;
+
+    @Autowired
+    private RollupService rollupService;
+
+    @Autowired
+    private CubeService cubeService;
+
+    @Value("${distributed.reactive.max-in-flight:20000}")
+    private int maxInFlight;
+
+    @Value("${distributed.reactive.claim-ttl:30000}")
+    private long claimTtl;
+
+    @Value("${distributed.reactive.idempotency-cache-size:100000}")
+    private int idempotencyCacheSize;
+
+    @Value("${distributed.reactive.idempotency-ttl:600000}")
+    private long idempotencyTtl;
+
+    @Value("${distributed.reactive.tally-retries:3}")
+    private int tallyRetries;
+
+    @Value("${distributed.reactive.tally-rebuild-concurrency:64}")
+    private int tallyRebuildConcurrency;
+
+    // 与复制服务同一个节点ID，投票记录的n字段、汇总和检查点都按它区分节点
+    @Value("${distributed.replication.node-id:node-1}")
+    private String nodeId;
+
+    private final Leaderboard leaderboard = new Leaderboard();
+    private BoundedExpiringMap<String, Outcome> idempotentOutcomes;
+
+    // 统计
+    private final AtomicLong totalRequests = new AtomicLong(0);
+    private final AtomicLong successfulVotes = new AtomicLong(0);
+    private final AtomicLong failedVotes = new AtomicLong(0);
+    private final AtomicLong shedRequests = new AtomicLong(0);
+    private final AtomicLong replayedRequests = new AtomicLong(0);
+    private final AtomicLong inFlight = new AtomicLong(0);
+    private final AtomicLong tallyFailures = new AtomicLong(0);
+    private final AtomicLong repairedTallies = new AtomicLong(0);
+    // 有投票已落盘但未计票，等待从votes补计
+    private final AtomicBoolean tallyStale = new AtomicBoolean(false);
+    private final AtomicBoolean rebuilding = new AtomicBoolean(false);
+
+    private Timer claimTimer;
+    private Timer persistTimer;
+    private Timer tallyTimer;
+    private Timer endToEndTimer;
+
+    /**
+     * 投票结果，HTTP状态码和响应文本与SimpleVoteServer一致
+     */
+    public enum Outcome {
+        SUCCEEDED(200, "Vote successful"),
+        REPLAYED(200, "Vote successful"),
+        INVALID(400, "Invalid request data"),
+        DUPLICATE(400, "User already voted"),
+        IN_PROGRESS(429, "User is being processed"),
+        OVERLOADED(503, "Server overloaded, retry later"),
+        ERROR(500, "Internal server error");
+
+        private final int status;
+        private final String message;
+
+        Outcome(int status, String message) {
+            this.status = status;
+            this.message = message;
+        }
+
+        public int getStatus() { return status; }
+        public String getMessage() { return message; }
+    }
+
+    @PostConstruct
+    public void init() {
+        idempotentOutcomes = new BoundedExpiringMap<>(idempotencyCacheSize, idempotencyTtl);
+
+        claimTimer = metricsRegistry.timer("vote_reactive_stage_seconds", "Reactive vote latency by stage",
+                "stage", "claim");
+        persistTimer = metricsRegistry.timer("vote_reactive_stage_seconds", "Reactive vote latency by stage",
+                "stage", "persist");
+        tallyTimer = metricsRegistry.timer("vote_reactive_stage_seconds", "Reactive vote latency by stage",
+                "stage", "tally");
+        endToEndTimer = metricsRegistry.timer("vote_reactive_stage_seconds", "Reactive vote latency by stage",
+                "stage", "end_to_end");
+        metricsRegistry.counter("vote_reactive_requests_total", "Reactive vote requests by outcome",
+                totalRequests::get, "outcome", "received");
+        metricsRegistry.counter("vote_reactive_requests_total", "Reactive vote requests by outcome",
+                successfulVotes::get, "outcome", "succeeded");
+        metricsRegistry.counter("vote_reactive_requests_total", "Reactive vote requests by outcome",
+                failedVotes::get, "outcome", "failed");
+        metricsRegistry.counter("vote_reactive_requests_total", "Reactive vote requests by outcome",
+                shedRequests::get, "outcome", "shed");
+        metricsRegistry.counter("vote_reactive_requests_total", "Reactive vote requests by outcome",
+                replayedRequests::get, "outcome", "replayed");
+        metricsRegistry.counter("vote_reactive_tally_failures_total", "Persisted votes whose tally update failed after retries",
+                tallyFailures::get);
+        metricsRegistry.counter("vote_reactive_tally_repaired_total", "Votes added to the tally by a rebuild from votes",
+                repairedTallies::get);
+        metricsRegistry.gauge("vote_reactive_idempotency_keys", "Cached outcomes for idempotent replay",
+                idempotentOutcomes::size);
+        metricsRegistry.gauge("vote_reactive_in_flight", "Reactive votes waiting on Redis or Mongo", inFlight::get);
+
+        LOG.info("reactive.started", "响应式投票服务已启动 - 候选人目录版本: {}, 进行中上限: {}",
+                catalogService.current().getVersion(), maxInFlight);
+    }
+
+    /**
+     * 处理一次投票，返回时不等待任何I/O
+     *
+     * @param userId 用户ID
+     * @param candidateId 候选人ID
+     * @param candidateName 候选人姓名，可为空
+     * @param idempotencyKey 客户端幂等键，可为空
+     * @param region 地区标签，可为空
+     * @return 投票结果
+     */
+    public Mono<Outcome> vote(String userId, String candidateId, String candidateName, String idempotencyKey,
+                              String region) {
+        return Mono.defer(() -> {
+            totalRequests.incrementAndGet();
+            if (idempotencyKey != null) {
+                Outcome cached = idempotentOutcomes.get(idempotencyKey);
+                if (cached != null) {
+                    replayedRequests.incrementAndGet();
+                    return Mono.just(cached == Outcome.SUCCEEDED ? Outcome.REPLAYED : cached);
+                }
+            }
+            int candidate = catalogService.resolve(candidateId);
+            if (userId == null || candidate < 0) {
+                failedVotes.incrementAndGet();
+                return Mono.just(Outcome.INVALID);
+            }
+            if (inFlight.incrementAndGet() > maxInFlight) {
+                inFlight.decrementAndGet();
+                shedRequests.incrementAndGet();
+                failedVotes.incrementAndGet();
+                return Mono.just(Outcome.OVERLOADED);
+            }
+
+            long start = System.nanoTime();
+            String claimKey = CLAIM_PREFIX + userId;
+            return timed(reactiveRedisTemplate.opsForValue().setIfAbsent(claimKey, PENDING, Duration.ofMillis(claimTtl)),
+                    claimTimer)
+                .flatMap(claimed -> claimed
+                    ? record(claimKey, userId, candidateId, candidate, candidateName, idempotencyKey, region)
+                    : reactiveRedisTemplate.opsForValue().get(claimKey)
+                        .map(marker -> existingClaim(marker, idempotencyKey))
+                        .defaultIfEmpty(Outcome.IN_PROGRESS))
+                .onErrorResume(e -> {
+                    LOG.error("vote.error", "响应式投票处理异常 - 用户: {}, 错误: {}", userId, e.getMessage());
+                    return Mono.just(Outcome.ERROR);
+                })
+                .doOnNext(outcome -> {
+                    if (idempotencyKey != null && outcome.getStatus() < 500 && outcome != Outcome.IN_PROGRESS) {
+                        idempotentOutcomes.put(idempotencyKey, outcome);
+                    }
+                    if (outcome == Outcome.SUCCEEDED) {
+                        successfulVotes.incrementAndGet();
+                    } else if (outcome != Outcome.REPLAYED) {
+                        failedVotes.incrementAndGet();
+                    }
+                })
+                .doFinally(signal -> {
+                    inFlight.decrementAndGet();
+                    endToEndTimer.recordSince(start);
+                });
+        });
+    }
+
+    /**
+     * 认领失败：pending表示仍在处理；已投票标记带着本次的幂等键时，说明是原请求的重放
+     */
+    private Outcome existingClaim(String marker, String idempotencyKey) {
+        if (marker.startsWith(PENDING)) {
+            return Outcome.IN_PROGRESS;
+        }
+        if (idempotencyKey != null && marker.endsWith(KEY_SEPARATOR + idempotencyKey)) {
+            replayedRequests.incrementAndGet();
+            return Outcome.REPLAYED;
+        }
+        return Outcome.DUPLICATE;
+    }
+
+    /**
+     * 已认领用户：持久化，再计票并把认领键改为已投票标记（候选人ID|幂等键）
+     * 只有插入失败时才删除认领键；插入成功后无论计票是否成功都返回成功，未计上的票由修复任务补上
+     */
+    private Mono<Outcome> record(String claimKey, String userId, String candidateId, int candidate,
+                                 String candidateName, String idempotencyKey, String region) {
+        String votedMarker = idempotencyKey != null ? candidateId + KEY_SEPARATOR + idempotencyKey : candidateId;
+        Vote vote = new Vote(userId, candidate);
+        vote.setServerNode(nodeId);
+        vote.setStatus(Vote.VoteStatus.CONFIRMED);
+        if (region != null) {
+            vote.setRegion(VoteCube.normalizeRegion(region));
+        }
+
+        Mono<Outcome> tallied = timed(tallyOnce(claimKey, votedMarker, candidateId)
+                .retryWhen(Retry.backoff(tallyRetries, Duration.ofMillis(50))), tallyTimer)
+            .doOnNext(count -> raiseLeaderboard(candidate, count))
+            .then()
+            .onErrorResume(e -> {
+                markTallyStale(userId, e);
+                return Mono.empty();
+            })
+            .then(Mono.fromSupplier(() -> {
+                rollupService.record(candidate, vote.getVoteTime());
+                cubeService.record(candidate, vote.getRegion(), vote.getVoteTime());
+                LOG.info("vote.success", "投票处理成功 - 用户: {}, 候选人: {}", userId, candidateName);
+                return Outcome.SUCCEEDED;
+            }));
+
+        // 只有插入本身的失败会删除认领键并返回错误
+        return timed(reactiveMongoTemplate.insert(vote), persistTimer)
+            .map(inserted -> Outcome.SUCCEEDED)
+            .onErrorResume(DuplicateKeyException.class, e -> Mono.just(Outcome.DUPLICATE))
+            .onErrorResume(e -> {
+                LOG.error("vote.error", "投票持久化失败 - 用户: {}, 错误: {}", userId, e.getMessage());
+                return reactiveRedisTemplate.delete(claimKey).thenReturn(Outcome.ERROR)
+                    .onErrorReturn(Outcome.ERROR);
+            })
+            .flatMap(outcome -> outcome == Outcome.SUCCEEDED ? tallied
+                : outcome == Outcome.DUPLICATE ? repairDuplicate(claimKey, userId)
+                : Mono.just(outcome));
+    }
+
+    /**
+     * 其他节点或之前的请求已写入：按已存的投票补计（已计过时脚本不加票），认领键随之成为已投票标记
+     * 原请求可能在插入后、计票前失败或认领键已过期，这里顺带把它的票补上
+     */
+    private Mono<Outcome> repairDuplicate(String claimKey, String userId) {
+        return reactiveMongoTemplate.findOne(new Query(Criteria.where(Vote.USER_FIELD).is(userId)), Vote.class)
+            .flatMap(stored -> {
+                CandidateCatalog catalog = catalogService.current();
+                if (stored.getCandidate() >= catalog.size()) {
+                    // 本节点目录还没有这个序号，目录重新加载后由修复任务补计
+                    tallyStale.set(true);
+                    return Mono.<Long>empty();
+                }
+                String storedId = catalog.id(stored.getCandidate());
+                return tallyOnce(claimKey, storedId, storedId)
+                    .doOnNext(count -> raiseLeaderboard(stored.getCandidate(), count));
+            })
+            .then()
+            .onErrorResume(e -> {
+                markTallyStale(userId, e);
+                return Mono.empty();
+            })
+            .thenReturn(Outcome.DUPLICATE);
+    }
+
+    /**
+     * 写入已投票标记并计票，同一用户只计一次
+     *
+     * @return 新票数；该用户已计过时为-1
+     */
+    private Mono<Long> tallyOnce(String claimKey, String marker, String candidateId) {
+        return reactiveRedisTemplate.execute(TALLY_ONCE, Arrays.asList(claimKey, TALLY_KEY),
+                Arrays.asList(marker, candidateId, PENDING))
+            .next();
+    }
+
+    private void raiseLeaderboard(int candidate, long count) {
+        if (count >= 0) {
+            leaderboard.raiseTo(candidate, count);
+        }
+    }
+
+    private void markTallyStale(String userId, Throwable e) {
+        tallyFailures.incrementAndGet();
+        tallyStale.set(true);
+        LOG.warn("vote.tally_failed", "投票已落盘但计票失败，等待从votes补计 - 用户: {}, 错误: {}", userId, e.getMessage());
+    }
+
+    /**
+     * 有未计上的票时从votes集合补计
+     */
+    @Scheduled(fixedDelayString = "${distributed.reactive.tally-repair-interval:30000}")
+    public void repairTally() {
+        if (!tallyStale.compareAndSet(true, false)) {
+            return;
+        }
+        rebuildTally().subscribe(repaired -> { }, e -> { });
+    }
+
+    /**
+     * 从votes集合重建Redis计数：逐条对每个已投票用户执行计票脚本，已计过的用户不变，
+     * 未计上的（插入后计票失败、计票前节点宕机）补上。可以与正常投票并发执行，不会重复计票。
+     * 同一时刻只有一次重建在执行，重复调用返回-1。
+     *
+     * @return 补计的票数
+     */
+    public Mono<Long> rebuildTally() {
+        if (!rebuilding.compareAndSet(false, true)) {
+            return Mono.just(-1L);
+        }
+        Query query = new Query();
+        query.fields().include(Vote.USER_FIELD).include(Vote.CANDIDATE_FIELD);
+        long start = System.currentTimeMillis();
+        return reactiveMongoTemplate.find(query, Vote.class)
+            .flatMap(vote -> {
+                CandidateCatalog catalog = catalogService.current();
+                if (vote.getCandidate() >= catalog.size()) {
+                    tallyStale.set(true);
+                    return Mono.<Long>empty();
+                }
+                String candidateId = catalog.id(vote.getCandidate());
+                return tallyOnce(CLAIM_PREFIX + vote.getUserId(), candidateId, candidateId)
+                    .doOnNext(count -> raiseLeaderboard(vote.getCandidate(), count));
+            }, tallyRebuildConcurrency)
+            .filter(count -> count >= 0)
+            .count()
+            .doOnNext(repaired -> {
+                repairedTallies.addAndGet(repaired);
+                LOG.info("vote.tally_rebuilt", "计票已从votes重建 - 补计: {}, 耗时: {}ms", repaired,
+                    System.currentTimeMillis() - start);
+            })
+            .doOnError(e -> {
+                tallyStale.set(true);
+                LOG.error("vote.tally_rebuild_failed", "从votes重建计票失败，稍后重试: {}", e.getMessage());
+            })
+            .doFinally(signal -> rebuilding.set(false));
+    }
+
+    /**
+     * 各候选人的票数，按目录序号顺序，未投票的候选人为0
+     */
+    public Mono<Map<String, Long>> getResults() {
+        return reactiveRedisTemplate.<String, String>opsForHash().entries(TALLY_KEY)
+            .collectMap(Map.Entry::getKey, entry -> Long.parseLong(entry.getValue()))
+            .map(tally -> {
+                CandidateCatalog catalog = catalogService.current();
+                Map<String, Long> results = new LinkedHashMap<>();
+                for (int i = 0; i < catalog.size(); i++) {
+                    long votes = tally.getOrDefault(catalog.id(i), 0L);
+                    leaderboard.raiseTo(i, votes);
+                    results.put(catalog.id(i), votes);
+                }
+                return results;
+            });
+    }
+
+    /**
+     * 从Redis全局计票同步排行榜，补上其他节点计入的票；票数只会提高，与本节点的增量更新互不覆盖
+     */
+    @Scheduled(fixedDelayString = "${distributed.reactive.leaderboard-sync-interval:1000}")
+    public void syncLeaderboard() {
+        getResults().subscribe(results -> { },
+            e -> LOG.warn("leaderboard.sync_failed", "排行榜同步失败，下次重试: {}", e.getMessage()));
+    }
+
+    /**
+     * 前K名，来自本地排行榜，不读Redis、不排序
+     */
+    public Leaderboard.Standings top(int k, CandidateCatalog catalog) {
+        return leaderboard.top(k, catalog.size());
+    }
+
+    /**
+     * 候选人的票数和名次（票数相同名次相同）的JSON
+     *
+     * @return 候选人不存在返回null
+     */
+    public String standing(String candidateId) {
+        CandidateCatalog catalog = catalogService.current();
+        int ordinal = catalog.ordinalOf(candidateId);
+        return ordinal >= 0 ? leaderboard.standingJson(catalog, ordinal) : null;
+    }
+
+    /**
+     * 统计信息，字段与SimpleVoteServer的 /api/stats 一致
+     */
+    public Mono<Map<String, Object>> getStats() {
+        return getResults().map(results -> {
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("totalRequests", totalRequests.get());
+            stats.put("successfulVotes", successfulVotes.get());
+            stats.put("failedVotes", failedVotes.get());
+            stats.put("totalVoters", results.values().stream().mapToLong(Long::longValue).sum());
+            stats.put("activeLocks", inFlight.get());
+            stats.put("shedRequests", shedRequests.get());
+            stats.put("replayedRequests", replayedRequests.get());
+            stats.put("concurrencyLimit", maxInFlight);
+            return stats;
+        });
+    }
+
+    private static <T> Mono<T> timed(Mono<T> operation, Timer timer) {
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            return operation.doFinally(signal -> timer.recordSince(start));
+        });
+    }
+}
@@ -1,140 +1,1115 @@
 package p.projectone.service;
 
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.apache.curator.framework.CuratorFramework;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
 import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.bulk.BulkWriteUpsert;
+import p.projectone.diagnostics.ReplicaWriteEvent;
+import p.projectone.diagnostics.VoteStageEvent;
+import p.projectone.logging.LogLevel;
+import p.projectone.logging.VoteLogger;
+import p.projectone.metrics.LatencyHistogram;
+import p.projectone.metrics.MetricsRegistry;
+import p.projectone.metrics.Timer;
+import p.projectone.replication.LeaderReplicatedLog;
+import p.projectone.replication.MerkleTree;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Stream;
 
 /**
  * 复制服务
  * 实现分布式算法中的复制机制，确保数据一致性
  * 
- * 复杂度：O(n) - n为副本数量
- * 实现方式：异步复制 + 一致性检查 + 故障恢复
+ * 复杂度：O(1) - 追加日志；每个副本每批一次批量写入，而不是每票每副本一次写入
+ * 实现方式：带序号的复制日志 + 按副本批量发送 + 副本确认水位 + 多数派水位提交 + Merkle树反熵修复
+ * leader模式：多个服务节点经ZooKeeper选主，领导者分配序号，各节点按序应用，多数节点应用即提交（见LeaderReplicatedLog）；
+ * 跟随者收到的投票经ZooKeeper提案转发给领导者，调用方同样等到提交才返回
  * 
  * @author Distributed Systems Team
  */
 @Service
 public class ReplicationService {
     
+    private static final VoteLogger LOG = VoteLogger.get(ReplicationService.class);
+    
+    private static final String LOG_COLLECTION = "replication_log";
+    private static final String STATE_COLLECTION = "replication_state";
+    // 已被全部副本确认、从replication_log删除的日志按投票ID压缩在这里，供反熵和恢复使用
+    private static final String SNAPSHOT_COLLECTION = "replication_snapshot";
+    private static final String COMPACTION_CHECKPOINT_ID = "log-compaction";
+    private static final String REPLICA_COLLECTION_PREFIX = "votes_replica_";
+    private static final String NODE_COLLECTION_PREFIX = "votes_node_";
+    private static final String LEADER_MODE = "leader";
+    
     @Autowired
     private MongoTemplate mongoTemplate;
     
+    @Autowired
+    private MetricsRegistry metricsRegistry;
+    
+    // ZooKeeper客户端为延迟Bean，只在leader模式下创建
+    @Autowired
+    private ObjectProvider<CuratorFramework> curatorProvider;
+    
+    // 复制模式：log-shipping（单节点向模拟副本发送日志）| leader（多节点选主复制）
+    @Value("${distributed.replication.mode:log-shipping}")
+    private String replicationMode;
+    
+    @Value("${distributed.replication.node-id:node-1}")
+    private String nodeId;
+    
+    @Value("${distributed.replication.cluster-size:3}")
+    private int clusterSize;
+    
+    @Value("${distributed.replication.zk-path:/voting/replication}")
+    private String zkPath;
+    
+    // leader模式：离线超过该时间（毫秒）的节点不再阻止日志删除，其进度节点被删除
+    @Value("${distributed.replication.stale-progress-timeout:600000}")
+    private long staleProgressTimeout;
+    
     @Value("${distributed.replication.replica-count:3}")
     private int replicaCount;
     
     @Value("${distributed.replication.sync-timeout:5000}")
     private long syncTimeout;
     
-    // 复制状态跟踪
-    private final ConcurrentHashMap<String, ReplicationStatus> replicationStatus = new ConcurrentHashMap<>();
+    // 单个副本批次写入超时，超时后取消该批次，下一轮从确认水位重发
+    @Value("${distributed.replication.replica-timeout:2000}")
+    private long replicaTimeout;
+    
+    @Value("${distributed.replication.executor-threads:32}")
+    private int executorThreads;
+    
+    @Value("${distributed.replication.executor-queue-capacity:256}")
+    private int executorQueueCapacity;
+    
+    // 每个副本每批最多发送的日志条数
+    @Value("${distributed.replication.batch-size:256}")
+    private int shipBatchSize;
+    
+    // 发送线程空闲轮询间隔（毫秒），有新日志或确认时立即唤醒
+    @Value("${distributed.replication.batch-interval:20}")
+    private long batchInterval;
+    
+    // 内存中保留的日志条数，落后更多的副本从replication_log集合补发
+    @Value("${distributed.replication.log-window:10000}")
+    private int logWindowCapacity;
+    
+    // Merkle树深度，叶子（桶）数为 2^depth
+    @Value("${distributed.replication.merkle-depth:10}")
+    private int merkleDepth;
+    
+    // 每次反熵检查额外重算的桶数，轮转覆盖全部桶，用于发现绕过本服务的副本数据变化
+    @Value("${distributed.replication.anti-entropy-scrub-buckets:64}")
+    private int scrubBuckets;
+    
+    // 等待提交的投票数上限，窗口满时新投票等待backpressure-wait后拒绝
+    @Value("${distributed.replication.max-in-flight:4096}")
+    private int maxInFlight;
+    
+    @Value("${distributed.replication.backpressure-wait:1000}")
+    private long backpressureWait;
+    
+    // 模拟副本写入延迟：每批随机等待0到该值毫秒，0为不模拟
+    @Value("${distributed.replication.simulated-latency:0}")
+    private long simulatedLatency;
+    
+    // 保留的最近失败记录条数
+    @Value("${distributed.replication.failure-history:100}")
+    private int failureHistorySize;
+    
+    // 副本写入专用线程池（不占用公共ForkJoinPool）
+    private ThreadPoolExecutor replicaExecutor;
+    
+    // 复制日志：序号在appendLock内分配，保证入队顺序即序号顺序
+    private final Object appendLock = new Object();
+    private volatile long lastSequence;
+    private volatile long persistedSequence;
+    private volatile long commitIndex;
+    // 已压缩（从replication_log删除）的最大序号
+    private volatile long compactedSequence;
+    private final ConcurrentLinkedDeque<LogEntry> unpersisted = new ConcurrentLinkedDeque<>();
+    private final ConcurrentSkipListMap<Long, LogEntry> logWindow = new ConcurrentSkipListMap<>();
+    private final ConcurrentHashMap<Long, CompletableFuture<Boolean>> commitWaiters = new ConcurrentHashMap<>();
+    private ReplicaState[] replicas;
+    private Thread shipper;
+    private volatile boolean shipping;
+    
+    // leader模式下的复制日志
+    private LeaderReplicatedLog leaderLog;
+    
+    // 反熵：主日志和各副本的Merkle树，按投票ID哈希区间分桶
+    private MerkleTree primaryTree;
+    private MerkleTree[] replicaTrees;
+    private final Object antiEntropyLock = new Object();
+    private volatile AntiEntropyResult lastAntiEntropy;
+    private int scrubCursor;
+    
+    // 复制状态跟踪：只保留等待提交的投票，提交或失败后移出窗口
+    private final ConcurrentHashMap<Long, ReplicationStatus> inFlightReplications = new ConcurrentHashMap<>();
+    private Semaphore inFlightPermits;
+    private final ArrayDeque<ReplicationFailure> recentFailures = new ArrayDeque<>();
+    private final LatencyHistogram commitLatency = new LatencyHistogram();
+    private Timer replicateTimer;
     private final AtomicInteger successfulReplications = new AtomicInteger(0);
     private final AtomicInteger failedReplications = new AtomicInteger(0);
+    private final AtomicInteger rejectedReplications = new AtomicInteger(0);
+    private final AtomicInteger timedOutReplicaWrites = new AtomicInteger(0);
+    private final AtomicLong totalQuorumLatency = new AtomicLong(0);
+    private final AtomicLong shippedBatches = new AtomicLong(0);
+    private final AtomicLong shippedEntries = new AtomicLong(0);
+    private final AtomicLong compactedEntries = new AtomicLong(0);
+    private final AtomicLong forwardedVotes = new AtomicLong(0);
+    
+    /**
+     * 初始化副本写入线程池，恢复日志序号和副本水位，启动发送线程
+     * leader模式下改为加入ZooKeeper复制集群
+     */
+    @PostConstruct
+    public void init() throws Exception {
+        AtomicInteger threadIndex = new AtomicInteger(0);
+        replicaExecutor = new ThreadPoolExecutor(executorThreads, executorThreads, 60L, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(executorQueueCapacity), runnable -> {
+                Thread thread = new Thread(runnable, "ReplicaWriter-" + threadIndex.getAndIncrement());
+                thread.setDaemon(true);
+                return thread;
+            });
+        replicaExecutor.allowCoreThreadTimeOut(true);
+        inFlightPermits = new Semaphore(maxInFlight);
+        
+        // 重启后树为空，全部标记为脏，首次反熵检查时按桶重建
+        primaryTree = new MerkleTree(merkleDepth);
+        primaryTree.markAllDirty();
+        replicaTrees = new MerkleTree[replicaCount];
+        for (int i = 0; i < replicaCount; i++) {
+            replicaTrees[i] = new MerkleTree(merkleDepth);
+            replicaTrees[i].markAllDirty();
+        }
+        ensureBucketIndexes();
+        registerMetrics();
+        VoteStageEvent.setNode(nodeId);
+        
+        if (LEADER_MODE.equals(replicationMode)) {
+            leaderLog = new LeaderReplicatedLog(curatorProvider.getObject(), zkPath, nodeId, clusterSize,
+                staleProgressTimeout, this::applyToNode, this::loadNodeSnapshot);
+            leaderLog.start();
+            return;
+        }
+        
+        recoverLog();
+        
+        shipping = true;
+        shipper = new Thread(this::shipLoop, "ReplicationShipper");
+        shipper.setDaemon(true);
+        shipper.start();
+    }
+    
+    /**
+     * 按桶读取、按投票ID查原数据需要索引
+     */
+    private void ensureBucketIndexes() {
+        try {
+            mongoTemplate.indexOps(LOG_COLLECTION).ensureIndex(new Index().on("bucket", Sort.Direction.ASC));
+            // 写入日志时按投票ID查原数据
+            mongoTemplate.indexOps(LOG_COLLECTION).ensureIndex(new Index().on("voteId", Sort.Direction.ASC));
+            mongoTemplate.indexOps(SNAPSHOT_COLLECTION).ensureIndex(new Index().on("bucket", Sort.Direction.ASC));
+            for (int i = 0; i < replicaCount; i++) {
+                mongoTemplate.indexOps(REPLICA_COLLECTION_PREFIX + i).ensureIndex(new Index().on("bucket", Sort.Direction.ASC));
+            }
+        } catch (Exception e) {
+            LOG.warn("replication.index_failed", "创建桶索引失败: {}", e.getMessage());
+        }
+    }
+    
+    /**
+     * 从replication_log和replication_state恢复最新序号、压缩位置和各副本确认水位
+     * 日志可能已全部压缩，最新序号取日志最大序号和压缩位置中的较大者
+     */
+    private void recoverLog() {
+        replicas = new ReplicaState[replicaCount];
+        long recovered = 0;
+        try {
+            LogEntry last = mongoTemplate.findOne(
+                new Query().with(Sort.by(Sort.Direction.DESC, "seq")).limit(1), LogEntry.class, LOG_COLLECTION);
+            ReplicaCheckpoint compaction = mongoTemplate.findById(
+                COMPACTION_CHECKPOINT_ID, ReplicaCheckpoint.class, STATE_COLLECTION);
+            compactedSequence = compaction != null ? compaction.getAckedSeq() : 0;
+            recovered = Math.max(last != null ? last.getSeq() : 0, compactedSequence);
+            for (int i = 0; i < replicaCount; i++) {
+                ReplicaCheckpoint checkpoint = mongoTemplate.findById(
+                    checkpointId(i), ReplicaCheckpoint.class, STATE_COLLECTION);
+                // 压缩后新增的副本无法从日志补发已压缩的部分，从压缩位置开始，之前的数据由反熵从快照修复
+                replicas[i] = new ReplicaState(i, Math.max(checkpoint != null ? checkpoint.getAckedSeq() : 0,
+                    compactedSequence));
+            }
+        } catch (Exception e) {
+            LOG.warn("replication.recover_failed", "恢复复制日志失败，从序号0开始: {}", e.getMessage());
+            for (int i = 0; i < replicaCount; i++) {
+                replicas[i] = new ReplicaState(i, 0);
+            }
+        }
+        lastSequence = recovered;
+        persistedSequence = recovered;
+        commitIndex = majorityAckedSequence();
+        LOG.info("replication.recovered", "复制日志已恢复 - 最新序号: {}, 已提交: {}", recovered, commitIndex);
+    }
+    
+    /**
+     * 停止发送线程和副本写入线程池
+     */
+    @PreDestroy
+    public void shutdown() {
+        if (leaderLog != null) {
+            try {
+                leaderLog.close();
+            } catch (Exception e) {
+                LOG.warn("replication.close_failed", "关闭复制日志失败: {}", e.getMessage());
+            }
+        }
+        shipping = false;
+        if (shipper != null) {
+            LockSupport.unpark(shipper);
+        }
+        if (replicaExecutor != null) {
+            replicaExecutor.shutdownNow();
+        }
+    }
     
     /**
      * 复制投票数据到多个副本
-     * 实现分布式算法中的复制机制
+     * 实现分布式算法中的复制机制：追加到复制日志，多数派副本确认水位越过该序号即返回
+     * 超时未提交的日志仍会继续复制；等待提交的投票达到max-in-flight时，新投票等待空位，超时拒绝
      * 
      * @param voteId 投票ID
      * @param voteData 投票数据
      * @return 是否复制成功
      */
     public boolean replicateVoteData(String voteId, String voteData) {
-        System.out.println("开始复制投票数据 - 投票ID: " + voteId + ", 副本数: " + replicaCount);
-        
-        ReplicationStatus status = new ReplicationStatus(voteId, replicaCount);
-        replicationStatus.put(voteId, status);
-        
+        long startTime = System.nanoTime();
         try {
-            // 异步复制到多个副本
-            List<CompletableFuture<Boolean>> replicationFutures = new java.util.ArrayList<>();
-            
-            for (int i = 0; i < replicaCount; i++) {
-                final int replicaIndex = i;
-                CompletableFuture<Boolean> future = CompletableFuture.supplyAsync(() -> {
-                    return replicateToReplica(voteId, voteData, replicaIndex);
-                });
-                replicationFutures.add(future);
+            if (!inFlightPermits.tryAcquire(backpressureWait, TimeUnit.MILLISECONDS)) {
+                rejectedReplications.incrementAndGet();
+                recordFailure(new ReplicationFailure(voteId, -1, 0, 0, "复制窗口已满"));
+                LOG.warn("replication.window_full", "复制窗口已满，拒绝投票 - 投票ID: {}, 等待提交: {}", voteId, inFlightReplications.size());
+                return false;
             }
-            
-            // 等待所有副本复制完成
-            CompletableFuture<Void> allReplications = CompletableFuture.allOf(
-                replicationFutures.toArray(new CompletableFuture[0])
-            );
-            
-            // 设置超时
-            allReplications.get(syncTimeout, java.util.concurrent.TimeUnit.MILLISECONDS);
-            
-            // 检查复制结果
-            int successCount = 0;
-            for (CompletableFuture<Boolean> future : replicationFutures) {
-                if (future.get()) {
-                    successCount++;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        
+        long seq;
+        CompletableFuture<?> committed;
+        if (leaderLog != null) {
+            try {
+                // 领导者上直接追加；跟随者转发给领导者，序号在领导者分配前未知，以负数占位
+                if (leaderLog.isLeader()) {
+                    seq = leaderLog.append(voteId, voteData);
+                    committed = leaderLog.whenCommitted(seq);
+                } else {
+                    seq = -forwardedVotes.incrementAndGet();
+                    committed = leaderLog.submit(voteId, voteData);
                 }
-            }
-            
-            boolean replicationSuccess = successCount >= (replicaCount / 2 + 1); // 多数派原则
-            
-            if (replicationSuccess) {
-                successfulReplications.incrementAndGet();
-                status.setStatus(ReplicationStatus.Status.COMPLETED);
-                System.out.println("投票数据复制成功 - 投票ID: " + voteId + 
-                                 ", 成功副本数: " + successCount + "/" + replicaCount);
-            } else {
+            } catch (Exception e) {
+                inFlightPermits.release();
                 failedReplications.incrementAndGet();
-                status.setStatus(ReplicationStatus.Status.FAILED);
-                System.out.println("投票数据复制失败 - 投票ID: " + voteId + 
-                                 ", 成功副本数: " + successCount + "/" + replicaCount);
+                recordFailure(new ReplicationFailure(voteId, -1, 0, 0, "追加失败: " + e.getMessage()));
+                LOG.error("replication.append_failed", "追加复制日志失败 - 投票ID: {}, 错误: {}", voteId, e.getMessage());
+                return false;
             }
-            
-            return replicationSuccess;
+        } else {
+            CompletableFuture<Boolean> shipped = new CompletableFuture<>();
+            seq = append(voteId, voteData, shipped).getSeq();
+            committed = shipped;
+        }
+        ReplicationStatus status = new ReplicationStatus(voteId, leaderLog != null ? clusterSize : replicaCount, seq);
+        inFlightReplications.put(seq, status);
+        
+        try {
+            committed.get(syncTimeout, TimeUnit.MILLISECONDS);
+            long latency = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+            totalQuorumLatency.addAndGet(latency);
+            commitLatency.record(latency);
+            successfulReplications.incrementAndGet();
+            status.setStatus(ReplicationStatus.Status.COMPLETED);
+            LOG.debug("replication.committed", "投票数据复制成功 - 投票ID: {}, 序号: {}", voteId, seq);
+            return true;
             
         } catch (Exception e) {
+            commitWaiters.remove(seq);
             failedReplications.incrementAndGet();
             status.setStatus(ReplicationStatus.Status.FAILED);
-            System.err.println("复制投票数据时发生异常 - 投票ID: " + voteId + ", 错误: " + e.getMessage());
+            long committedIndex = leaderLog != null ? leaderLog.getCommitIndex() : commitIndex;
+            // leader模式下领导者切换会使等待以异常结束
+            String reason = e instanceof TimeoutException
+                ? "未在" + syncTimeout + "ms内达到多数派，已提交: " + committedIndex
+                : "提交失败: " + (e.getCause() != null ? e.getCause().getMessage() : e.getMessage());
+            recordFailure(new ReplicationFailure(voteId, -1, seq, seq, reason));
+            LOG.warn("replication.not_committed", "投票数据未能提交 - 投票ID: {}, 序号: {}, 原因: {}", voteId, seq, reason);
             return false;
+            
+        } finally {
+            inFlightReplications.remove(seq);
+            inFlightPermits.release();
+            replicateTimer.recordSince(startTime);
         }
     }
     
     /**
-     * 复制数据到单个副本
+     * 注册复制相关的指标
+     */
+    private void registerMetrics() {
+        replicateTimer = metricsRegistry.stageTimer("replicate");
+        metricsRegistry.counter("vote_replications_total", "Vote replications by outcome", successfulReplications::get, "outcome", "committed");
+        metricsRegistry.counter("vote_replications_total", "Vote replications by outcome", failedReplications::get, "outcome", "failed");
+        metricsRegistry.counter("vote_replications_total", "Vote replications by outcome", rejectedReplications::get, "outcome", "rejected");
+        metricsRegistry.counter("replication_shipped_batches_total", "Batches shipped to replicas", shippedBatches::get);
+        metricsRegistry.counter("replication_shipped_entries_total", "Log entries shipped to replicas", shippedEntries::get);
+        metricsRegistry.counter("replication_forwarded_votes_total", "Votes forwarded to the leader by this follower",
+            forwardedVotes::get);
+        metricsRegistry.counter("replication_compacted_entries_total", "Acknowledged log entries moved out of replication_log",
+            compactedEntries::get);
+        metricsRegistry.gauge("replication_compacted_sequence", "Highest log sequence removed from replication_log",
+            () -> compactedSequence);
+        metricsRegistry.gauge("replication_in_flight", "Votes waiting for a majority", inFlightReplications::size);
+        metricsRegistry.gauge("replication_commit_index", "Highest committed log sequence", () ->
+            leaderLog != null ? leaderLog.getCommitIndex() : commitIndex);
+        metricsRegistry.gauge("replication_last_sequence", "Highest appended log sequence", () ->
+            leaderLog != null ? leaderLog.getLastSequence() : lastSequence);
+        if (LEADER_MODE.equals(replicationMode)) {
+            return;
+        }
+        // 各副本落后程度，恢复日志之前为0
+        for (int i = 0; i < replicaCount; i++) {
+            int index = i;
+            metricsRegistry.gauge("replication_replica_lag_entries", "Log entries appended but not acknowledged by a replica",
+                () -> {
+                    ReplicaState[] current = replicas;
+                    return current != null ? lastSequence - current[index].ackedSeq : 0;
+                }, "replica", String.valueOf(i));
+            metricsRegistry.gauge("replication_replica_lag_seconds", "Age of the oldest entry a replica has not acknowledged",
+                () -> {
+                    ReplicaState[] current = replicas;
+                    return current != null
+                        ? lagMillis(current[index], lastSequence, System.currentTimeMillis()) / 1000.0 : 0;
+                }, "replica", String.valueOf(i));
+        }
+    }
+    
+    /**
+     * 记录一次失败，超出保留条数时丢弃最旧的
+     */
+    private void recordFailure(ReplicationFailure failure) {
+        synchronized (recentFailures) {
+            if (recentFailures.size() >= failureHistorySize) {
+                recentFailures.pollFirst();
+            }
+            recentFailures.addLast(failure);
+        }
+    }
+    
+    /**
+     * 最近的失败记录，按时间从旧到新
+     */
+    public List<ReplicationFailure> getRecentFailures() {
+        synchronized (recentFailures) {
+            return new ArrayList<>(recentFailures);
+        }
+    }
+    
+    /**
+     * leader模式下应用一条已排序的日志：写入本节点的投票集合，按投票ID覆盖，重放幂等
+     */
+    private void applyToNode(long sequence, String voteId, String voteData) {
+        ReplicaWriteEvent event = ReplicaWriteEvent.start(nodeId);
+        boolean written = false;
+        try {
+            mongoTemplate.upsert(new Query(Criteria.where("_id").is(voteId)), new Update()
+                .set("voteData", voteData)
+                .set("seq", sequence)
+                .set("timestamp", System.currentTimeMillis()),
+                NODE_COLLECTION_PREFIX + nodeId);
+            written = true;
+        } finally {
+            event.finish(sequence, sequence, 1, written);
+        }
+    }
+    
+    /**
+     * leader模式下从已追上的节点初始化：把源节点集合按投票ID覆盖写入本节点集合，每批shipBatchSize条
+     * 源集合里可能已有upTo之后的投票，本节点随后从upTo+1重放日志，覆盖结果相同；
+     * 本节点集合里多出的文档也来自之后会重放的条目，不需要先清空
+     */
+    private void loadNodeSnapshot(String source, long upTo) {
+        String target = NODE_COLLECTION_PREFIX + nodeId;
+        int copied = 0;
+        try (Stream<ReplicaVote> votes = mongoTemplate.stream(new Query(), ReplicaVote.class,
+                NODE_COLLECTION_PREFIX + source)) {
+            List<ReplicaVote> batch = new ArrayList<>(shipBatchSize);
+            for (Iterator<ReplicaVote> it = votes.iterator(); it.hasNext(); ) {
+                batch.add(it.next());
+                if (batch.size() == shipBatchSize || !it.hasNext()) {
+                    BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, target);
+                    for (ReplicaVote vote : batch) {
+                        bulk.upsert(new Query(Criteria.where("_id").is(vote.getId())), new Update()
+                            .set("voteData", vote.getVoteData())
+                            .set("seq", vote.getSeq())
+                            .set("timestamp", vote.getTimestamp()));
+                    }
+                    bulk.execute();
+                    copied += batch.size();
+                    batch.clear();
+                }
+            }
+        }
+        LOG.info("replication.snapshot_loaded", "已从节点 {} 复制快照 - 序号: {}, 投票: {}", source, upTo, copied);
+    }
+    
+    /**
+     * 追加一条复制日志
      * 
      * @param voteId 投票ID
      * @param voteData 投票数据
+     * @param committed 提交时完成的Future
+     * @return 日志条目
+     */
+    private LogEntry append(String voteId, String voteData, CompletableFuture<Boolean> committed) {
+        LogEntry entry;
+        synchronized (appendLock) {
+            entry = new LogEntry(lastSequence + 1, voteId, primaryTree.bucketOf(voteId), voteData,
+                System.currentTimeMillis());
+            commitWaiters.put(entry.getSeq(), committed);
+            logWindow.put(entry.getSeq(), entry);
+            unpersisted.addLast(entry);
+            lastSequence = entry.getSeq();
+        }
+        LockSupport.unpark(shipper);
+        return entry;
+    }
+    
+    /**
+     * 发送线程主循环：持久化新日志，为每个空闲副本发送下一批，裁剪内存窗口
+     */
+    private void shipLoop() {
+        while (shipping) {
+            try {
+                persistPending();
+                for (ReplicaState replica : replicas) {
+                    if (!replica.inFlight && replica.ackedSeq < persistedSequence) {
+                        shipNextBatch(replica);
+                    }
+                }
+                trimWindow();
+            } catch (Exception e) {
+                LOG.error("replication.ship_failed", "复制日志发送失败: {}", e.getMessage());
+            }
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(batchInterval));
+        }
+    }
+    
+    /**
+     * 批量写入新追加的日志，失败时放回队首下一轮重试
+     * 写入后先计入主日志的Merkle树再推进持久化位置，反熵据此判断哪些条目可能还没计入树
+     */
+    private void persistPending() {
+        List<LogEntry> batch = new ArrayList<>();
+        LogEntry entry;
+        while (batch.size() < shipBatchSize * 4 && (entry = unpersisted.pollFirst()) != null) {
+            batch.add(entry);
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            mongoTemplate.insert(batch, LOG_COLLECTION);
+        } catch (Exception e) {
+            // 部分写入后重试会遇到重复序号，逐条覆盖写入保证幂等
+            try {
+                for (LogEntry pending : batch) {
+                    mongoTemplate.save(pending, LOG_COLLECTION);
+                }
+            } catch (Exception retryError) {
+                for (int i = batch.size() - 1; i >= 0; i--) {
+                    unpersisted.addFirst(batch.get(i));
+                }
+                LOG.error("replication.write_failed", "写入复制日志失败: {}", retryError.getMessage());
+                return;
+            }
+        }
+        updatePrimaryTree(batch);
+        persistedSequence = batch.get(batch.size() - 1).getSeq();
+    }
+    
+    /**
+     * 把一批新写入的日志计入主日志的Merkle树
+     * 投票ID此前已在主日志中（调用方超时后重试等）时树里已有它的摘要，再次add会把摘要抵消，
+     * 因此先查出这些投票此前的数据，用replace换掉原摘要；查询失败时把涉及的桶标记为脏，由反熵按桶重算。
+     * 先查日志再查快照：压缩先写快照再删日志，条目在两次查询之间被压缩也能查到。
+     */
+    private void updatePrimaryTree(List<LogEntry> batch) {
+        Map<String, LogEntry> previous = new HashMap<>();
+        try {
+            List<String> voteIds = new ArrayList<>(batch.size());
+            for (LogEntry entry : batch) {
+                voteIds.add(entry.getVoteId());
+            }
+            for (LogEntry logged : mongoTemplate.find(new Query(Criteria.where("voteId").in(voteIds)
+                    .and("seq").lt(batch.get(0).getSeq())), LogEntry.class, LOG_COLLECTION)) {
+                previous.merge(logged.getVoteId(), logged, (a, b) -> a.getSeq() >= b.getSeq() ? a : b);
+            }
+            for (ReplicaVote compacted : mongoTemplate.find(new Query(Criteria.where("_id").in(voteIds)),
+                    ReplicaVote.class, SNAPSHOT_COLLECTION)) {
+                previous.merge(compacted.getId(), toLogEntry(compacted), (a, b) -> a.getSeq() >= b.getSeq() ? a : b);
+            }
+        } catch (Exception e) {
+            LOG.warn("replication.tree_update_failed", "查询投票原数据失败，按桶重算Merkle树: {}", e.getMessage());
+            for (LogEntry entry : batch) {
+                primaryTree.markDirty(entry.getBucket());
+            }
+            return;
+        }
+        for (LogEntry entry : batch) {
+            long digest = MerkleTree.digest(entry.getVoteId(), entry.getVoteData());
+            LogEntry before = previous.put(entry.getVoteId(), entry);
+            if (before == null) {
+                primaryTree.add(entry.getVoteId(), digest);
+            } else {
+                primaryTree.replace(entry.getVoteId(), MerkleTree.digest(before.getVoteId(), before.getVoteData()), digest);
+            }
+        }
+    }
+    
+    /**
+     * 从副本确认水位之后发送一批日志
+     * 
+     * @param replica 副本状态
+     */
+    private void shipNextBatch(ReplicaState replica) {
+        long from = replica.ackedSeq + 1;
+        long to = Math.min(persistedSequence, replica.ackedSeq + shipBatchSize);
+        List<LogEntry> batch = readLog(from, to);
+        if (batch.isEmpty()) {
+            return;
+        }
+        
+        replica.inFlight = true;
+        CompletableFuture<Boolean> result = new CompletableFuture<>();
+        Future<?> task;
+        try {
+            task = replicaExecutor.submit(() -> result.complete(shipToReplica(replica.index, batch)));
+        } catch (RejectedExecutionException e) {
+            replica.inFlight = false;
+            recordFailure(new ReplicationFailure(null, replica.index, from, to, "副本写入线程池已满"));
+            LOG.warn("replica.pool_full", "副本写入线程池已满 - 副本: {}", replica.index);
+            return;
+        }
+        result.orTimeout(replicaTimeout, TimeUnit.MILLISECONDS).exceptionally(e -> {
+            if (e instanceof TimeoutException) {
+                timedOutReplicaWrites.incrementAndGet();
+                task.cancel(true);
+                recordFailure(new ReplicationFailure(null, replica.index, from, to,
+                    "副本写入超过" + replicaTimeout + "ms，已取消"));
+                LOG.warn("replica.timeout", "复制到副本 {} 超时，已取消 - 序号: {}-{}", replica.index, from, to);
+            }
+            return false;
+        }).thenAccept(success -> onBatchShipped(replica, batch, success));
+    }
+    
+    /**
+     * 读取序号区间内的日志，优先取内存窗口，已裁剪的部分从replication_log读取
+     */
+    private List<LogEntry> readLog(long from, long to) {
+        if (!logWindow.isEmpty() && logWindow.firstKey() <= from) {
+            List<LogEntry> entries = new ArrayList<>(logWindow.subMap(from, true, to, true).values());
+            if (entries.size() == to - from + 1) {
+                return entries;
+            }
+        }
+        return mongoTemplate.find(
+            new Query(Criteria.where("seq").gte(from).lte(to)).with(Sort.by(Sort.Direction.ASC, "seq")),
+            LogEntry.class, LOG_COLLECTION);
+    }
+    
+    /**
+     * 批量写入单个副本并记录确认水位
+     * 
      * @param replicaIndex 副本索引
-     * @return 是否复制成功
+     * @param batch 连续的日志条目
+     * @return 是否写入成功
      */
-    private boolean replicateToReplica(String voteId, String voteData, int replicaIndex) {
+    private boolean shipToReplica(int replicaIndex, List<LogEntry> batch) {
+        ReplicaWriteEvent event = ReplicaWriteEvent.start(REPLICA_COLLECTION_PREFIX + replicaIndex);
+        boolean written = false;
         try {
-            // 模拟复制到不同副本的延迟
-            Thread.sleep((long) (Math.random() * 1000));
+            // 按配置模拟复制到不同副本的延迟（每批一次）
+            if (simulatedLatency > 0) {
+                Thread.sleep(ThreadLocalRandom.current().nextLong(simulatedLatency + 1));
+            }
             
             // 在实际系统中，这里会复制到不同的数据库实例或服务器
-            // 这里简化为在同一个MongoDB中创建不同的集合来模拟副本
-            String replicaCollectionName = "votes_replica_" + replicaIndex;
-            
-            // 保存到副本集合
-            ReplicaVote replicaVote = new ReplicaVote(voteId, voteData, replicaIndex);
-            mongoTemplate.save(replicaVote, replicaCollectionName);
+            // 这里简化为在同一个MongoDB中创建不同的集合来模拟副本；按投票ID覆盖写入，重发幂等
+            BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED,
+                REPLICA_COLLECTION_PREFIX + replicaIndex);
+            long now = System.currentTimeMillis();
+            for (LogEntry entry : batch) {
+                bulk.upsert(new Query(Criteria.where("_id").is(entry.getVoteId())), new Update()
+                    .set("voteData", entry.getVoteData())
+                    .set("seq", entry.getSeq())
+                    .set("bucket", entry.getBucket())
+                    .set("replicaIndex", replicaIndex)
+                    .set("timestamp", now));
+            }
+            updateReplicaTree(replicaIndex, batch, bulk.execute());
             
-            System.out.println("数据复制到副本 " + replicaIndex + " 成功 - 投票ID: " + voteId);
+            long ackedSeq = batch.get(batch.size() - 1).getSeq();
+            mongoTemplate.save(new ReplicaCheckpoint(checkpointId(replicaIndex), ackedSeq, now), STATE_COLLECTION);
+            written = true;
             return true;
             
+        } catch (InterruptedException e) {
+            // 超时被取消
+            Thread.currentThread().interrupt();
+            return false;
         } catch (Exception e) {
-            System.err.println("复制到副本 " + replicaIndex + " 失败 - 投票ID: " + voteId + 
-                             ", 错误: " + e.getMessage());
+            recordFailure(new ReplicationFailure(null, replicaIndex, batch.get(0).getSeq(),
+                batch.get(batch.size() - 1).getSeq(), e.getMessage()));
+            LOG.log(LogLevel.WARN, "replica.write_failed", "复制到副本 {} 失败 - 序号: {}-{}, 错误: {}", replicaIndex,
+                    batch.get(0).getSeq(), batch.get(batch.size() - 1).getSeq(), e.getMessage());
             return false;
+        } finally {
+            event.finish(batch.get(0).getSeq(), batch.get(batch.size() - 1).getSeq(), batch.size(), written);
+        }
+    }
+    
+    /**
+     * 按批量写入结果增量更新副本的Merkle树
+     * 新插入的条目直接加入；覆盖了已有文档（重发或数据不同）的桶无法增量更新，标记为脏
+     */
+    private void updateReplicaTree(int replicaIndex, List<LogEntry> batch, BulkWriteResult result) {
+        MerkleTree tree = replicaTrees[replicaIndex];
+        Set<Integer> inserted = new HashSet<>();
+        for (BulkWriteUpsert upsert : result.getUpserts()) {
+            LogEntry entry = batch.get(upsert.getIndex());
+            inserted.add(upsert.getIndex());
+            tree.add(entry.getVoteId(), MerkleTree.digest(entry.getVoteId(), entry.getVoteData()));
+        }
+        if (result.getMatchedCount() > 0) {
+            for (int i = 0; i < batch.size(); i++) {
+                if (!inserted.contains(i)) {
+                    tree.markDirty(batch.get(i).getBucket());
+                }
+            }
+        }
+    }
+    
+    /**
+     * 批次完成回调：推进副本水位和提交序号，唤醒发送线程发送下一批
+     */
+    private void onBatchShipped(ReplicaState replica, List<LogEntry> batch, boolean success) {
+        if (success) {
+            replica.ackedSeq = Math.max(replica.ackedSeq, batch.get(batch.size() - 1).getSeq());
+            replica.ackedAt = System.currentTimeMillis();
+            // 每条日志从追加到该副本确认的耗时
+            for (LogEntry entry : batch) {
+                replica.ackLatency.record(replica.ackedAt - entry.getTimestamp());
+            }
+            shippedBatches.incrementAndGet();
+            shippedEntries.addAndGet(batch.size());
+            advanceCommitIndex();
+        } else {
+            replica.failedBatches.incrementAndGet();
+        }
+        replica.inFlight = false;
+        LockSupport.unpark(shipper);
+    }
+    
+    /**
+     * 多数派副本都已确认的最大序号
+     */
+    private long majorityAckedSequence() {
+        if (replicas == null) {
+            // leader模式下没有模拟副本
+            return commitIndex;
+        }
+        long[] acked = new long[replicas.length];
+        for (int i = 0; i < replicas.length; i++) {
+            acked[i] = replicas[i].ackedSeq;
+        }
+        Arrays.sort(acked);
+        return acked[replicas.length - (replicas.length / 2 + 1)];
+    }
+    
+    private synchronized void advanceCommitIndex() {
+        long newCommitIndex = majorityAckedSequence();
+        for (long seq = commitIndex + 1; seq <= newCommitIndex; seq++) {
+            CompletableFuture<Boolean> waiter = commitWaiters.remove(seq);
+            if (waiter != null) {
+                waiter.complete(true);
+            }
+        }
+        if (newCommitIndex > commitIndex) {
+            commitIndex = newCommitIndex;
         }
     }
     
     /**
-     * 检查数据一致性
+     * 裁剪内存窗口：所有副本都已确认的条目，以及超出窗口容量的已持久化条目
+     */
+    private void trimWindow() {
+        if (replicas == null) {
+            return;
+        }
+        long minAcked = Long.MAX_VALUE;
+        for (ReplicaState replica : replicas) {
+            minAcked = Math.min(minAcked, replica.ackedSeq);
+        }
+        while (!logWindow.isEmpty()) {
+            long first = logWindow.firstKey();
+            if (first <= minAcked || (logWindow.size() > logWindowCapacity && first <= persistedSequence)) {
+                logWindow.pollFirstEntry();
+            } else {
+                break;
+            }
+        }
+    }
+    
+    /**
+     * 压缩日志：全部副本都已确认的条目按投票ID写入replication_snapshot，记下压缩位置后从replication_log删除
+     * 每次最多处理一批；中途失败时下一次从压缩位置重做，写入按投票ID覆盖，重做幂等。
+     * 在反熵锁内执行，反熵读取主日志（快照 + 日志）时不会看到条目正在两个集合之间移动。
+     */
+    @Scheduled(fixedDelayString = "${distributed.replication.compaction-interval:5000}")
+    public void compactLog() {
+        ReplicaState[] current = replicas;
+        if (current == null) {
+            // leader模式或尚未恢复
+            return;
+        }
+        long minAcked = Long.MAX_VALUE;
+        for (ReplicaState replica : current) {
+            minAcked = Math.min(minAcked, replica.ackedSeq);
+        }
+        if (minAcked <= compactedSequence) {
+            return;
+        }
+        long to = Math.min(minAcked, compactedSequence + shipBatchSize * 4L);
+        synchronized (antiEntropyLock) {
+            try {
+                List<LogEntry> batch = mongoTemplate.find(
+                    new Query(Criteria.where("seq").gt(compactedSequence).lte(to)).with(Sort.by(Sort.Direction.ASC, "seq")),
+                    LogEntry.class, LOG_COLLECTION);
+                if (!batch.isEmpty()) {
+                    // 按序号顺序写入，同一投票的较新条目覆盖较旧的
+                    BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.ORDERED, SNAPSHOT_COLLECTION);
+                    for (LogEntry entry : batch) {
+                        bulk.upsert(new Query(Criteria.where("_id").is(entry.getVoteId())), new Update()
+                            .set("voteData", entry.getVoteData())
+                            .set("seq", entry.getSeq())
+                            .set("bucket", entry.getBucket())
+                            .set("timestamp", entry.getTimestamp()));
+                    }
+                    bulk.execute();
+                }
+                mongoTemplate.save(new ReplicaCheckpoint(COMPACTION_CHECKPOINT_ID, to, System.currentTimeMillis()),
+                    STATE_COLLECTION);
+                mongoTemplate.remove(new Query(Criteria.where("seq").lte(to)), LogEntry.class, LOG_COLLECTION);
+                compactedSequence = to;
+                compactedEntries.addAndGet(batch.size());
+            } catch (Exception e) {
+                LOG.error("replication.compact_failed", "压缩复制日志失败 - 序号: {}-{}, 错误: {}",
+                    compactedSequence + 1, to, e.getMessage());
+            }
+        }
+    }
+    
+    /**
+     * 查询各副本的复制延迟
+     * leader模式下没有模拟副本，返回空列表
+     * 
+     * @return 每个副本的确认水位、落后条数和落后时间
+     */
+    public List<ReplicaLag> getReplicaLag() {
+        ReplicaState[] current = replicas;
+        if (current == null) {
+            return List.of();
+        }
+        long now = System.currentTimeMillis();
+        long last = lastSequence;
+        List<ReplicaLag> lags = new ArrayList<>(current.length);
+        for (ReplicaState replica : current) {
+            long acked = replica.ackedSeq;
+            lags.add(new ReplicaLag(replica.index, acked, last - acked, lagMillis(replica, last, now),
+                replica.failedBatches.get(), replica.inFlight,
+                replica.ackLatency.getValueAtPercentile(50), replica.ackLatency.getValueAtPercentile(99),
+                replica.ackLatency.getMax()));
+        }
+        return lags;
+    }
+    
+    /**
+     * 落后时间：最早未确认条目的追加时间至今，已追上时为0
+     */
+    private long lagMillis(ReplicaState replica, long last, long now) {
+        long acked = replica.ackedSeq;
+        if (acked >= last) {
+            return 0;
+        }
+        LogEntry oldest = logWindow.get(acked + 1);
+        return oldest != null ? now - oldest.getTimestamp() : now - replica.ackedAt;
+    }
+    
+    private static String checkpointId(int replicaIndex) {
+        return "replica-" + replicaIndex;
+    }
+    
+    /**
+     * 全量一致性检查（反熵）
+     * 先重新计算脏桶（含本轮轮转抽查的桶），再逐个副本比较Merkle树，只读取哈希不同的桶并修复：
+     * 副本缺失或数据不同的投票按主日志覆盖写入，主日志中不存在的投票从副本删除。
+     * 序号高于副本确认水位的日志尚未发送，由发送线程负责，这里不修复。
+     * 
+     * @return 检查结果
+     */
+    @Scheduled(fixedDelayString = "${distributed.replication.anti-entropy-interval:60000}",
+               initialDelayString = "${distributed.replication.anti-entropy-interval:60000}")
+    public AntiEntropyResult checkConsistency() {
+        if (leaderLog != null) {
+            // leader模式下没有模拟副本集合
+            return null;
+        }
+        synchronized (antiEntropyLock) {
+            long startTime = System.currentTimeMillis();
+            scrub();
+            int refreshed = refreshPrimaryTree();
+            int differingBuckets = 0;
+            int nodesCompared = 0;
+            int repaired = 0;
+            int removed = 0;
+            
+            for (int i = 0; i < replicaCount; i++) {
+                refreshed += refreshReplicaTree(i);
+                MerkleTree.Difference difference = MerkleTree.diff(primaryTree, replicaTrees[i]);
+                nodesCompared += difference.getNodesCompared();
+                differingBuckets += difference.getBuckets().size();
+                for (int bucket : difference.getBuckets()) {
+                    int[] counts = repairBucket(i, bucket);
+                    repaired += counts[0];
+                    removed += counts[1];
+                }
+            }
+            
+            AntiEntropyResult result = new AntiEntropyResult(replicaCount, refreshed, nodesCompared,
+                differingBuckets, repaired, removed, System.currentTimeMillis() - startTime);
+            lastAntiEntropy = result;
+            LOG.log(LogLevel.INFO, "replication.anti_entropy", "反熵检查完成 - 重算桶: {}, 比较节点: {}, 不同桶: {}, 修复: {}, 删除: {}",
+                refreshed, nodesCompared, differingBuckets, repaired, removed);
+            return result;
+        }
+    }
+    
+    /**
+     * 把下一段桶标记为脏，多轮检查后覆盖全部桶
+     */
+    private void scrub() {
+        int leafCount = primaryTree.getLeafCount();
+        int count = Math.min(scrubBuckets, leafCount);
+        for (int i = 0; i < count; i++) {
+            int bucket = (scrubCursor + i) % leafCount;
+            primaryTree.markDirty(bucket);
+            for (MerkleTree tree : replicaTrees) {
+                tree.markDirty(bucket);
+            }
+        }
+        scrubCursor = (scrubCursor + count) % leafCount;
+    }
+    
+    /**
+     * 重新计算主日志树的脏桶
+     */
+    private int refreshPrimaryTree() {
+        List<Integer> dirty = primaryTree.getDirtyBuckets();
+        for (int bucket : dirty) {
+            primaryTree.setLeaf(bucket, leafHash(loadPrimaryBucket(bucket)));
+        }
+        return dirty.size();
+    }
+    
+    /**
+     * 重新计算副本树的脏桶
+     */
+    private int refreshReplicaTree(int replicaIndex) {
+        List<Integer> dirty = replicaTrees[replicaIndex].getDirtyBuckets();
+        for (int bucket : dirty) {
+            replicaTrees[replicaIndex].setLeaf(bucket, leafHash(loadReplicaBucket(replicaIndex, bucket)));
+        }
+        return dirty.size();
+    }
+    
+    /**
+     * 修复副本中的一个桶，并用修复后的内容回填两棵树的叶子
+     * 先取副本确认水位和主日志持久化位置，再先读副本、后读主日志：副本中序号不超过水位的投票在读副本时已写入主日志，
+     * 读主日志时一定能读到，主日志中没有的才是多余的，删除；序号超过水位的投票可能是读取期间刚发送的，不覆盖也不删除。
+     * 读到的文档里有水位（或持久化位置）之后的，说明对应批次的增量更新可能还没计入树，回填会与之重复计算，
+     * 这时只把该树的桶标记为脏，由下一轮重算。
+     * 
+     * @return {修复数, 删除数}
+     */
+    private int[] repairBucket(int replicaIndex, int bucket) {
+        long ackedSeq = replicas[replicaIndex].ackedSeq;
+        long persisted = persistedSequence;
+        List<ReplicaVote> replicaVotes = loadReplicaVotes(replicaIndex, bucket);
+        Map<String, LogEntry> primary = loadPrimaryEntries(bucket);
+        String collection = REPLICA_COLLECTION_PREFIX + replicaIndex;
+        
+        Map<String, String> replica = new HashMap<>();
+        boolean replicaInFlight = false;
+        for (ReplicaVote vote : replicaVotes) {
+            replica.put(vote.getId(), vote.getVoteData());
+            replicaInFlight |= vote.getSeq() > ackedSeq;
+        }
+        
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, collection);
+        int repaired = 0;
+        int removed = 0;
+        long now = System.currentTimeMillis();
+        for (LogEntry entry : primary.values()) {
+            if (entry.getSeq() > ackedSeq || Objects.equals(replica.get(entry.getVoteId()), entry.getVoteData())) {
+                continue;
+            }
+            bulk.upsert(new Query(Criteria.where("_id").is(entry.getVoteId())), new Update()
+                .set("voteData", entry.getVoteData())
+                .set("seq", entry.getSeq())
+                .set("bucket", bucket)
+                .set("replicaIndex", replicaIndex)
+                .set("timestamp", now));
+            replica.put(entry.getVoteId(), entry.getVoteData());
+            repaired++;
+        }
+        for (ReplicaVote vote : replicaVotes) {
+            if (vote.getSeq() <= ackedSeq && !primary.containsKey(vote.getId())) {
+                bulk.remove(new Query(Criteria.where("_id").is(vote.getId())));
+                replica.remove(vote.getId());
+                removed++;
+            }
+        }
+        if (repaired + removed > 0) {
+            bulk.execute();
+            LOG.log(LogLevel.INFO, "replication.bucket_repaired", "副本 {} 桶 {} 已修复 - 覆盖: {}, 删除: {}",
+                replicaIndex, bucket, repaired, removed);
+        }
+        
+        Map<String, String> primaryData = new HashMap<>();
+        boolean primaryInFlight = false;
+        for (LogEntry entry : primary.values()) {
+            primaryData.put(entry.getVoteId(), entry.getVoteData());
+            primaryInFlight |= entry.getSeq() > persisted;
+        }
+        if (primaryInFlight) {
+            primaryTree.markDirty(bucket);
+        } else {
+            primaryTree.setLeaf(bucket, leafHash(primaryData));
+        }
+        if (replicaInFlight) {
+            replicaTrees[replicaIndex].markDirty(bucket);
+        } else {
+            replicaTrees[replicaIndex].setLeaf(bucket, leafHash(replica));
+        }
+        return new int[]{repaired, removed};
+    }
+    
+    /**
+     * 主日志中一个桶的投票（已压缩的快照 + 未压缩的日志），同一投票取序号最大的条目
+     */
+    private Map<String, LogEntry> loadPrimaryEntries(int bucket) {
+        Map<String, LogEntry> entries = new HashMap<>();
+        for (ReplicaVote compacted : mongoTemplate.find(new Query(Criteria.where("bucket").is(bucket)),
+                ReplicaVote.class, SNAPSHOT_COLLECTION)) {
+            entries.put(compacted.getId(), toLogEntry(compacted));
+        }
+        for (LogEntry entry : mongoTemplate.find(new Query(Criteria.where("bucket").is(bucket)),
+                LogEntry.class, LOG_COLLECTION)) {
+            entries.merge(entry.getVoteId(), entry, (a, b) -> a.getSeq() >= b.getSeq() ? a : b);
+        }
+        return entries;
+    }
+    
+    /**
+     * 快照文档与副本文档同构（_id为投票ID），转换为日志条目
+     */
+    private static LogEntry toLogEntry(ReplicaVote compacted) {
+        return new LogEntry(compacted.getSeq(), compacted.getId(), compacted.getBucket(), compacted.getVoteData(), 0);
+    }
+    
+    private Map<String, String> loadPrimaryBucket(int bucket) {
+        Map<String, String> data = new HashMap<>();
+        loadPrimaryEntries(bucket).values().forEach(entry -> data.put(entry.getVoteId(), entry.getVoteData()));
+        return data;
+    }
+    
+    private Map<String, String> loadReplicaBucket(int replicaIndex, int bucket) {
+        Map<String, String> data = new HashMap<>();
+        for (ReplicaVote vote : loadReplicaVotes(replicaIndex, bucket)) {
+            data.put(vote.getId(), vote.getVoteData());
+        }
+        return data;
+    }
+    
+    private List<ReplicaVote> loadReplicaVotes(int replicaIndex, int bucket) {
+        return mongoTemplate.find(new Query(Criteria.where("bucket").is(bucket)),
+            ReplicaVote.class, REPLICA_COLLECTION_PREFIX + replicaIndex);
+    }
+    
+    private static long leafHash(Map<String, String> bucketData) {
+        long hash = 0;
+        for (Map.Entry<String, String> entry : bucketData.entrySet()) {
+            hash ^= MerkleTree.digest(entry.getKey(), entry.getValue());
+        }
+        return hash;
+    }
+    
+    /**
+     * 检查单个投票的数据一致性
      * 
      * @param voteId 投票ID
      * @return 一致性检查结果
@@ -143,39 +1118,33 @@ public class ReplicationService {
         System.out.println("开始检查数据一致性 - 投票ID: " + voteId);
         
         try {
-            // 从主数据库获取数据
-            String mainData = getVoteDataFromMain(voteId);
-            
-            // 从各个副本获取数据
-            List<String> replicaData = new java.util.ArrayList<>();
-            for (int i = 0; i < replicaCount; i++) {
-                String data = getVoteDataFromReplica(voteId, i);
-                if (data != null) {
-                    replicaData.add(data);
-                }
+            // 从主日志获取数据
+            LogEntry mainEntry = mongoTemplate.findOne(
+                new Query(Criteria.where("voteId").is(voteId)).with(Sort.by(Sort.Direction.DESC, "seq")).limit(1),
+                LogEntry.class, LOG_COLLECTION);
+            if (mainEntry == null) {
+                ReplicaVote compacted = mongoTemplate.findById(voteId, ReplicaVote.class, SNAPSHOT_COLLECTION);
+                mainEntry = compacted != null ? toLogEntry(compacted) : null;
+            }
+            if (mainEntry == null) {
+                return new ConsistencyCheckResult(voteId, false, 0, 0);
             }
             
-            // 检查一致性
-            boolean isConsistent = true;
+            // 从各个副本获取数据
             int consistentReplicas = 0;
-            
-            for (String replicaDataItem : replicaData) {
-                if (mainData.equals(replicaDataItem)) {
+            for (int i = 0; i < replicaCount; i++) {
+                ReplicaVote replicaVote = mongoTemplate.findById(voteId, ReplicaVote.class, REPLICA_COLLECTION_PREFIX + i);
+                if (replicaVote != null && Objects.equals(mainEntry.getVoteData(), replicaVote.getVoteData())) {
                     consistentReplicas++;
-                } else {
-                    isConsistent = false;
                 }
             }
-            
-            ConsistencyCheckResult result = new ConsistencyCheckResult(
-                voteId, isConsistent, consistentReplicas, replicaData.size()
-            );
+            boolean isConsistent = consistentReplicas == replicaCount;
             
             System.out.println("一致性检查完成 - 投票ID: " + voteId + 
                              ", 一致性: " + isConsistent + 
-                             ", 一致副本数: " + consistentReplicas + "/" + replicaData.size());
+                             ", 一致副本数: " + consistentReplicas + "/" + replicaCount);
             
-            return result;
+            return new ConsistencyCheckResult(voteId, isConsistent, consistentReplicas, replicaCount);
             
         } catch (Exception e) {
             System.err.println("一致性检查失败 - 投票ID: " + voteId + ", 错误: " + e.getMessage());
@@ -184,35 +1153,50 @@ public class ReplicationService {
     }
     
     /**
-     * 从主数据库获取投票数据
+     * 最近一次反熵检查结果，尚未执行时返回null
      */
-    private String getVoteDataFromMain(String voteId) {
-        // 简化实现，返回模拟数据
-        return "vote_data_" + voteId;
+    public AntiEntropyResult getLastAntiEntropy() {
+        return lastAntiEntropy;
     }
     
     /**
-     * 从副本获取投票数据
+     * leader模式下本节点是否为领导者；log-shipping模式下始终为true
      */
-    private String getVoteDataFromReplica(String voteId, int replicaIndex) {
-        try {
-            String replicaCollectionName = "votes_replica_" + replicaIndex;
-            // 这里应该查询副本集合
-            // 简化实现，返回模拟数据
-            return "vote_data_" + voteId + "_replica_" + replicaIndex;
-        } catch (Exception e) {
-            return null;
-        }
+    public boolean isLeader() {
+        return leaderLog == null || leaderLog.isLeader();
+    }
+    
+    /**
+     * leader模式下的当前领导者ID，log-shipping模式下为本节点
+     */
+    public String getLeaderId() {
+        return leaderLog != null ? leaderLog.getLeaderId() : nodeId;
     }
     
     /**
      * 获取复制统计信息
      */
     public ReplicationStats getReplicationStats() {
+        long now = System.currentTimeMillis();
+        long oldestInFlightMillis = 0;
+        for (ReplicationStatus status : inFlightReplications.values()) {
+            oldestInFlightMillis = Math.max(oldestInFlightMillis, now - status.getStartTime());
+        }
         return new ReplicationStats(
             successfulReplications.get(),
             failedReplications.get(),
-            replicationStatus.size()
+            rejectedReplications.get(),
+            inFlightReplications.size(),
+            maxInFlight,
+            oldestInFlightMillis,
+            commitLatency.getValueAtPercentile(50),
+            commitLatency.getValueAtPercentile(99),
+            timedOutReplicaWrites.get(),
+            totalQuorumLatency.get(),
+            leaderLog != null ? leaderLog.getLastSequence() : lastSequence,
+            leaderLog != null ? leaderLog.getCommitIndex() : commitIndex,
+            shippedBatches.get(),
+            shippedEntries.get()
         );
     }
     
@@ -222,16 +1206,18 @@ public class ReplicationService {
     public static class ReplicationStatus {
         private final String voteId;
         private final int totalReplicas;
-        private Status status;
+        private final long sequence;
+        private volatile Status status;
         private final long startTime;
         
         public enum Status {
             PENDING, COMPLETED, FAILED
         }
         
-        public ReplicationStatus(String voteId, int totalReplicas) {
+        public ReplicationStatus(String voteId, int totalReplicas, long sequence) {
             this.voteId = voteId;
             this.totalReplicas = totalReplicas;
+            this.sequence = sequence;
             this.status = Status.PENDING;
             this.startTime = System.currentTimeMillis();
         }
@@ -242,6 +1228,7 @@ public class ReplicationService {
         public Status getStatus() { return status; }
         public void setStatus(Status status) { this.status = status; }
         public long getStartTime() { return startTime; }
+        public long getSequence() { return sequence; }
     }
     
     /**
@@ -277,18 +1264,61 @@ public class ReplicationService {
     public static class ReplicationStats {
         private final int successfulReplications;
         private final int failedReplications;
+        private final int rejectedReplications;
         private final int activeReplications;
+        private final int maxInFlight;
+        private final long oldestInFlightMillis;
+        private final long commitLatencyP50;
+        private final long commitLatencyP99;
+        private final int timedOutReplicaWrites;
+        private final long totalQuorumLatency;
+        private final long lastSequence;
+        private final long commitIndex;
+        private final long shippedBatches;
+        private final long shippedEntries;
         
-        public ReplicationStats(int successfulReplications, int failedReplications, int activeReplications) {
+        public ReplicationStats(int successfulReplications, int failedReplications, int rejectedReplications,
+                                int activeReplications, int maxInFlight, long oldestInFlightMillis,
+                                long commitLatencyP50, long commitLatencyP99,
+                                int timedOutReplicaWrites, long totalQuorumLatency, long lastSequence,
+                                long commitIndex, long shippedBatches, long shippedEntries) {
             this.successfulReplications = successfulReplications;
             this.failedReplications = failedReplications;
+            this.rejectedReplications = rejectedReplications;
             this.activeReplications = activeReplications;
+            this.maxInFlight = maxInFlight;
+            this.oldestInFlightMillis = oldestInFlightMillis;
+            this.commitLatencyP50 = commitLatencyP50;
+            this.commitLatencyP99 = commitLatencyP99;
+            this.timedOutReplicaWrites = timedOutReplicaWrites;
+            this.totalQuorumLatency = totalQuorumLatency;
+            this.lastSequence = lastSequence;
+            this.commitIndex = commitIndex;
+            this.shippedBatches = shippedBatches;
+            this.shippedEntries = shippedEntries;
         }
         
         // Getter方法
         public int getSuccessfulReplications() { return successfulReplications; }
         public int getFailedReplications() { return failedReplications; }
+        public int getRejectedReplications() { return rejectedReplications; }
         public int getActiveReplications() { return activeReplications; }
+        public int getMaxInFlight() { return maxInFlight; }
+        public long getOldestInFlightMillis() { return oldestInFlightMillis; }
+        public long getCommitLatencyP50() { return commitLatencyP50; }
+        public long getCommitLatencyP99() { return commitLatencyP99; }
+        public int getTimedOutReplicaWrites() { return timedOutReplicaWrites; }
+        public long getLastSequence() { return lastSequence; }
+        public long getCommitIndex() { return commitIndex; }
+        public long getShippedBatches() { return shippedBatches; }
+        public long getShippedEntries() { return shippedEntries; }
+        public double getAverageBatchSize() {
+            return shippedBatches > 0 ? (double) shippedEntries / shippedBatches : 0;
+        }
+        public double getAverageQuorumLatency() {
+            int total = getTotalReplications();
+            return total > 0 ? (double) totalQuorumLatency / total : 0;
+        }
         public int getTotalReplications() { return successfulReplications + failedReplications; }
         public double getSuccessRate() { 
             int total = getTotalReplications();
@@ -297,33 +1327,216 @@ public class ReplicationService {
     }
     
     /**
-     * 副本投票数据模型
+     * 复制日志条目（replication_log集合，_id为序号）
      */
-    public static class ReplicaVote {
-        private String id;
+    public static class LogEntry {
+        @Id
+        private long seq;
         private String voteId;
+        private int bucket;
         private String voteData;
-        private int replicaIndex;
         private long timestamp;
         
-        public ReplicaVote(String voteId, String voteData, int replicaIndex) {
-            this.id = java.util.UUID.randomUUID().toString();
+        public LogEntry() {
+        }
+        
+        public LogEntry(long seq, String voteId, int bucket, String voteData, long timestamp) {
+            this.seq = seq;
             this.voteId = voteId;
+            this.bucket = bucket;
             this.voteData = voteData;
-            this.replicaIndex = replicaIndex;
-            this.timestamp = System.currentTimeMillis();
+            this.timestamp = timestamp;
         }
         
         // Getter和Setter方法
-        public String getId() { return id; }
-        public void setId(String id) { this.id = id; }
+        public long getSeq() { return seq; }
+        public void setSeq(long seq) { this.seq = seq; }
         public String getVoteId() { return voteId; }
         public void setVoteId(String voteId) { this.voteId = voteId; }
+        public int getBucket() { return bucket; }
+        public void setBucket(int bucket) { this.bucket = bucket; }
         public String getVoteData() { return voteData; }
         public void setVoteData(String voteData) { this.voteData = voteData; }
+        public long getTimestamp() { return timestamp; }
+        public void setTimestamp(long timestamp) { this.timestamp = timestamp; }
+    }
+    
+    /**
+     * 副本投票数据模型（votes_replica_N集合，_id为投票ID）
+     */
+    public static class ReplicaVote {
+        @Id
+        private String id;
+        private String voteData;
+        private long seq;
+        private int bucket;
+        private int replicaIndex;
+        private long timestamp;
+        
+        public ReplicaVote() {
+        }
+        
+        // Getter和Setter方法
+        public String getId() { return id; }
+        public void setId(String id) { this.id = id; }
+        public String getVoteData() { return voteData; }
+        public void setVoteData(String voteData) { this.voteData = voteData; }
+        public long getSeq() { return seq; }
+        public void setSeq(long seq) { this.seq = seq; }
+        public int getBucket() { return bucket; }
+        public void setBucket(int bucket) { this.bucket = bucket; }
         public int getReplicaIndex() { return replicaIndex; }
         public void setReplicaIndex(int replicaIndex) { this.replicaIndex = replicaIndex; }
         public long getTimestamp() { return timestamp; }
         public void setTimestamp(long timestamp) { this.timestamp = timestamp; }
     }
-} 
\ No newline at end of file
+    
+    /**
+     * 反熵检查结果
+     */
+    public static class AntiEntropyResult {
+        private final int replicasChecked;
+        private final int bucketsRefreshed;
+        private final int nodesCompared;
+        private final int differingBuckets;
+        private final int votesRepaired;
+        private final int votesRemoved;
+        private final long durationMillis;
+        
+        public AntiEntropyResult(int replicasChecked, int bucketsRefreshed, int nodesCompared,
+                                 int differingBuckets, int votesRepaired, int votesRemoved, long durationMillis) {
+            this.replicasChecked = replicasChecked;
+            this.bucketsRefreshed = bucketsRefreshed;
+            this.nodesCompared = nodesCompared;
+            this.differingBuckets = differingBuckets;
+            this.votesRepaired = votesRepaired;
+            this.votesRemoved = votesRemoved;
+            this.durationMillis = durationMillis;
+        }
+        
+        // Getter方法
+        public int getReplicasChecked() { return replicasChecked; }
+        public int getBucketsRefreshed() { return bucketsRefreshed; }
+        public int getNodesCompared() { return nodesCompared; }
+        public int getDifferingBuckets() { return differingBuckets; }
+        public int getVotesRepaired() { return votesRepaired; }
+        public int getVotesRemoved() { return votesRemoved; }
+        public long getDurationMillis() { return durationMillis; }
+        public boolean isConsistent() { return differingBuckets == 0; }
+    }
+    
+    /**
+     * 副本确认水位检查点（replication_state集合）
+     */
+    public static class ReplicaCheckpoint {
+        @Id
+        private String id;
+        private long ackedSeq;
+        private long ackedAt;
+        
+        public ReplicaCheckpoint() {
+        }
+        
+        public ReplicaCheckpoint(String id, long ackedSeq, long ackedAt) {
+            this.id = id;
+            this.ackedSeq = ackedSeq;
+            this.ackedAt = ackedAt;
+        }
+        
+        // Getter和Setter方法
+        public String getId() { return id; }
+        public void setId(String id) { this.id = id; }
+        public long getAckedSeq() { return ackedSeq; }
+        public void setAckedSeq(long ackedSeq) { this.ackedSeq = ackedSeq; }
+        public long getAckedAt() { return ackedAt; }
+        public void setAckedAt(long ackedAt) { this.ackedAt = ackedAt; }
+    }
+    
+    /**
+     * 副本发送状态（仅内存）
+     */
+    private static class ReplicaState {
+        private final int index;
+        private volatile long ackedSeq;
+        private volatile long ackedAt;
+        private volatile boolean inFlight;
+        private final AtomicInteger failedBatches = new AtomicInteger(0);
+        private final LatencyHistogram ackLatency = new LatencyHistogram();
+        
+        ReplicaState(int index, long ackedSeq) {
+            this.index = index;
+            this.ackedSeq = ackedSeq;
+            this.ackedAt = System.currentTimeMillis();
+        }
+    }
+    
+    /**
+     * 副本复制延迟
+     */
+    public static class ReplicaLag {
+        private final int replicaIndex;
+        private final long ackedSequence;
+        private final long lagEntries;
+        private final long lagMillis;
+        private final int failedBatches;
+        private final boolean batchInFlight;
+        private final long ackLatencyP50;
+        private final long ackLatencyP99;
+        private final long ackLatencyMax;
+        
+        public ReplicaLag(int replicaIndex, long ackedSequence, long lagEntries, long lagMillis,
+                          int failedBatches, boolean batchInFlight,
+                          long ackLatencyP50, long ackLatencyP99, long ackLatencyMax) {
+            this.replicaIndex = replicaIndex;
+            this.ackedSequence = ackedSequence;
+            this.lagEntries = lagEntries;
+            this.lagMillis = lagMillis;
+            this.failedBatches = failedBatches;
+            this.batchInFlight = batchInFlight;
+            this.ackLatencyP50 = ackLatencyP50;
+            this.ackLatencyP99 = ackLatencyP99;
+            this.ackLatencyMax = ackLatencyMax;
+        }
+        
+        // Getter方法
+        public int getReplicaIndex() { return replicaIndex; }
+        public long getAckedSequence() { return ackedSequence; }
+        public long getLagEntries() { return lagEntries; }
+        public long getLagMillis() { return lagMillis; }
+        public int getFailedBatches() { return failedBatches; }
+        public boolean isBatchInFlight() { return batchInFlight; }
+        public long getAckLatencyP50() { return ackLatencyP50; }
+        public long getAckLatencyP99() { return ackLatencyP99; }
+        public long getAckLatencyMax() { return ackLatencyMax; }
+    }
+    
+    /**
+     * 复制失败记录
+     * 投票未达到多数派时replicaIndex为-1；副本批次失败时voteId为null，序号为批次区间
+     */
+    public static class ReplicationFailure {
+        private final long timestamp;
+        private final String voteId;
+        private final int replicaIndex;
+        private final long fromSequence;
+        private final long toSequence;
+        private final String reason;
+        
+        public ReplicationFailure(String voteId, int replicaIndex, long fromSequence, long toSequence, String reason) {
+            this.timestamp = System.currentTimeMillis();
+            this.voteId = voteId;
+            this.replicaIndex = replicaIndex;
+            this.fromSequence = fromSequence;
+            this.toSequence = toSequence;
+            this.reason = reason;
+        }
+        
+        // Getter方法
+        public long getTimestamp() { return timestamp; }
+        public String getVoteId() { return voteId; }
+        public int getReplicaIndex() { return replicaIndex; }
+        public long getFromSequence() { return fromSequence; }
+        public long getToSequence() { return toSequence; }
+        public String getReason() { return reason; }
+    }
+}
@@ -0,0 +1,285 @@
+package p.projectone.service;
+
+import jakarta.annotation.PostConstruct;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import p.projectone.catalog.CandidateCatalog;
+import p.projectone.logging.VoteLogger;
+import p.projectone.metrics.MetricsRegistry;
+import p.projectone.model.Vote;
+import p.projectone.rollup.Granularity;
+import p.projectone.rollup.TurnoutSeries;
+import p.projectone.rollup.VoteRollup;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * 投票时间汇总服务
+ * 投票确认时计入本节点的分钟环（VoteRollup），定期把有改动的分钟写入vote_rollups集合；
+ * 范围查询读取各节点的持久化数据，本节点环中仍保留的分钟以环为准（比上次刷写更新）。
+ *
+ * 持久化采用小时桶：每个节点每小时一个文档
+ * {_id:"node-1:<小时起点>", node, hour, m:{"<小时内分钟>":[按候选人序号的票数]}}，
+ * 刷写用$set覆盖整分钟的计数，重复写入幂等；查询一整天只读24 × 节点数个文档，
+ * 分钟粒度和小时粒度都从同一份文档得出。
+ * 每次刷写成功后在vote_rollup_checkpoints集合记录水位{_id:"node-1", node, time}：取走脏分钟之前的时刻，
+ * 此前计入环的票都已写出。
+ *
+ * 重启时先确定恢复起点F：确认时间不早于F的票由record实时计入，早于F的票record不计。
+ * 水位所在分钟的前一分钟之前的分钟从小时文档恢复；从那一分钟到F的分钟从votes集合按本节点（n字段）
+ * 和确认时间重新统计，覆盖宕机前最后一次刷写之后、以及恢复之前确认的票，重新统计的分钟标脏写回。
+ * 没有水位时整个保留窗口都重新统计。多退一分钟是为了容纳确认时间在水位之前、插入在水位之后的票。
+ * 恢复成功之前record不计、flush不写，不会用不完整的环覆盖已持久化的分钟；启动时恢复失败由之后每次flush重试。
+ *
+ * 复杂度：O(1) - 记录；O(桶数 × 候选人数) - 查询
+ * 实现方式：内存分钟环 + 定时批量upsert + 按小时分桶的文档
+ *
+ * @author Distributed Systems Team
+ */
+@Service
+public class RollupService {
+
+    private static final VoteLogger LOG = VoteLogger.get(RollupService.class);
+
+    private static final String COLLECTION = "vote_rollups";
+    private static final String CHECKPOINTS = "vote_rollup_checkpoints";
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private MetricsRegistry metricsRegistry;
+
+    @Autowired
+    private CandidateCatalogService catalogService;
+
+    @Value("${distributed.rollup.retained-minutes:120}")
+    private int retainedMinutes;
+
+    // 与复制服务同一个节点ID，投票记录的n字段、汇总和检查点都按它区分节点
+    @Value("${distributed.replication.node-id:node-1}")
+    private String nodeId;
+
+    private volatile VoteRollup rollup;
+
+    // 确认时间不早于它的票由record实时计入；恢复成功之前为Long.MAX_VALUE，一律不计
+    private volatile long countFrom = Long.MAX_VALUE;
+    private volatile boolean restored = false;
+
+    private final AtomicLong flushedMinutes = new AtomicLong(0);
+    private final AtomicLong failedFlushes = new AtomicLong(0);
+    private final AtomicLong replayedVotes = new AtomicLong(0);
+
+    @PostConstruct
+    public void init() {
+        rollup = new VoteRollup(nodeId, retainedMinutes);
+        metricsRegistry.counter("vote_rollup_flushed_minutes_total", "Rollup minutes written to MongoDB", flushedMinutes::get);
+        metricsRegistry.counter("vote_rollup_flush_failures_total", "Failed rollup flushes", failedFlushes::get);
+        metricsRegistry.counter("vote_rollup_late_votes_total", "Votes older than the rollup ring, not counted",
+                () -> rollup.getLateVotes());
+        metricsRegistry.counter("vote_rollup_replayed_votes_total", "Votes recounted from MongoDB on restore", replayedVotes::get);
+        metricsRegistry.gauge("vote_rollup_restored", "1 once the rollup is restored and counting", () -> restored ? 1 : 0);
+
+        restore();
+        LOG.info("rollup.started", "投票汇总服务已启动 - 节点: {}, 内存保留: {} 分钟", nodeId, retainedMinutes);
+    }
+
+    /**
+     * 恢复分钟环：水位之前的分钟从小时文档加载，之后到恢复起点的分钟从votes集合重新统计
+     * 失败时丢弃部分恢复的环，保持不计数，由下次flush重试
+     */
+    private synchronized void restore() {
+        try {
+            mongoTemplate.indexOps(COLLECTION).ensureIndex(new Index().on("hour", Sort.Direction.ASC));
+            Document watermark = mongoTemplate.findById(nodeId, Document.class, CHECKPOINTS);
+            VoteRollup fresh = new VoteRollup(nodeId, retainedMinutes);
+            long from = System.currentTimeMillis();
+            rollup = fresh;
+            countFrom = from;
+
+            long oldestMinute = from / VoteRollup.MINUTE_MS - retainedMinutes + 1;
+            long recomputeFrom = oldestMinute;
+            if (watermark != null && watermark.get("time") != null) {
+                recomputeFrom = Math.max(oldestMinute, ((Number) watermark.get("time")).longValue() / VoteRollup.MINUTE_MS - 1);
+            }
+
+            Query query = new Query(Criteria.where("node").is(nodeId)
+                    .and("hour").gte(Granularity.HOUR.floor(oldestMinute * VoteRollup.MINUTE_MS)));
+            int loaded = 0;
+            for (Document hour : mongoTemplate.find(query, Document.class, COLLECTION)) {
+                for (Map.Entry<Long, int[]> minute : minutes(hour).entrySet()) {
+                    if (minute.getKey() >= oldestMinute && minute.getKey() < recomputeFrom) {
+                        fresh.load(minute.getKey(), minute.getValue());
+                        loaded++;
+                    }
+                }
+            }
+
+            Map<Long, int[]> recounted = recount(recomputeFrom * VoteRollup.MINUTE_MS, from);
+            for (Map.Entry<Long, int[]> minute : recounted.entrySet()) {
+                fresh.load(minute.getKey(), minute.getValue());
+                fresh.markDirty(minute.getKey());
+            }
+            restored = true;
+            LOG.info("rollup.restored", "投票汇总已恢复 - 节点: {}, 加载分钟数: {}, 重新统计分钟数: {}",
+                    nodeId, loaded, recounted.size());
+        } catch (Exception e) {
+            countFrom = Long.MAX_VALUE;
+            rollup = new VoteRollup(nodeId, retainedMinutes);
+            LOG.warn("rollup.restore_failed", "投票汇总恢复失败，恢复前不计数也不刷写，下次刷写时重试: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 本节点确认时间在[from, to)内的已确认投票，按分钟、候选人序号计数
+     */
+    private Map<Long, int[]> recount(long from, long to) {
+        Query replay = new Query(Criteria.where(Vote.NODE_FIELD).is(nodeId)
+                .and(Vote.TIME_FIELD).gte(from).lt(to)
+                .and(Vote.STATUS_FIELD).is(Vote.VoteStatus.CONFIRMED.getCode()));
+        replay.fields().include(Vote.CANDIDATE_FIELD).include(Vote.TIME_FIELD);
+        Map<Long, int[]> minutes = new HashMap<>();
+        long replayed = 0;
+        try (Stream<Document> votes = mongoTemplate.stream(replay, Document.class, "votes")) {
+            for (Document vote : (Iterable<Document>) votes::iterator) {
+                int candidate = ((Number) vote.get(Vote.CANDIDATE_FIELD)).intValue();
+                if (candidate < 0 || candidate >= CandidateCatalog.MAX_CANDIDATES) {
+                    continue;
+                }
+                long minute = ((Number) vote.get(Vote.TIME_FIELD)).longValue() / VoteRollup.MINUTE_MS;
+                int[] counts = minutes.get(minute);
+                if (counts == null || counts.length <= candidate) {
+                    int[] grown = new int[Math.max(candidate + 1, catalogService.current().size())];
+                    if (counts != null) {
+                        System.arraycopy(counts, 0, grown, 0, counts.length);
+                    }
+                    counts = grown;
+                    minutes.put(minute, counts);
+                }
+                counts[candidate]++;
+                replayed++;
+            }
+        }
+        replayedVotes.addAndGet(replayed);
+        return minutes;
+    }
+
+    /**
+     * 计入一张已确认的票；确认时间早于恢复起点的票已由重新统计计入，恢复成功之前不计
+     *
+     * @param candidate 候选人序号
+     * @param voteTime 确认时间（epoch毫秒）
+     */
+    public void record(int candidate, long voteTime) {
+        if (voteTime >= countFrom) {
+            rollup.record(candidate, voteTime);
+        }
+    }
+
+    /**
+     * 把有改动的分钟写入MongoDB，一次批量upsert；失败的分钟重新标脏，下次再写
+     */
+    @Scheduled(fixedDelayString = "${distributed.rollup.flush-interval:10000}")
+    public void flush() {
+        if (!restored) {
+            restore();
+            if (!restored) {
+                return;
+            }
+        }
+        VoteRollup rollup = this.rollup;
+        long watermark = System.currentTimeMillis();
+        List<VoteRollup.MinuteCounts> dirty = rollup.drainDirty(catalogService.current().size());
+        if (dirty.isEmpty()) {
+            return;
+        }
+        try {
+            BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, COLLECTION);
+            for (VoteRollup.MinuteCounts minute : dirty) {
+                long hour = Granularity.HOUR.floor(minute.getStartMillis());
+                List<Integer> counts = new ArrayList<>(minute.getCounts().length);
+                for (int count : minute.getCounts()) {
+                    counts.add(count);
+                }
+                bulk.upsert(new Query(Criteria.where("_id").is(nodeId + ":" + hour)), new Update()
+                    .set("node", nodeId)
+                    .set("hour", hour)
+                    .set("m." + (minute.getStartMillis() - hour) / VoteRollup.MINUTE_MS, counts));
+            }
+            bulk.execute();
+            flushedMinutes.addAndGet(dirty.size());
+            mongoTemplate.save(new Document("_id", nodeId).append("node", nodeId).append("time", watermark), CHECKPOINTS);
+        } catch (Exception e) {
+            for (VoteRollup.MinuteCounts minute : dirty) {
+                rollup.markDirty(minute.getMinute());
+            }
+            failedFlushes.incrementAndGet();
+            LOG.warn("rollup.flush_failed", "投票汇总写入失败，下次重试 - 分钟数: {}, 错误: {}", dirty.size(), e.getMessage());
+        }
+    }
+
+    /**
+     * 各节点在[from, to)内按分钟或小时的票数
+     *
+     * @throws IllegalArgumentException 范围为空或桶数超过上限
+     */
+    public TurnoutSeries query(long from, long to, Granularity granularity) {
+        CandidateCatalog catalog = catalogService.current();
+        TurnoutSeries series = new TurnoutSeries(catalog, granularity, from, to);
+        long now = System.currentTimeMillis();
+        VoteRollup rollup = this.rollup;
+        Query query = new Query(Criteria.where("hour").gte(Granularity.HOUR.floor(series.getFrom())).lt(series.getTo()));
+        for (Document hour : mongoTemplate.find(query, Document.class, COLLECTION)) {
+            String node = hour.getString("node");
+            boolean local = nodeId.equals(node);
+            for (Map.Entry<Long, int[]> minute : minutes(hour).entrySet()) {
+                if (!local || !rollup.covers(minute.getKey(), now)) {
+                    series.add(node, minute.getKey() * VoteRollup.MINUTE_MS, minute.getValue());
+                }
+            }
+        }
+        rollup.addTo(series, catalog, now);
+        return series;
+    }
+
+    /**
+     * 小时文档中的分钟计数，键为epoch分钟号
+     */
+    private static Map<Long, int[]> minutes(Document hour) {
+        Map<Long, int[]> minutes = new HashMap<>();
+        long firstMinute = ((Number) hour.get("hour")).longValue() / VoteRollup.MINUTE_MS;
+        Document m = hour.get("m", Document.class);
+        if (m == null) {
+            return minutes;
+        }
+        for (Map.Entry<String, Object> entry : m.entrySet()) {
+            List<?> values = (List<?>) entry.getValue();
+            int[] counts = new int[values.size()];
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] = ((Number) values.get(i)).intValue();
+            }
+            minutes.put(firstMinute + Long.parseLong(entry.getKey()), counts);
+        }
+        return minutes;
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+}
@@ -1,12 +1,19 @@
 package p.projectone.service;
 
+import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.mongodb.core.MongoTemplate;
 import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import p.projectone.catalog.CandidateCatalog;
+import p.projectone.diagnostics.VoteStageEvent;
+import p.projectone.logging.VoteLogger;
+import p.projectone.metrics.MetricsRegistry;
+import p.projectone.metrics.Timer;
 import p.projectone.model.Vote;
 
 import java.time.LocalDateTime;
@@ -24,17 +31,51 @@ import java.util.concurrent.atomic.AtomicInteger;
 @Service
 public class VoteProcessingService {
     
+    private static final VoteLogger LOG = VoteLogger.get(VoteProcessingService.class);
+    
     @Autowired
     private DistributedLockService lockService;
     
     @Autowired
     private MongoTemplate mongoTemplate;
     
+    @Autowired
+    private MetricsRegistry metricsRegistry;
+    
+    @Autowired
+    private CandidateCatalogService catalogService;
+    
+    @Autowired
+    private RollupService rollupService;
+    
+    @Autowired
+    private CubeService cubeService;
+    
+    @Value("${distributed.replication.node-id:node-1}")
+    private String nodeId;
+    
     // 统计信息
     private final AtomicInteger totalVotes = new AtomicInteger(0);
     private final AtomicInteger successfulVotes = new AtomicInteger(0);
     private final AtomicInteger failedVotes = new AtomicInteger(0);
     
+    // 阶段计时：获取锁、重复投票检查、持久化
+    private Timer lockTimer;
+    private Timer dedupeTimer;
+    private Timer persistTimer;
+    
+    /**
+     * 注册投票处理相关的指标
+     */
+    @PostConstruct
+    public void registerMetrics() {
+        lockTimer = metricsRegistry.stageTimer("lock");
+        dedupeTimer = metricsRegistry.stageTimer("dedupe");
+        persistTimer = metricsRegistry.stageTimer("persist");
+        metricsRegistry.counter("vote_processed_total", "Votes processed by result", successfulVotes::get, "result", "success");
+        metricsRegistry.counter("vote_processed_total", "Votes processed by result", failedVotes::get, "result", "failure");
+    }
+    
     /**
      * 处理投票请求
      * 实现分布式算法中的同步和并发机制
@@ -48,43 +89,26 @@ public class VoteProcessingService {
     @Transactional
     public boolean processVote(String userId, String candidateId, String candidateName, String sessionId) {
         totalVotes.incrementAndGet();
+        int candidate = resolveVotable(userId, candidateId);
+        if (candidate < 0) {
+            return false;
+        }
         
         try {
-            System.out.println("开始处理投票 - 用户: " + userId + ", 候选人: " + candidateName);
+            LOG.debug("vote.start", "开始处理投票 - 用户: {}, 候选人: {}", userId, candidateName);
             
             // 1. 获取分布式锁（防止重复投票）
-            if (!lockService.tryLock(userId, sessionId)) {
-                System.out.println("获取分布式锁失败 - 用户: " + userId + " 可能正在投票中");
+            long lockStart = System.nanoTime();
+            boolean locked = lockService.tryLock(userId, sessionId);
+            lockTimer.recordSince(lockStart);
+            if (!locked) {
+                LOG.info("vote.lock_failed", "获取分布式锁失败 - 用户: {} 可能正在投票中", userId);
                 failedVotes.incrementAndGet();
                 return false;
             }
             
             try {
-                // 2. 检查用户是否已经投票
-                if (hasUserVoted(userId)) {
-                    System.out.println("用户已投票 - 用户: " + userId);
-                    failedVotes.incrementAndGet();
-                    return false;
-                }
-                
-                // 3. 创建投票记录
-                Vote vote = new Vote(userId, candidateId, candidateName);
-                vote.setSessionId(sessionId);
-                vote.setServerNode(getServerNodeId());
-                vote.setStatus(Vote.VoteStatus.PROCESSING);
-                
-                // 4. 保存投票记录（事务保证原子性）
-                mongoTemplate.save(vote);
-                
-                // 5. 更新投票状态为已确认
-                vote.setStatus(Vote.VoteStatus.CONFIRMED);
-                mongoTemplate.save(vote);
-                
-                successfulVotes.incrementAndGet();
-                System.out.println("投票处理成功 - 用户: " + userId + ", 候选人: " + candidateName);
-                
-                return true;
-                
+                return recordVote(userId, candidate, candidateName, sessionId);
             } finally {
                 // 6. 释放分布式锁
                 lockService.releaseLock(userId, sessionId);
@@ -92,11 +116,98 @@ public class VoteProcessingService {
             
         } catch (Exception e) {
             failedVotes.incrementAndGet();
-            System.err.println("处理投票时发生异常 - 用户: " + userId + ", 错误: " + e.getMessage());
+            LOG.error("vote.error", "处理投票时发生异常 - 用户: {}, 错误: {}", userId, e.getMessage());
+            return false;
+        }
+    }
+    
+    /**
+     * 处理投票请求（调用方已保证同一用户的请求串行）
+     * 用于调度服务的分区模式：同一用户总是落在同一个单线程通道上，单节点内不需要分布式锁。
+     * 跨节点的重复投票仍由userId唯一索引兜底。
+     * 
+     * @param userId 用户ID
+     * @param candidateId 候选人ID
+     * @param candidateName 候选人姓名
+     * @param sessionId 会话ID
+     * @return 是否处理成功
+     */
+    @Transactional
+    public boolean processVoteSerialized(String userId, String candidateId, String candidateName, String sessionId) {
+        totalVotes.incrementAndGet();
+        int candidate = resolveVotable(userId, candidateId);
+        if (candidate < 0) {
+            return false;
+        }
+        
+        try {
+            LOG.debug("vote.start", "开始处理投票（分区串行） - 用户: {}, 候选人: {}", userId, candidateName);
+            return recordVote(userId, candidate, candidateName, sessionId);
+        } catch (Exception e) {
+            failedVotes.incrementAndGet();
+            LOG.error("vote.error", "处理投票时发生异常 - 用户: {}, 错误: {}", userId, e.getMessage());
             return false;
         }
     }
     
+    /**
+     * 候选人未知或已停用时直接拒绝，不获取锁也不访问数据库
+     * 
+     * @return 候选人序号，不可投票时返回-1
+     */
+    private int resolveVotable(String userId, String candidateId) {
+        int candidate = catalogService.resolve(candidateId);
+        if (candidate < 0) {
+            LOG.info("vote.invalid_candidate", "候选人不存在或已停用 - 用户: {}, 候选人: {}", userId, candidateId);
+            failedVotes.incrementAndGet();
+        }
+        return candidate;
+    }
+    
+    /**
+     * 检查并保存投票记录，调用方负责同一用户的互斥
+     */
+    private boolean recordVote(String userId, int candidate, String candidateName, String sessionId) {
+        // 2. 检查用户是否已经投票
+        long dedupeStart = System.nanoTime();
+        boolean voted = hasUserVoted(userId);
+        dedupeTimer.recordSince(dedupeStart);
+        if (voted) {
+            LOG.info("vote.duplicate", "用户已投票 - 用户: {}", userId);
+            failedVotes.incrementAndGet();
+            return false;
+        }
+        
+        // 3. 创建投票记录
+        Vote vote = new Vote(userId, candidate);
+        vote.setSessionId(sessionId);
+        vote.setServerNode(getServerNodeId());
+        vote.setStatus(Vote.VoteStatus.PROCESSING);
+        
+        // 4. 保存投票记录（事务保证原子性）
+        long persistStart = System.nanoTime();
+        VoteStageEvent persistEvent = VoteStageEvent.start("persist");
+        boolean persisted = false;
+        try {
+            mongoTemplate.save(vote);
+            
+            // 5. 更新投票状态为已确认
+            vote.setStatus(Vote.VoteStatus.CONFIRMED);
+            mongoTemplate.save(vote);
+            persisted = true;
+        } finally {
+            persistEvent.finish(userId, persisted);
+            persistTimer.recordSince(persistStart);
+        }
+        
+        rollupService.record(candidate, vote.getVoteTime());
+        cubeService.record(candidate, vote.getRegion(), vote.getVoteTime());
+        successfulVotes.incrementAndGet();
+        LOG.info("vote.success", "投票处理成功 - 用户: {}, 候选人: {}", userId, candidateName);
+        
+        return true;
+    }
+    
     /**
      * 检查用户是否已经投票
      * 
@@ -109,13 +220,12 @@ public class VoteProcessingService {
     }
     
     /**
-     * 获取服务器节点ID
+     * 获取服务器节点ID（distributed.replication.node-id，与复制、汇总和分组统计使用同一个ID）
      * 
      * @return 服务器节点ID
      */
     private String getServerNodeId() {
-        return "server-" + System.getProperty("server.port", "8080") + "-" + 
-               Thread.currentThread().getId();
+        return nodeId;
     }
     
     /**
@@ -138,8 +248,12 @@ public class VoteProcessingService {
      * @return 投票数量
      */
     public long getCandidateVoteCount(String candidateId) {
-        Query query = new Query(Criteria.where("candidateId").is(candidateId)
-                .and("status").is(Vote.VoteStatus.CONFIRMED));
+        int candidate = catalogService.current().ordinalOf(candidateId);
+        if (candidate < 0) {
+            return 0;
+        }
+        Query query = new Query(Criteria.where("candidate").is(candidate)
+                .and("status").is(Vote.VoteStatus.CONFIRMED.getCode()));
         return mongoTemplate.count(query, Vote.class);
     }
     
@@ -153,11 +267,20 @@ public class VoteProcessingService {
         
         // 这里应该从候选人集合中获取所有候选人
         // 简化实现，直接查询投票记录
-        Query query = new Query(Criteria.where("status").is(Vote.VoteStatus.CONFIRMED));
+        Query query = new Query(Criteria.where("status").is(Vote.VoteStatus.CONFIRMED.getCode()));
         java.util.List<Vote> votes = mongoTemplate.find(query, Vote.class);
         
+        CandidateCatalog catalog = catalogService.current();
         for (Vote vote : votes) {
-            String candidateId = vote.getCandidateId();
+            if (vote.getCandidate() >= catalog.size()) {
+                // 其他节点刚分配序号的新候选人：重新加载目录后计入
+                catalog = catalogService.covering(vote.getCandidate());
+                if (vote.getCandidate() >= catalog.size()) {
+                    LOG.warn("vote.unknown_ordinal", "投票的候选人序号不在目录中，未计入 - 序号: {}", vote.getCandidate());
+                    continue;
+                }
+            }
+            String candidateId = catalog.id(vote.getCandidate());
             results.put(candidateId, results.getOrDefault(candidateId, 0L) + 1);
         }
         
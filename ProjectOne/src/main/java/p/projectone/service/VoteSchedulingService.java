@@ -1,62 +1,179 @@
 package p.projectone.service;
 
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.scheduling.annotation.Async;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
+import p.projectone.concurrent.AbstractBatchDispatcher;
+import p.projectone.concurrent.AdaptiveConcurrencyLimiter;
+import p.projectone.concurrent.BoundedExpiringMap;
+import p.projectone.concurrent.DeadlineDispatcher;
+import p.projectone.concurrent.Dispatcher;
+import p.projectone.concurrent.PartitionedDispatcher;
+import p.projectone.concurrent.PoolSizeController;
+import p.projectone.concurrent.VirtualThreads;
+import p.projectone.concurrent.WaitStrategy;
+import p.projectone.diagnostics.PinnedThreadMonitor;
+import p.projectone.logging.VoteLogger;
+import p.projectone.metrics.MetricsRegistry;
+import p.projectone.metrics.Timer;
+
+import java.util.Comparator;
+import java.util.List;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
 import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * 投票调度服务
  * 实现分布式算法中的调度机制，处理投票请求的排队和调度
  * 
- * 复杂度：O(log n) - 优先队列插入和删除
- * 实现方式：线程池 + 优先队列 + 异步处理
+ * 复杂度：O(1) - 环形缓冲区提交；工作线程按批取出
+ * 实现方式：按优先级分组的环形缓冲区 + 截止时间优先（EDF）批量调度 + 过期请求丢弃
  * 
  * @author Distributed Systems Team
  */
 @Service
 public class VoteSchedulingService {
     
+    private static final VoteLogger LOG = VoteLogger.get(VoteSchedulingService.class);
+    
     @Autowired
     private VoteProcessingService voteProcessingService;
     
-    // 线程池配置
-    private final ExecutorService executorService;
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+    
+    @Autowired
+    private MetricsRegistry metricsRegistry;
+    
+    // 初始工作线程数（分区模式下为通道数）
+    @Value("${distributed.scheduling.thread-pool-size:10}")
+    private int threadPoolSize;
+    
+    // 线程数自动调整：按排队等待、服务时间和吞吐在上下限之间调整
+    @Value("${distributed.scheduling.auto-tune.enabled:true}")
+    private boolean autoTuneEnabled;
+    
+    @Value("${distributed.scheduling.auto-tune.min-pool-size:2}")
+    private int minPoolSize;
+    
+    @Value("${distributed.scheduling.auto-tune.max-pool-size:64}")
+    private int maxPoolSize;
+    
+    @Value("${distributed.scheduling.auto-tune.target-utilization:0.8}")
+    private double targetUtilization;
+    
+    @Value("${distributed.scheduling.auto-tune.queue-wait-target:100}")
+    private long queueWaitTarget;
+    
+    @Value("${distributed.scheduling.auto-tune.interval:1000}")
+    private long tuningInterval;
+    
+    // 处理模式：shared - 所有工作线程共享一个队列（依赖分布式锁）；partitioned - 按用户分区的单线程通道
+    @Value("${distributed.scheduling.mode:shared}")
+    private String mode;
+    
+    // 虚拟线程模式（Java 21+）：与Web层、@Async执行器共用同一开关
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreadsEnabled;
+    
+    // 虚拟线程模式下同时处理的投票上限，保护Redis和Mongo连接池
+    @Value("${distributed.scheduling.max-concurrency:64}")
+    private int maxConcurrency;
+    
+    // 虚拟线程钉住超过该时间（毫秒）时记录
+    @Value("${distributed.scheduling.pinning-threshold:20}")
+    private long pinningThreshold;
+    
+    // 每个缓冲区的容量
+    @Value("${distributed.scheduling.queue-capacity:1024}")
+    private int queueCapacity;
+    
+    @Value("${distributed.scheduling.batch-size:32}")
+    private int batchSize;
+    
+    @Value("${distributed.scheduling.wait-strategy:blocking}")
+    private String waitStrategy;
+    
+    @Value("${distributed.scheduling.max-wait-time:5000}")
+    private long maxWaitTime;
     
-    // 投票请求队列（优先队列，按优先级排序）
-    private final PriorityBlockingQueue<VoteRequest> voteQueue;
+    // 各优先级的默认截止时间预算（毫秒），NORMAL使用max-wait-time
+    @Value("${distributed.scheduling.deadline.high:1000}")
+    private long highDeadline;
+    
+    @Value("${distributed.scheduling.deadline.low:15000}")
+    private long lowDeadline;
+    
+    // 低优先级超过该时间未被服务时强制服务一批
+    @Value("${distributed.scheduling.starvation-threshold:2000}")
+    private long starvationThreshold;
+    
+    @Value("${distributed.admission.initial-limit:20}")
+    private int initialLimit;
+    
+    @Value("${distributed.admission.min-limit:1}")
+    private int minLimit;
+    
+    @Value("${distributed.admission.max-limit:1000}")
+    private int maxLimit;
+    
+    @Value("${distributed.admission.latency-slo:2000}")
+    private long latencySlo;
+    
+    @Value("${distributed.scheduling.status-table-size:10000}")
+    private int statusTableSize;
+    
+    @Value("${distributed.scheduling.status-ttl:300000}")
+    private long statusTtl;
+    
+    // 投票请求调度器
+    private Dispatcher<VoteRequest> dispatcher;
+    private boolean partitioned;
+    
+    // 虚拟线程模式：每个请求一个虚拟线程，信号量限制并发
+    private ExecutorService virtualExecutor;
+    private Semaphore concurrencyPermits;
+    private PinnedThreadMonitor pinnedThreadMonitor;
+    
+    // 线程数控制器及上一次采样的计数
+    private PoolSizeController poolSizeController;
+    private volatile PoolSizeController.Decision lastPoolDecision;
+    private final AtomicInteger poolResizes = new AtomicInteger(0);
+    private long lastSampleArrivals;
+    private long lastSampleCompletions;
+    private long lastSampleProcessingTime;
+    private long lastSampleQueueWaitTime;
+    
+    // 准入控制：限制排队中和处理中的请求总数
+    private AdaptiveConcurrencyLimiter admissionLimiter;
+    
+    // 请求状态表（有界，按TTL淘汰）
+    private BoundedExpiringMap<String, VoteTicket> requestStatus;
     
     // 统计信息
     private final AtomicInteger totalRequests = new AtomicInteger(0);
     private final AtomicInteger processedRequests = new AtomicInteger(0);
     private final AtomicInteger failedRequests = new AtomicInteger(0);
+    private final AtomicInteger rejectedRequests = new AtomicInteger(0);
+    private final AtomicInteger expiredRequests = new AtomicInteger(0);
+    private final AtomicIntegerArray expiredByPriority = new AtomicIntegerArray(Priority.values().length);
     private final AtomicLong totalProcessingTime = new AtomicLong(0);
+    private final AtomicLong totalQueueWaitTime = new AtomicLong(0);
+    
+    // 阶段计时：排队等待、提交到处理完成的端到端延迟
+    private Timer queueWaitTimer;
+    private Timer endToEndTimer;
     
     // 调度器状态
     private volatile boolean isRunning = false;
-    private Thread schedulerThread;
-    
-    public VoteSchedulingService() {
-        // 创建线程池，用于处理投票请求
-        this.executorService = new ThreadPoolExecutor(
-            5,  // 核心线程数
-            10, // 最大线程数
-            60L, // 空闲线程存活时间
-            TimeUnit.SECONDS,
-            new LinkedBlockingQueue<>(100), // 工作队列
-            new ThreadPoolExecutor.CallerRunsPolicy() // 拒绝策略
-        );
-        
-        // 创建优先队列，按请求时间排序
-        this.voteQueue = new PriorityBlockingQueue<>(1000, 
-            (r1, r2) -> Long.compare(r1.getTimestamp(), r2.getTimestamp()));
-        
-        // 启动调度器
-        startScheduler();
-    }
     
     /**
      * 提交投票请求到调度队列
@@ -69,99 +186,336 @@ public class VoteSchedulingService {
      * @return 请求ID
      */
     public String submitVoteRequest(String userId, String candidateId, String candidateName, String sessionId) {
-        VoteRequest request = new VoteRequest(userId, candidateId, candidateName, sessionId);
+        VoteTicket ticket = submitVote(userId, candidateId, candidateName, sessionId);
+        if (ticket.getStatus() == VoteTicket.Status.REJECTED) {
+            throw new RuntimeException("提交投票请求失败", new RejectedExecutionException(ticket.getMessage()));
+        }
+        return ticket.getRequestId();
+    }
+    
+    /**
+     * 提交投票请求并返回凭据
+     * 凭据的completion()在投票处理完成（或被拒绝）时立即完成，调用方无需轮询
+     * 
+     * @param userId 用户ID
+     * @param candidateId 候选人ID
+     * @param candidateName 候选人姓名
+     * @param sessionId 会话ID
+     * @return 投票凭据
+     */
+    public VoteTicket submitVote(String userId, String candidateId, String candidateName, String sessionId) {
+        return submitVote(userId, candidateId, candidateName, sessionId, Priority.NORMAL, 0);
+    }
+    
+    /**
+     * 按优先级和截止时间提交投票请求
+     * 截止时间到达仍未开始处理的请求直接丢弃（EXPIRED），不再占用处理能力
+     * 
+     * @param userId 用户ID
+     * @param candidateId 候选人ID
+     * @param candidateName 候选人姓名
+     * @param sessionId 会话ID
+     * @param priority 优先级
+     * @param timeoutMillis 客户端愿意等待的时间（毫秒），不超过该优先级的预算；0表示使用预算
+     * @return 投票凭据
+     */
+    public VoteTicket submitVote(String userId, String candidateId, String candidateName, String sessionId,
+                                 Priority priority, long timeoutMillis) {
+        long budget = deadlineBudget(priority);
+        long timeout = timeoutMillis > 0 ? Math.min(timeoutMillis, budget) : budget;
+        VoteRequest request = new VoteRequest(userId, candidateId, candidateName, sessionId, priority, timeout);
+        VoteTicket ticket = request.getTicket();
+        requestStatus.put(ticket.getRequestId(), ticket);
+        
+        if (!isRunning) {
+            ticket.complete(VoteTicket.Status.REJECTED, "Server shutting down");
+            return ticket;
+        }
+        
+        // 准入控制：超过自适应并发上限时快速拒绝
+        if (!admissionLimiter.tryAcquire()) {
+            rejectedRequests.incrementAndGet();
+            ticket.complete(VoteTicket.Status.REJECTED, "Server overloaded, retry later");
+            return ticket;
+        }
         
         try {
-            // 添加到优先队列
-            voteQueue.offer(request);
+            // 写入环形缓冲区，满时直接拒绝而不是无限排队
+            if (!dispatcher.offer(request)) {
+                admissionLimiter.release(0, true);
+                throw new RejectedExecutionException("调度队列已满，容量: " + dispatcher.capacity());
+            }
             totalRequests.incrementAndGet();
             
-            System.out.println("投票请求已提交到调度队列 - 用户: " + userId + 
-                             ", 候选人: " + candidateName + 
-                             ", 队列大小: " + voteQueue.size());
-            
-            return request.getRequestId();
+            LOG.debug("vote.enqueued", "投票请求已提交到调度队列 - 用户: {}, 候选人: {}, 队列大小: {}",
+                    userId, candidateName, dispatcher.size());
         } catch (Exception e) {
             failedRequests.incrementAndGet();
-            System.err.println("提交投票请求失败: " + e.getMessage());
-            throw new RuntimeException("提交投票请求失败", e);
+            LOG.warn("vote.rejected", "提交投票请求失败: {}", e.getMessage());
+            ticket.complete(VoteTicket.Status.REJECTED, e.getMessage());
+        }
+        return ticket;
+    }
+    
+    /**
+     * 查询请求状态
+     * 
+     * @param requestId 请求ID
+     * @return 投票凭据，不存在或已过期时返回null
+     */
+    public VoteTicket getRequestStatus(String requestId) {
+        return requestStatus.get(requestId);
+    }
+    
+    private long deadlineBudget(Priority priority) {
+        switch (priority) {
+            case HIGH:
+                return highDeadline;
+            case LOW:
+                return lowDeadline;
+            default:
+                return maxWaitTime;
         }
     }
     
     /**
      * 启动调度器
      */
-    private void startScheduler() {
+    @PostConstruct
+    public synchronized void startScheduler() {
         if (isRunning) {
             return;
         }
         
+        requestStatus = new BoundedExpiringMap<>(statusTableSize, statusTtl);
+        admissionLimiter = new AdaptiveConcurrencyLimiter(initialLimit, minLimit, maxLimit, latencySlo);
+        partitioned = "partitioned".equalsIgnoreCase(mode);
+        if (virtualThreadsEnabled) {
+            startVirtualThreadMode();
+        }
+        if (partitioned) {
+            // 每个通道一个线程，容量均分
+            dispatcher = new PartitionedDispatcher<>("VoteLane", threadPoolSize,
+                Math.max(2, queueCapacity / threadPoolSize), batchSize, waitStrategy,
+                VoteRequest::getUserId, this::processBatch);
+        } else {
+            // 每个优先级一个缓冲区，按队首截止时间选择
+            DeadlineDispatcher<VoteRequest> shared = new DeadlineDispatcher<>("VoteWorker", Priority.values().length,
+                queueCapacity, batchSize, WaitStrategy.forName(waitStrategy),
+                request -> request.getPriority().ordinal(), VoteRequest::getDeadline,
+                starvationThreshold, this::processBatch);
+            shared.start(threadPoolSize);
+            dispatcher = shared;
+            // 虚拟线程模式下并发由信号量限制，调度线程数无需调整
+            if (autoTuneEnabled && virtualExecutor == null) {
+                poolSizeController = new PoolSizeController(minPoolSize, maxPoolSize, targetUtilization, queueWaitTarget);
+            }
+        }
+        registerMetrics();
         isRunning = true;
-        schedulerThread = new Thread(this::schedulerLoop, "VoteScheduler");
-        schedulerThread.setDaemon(true);
-        schedulerThread.start();
         
-        System.out.println("投票调度器已启动");
+        System.out.println("投票调度器已启动 - 模式: " + (partitioned ? "partitioned" : "shared") + 
+                         ", 执行方式: " + (virtualExecutor != null ? "virtual(" + maxConcurrency + ")" : "platform") + 
+                         ", 工作线程: " + threadPoolSize + 
+                         (poolSizeController != null ? " (自动调整 " + minPoolSize + "-" + maxPoolSize + ")" : "") + 
+                         ", 缓冲区容量: " + dispatcher.capacity() + 
+                         ", 等待策略: " + waitStrategy);
+    }
+    
+    /**
+     * 注册调度相关的指标
+     */
+    private void registerMetrics() {
+        queueWaitTimer = metricsRegistry.stageTimer("queue_wait");
+        endToEndTimer = metricsRegistry.stageTimer("end_to_end");
+        metricsRegistry.counter("vote_requests_total", "Vote requests by outcome", totalRequests::get, "outcome", "submitted");
+        metricsRegistry.counter("vote_requests_total", "Vote requests by outcome", processedRequests::get, "outcome", "processed");
+        metricsRegistry.counter("vote_requests_total", "Vote requests by outcome", failedRequests::get, "outcome", "failed");
+        metricsRegistry.counter("vote_requests_total", "Vote requests by outcome", rejectedRequests::get, "outcome", "rejected");
+        metricsRegistry.counter("vote_requests_total", "Vote requests by outcome", expiredRequests::get, "outcome", "expired");
+        metricsRegistry.gauge("vote_queue_size", "Vote requests waiting in the scheduler", () -> dispatcher.size());
+        metricsRegistry.gauge("vote_admission_limit", "Current adaptive admission limit", () -> admissionLimiter.getLimit());
+        metricsRegistry.gauge("vote_worker_threads", "Scheduler worker threads", () ->
+            dispatcher instanceof AbstractBatchDispatcher
+                ? ((AbstractBatchDispatcher<?>) dispatcher).getWorkerCount() : threadPoolSize);
+        metricsRegistry.counter("vote_pool_resizes_total", "Worker pool resizes made by the pool size controller",
+            poolResizes::get);
+        // 最近一次调整决策的各项测量值，尚未调整过时为0
+        metricsRegistry.gauge("vote_pool_last_decision_size", "Worker count chosen by the last pool resize", () ->
+            lastPoolDecision != null ? lastPoolDecision.getToSize() : 0, "side", "to");
+        metricsRegistry.gauge("vote_pool_last_decision_size", "Worker count chosen by the last pool resize", () ->
+            lastPoolDecision != null ? lastPoolDecision.getFromSize() : 0, "side", "from");
+        metricsRegistry.gauge("vote_pool_last_decision_arrival_rate", "Arrivals per second behind the last pool resize",
+            () -> lastPoolDecision != null ? lastPoolDecision.getArrivalRate() : 0);
+        metricsRegistry.gauge("vote_pool_last_decision_service_millis", "Mean service time behind the last pool resize",
+            () -> lastPoolDecision != null ? lastPoolDecision.getServiceMillis() : 0);
+        metricsRegistry.gauge("vote_pool_last_decision_timestamp_seconds", "Time of the last pool resize",
+            () -> lastPoolDecision != null ? lastPoolDecision.getTimestamp() / 1000.0 : 0);
+    }
+    
+    /**
+     * 按测量值调整工作线程数
+     * 每个周期取到达数、完成数、平均服务时间和平均排队等待，交给利特尔法则控制器计算目标线程数
+     */
+    @Scheduled(fixedDelayString = "${distributed.scheduling.auto-tune.interval:1000}")
+    @SuppressWarnings("unchecked")
+    public void tunePoolSize() {
+        if (!isRunning || poolSizeController == null) {
+            return;
+        }
+        AbstractBatchDispatcher<VoteRequest> workers = (AbstractBatchDispatcher<VoteRequest>) dispatcher;
+        
+        long arrivals = totalRequests.get();
+        long completions = processedRequests.get() + failedRequests.get() + expiredRequests.get();
+        long processingTime = totalProcessingTime.get();
+        long queueWaitTime = totalQueueWaitTime.get();
+        long intervalArrivals = arrivals - lastSampleArrivals;
+        long intervalCompletions = completions - lastSampleCompletions;
+        double avgService = intervalCompletions > 0
+            ? (double) (processingTime - lastSampleProcessingTime) / intervalCompletions : 0;
+        double avgQueueWait = intervalCompletions > 0
+            ? (double) (queueWaitTime - lastSampleQueueWaitTime) / intervalCompletions : 0;
+        lastSampleArrivals = arrivals;
+        lastSampleCompletions = completions;
+        lastSampleProcessingTime = processingTime;
+        lastSampleQueueWaitTime = queueWaitTime;
+        
+        PoolSizeController.Decision decision = poolSizeController.evaluate(workers.getWorkerCount(),
+            tuningInterval, intervalArrivals, intervalCompletions, avgService, avgQueueWait);
+        if (!decision.isResize()) {
+            return;
+        }
+        workers.resize(decision.getToSize());
+        lastPoolDecision = decision;
+        poolResizes.incrementAndGet();
+        System.out.println("调整工作线程数: " + decision);
+        eventPublisher.publishEvent(new PoolResizedEvent(this, decision));
     }
     
     /**
-     * 调度器主循环
-     * 从队列中取出请求并分配给线程池处理
+     * 启用虚拟线程执行方式
+     * 分区模式下同一用户必须由通道串行处理，不再分发到虚拟线程，仅共享模式生效
+     */
+    private void startVirtualThreadMode() {
+        if (partitioned) {
+            System.out.println("分区模式保持通道串行处理，虚拟线程仅用于Web层和@Async");
+            return;
+        }
+        virtualExecutor = VirtualThreads.newThreadPerTaskExecutor("VoteTask-");
+        if (virtualExecutor == null) {
+            System.err.println("当前运行时不支持虚拟线程（需要Java 21+），使用平台线程");
+            return;
+        }
+        concurrencyPermits = new Semaphore(maxConcurrency);
+        pinnedThreadMonitor = new PinnedThreadMonitor(pinningThreshold);
+        pinnedThreadMonitor.start();
+    }
+    
+    // 批内排序：截止时间早的先处理，相同时高优先级先处理
+    private static final Comparator<VoteRequest> EARLIEST_DEADLINE_FIRST =
+        Comparator.comparingLong(VoteRequest::getDeadline).thenComparing(VoteRequest::getPriority);
+    
+    /**
+     * 处理一批投票请求
+     * 由工作线程直接调用，批内按截止时间优先（EDF）顺序处理
+     * 
+     * @param batch 投票请求批次
      */
-    private void schedulerLoop() {
-        while (isRunning) {
-            try {
-                // 从队列中取出请求（阻塞等待）
-                VoteRequest request = voteQueue.take();
-                
-                // 提交给线程池异步处理
-                executorService.submit(() -> processVoteRequest(request));
-                
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-                System.err.println("调度器被中断: " + e.getMessage());
-                break;
-            } catch (Exception e) {
-                System.err.println("调度器处理请求时发生错误: " + e.getMessage());
+    private void processBatch(List<VoteRequest> batch) {
+        batch.sort(EARLIEST_DEADLINE_FIRST);
+        for (VoteRequest request : batch) {
+            if (virtualExecutor != null) {
+                dispatchToVirtualThread(request);
+            } else {
+                processVoteRequest(request);
             }
         }
     }
     
+    /**
+     * 在虚拟线程上处理请求
+     * 达到并发上限时阻塞调度线程，积压留在环形缓冲区并由准入控制拒绝
+     * 
+     * @param request 投票请求
+     */
+    private void dispatchToVirtualThread(VoteRequest request) {
+        concurrencyPermits.acquireUninterruptibly();
+        try {
+            virtualExecutor.execute(() -> {
+                try {
+                    processVoteRequest(request);
+                } finally {
+                    concurrencyPermits.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            concurrencyPermits.release();
+            processVoteRequest(request);
+        }
+    }
+    
     /**
      * 处理投票请求
      * 
      * @param request 投票请求
      */
-    @Async
     private void processVoteRequest(VoteRequest request) {
         long startTime = System.currentTimeMillis();
+        long queueWait = startTime - request.getTimestamp();
+        totalQueueWaitTime.addAndGet(queueWait);
+        queueWaitTimer.recordSince(request.getEnqueuedNanos());
+        VoteTicket ticket = request.getTicket();
+        
+        // 已过截止时间的请求直接丢弃，客户端已不再等待
+        if (startTime > request.getDeadline()) {
+            expiredRequests.incrementAndGet();
+            expiredByPriority.incrementAndGet(request.getPriority().ordinal());
+            admissionLimiter.release(TimeUnit.MILLISECONDS.toNanos(queueWait), true);
+            ticket.complete(VoteTicket.Status.EXPIRED, "Request expired in queue");
+            return;
+        }
+        // 停机时已被置为失败的请求不再处理
+        if (!ticket.markProcessing()) {
+            admissionLimiter.release(TimeUnit.MILLISECONDS.toNanos(queueWait), true);
+            return;
+        }
         
         try {
-            System.out.println("开始处理投票请求 - 用户: " + request.getUserId() + 
-                             ", 候选人: " + request.getCandidateName());
+            LOG.debug("vote.dequeued", "开始处理投票请求 - 用户: {}, 候选人: {}, 优先级: {}",
+                    request.getUserId(), request.getCandidateName(), request.getPriority());
             
-            // 调用投票处理服务
-            boolean success = voteProcessingService.processVote(
-                request.getUserId(), 
-                request.getCandidateId(), 
-                request.getCandidateName(), 
-                request.getSessionId()
-            );
+            // 调用投票处理服务；分区模式下同一用户已由通道串行，无需分布式锁
+            boolean success = partitioned
+                ? voteProcessingService.processVoteSerialized(
+                    request.getUserId(), 
+                    request.getCandidateId(), 
+                    request.getCandidateName(), 
+                    request.getSessionId())
+                : voteProcessingService.processVote(
+                    request.getUserId(), 
+                    request.getCandidateId(), 
+                    request.getCandidateName(), 
+                    request.getSessionId());
             
             if (success) {
                 processedRequests.incrementAndGet();
-                System.out.println("投票请求处理成功 - 用户: " + request.getUserId());
+                LOG.debug("vote.completed", "投票请求处理成功 - 用户: {}", request.getUserId());
+                ticket.complete(VoteTicket.Status.SUCCEEDED, "Vote successful");
             } else {
                 failedRequests.incrementAndGet();
-                System.out.println("投票请求处理失败 - 用户: " + request.getUserId());
+                LOG.debug("vote.failed", "投票请求处理失败 - 用户: {}", request.getUserId());
+                ticket.complete(VoteTicket.Status.FAILED, "User already voted or is being processed");
             }
             
         } catch (Exception e) {
             failedRequests.incrementAndGet();
-            System.err.println("处理投票请求时发生异常: " + e.getMessage());
+            LOG.error("vote.error", "处理投票请求时发生异常: {}", e.getMessage());
+            ticket.complete(VoteTicket.Status.FAILED, "Internal server error");
         } finally {
-            long processingTime = System.currentTimeMillis() - startTime;
-            totalProcessingTime.addAndGet(processingTime);
+            long endTime = System.currentTimeMillis();
+            totalProcessingTime.addAndGet(endTime - startTime);
+            endToEndTimer.recordSince(request.getEnqueuedNanos());
+            admissionLimiter.release(TimeUnit.MILLISECONDS.toNanos(endTime - request.getTimestamp()), false);
         }
     }
     
@@ -170,13 +524,36 @@ public class VoteSchedulingService {
      * 
      * @return 统计信息
      */
+    @SuppressWarnings("unchecked")
     public SchedulingStats getStats() {
+        int[] expiredCounts = new int[expiredByPriority.length()];
+        for (int i = 0; i < expiredCounts.length; i++) {
+            expiredCounts[i] = expiredByPriority.get(i);
+        }
         return new SchedulingStats(
             totalRequests.get(),
             processedRequests.get(),
             failedRequests.get(),
-            voteQueue.size(),
+            rejectedRequests.get(),
+            expiredRequests.get(),
+            expiredCounts,
+            admissionLimiter != null ? admissionLimiter.getLimit() : 0,
+            dispatcher != null ? dispatcher.size() : 0,
             totalProcessingTime.get(),
+            totalQueueWaitTime.get(),
+            requestStatus != null ? requestStatus.size() : 0,
+            dispatcher instanceof PartitionedDispatcher 
+                ? ((PartitionedDispatcher<VoteRequest>) dispatcher).getLaneDepths() : new int[0],
+            dispatcher instanceof DeadlineDispatcher
+                ? ((DeadlineDispatcher<VoteRequest>) dispatcher).getPriorityDepths() : new int[0],
+            virtualExecutor != null ? "virtual" : "platform",
+            concurrencyPermits != null ? maxConcurrency - concurrencyPermits.availablePermits() : 0,
+            pinnedThreadMonitor != null ? pinnedThreadMonitor.getPinnedEvents() : 0,
+            pinnedThreadMonitor != null ? pinnedThreadMonitor.getLastPinnedFrame() : null,
+            dispatcher instanceof AbstractBatchDispatcher
+                ? ((AbstractBatchDispatcher<VoteRequest>) dispatcher).getWorkerCount() : threadPoolSize,
+            poolResizes.get(),
+            lastPoolDecision,
             isRunning
         );
     }
@@ -184,13 +561,52 @@ public class VoteSchedulingService {
     /**
      * 停止调度器
      */
-    public void shutdown() {
+    @PreDestroy
+    public synchronized void shutdown() {
         isRunning = false;
-        if (schedulerThread != null) {
-            schedulerThread.interrupt();
+        if (dispatcher != null) {
+            dispatcher.shutdown();
+        }
+        if (virtualExecutor != null) {
+            virtualExecutor.shutdown();
+        }
+        if (pinnedThreadMonitor != null) {
+            pinnedThreadMonitor.close();
+        }
+        // 仍在排队的请求不会再被处理，立即置为失败，长轮询的客户端随即得到结果
+        int[] abandoned = {0};
+        if (requestStatus != null) {
+            requestStatus.forEach((requestId, ticket) -> {
+                if (ticket.failIfQueued("Server shutting down")) {
+                    abandoned[0]++;
+                }
+            });
+        }
+        failedRequests.addAndGet(abandoned[0]);
+        System.out.println("投票调度器已停止，未处理的排队请求: " + abandoned[0]);
+    }
+    
+    /**
+     * 工作线程数调整事件
+     */
+    public static class PoolResizedEvent extends ApplicationEvent {
+        private final PoolSizeController.Decision decision;
+        
+        public PoolResizedEvent(Object source, PoolSizeController.Decision decision) {
+            super(source);
+            this.decision = decision;
         }
-        executorService.shutdown();
-        System.out.println("投票调度器已停止");
+        
+        public PoolSizeController.Decision getDecision() { return decision; }
+    }
+    
+    /**
+     * 请求优先级，声明顺序即优先顺序
+     */
+    public enum Priority {
+        HIGH,
+        NORMAL,
+        LOW
     }
     
     /**
@@ -203,14 +619,23 @@ public class VoteSchedulingService {
         private final String candidateName;
         private final String sessionId;
         private final long timestamp;
+        private final long enqueuedNanos;
+        private final Priority priority;
+        private final long deadline;
+        private final VoteTicket ticket;
         
-        public VoteRequest(String userId, String candidateId, String candidateName, String sessionId) {
+        public VoteRequest(String userId, String candidateId, String candidateName, String sessionId,
+                           Priority priority, long timeoutMillis) {
             this.requestId = java.util.UUID.randomUUID().toString();
             this.userId = userId;
             this.candidateId = candidateId;
             this.candidateName = candidateName;
             this.sessionId = sessionId;
             this.timestamp = System.currentTimeMillis();
+            this.enqueuedNanos = System.nanoTime();
+            this.priority = priority;
+            this.deadline = timestamp + timeoutMillis;
+            this.ticket = new VoteTicket(requestId, userId, candidateId, timestamp, priority, deadline);
         }
         
         // Getter方法
@@ -220,6 +645,98 @@ public class VoteSchedulingService {
         public String getCandidateName() { return candidateName; }
         public String getSessionId() { return sessionId; }
         public long getTimestamp() { return timestamp; }
+        public long getEnqueuedNanos() { return enqueuedNanos; }
+        public Priority getPriority() { return priority; }
+        public long getDeadline() { return deadline; }
+        public VoteTicket getTicket() { return ticket; }
+    }
+    
+    /**
+     * 投票凭据
+     * 记录请求的当前状态，并在处理结束时完成completion()
+     */
+    public static class VoteTicket {
+        private final String requestId;
+        private final String userId;
+        private final String candidateId;
+        private final long submittedAt;
+        private final Priority priority;
+        private final long deadline;
+        private volatile Status status = Status.QUEUED;
+        private volatile String message;
+        private volatile long completedAt;
+        private final CompletableFuture<VoteTicket> completion = new CompletableFuture<>();
+        
+        public enum Status {
+            QUEUED,     // 排队中
+            PROCESSING, // 处理中
+            SUCCEEDED,  // 投票成功
+            FAILED,     // 投票失败
+            REJECTED,   // 未进入队列
+            EXPIRED     // 超过截止时间被丢弃
+        }
+        
+        public VoteTicket(String requestId, String userId, String candidateId, long submittedAt,
+                          Priority priority, long deadline) {
+            this.requestId = requestId;
+            this.userId = userId;
+            this.candidateId = candidateId;
+            this.submittedAt = submittedAt;
+            this.priority = priority;
+            this.deadline = deadline;
+        }
+        
+        /**
+         * 排队中转为处理中；凭据已结束（如停机时被置为失败）时返回false
+         */
+        synchronized boolean markProcessing() {
+            if (status != Status.QUEUED) {
+                return false;
+            }
+            this.status = Status.PROCESSING;
+            return true;
+        }
+        
+        /**
+         * 仍在排队时置为失败
+         */
+        synchronized boolean failIfQueued(String message) {
+            if (status != Status.QUEUED) {
+                return false;
+            }
+            complete(Status.FAILED, message);
+            return true;
+        }
+        
+        /**
+         * 结束凭据，只有第一次生效
+         */
+        synchronized void complete(Status finalStatus, String message) {
+            if (completion.isDone()) {
+                return;
+            }
+            this.message = message;
+            this.completedAt = System.currentTimeMillis();
+            this.status = finalStatus;
+            completion.complete(this);
+        }
+        
+        /**
+         * 处理完成时完成的Future（不作为属性序列化）
+         */
+        public CompletableFuture<VoteTicket> completion() { return completion; }
+        
+        // Getter方法
+        public String getRequestId() { return requestId; }
+        public String getUserId() { return userId; }
+        public String getCandidateId() { return candidateId; }
+        public long getSubmittedAt() { return submittedAt; }
+        public Priority getPriority() { return priority; }
+        public long getDeadline() { return deadline; }
+        public Status getStatus() { return status; }
+        public String getMessage() { return message; }
+        public long getCompletedAt() { return completedAt; }
+        public boolean isDone() { return completion.isDone(); }
     }
     
     /**
@@ -229,17 +746,52 @@ public class VoteSchedulingService {
         private final int totalRequests;
         private final int processedRequests;
         private final int failedRequests;
+        private final int rejectedRequests;
+        private final int expiredRequests;
+        private final int[] expiredByPriority;
+        private final int concurrencyLimit;
         private final int queueSize;
         private final long totalProcessingTime;
+        private final long totalQueueWaitTime;
+        private final int trackedRequests;
+        private final int[] laneDepths;
+        private final int[] priorityDepths;
+        private final String executionMode;
+        private final int activeTasks;
+        private final long pinnedEvents;
+        private final String lastPinnedFrame;
+        private final int poolSize;
+        private final int poolResizes;
+        private final PoolSizeController.Decision lastPoolDecision;
         private final boolean isRunning;
         
         public SchedulingStats(int totalRequests, int processedRequests, int failedRequests, 
-                             int queueSize, long totalProcessingTime, boolean isRunning) {
+                             int rejectedRequests, int expiredRequests, int[] expiredByPriority,
+                             int concurrencyLimit, int queueSize, long totalProcessingTime,
+                             long totalQueueWaitTime, int trackedRequests, int[] laneDepths,
+                             int[] priorityDepths, String executionMode, int activeTasks,
+                             long pinnedEvents, String lastPinnedFrame, int poolSize, int poolResizes,
+                             PoolSizeController.Decision lastPoolDecision, boolean isRunning) {
             this.totalRequests = totalRequests;
             this.processedRequests = processedRequests;
             this.failedRequests = failedRequests;
+            this.rejectedRequests = rejectedRequests;
+            this.expiredRequests = expiredRequests;
+            this.expiredByPriority = expiredByPriority;
+            this.concurrencyLimit = concurrencyLimit;
             this.queueSize = queueSize;
             this.totalProcessingTime = totalProcessingTime;
+            this.totalQueueWaitTime = totalQueueWaitTime;
+            this.trackedRequests = trackedRequests;
+            this.laneDepths = laneDepths;
+            this.priorityDepths = priorityDepths;
+            this.executionMode = executionMode;
+            this.activeTasks = activeTasks;
+            this.pinnedEvents = pinnedEvents;
+            this.lastPinnedFrame = lastPinnedFrame;
+            this.poolSize = poolSize;
+            this.poolResizes = poolResizes;
+            this.lastPoolDecision = lastPoolDecision;
             this.isRunning = isRunning;
         }
         
@@ -247,11 +799,30 @@ public class VoteSchedulingService {
         public int getTotalRequests() { return totalRequests; }
         public int getProcessedRequests() { return processedRequests; }
         public int getFailedRequests() { return failedRequests; }
+        public int getRejectedRequests() { return rejectedRequests; }
+        public int getExpiredRequests() { return expiredRequests; }
+        public int[] getExpiredByPriority() { return expiredByPriority; }
+        public int getConcurrencyLimit() { return concurrencyLimit; }
         public int getQueueSize() { return queueSize; }
         public long getTotalProcessingTime() { return totalProcessingTime; }
+        public long getTotalQueueWaitTime() { return totalQueueWaitTime; }
+        public int getTrackedRequests() { return trackedRequests; }
+        public int[] getLaneDepths() { return laneDepths; }
+        public int[] getPriorityDepths() { return priorityDepths; }
+        public String getExecutionMode() { return executionMode; }
+        public int getActiveTasks() { return activeTasks; }
+        public long getPinnedEvents() { return pinnedEvents; }
+        public String getLastPinnedFrame() { return lastPinnedFrame; }
+        public int getPoolSize() { return poolSize; }
+        public int getPoolResizes() { return poolResizes; }
+        public PoolSizeController.Decision getLastPoolDecision() { return lastPoolDecision; }
         public boolean isRunning() { return isRunning; }
         public double getAverageProcessingTime() { 
             return processedRequests > 0 ? (double) totalProcessingTime / processedRequests : 0; 
         }
+        public double getAverageQueueWaitTime() { 
+            int handled = processedRequests + failedRequests + expiredRequests;
+            return handled > 0 ? (double) totalQueueWaitTime / handled : 0; 
+        }
     }
 } 
\ No newline at end of file
@@ -0,0 +1,64 @@
+package p.projectone.catalog;
+
+import org.junit.jupiter.api.Test;
+
+import p.projectone.model.Candidate;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CandidateCatalogTest {
+
+    private static Candidate candidate(String id, Integer ordinal) {
+        Candidate candidate = new Candidate("name-" + id, null, null);
+        candidate.setId(id);
+        candidate.setOrdinal(ordinal);
+        return candidate;
+    }
+
+    @Test
+    void persistedOrdinalsDoNotDependOnLoadOrder() {
+        CandidateCatalog a = CandidateCatalog.defaults().next(List.of(candidate("x", 3), candidate("y", 4)));
+        CandidateCatalog b = CandidateCatalog.defaults().next(List.of(candidate("y", 4), candidate("x", 3)));
+        assertEquals(3, a.ordinalOf("x"));
+        assertEquals(4, a.ordinalOf("y"));
+        assertEquals(a.toJson(), b.toJson());
+        assertEquals(0, a.ordinalOf("1"));
+    }
+
+    @Test
+    void missingOrdinalIsAnInactivePlaceholderUntilItIsLoaded() {
+        CandidateCatalog withHole = CandidateCatalog.defaults().next(List.of(candidate("y", 4)));
+        assertEquals(5, withHole.size());
+        assertEquals("#3", withHole.id(3));
+        assertFalse(withHole.isActive(3));
+        assertEquals(-1, withHole.resolve("#3"));
+
+        CandidateCatalog filled = withHole.next(List.of(candidate("x", 3), candidate("y", 4)));
+        assertEquals(3, filled.ordinalOf("x"));
+        assertTrue(filled.isActive(3));
+        assertEquals(-1, filled.ordinalOf("#3"));
+    }
+
+    @Test
+    void rejectsMovedOrSharedOrdinals() {
+        CandidateCatalog catalog = CandidateCatalog.defaults().next(List.of(candidate("x", 3)));
+        assertThrows(IllegalArgumentException.class, () -> catalog.next(List.of(candidate("x", 4))));
+        assertThrows(IllegalArgumentException.class, () -> catalog.next(List.of(candidate("x", 3), candidate("z", 3))));
+        assertThrows(IllegalArgumentException.class,
+            () -> catalog.next(List.of(candidate("z", CandidateCatalog.MAX_CANDIDATES))));
+    }
+
+    @Test
+    void candidatesWithoutOrdinalAreAppendedInSourceOrder() {
+        CandidateCatalog catalog = CandidateCatalog.defaults().next(List.of(candidate("x", null), candidate("y", null)));
+        assertEquals(3, catalog.ordinalOf("x"));
+        assertEquals(4, catalog.ordinalOf("y"));
+        assertSame(catalog, catalog.next(List.of(candidate("x", null), candidate("y", null))));
+    }
+}
@@ -0,0 +1,125 @@
+package p.projectone.concurrent;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class BoundedExpiringMapTest {
+
+    private static final long TTL = 100;
+
+    private final AtomicLong now = new AtomicLong(1_000);
+
+    private BoundedExpiringMap<String, String> map(int maxEntries) {
+        return new BoundedExpiringMap<>(maxEntries, TTL, now::get);
+    }
+
+    @Test
+    void expiresEntriesAfterTtl() {
+        BoundedExpiringMap<String, String> map = map(10);
+        map.put("a", "1");
+        now.addAndGet(TTL);
+        assertEquals("1", map.get("a"));
+        now.addAndGet(1);
+        assertNull(map.get("a"));
+    }
+
+    @Test
+    void replacingValueKeepsFirstWriteTime() {
+        BoundedExpiringMap<String, String> map = map(10);
+        map.put("a", "1");
+        now.addAndGet(TTL / 2);
+        map.put("a", "2");
+        assertEquals("2", map.get("a"));
+        now.addAndGet(TTL / 2 + 1);
+        assertNull(map.get("a"));
+    }
+
+    @Test
+    void putIfAbsentReturnsLiveValueOnly() {
+        BoundedExpiringMap<String, String> map = map(10);
+        assertNull(map.putIfAbsent("a", "1"));
+        assertEquals("1", map.putIfAbsent("a", "2"));
+        now.addAndGet(TTL + 1);
+        assertNull(map.putIfAbsent("a", "3"));
+        assertEquals("3", map.get("a"));
+    }
+
+    @Test
+    void reinsertAfterExpiryDoesNotBlockEvictionOfLaterEntries() {
+        BoundedExpiringMap<String, String> map = map(10);
+        map.put("a", "1");
+        map.put("b", "1");
+        now.addAndGet(TTL + 1);
+
+        // "a"的旧节点仍在队首，新节点排在"b"之后
+        map.put("a", "2");
+
+        assertEquals(1, map.size());
+        assertEquals("2", map.get("a"));
+        assertEquals(1, map.getEvictions());
+    }
+
+    @Test
+    void overflowAfterReinsertEvictsOldestLiveEntry() {
+        BoundedExpiringMap<String, String> map = map(2);
+        map.put("a", "1");
+        now.addAndGet(TTL / 2);
+        map.put("b", "1");
+        now.addAndGet(TTL / 2 + 1);
+
+        // "a"已过期，重新写入后是最新的条目
+        map.put("a", "2");
+        map.put("c", "1");
+
+        assertEquals(2, map.size());
+        assertNull(map.get("b"));
+        assertEquals("2", map.get("a"));
+        assertEquals("1", map.get("c"));
+    }
+
+    @Test
+    void overflowEvictsInInsertionOrder() {
+        BoundedExpiringMap<String, String> map = map(2);
+        map.put("a", "1");
+        map.put("b", "1");
+        map.put("a", "2");
+        map.put("c", "1");
+
+        assertEquals(2, map.size());
+        assertNull(map.get("a"));
+        assertEquals("1", map.get("b"));
+        assertEquals("1", map.get("c"));
+    }
+
+    @Test
+    void removedKeyCanBeReinserted() {
+        BoundedExpiringMap<String, String> map = map(2);
+        map.put("a", "1");
+        map.remove("a");
+        map.put("b", "1");
+        map.put("a", "2");
+        map.put("c", "1");
+
+        assertNull(map.get("b"));
+        assertEquals("2", map.get("a"));
+    }
+
+    @Test
+    void forEachSkipsExpiredEntries() {
+        BoundedExpiringMap<String, String> map = map(10);
+        map.put("a", "1");
+        now.addAndGet(TTL);
+        map.put("b", "2");
+        now.addAndGet(1);
+
+        Map<String, String> seen = new HashMap<>();
+        map.forEach(seen::put);
+        assertEquals(Map.of("b", "2"), seen);
+    }
+}
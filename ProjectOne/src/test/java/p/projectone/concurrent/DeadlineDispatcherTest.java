@@ -0,0 +1,130 @@
+package p.projectone.concurrent;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DeadlineDispatcherTest {
+
+    private static final long STARVATION_MS = 100;
+
+    private final AtomicLong now = new AtomicLong(0);
+
+    // 元素为{优先级, 截止时间, 编号}
+    private DeadlineDispatcher<long[]> dispatcher(int capacity) {
+        return new DeadlineDispatcher<>("test", 3, capacity, 16, WaitStrategy.forName("blocking"),
+            e -> (int) e[0], e -> e[1], STARVATION_MS, batch -> { }, now::get);
+    }
+
+    private static List<Long> ids(DeadlineDispatcher<long[]> dispatcher, int max) {
+        List<long[]> batch = new ArrayList<>();
+        dispatcher.drain(batch, max);
+        List<Long> ids = new ArrayList<>();
+        for (long[] e : batch) {
+            ids.add(e[2]);
+        }
+        return ids;
+    }
+
+    @Test
+    void ordersByDeadlineWithinLevel() {
+        DeadlineDispatcher<long[]> dispatcher = dispatcher(8);
+        dispatcher.offer(new long[] {1, 300, 1});
+        dispatcher.offer(new long[] {1, 100, 2});
+        dispatcher.offer(new long[] {1, 200, 3});
+        dispatcher.offer(new long[] {1, 100, 4});
+
+        assertEquals(List.of(2L, 4L, 3L, 1L), ids(dispatcher, 10));
+        assertFalse(dispatcher.hasPending());
+    }
+
+    @Test
+    void servesLevelWithEarliestHeadDeadline() {
+        DeadlineDispatcher<long[]> dispatcher = dispatcher(8);
+        dispatcher.offer(new long[] {0, 500, 1});
+        dispatcher.offer(new long[] {2, 50, 2});
+        dispatcher.offer(new long[] {1, 200, 3});
+
+        assertEquals(List.of(2L), ids(dispatcher, 10));
+        assertEquals(List.of(3L), ids(dispatcher, 10));
+        assertEquals(List.of(1L), ids(dispatcher, 10));
+    }
+
+    @Test
+    void starvationIsMeasuredFromOldestWaitingItem() {
+        DeadlineDispatcher<long[]> dispatcher = dispatcher(8);
+        dispatcher.offer(new long[] {2, 10_000, 1});
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(STARVATION_MS / 2));
+        dispatcher.offer(new long[] {0, 100, 2});
+        dispatcher.offer(new long[] {0, 100, 3});
+
+        // 最老元素尚未超过阈值，按截止时间
+        assertEquals(List.of(2L), ids(dispatcher, 1));
+
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(STARVATION_MS / 2 + 1));
+        assertEquals(List.of(1L), ids(dispatcher, 1));
+        assertEquals(List.of(3L), ids(dispatcher, 1));
+    }
+
+    @Test
+    void starvedLevelDrainsOldestFirst() {
+        DeadlineDispatcher<long[]> dispatcher = dispatcher(8);
+        dispatcher.offer(new long[] {2, 900, 1});
+        dispatcher.offer(new long[] {2, 100, 2});
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(STARVATION_MS + 1));
+
+        assertEquals(List.of(1L), ids(dispatcher, 1));
+        assertEquals(List.of(2L), ids(dispatcher, 1));
+        assertFalse(dispatcher.hasPending());
+    }
+
+    @Test
+    void capacityCountsStagedElements() {
+        DeadlineDispatcher<long[]> dispatcher = dispatcher(2);
+        assertTrue(dispatcher.offer(new long[] {1, 300, 1}));
+        assertTrue(dispatcher.offer(new long[] {1, 200, 2}));
+        assertFalse(dispatcher.offer(new long[] {1, 100, 3}));
+        assertTrue(dispatcher.offer(new long[] {0, 100, 4}));
+        assertArrayEquals(new int[] {1, 2, 0}, dispatcher.getPriorityDepths());
+
+        assertEquals(List.of(4L), ids(dispatcher, 1));
+        assertEquals(List.of(2L), ids(dispatcher, 1));
+        // 已移入堆的元素仍占容量，取出后才空出位置
+        assertTrue(dispatcher.offer(new long[] {1, 100, 5}));
+        assertFalse(dispatcher.offer(new long[] {1, 100, 6}));
+        assertEquals(List.of(5L, 1L), ids(dispatcher, 10));
+        assertEquals(0, dispatcher.size());
+    }
+
+    @Test
+    void workersProcessEveryElement() throws Exception {
+        AtomicLong processed = new AtomicLong();
+        DeadlineDispatcher<long[]> dispatcher = new DeadlineDispatcher<>("test", 3, 1024, 16,
+            WaitStrategy.forName("blocking"), e -> (int) e[0], e -> e[1], STARVATION_MS,
+            batch -> processed.addAndGet(batch.size()));
+        dispatcher.start(4);
+        try {
+            int offered = 0;
+            for (int i = 0; i < 3000; i++) {
+                if (dispatcher.offer(new long[] {i % 3, System.currentTimeMillis() + i % 7, i})) {
+                    offered++;
+                }
+            }
+            long waitUntil = System.currentTimeMillis() + 5000;
+            while (processed.get() < offered && System.currentTimeMillis() < waitUntil) {
+                Thread.sleep(5);
+            }
+            assertEquals(offered, processed.get());
+        } finally {
+            dispatcher.shutdown();
+        }
+    }
+}
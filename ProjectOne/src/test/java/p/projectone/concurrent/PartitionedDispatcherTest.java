@@ -0,0 +1,178 @@
+package p.projectone.concurrent;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PartitionedDispatcherTest {
+
+    private static final int LANES = 2;
+    // 与PartitionedDispatcher.BUCKETS_PER_LANE一致
+    private static final int BUCKETS = LANES * 16;
+    private static final long TIMEOUT_MS = 20_000;
+
+    // 元素为{用户, 该用户的序号}
+    private static PartitionedDispatcher<String[]> dispatcher(int batchSize, Consumer<List<String[]>> handler) {
+        return new PartitionedDispatcher<>("test", LANES, 1024, batchSize, "blocking", e -> e[0], handler);
+    }
+
+    /**
+     * 与PartitionedDispatcher.bucketOf相同的分桶，用来挑出初始都落在通道0上的用户
+     */
+    private static List<String> usersOnLaneZero(int count) {
+        List<String> users = new ArrayList<>();
+        for (int i = 0; users.size() < count; i++) {
+            String user = "user-" + i;
+            int hash = user.hashCode();
+            hash ^= (hash >>> 16);
+            if (Math.floorMod(hash, BUCKETS) % LANES == 0) {
+                users.add(user);
+            }
+        }
+        return users;
+    }
+
+    private static void offerUntilAccepted(PartitionedDispatcher<String[]> dispatcher, String[] element) {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+        while (!dispatcher.offer(element)) {
+            assertTrue(System.currentTimeMillis() < deadline, "lane stayed full");
+            Thread.yield();
+        }
+    }
+
+    @Test
+    void keepsPerUserOrderWithoutLossOrDuplicatesWhileBucketsMigrate() throws Exception {
+        int producers = 4;
+        int usersPerProducer = 8;
+        int perUser = 1000;
+        List<String> users = usersOnLaneZero(producers * usersPerProducer);
+
+        Map<String, List<Integer>> processed = new ConcurrentHashMap<>();
+        // 同一用户正在哪个通道线程上处理；出现第二个线程即违反分区串行
+        Map<String, String> active = new ConcurrentHashMap<>();
+        List<String> overlaps = Collections.synchronizedList(new ArrayList<>());
+        AtomicLong total = new AtomicLong();
+
+        PartitionedDispatcher<String[]> dispatcher = dispatcher(8, batch -> {
+            String thread = Thread.currentThread().getName();
+            for (String[] e : batch) {
+                String previous = active.putIfAbsent(e[0], thread);
+                if (previous != null && !previous.equals(thread)) {
+                    overlaps.add(e[0] + " on " + previous + " and " + thread);
+                }
+                processed.computeIfAbsent(e[0], k -> Collections.synchronizedList(new ArrayList<>()))
+                    .add(Integer.parseInt(e[1]));
+            }
+            // 处理变慢，让通道积压，再平衡才会迁移桶
+            try {
+                TimeUnit.MILLISECONDS.sleep(1);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            for (String[] e : batch) {
+                active.remove(e[0], thread);
+            }
+            total.addAndGet(batch.size());
+        });
+
+        try {
+            List<Thread> threads = new ArrayList<>();
+            for (int p = 0; p < producers; p++) {
+                List<String> own = users.subList(p * usersPerProducer, (p + 1) * usersPerProducer);
+                Thread producer = new Thread(() -> {
+                    for (int seq = 0; seq < perUser; seq++) {
+                        for (String user : own) {
+                            offerUntilAccepted(dispatcher, new String[] {user, String.valueOf(seq)});
+                        }
+                    }
+                }, "producer-" + p);
+                threads.add(producer);
+                producer.start();
+            }
+            for (Thread producer : threads) {
+                producer.join(TIMEOUT_MS);
+            }
+
+            long expected = (long) users.size() * perUser;
+            long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+            while (total.get() < expected && System.currentTimeMillis() < deadline) {
+                Thread.sleep(5);
+            }
+
+            assertTrue(dispatcher.getRebalanceCount() > 0, "no bucket was migrated");
+            assertEquals(List.of(), overlaps);
+            assertEquals(expected, total.get());
+            List<Integer> inOrder = new ArrayList<>();
+            for (int seq = 0; seq < perUser; seq++) {
+                inOrder.add(seq);
+            }
+            for (String user : users) {
+                assertEquals(inOrder, processed.get(user), user + " lost, duplicated or reordered items");
+            }
+            assertEquals(0, dispatcher.size());
+        } finally {
+            dispatcher.shutdown();
+        }
+    }
+
+    @Test
+    void rebalanceMovesBucketsOffTheDeepestLane() throws Exception {
+        List<String> users = usersOnLaneZero(8);
+        Object gate = new Object();
+        AtomicLong total = new AtomicLong();
+        boolean[] open = {false};
+
+        // 处理回调先阻塞，积压全部留在通道0
+        PartitionedDispatcher<String[]> dispatcher = dispatcher(4, batch -> {
+            synchronized (gate) {
+                while (!open[0]) {
+                    try {
+                        gate.wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+            }
+            total.addAndGet(batch.size());
+        });
+
+        try {
+            for (int seq = 0; seq < 50; seq++) {
+                for (String user : users) {
+                    offerUntilAccepted(dispatcher, new String[] {user, String.valueOf(seq)});
+                }
+            }
+            long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+            while (dispatcher.getRebalanceCount() == 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertTrue(dispatcher.getRebalanceCount() > 0, "no bucket was migrated");
+
+            synchronized (gate) {
+                open[0] = true;
+                gate.notifyAll();
+            }
+            while (total.get() < 400 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(5);
+            }
+            assertEquals(400, total.get());
+        } finally {
+            synchronized (gate) {
+                open[0] = true;
+                gate.notifyAll();
+            }
+            dispatcher.shutdown();
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package p.projectone.leaderboard;
+
+import org.junit.jupiter.api.Test;
+
+import p.projectone.catalog.CandidateCatalog;
+import p.projectone.model.Candidate;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+class LeaderboardTest {
+
+    @Test
+    void ordersByVotesAndSharesRanksOnTies() {
+        Leaderboard board = new Leaderboard();
+        board.increment(2);
+        board.increment(2);
+        board.increment(1);
+        board.increment(0);
+
+        Leaderboard.Standings top = board.top(3, 3);
+        assertEquals(3, top.size());
+        assertEquals(2, top.getOrdinal(0));
+        assertEquals(2, top.getVotes(0));
+        assertEquals(1, top.getRank(0));
+        assertEquals(2, top.getRank(1));
+        assertEquals(2, top.getRank(2));
+        assertEquals(2, board.rank(0));
+        assertEquals(2, board.rank(1));
+    }
+
+    @Test
+    void raiseToIgnoresStaleReadings() {
+        Leaderboard board = new Leaderboard();
+        board.raiseTo(1, 5);
+        board.raiseTo(1, 3);
+        assertEquals(5, board.getVotes(1));
+        assertEquals(1, board.top(1, 3).getOrdinal(0));
+    }
+
+    @Test
+    void versionChangesOnlyWhenTheTopKChanges() {
+        Leaderboard board = new Leaderboard();
+        board.raiseTo(0, 10);
+        board.raiseTo(1, 5);
+        long version = board.top(1, 3).getVersion();
+
+        board.increment(2);
+        assertEquals(version, board.top(1, 3).getVersion());
+
+        board.increment(0);
+        assertNotEquals(version, board.top(1, 3).getVersion());
+    }
+
+    @Test
+    void etagFollowsTheCatalogVersion() {
+        Leaderboard board = new Leaderboard();
+        board.increment(0);
+        Leaderboard.Standings top = board.top(2, 3);
+        CandidateCatalog catalog = CandidateCatalog.defaults();
+        Candidate renamed = new Candidate("Alicia", null, null);
+        renamed.setId("1");
+        renamed.setOrdinal(0);
+        CandidateCatalog next = catalog.next(List.of(renamed));
+
+        assertEquals(top.etag(catalog), board.top(2, 3).etag(catalog));
+        assertNotEquals(top.etag(catalog), top.etag(next));
+    }
+
+    @Test
+    void growsPastItsInitialCapacity() {
+        Leaderboard board = new Leaderboard(2);
+        board.raiseTo(40, 3);
+        board.increment(7);
+
+        Leaderboard.Standings top = board.top(2, 41);
+        assertEquals(40, top.getOrdinal(0));
+        assertEquals(7, top.getOrdinal(1));
+        assertEquals(3, board.rank(0));
+        assertEquals(41, board.top(100, 41).size());
+    }
+}
@@ -0,0 +1,52 @@
+package p.projectone.protocol;
+
+import org.junit.jupiter.api.Test;
+
+import p.projectone.catalog.CandidateCatalog;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class JsonTextTest {
+
+    private static final String TRICKY = "O\"Brien \\ {x}, \"y\":1\n\t\u0001";
+
+    @Test
+    void escapesQuotesBackslashesAndControlCharacters() {
+        assertEquals("\"a\\\"b\\\\c\\nd\\u0001\"", JsonText.quote("a\"b\\c\nd\u0001"));
+        assertEquals("null", JsonText.quote(null));
+    }
+
+    @Test
+    void readsBackWhatItWrites() {
+        String json = "{\"k\":" + JsonText.quote(TRICKY) + ",\"next\":1}";
+        int quote = json.indexOf(':') + 1;
+        assertEquals(TRICKY, JsonText.readString(json, quote));
+        assertEquals(json.indexOf(",\"next\""), JsonText.skipString(json, quote));
+        assertEquals(json.length() - 1, JsonText.indexOutsideStrings(json, '}', 0));
+        assertThrows(IllegalArgumentException.class, () -> JsonText.readString("\"open\\\"", 0));
+    }
+
+    @Test
+    void catalogRoundTripsNamesWithStructuralCharacters() {
+        CandidateCatalog catalog = CandidateCatalog.defaults().next(
+            CandidateCatalog.parseLines(List.of("1,Alice", "2,Bob", "3,Charlie", "4,O\"Brien {\\}")));
+        CandidateCatalog parsed = CandidateCatalog.fromJson(catalog.toJson());
+        assertEquals(4, parsed.size());
+        assertEquals("O\"Brien {\\}", parsed.name(3));
+        assertEquals("unknown", parsed.party(3));
+        assertEquals(catalog.toJson(), parsed.toJson());
+    }
+
+    @Test
+    void voteBodyRoundTripsQuotedFields() {
+        VoteMessage vote = VoteCodec.parseJson(VoteCodec.encodeJson("u\"1", "2", "Bob \\ \"B\""), null);
+        assertEquals("u\"1", vote.getUserId());
+        assertEquals("2", vote.getCandidateId());
+        assertEquals("Bob \\ \"B\"", vote.getCandidateName());
+        assertNull(VoteCodec.parseJson("{\"userId\":\"unterminated", null).getUserId());
+    }
+}
@@ -0,0 +1,53 @@
+package p.projectone.protocol;
+
+import org.junit.jupiter.api.Test;
+
+import p.projectone.catalog.CandidateCatalog;
+import p.projectone.model.Candidate;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class VoteCodecTest {
+
+    private static CandidateCatalog catalogWith(int ordinal) {
+        Candidate candidate = new Candidate("Zed", null, null);
+        candidate.setId("z");
+        candidate.setOrdinal(ordinal);
+        return CandidateCatalog.defaults().next(List.of(candidate));
+    }
+
+    @Test
+    void smallOrdinalsKeepTheOneByteFrame() {
+        byte[] frame = VoteCodec.encode("alice", 1, null);
+        assertEquals(6 + 5, frame.length);
+        assertEquals(1, frame[2]);
+
+        VoteMessage vote = VoteCodec.decode(frame, CandidateCatalog.defaults());
+        assertEquals("alice", vote.getUserId());
+        assertEquals("2", vote.getCandidateId());
+    }
+
+    @Test
+    void largeOrdinalsUseTheWideFrame() {
+        CandidateCatalog catalog = catalogWith(300);
+        byte[] frame = VoteCodec.encode("bob", 300, "retry-1");
+        assertEquals(2, frame[2]);
+
+        VoteMessage vote = VoteCodec.decode(frame, catalog);
+        assertEquals("bob", vote.getUserId());
+        assertEquals("z", vote.getCandidateId());
+        assertEquals("Zed", vote.getCandidateName());
+        assertEquals("retry-1", vote.getIdempotencyKey());
+    }
+
+    @Test
+    void rejectsOrdinalsOutsideTheCatalog() {
+        byte[] frame = VoteCodec.encode("bob", 300, null);
+        assertThrows(IllegalArgumentException.class, () -> VoteCodec.decode(frame, CandidateCatalog.defaults()));
+        assertThrows(IllegalArgumentException.class,
+                () -> VoteCodec.encode("bob", CandidateCatalog.MAX_CANDIDATES, null));
+    }
+}
@@ -0,0 +1,235 @@
+package p.projectone.replication;
+
+import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.framework.CuratorFrameworkFactory;
+import org.apache.curator.retry.ExponentialBackoffRetry;
+import org.apache.curator.test.TestingServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LeaderReplicatedLogTest {
+
+    private static final String BASE = "/vote-log";
+    private static final long TIMEOUT_MS = 20_000;
+
+    private TestingServer server;
+    private final Map<String, Node> nodes = new ConcurrentHashMap<>();
+
+    /**
+     * 一个集群节点：独立的Curator会话，应用结果记在内存里
+     */
+    private final class Node {
+        final String id;
+        final CuratorFramework client;
+        final LeaderReplicatedLog log;
+        final List<Long> applied = Collections.synchronizedList(new ArrayList<>());
+        final Map<String, String> votes = new ConcurrentHashMap<>();
+
+        Node(String id, int clusterSize, boolean snapshots) throws Exception {
+            this.id = id;
+            client = CuratorFrameworkFactory.newClient(server.getConnectString(), 5000, 5000,
+                new ExponentialBackoffRetry(100, 3));
+            client.start();
+            LeaderReplicatedLog.Applier applier = (seq, voteId, voteData) -> {
+                applied.add(seq);
+                votes.put(voteId, voteData);
+            };
+            LeaderReplicatedLog.SnapshotLoader loader = (source, upTo) -> votes.putAll(nodes.get(source).votes);
+            log = new LeaderReplicatedLog(client, BASE, id, clusterSize,
+                LeaderReplicatedLog.DEFAULT_STALE_PROGRESS_MILLIS, applier, snapshots ? loader : null);
+            nodes.put(id, this);
+            log.start();
+        }
+
+        void close() throws Exception {
+            nodes.remove(id);
+            log.close();
+            client.close();
+        }
+    }
+
+    @BeforeEach
+    void startServer() throws Exception {
+        server = new TestingServer();
+    }
+
+    @AfterEach
+    void stopServer() throws Exception {
+        for (Node node : new ArrayList<>(nodes.values())) {
+            node.close();
+        }
+        server.close();
+    }
+
+    private static void await(String what, BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "timed out waiting for " + what);
+            Thread.sleep(10);
+        }
+    }
+
+    private List<Node> cluster(int size) throws Exception {
+        List<Node> cluster = new ArrayList<>();
+        for (int i = 1; i <= size; i++) {
+            cluster.add(new Node("node-" + i, size, true));
+        }
+        return cluster;
+    }
+
+    private Node awaitLeader(List<Node> candidates) throws InterruptedException {
+        await("a leader", () -> candidates.stream().filter(n -> n.log.isLeader()).count() == 1);
+        return candidates.stream().filter(n -> n.log.isLeader()).findFirst().orElseThrow();
+    }
+
+    private static List<Long> submitAll(Node via, String prefix, int count) throws Exception {
+        List<CompletableFuture<Long>> futures = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            futures.add(via.log.submit(prefix + i, "candidate-" + (i % 3)));
+        }
+        List<Long> sequences = new ArrayList<>();
+        for (CompletableFuture<Long> future : futures) {
+            sequences.add(future.get(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+        }
+        return sequences;
+    }
+
+    private static void assertContiguous(Node node, long from, long to) {
+        List<Long> expected = new ArrayList<>();
+        for (long seq = from; seq <= to; seq++) {
+            expected.add(seq);
+        }
+        synchronized (node.applied) {
+            assertEquals(expected, new ArrayList<>(node.applied), node.id + " applied out of order or with gaps");
+        }
+    }
+
+    private long lowestEntry() throws Exception {
+        long lowest = 0;
+        for (String entry : nodes.values().iterator().next().client.getChildren().forPath(BASE + "/log")) {
+            long seq = Long.parseLong(entry);
+            lowest = lowest == 0 ? seq : Math.min(lowest, seq);
+        }
+        return lowest;
+    }
+
+    @Test
+    void electsExactlyOneLeaderKnownToEveryNode() throws Exception {
+        List<Node> cluster = cluster(3);
+        Node leader = awaitLeader(cluster);
+
+        await("leader id on every node", () -> cluster.stream().allMatch(n -> leader.id.equals(n.log.getLeaderId())));
+        assertEquals(1, leader.log.getLeaderTerms());
+    }
+
+    @Test
+    void everyNodeAppliesEntriesInOrderWithoutGaps() throws Exception {
+        List<Node> cluster = cluster(3);
+        Node leader = awaitLeader(cluster);
+
+        List<Long> sequences = submitAll(leader, "v-", 200);
+        assertEquals(200L, (long) sequences.get(199));
+
+        await("all nodes applied", () -> cluster.stream().allMatch(n -> n.log.getAppliedIndex() == 200));
+        for (Node node : cluster) {
+            assertContiguous(node, 1, 200);
+            assertEquals(leader.votes, node.votes);
+        }
+    }
+
+    @Test
+    void newLeaderResumesFromTheCommittedIndexAfterSessionLoss() throws Exception {
+        List<Node> cluster = cluster(3);
+        Node leader = awaitLeader(cluster);
+        submitAll(leader, "before-", 50);
+        long committed = leader.log.getCommitIndex();
+        assertEquals(50, committed);
+
+        // 关闭Curator客户端：会话结束，临时节点（选主、成员）随之删除
+        leader.client.close();
+        leader.close();
+        List<Node> survivors = new ArrayList<>(cluster);
+        survivors.remove(leader);
+
+        Node next = awaitLeader(survivors);
+        List<Long> sequences = submitAll(next, "after-", 50);
+        assertEquals(committed + 1, (long) sequences.get(0));
+        assertTrue(next.log.getCommitIndex() >= committed + 50);
+
+        await("survivors applied", () -> survivors.stream().allMatch(n -> n.log.getAppliedIndex() == committed + 50));
+        for (Node node : survivors) {
+            assertContiguous(node, 1, committed + 50);
+        }
+    }
+
+    @Test
+    void followerForwardsProposalsToTheLeader() throws Exception {
+        List<Node> cluster = cluster(3);
+        Node leader = awaitLeader(cluster);
+        Node follower = cluster.stream().filter(n -> n != leader).findFirst().orElseThrow();
+
+        List<Long> sequences = submitAll(follower, "fwd-", 20);
+        assertEquals(20L, (long) sequences.get(19));
+        assertEquals(0, follower.log.getPendingForwards());
+
+        await("all nodes applied", () -> cluster.stream().allMatch(n -> n.log.getAppliedIndex() == 20));
+        for (Node node : cluster) {
+            assertContiguous(node, 1, 20);
+            assertEquals("candidate-1", node.votes.get("fwd-1"));
+        }
+    }
+
+    @Test
+    void lateJoinerLoadsASnapshotAndDoesNotBlockTrimming() throws Exception {
+        List<Node> cluster = cluster(3);
+        Node leader = awaitLeader(cluster);
+        submitAll(leader, "early-", 600);
+        await("early entries trimmed", () -> {
+            try {
+                long lowest = lowestEntry();
+                return lowest == 0 || lowest > 1;
+            } catch (Exception e) {
+                return false;
+            }
+        });
+
+        Node late = new Node("node-late", 3, true);
+        await("late joiner loaded a snapshot", () -> late.log.getSnapshotLoads() >= 1);
+        await("late joiner caught up", () -> late.log.getAppliedIndex() >= 600);
+        assertEquals(leader.votes, late.votes);
+        synchronized (late.applied) {
+            if (!late.applied.isEmpty()) {
+                assertContiguous(late, late.applied.get(0), late.applied.get(late.applied.size() - 1));
+            }
+        }
+
+        // 没有快照加载的节点加入后同样不阻止删除
+        Node stuck = new Node("node-stuck", 3, false);
+        submitAll(leader, "later-", 300);
+        await("later entries applied", () -> late.log.getAppliedIndex() == 900);
+        await("later entries trimmed", () -> {
+            try {
+                long lowest = lowestEntry();
+                return lowest == 0 || lowest > 600;
+            } catch (Exception e) {
+                return false;
+            }
+        });
+        assertEquals(0, stuck.log.getAppliedIndex());
+        assertNotNull(late.votes.get("later-299"));
+    }
+}
@@ -0,0 +1,51 @@
+package p.projectone.replication;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MerkleTreeTest {
+
+    private static MerkleTree treeWith(String... keyValues) {
+        MerkleTree tree = new MerkleTree(4);
+        for (int i = 0; i < keyValues.length; i += 2) {
+            tree.add(keyValues[i], MerkleTree.digest(keyValues[i], keyValues[i + 1]));
+        }
+        return tree;
+    }
+
+    @Test
+    void sameEntriesInAnyOrderGiveTheSameRoot() {
+        MerkleTree left = treeWith("a", "1", "b", "2", "c", "3");
+        MerkleTree right = treeWith("c", "3", "a", "1", "b", "2");
+
+        assertEquals(left.getRootHash(), right.getRootHash());
+        assertTrue(MerkleTree.diff(left, right).getBuckets().isEmpty());
+    }
+
+    @Test
+    void replaceSwapsTheDigestOfAnExistingKey() {
+        MerkleTree tree = treeWith("a", "1", "b", "2");
+        tree.replace("a", MerkleTree.digest("a", "1"), MerkleTree.digest("a", "9"));
+        assertEquals(treeWith("a", "9", "b", "2").getRootHash(), tree.getRootHash());
+
+        // 值未变的替换（重发）不改变树
+        long root = tree.getRootHash();
+        tree.replace("b", MerkleTree.digest("b", "2"), MerkleTree.digest("b", "2"));
+        assertEquals(root, tree.getRootHash());
+    }
+
+    @Test
+    void diffFindsTheBucketOfAChangedEntry() {
+        MerkleTree left = treeWith("a", "1", "b", "2");
+        MerkleTree right = treeWith("a", "1", "b", "3");
+
+        assertEquals(1, MerkleTree.diff(left, right).getBuckets().size());
+        assertEquals(left.bucketOf("b"), (int) MerkleTree.diff(left, right).getBuckets().get(0));
+
+        right.setLeaf(left.bucketOf("b"), MerkleTree.digest("b", "2") ^
+            (left.bucketOf("a") == left.bucketOf("b") ? MerkleTree.digest("a", "1") : 0));
+        assertEquals(left.getRootHash(), right.getRootHash());
+    }
+}
@@ -0,0 +1,79 @@
+package p.projectone.rollup;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class VoteRollupTest {
+
+    private static final long MINUTE = VoteRollup.MINUTE_MS;
+    private static final long BASE = 1_000_000L * MINUTE;
+
+    @Test
+    void countsPerMinuteAndCandidate() {
+        VoteRollup rollup = new VoteRollup("node-1", 10);
+        rollup.record(0, BASE);
+        rollup.record(2, BASE + 59_999);
+        rollup.record(2, BASE + MINUTE);
+
+        assertArrayEquals(new int[]{1, 0, 1}, rollup.snapshot(BASE / MINUTE, 3));
+        assertArrayEquals(new int[]{0, 0, 1}, rollup.snapshot(BASE / MINUTE + 1, 3));
+        assertNull(rollup.snapshot(BASE / MINUTE + 2, 3));
+    }
+
+    @Test
+    void reusedSlotStartsFromZeroAndOlderVotesAreLate() {
+        VoteRollup rollup = new VoteRollup("node-1", 4);
+        rollup.record(1, BASE);
+        rollup.record(1, BASE + 4 * MINUTE);
+        rollup.record(1, BASE);
+
+        assertNull(rollup.snapshot(BASE / MINUTE, 2));
+        assertArrayEquals(new int[]{0, 1}, rollup.snapshot(BASE / MINUTE + 4, 2));
+        assertEquals(1, rollup.getLateVotes());
+    }
+
+    @Test
+    void drainTakesDirtyMinutesOnceAndMarkDirtyRequeues() {
+        VoteRollup rollup = new VoteRollup("node-1", 10);
+        rollup.record(0, BASE);
+        rollup.record(1, BASE + MINUTE);
+
+        List<VoteRollup.MinuteCounts> dirty = rollup.drainDirty(2);
+        assertEquals(2, dirty.size());
+        assertTrue(rollup.drainDirty(2).isEmpty());
+
+        rollup.markDirty(BASE / MINUTE);
+        List<VoteRollup.MinuteCounts> again = rollup.drainDirty(2);
+        assertEquals(1, again.size());
+        assertEquals(BASE / MINUTE, again.get(0).getMinute());
+        assertArrayEquals(new int[]{1, 0}, again.get(0).getCounts());
+    }
+
+    @Test
+    void loadAddsToLiveCountsWithoutMarkingDirty() {
+        VoteRollup rollup = new VoteRollup("node-1", 10);
+        rollup.load(BASE / MINUTE, new int[]{3, 4});
+        assertTrue(rollup.drainDirty(2).isEmpty());
+
+        rollup.record(1, BASE);
+        assertArrayEquals(new int[]{3, 5}, rollup.snapshot(BASE / MINUTE, 2));
+        assertTrue(rollup.covers(BASE / MINUTE, BASE + MINUTE));
+        assertFalse(rollup.covers(BASE / MINUTE, BASE + 10 * MINUTE));
+    }
+
+    @Test
+    void countsOrdinalsBeyondTheFirstChunk() {
+        VoteRollup rollup = new VoteRollup("node-1", 2);
+        rollup.record(300, BASE);
+        int[] counts = rollup.snapshot(BASE / MINUTE, 301);
+        assertEquals(1, counts[300]);
+        assertEquals(0, counts[0]);
+    }
+}